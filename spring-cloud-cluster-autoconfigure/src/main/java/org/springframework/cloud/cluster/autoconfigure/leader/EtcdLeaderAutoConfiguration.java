@@ -24,6 +24,8 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.cluster.etcd.EtcdClusterProperties;
+import org.springframework.cloud.cluster.etcd.EtcdClusterProperties.EtcdLeaderProperties;
+import org.springframework.cloud.cluster.etcd.leader.EtcdLeaderProfile;
 import org.springframework.cloud.cluster.etcd.leader.LeaderInitiator;
 import org.springframework.cloud.cluster.leader.Candidate;
 import org.springframework.cloud.cluster.leader.DefaultCandidate;
@@ -39,6 +41,7 @@ import mousio.etcd4j.EtcdClient;
  * Auto-configuration for etcd leader election.
  * 
  * @author Venil Noronha
+ * @author Janne Valkealahti
  */
 @Configuration
 @ConditionalOnClass(LeaderInitiator.class)
@@ -65,6 +68,7 @@ public class EtcdLeaderAutoConfiguration {
 	}
 
 	@Bean
+	@ConditionalOnProperty(value = "spring.cloud.cluster.etcd.leader.backend", havingValue = "v2", matchIfMissing = true)
 	public EtcdClient etcdInstance() {
 		String[] uriList = StringUtils.commaDelimitedListToStringArray(ecp.getConnect());
 		URI[] uris = new URI[uriList.length];
@@ -75,9 +79,25 @@ public class EtcdLeaderAutoConfiguration {
 	}
 
 	@Bean
+	@ConditionalOnProperty(value = "spring.cloud.cluster.etcd.leader.backend", havingValue = "v2", matchIfMissing = true)
 	public LeaderInitiator etcdLeaderInitiator() {
 		LeaderInitiator initiator = new LeaderInitiator(etcdInstance(), etcdLeaderCandidate(), ecp.getNamespace());
 		initiator.setLeaderEventPublisher(publisher);
+		EtcdLeaderProperties leader = ecp.getLeader();
+		initiator.setWatch(leader.isWatch());
+		initiator.setProfile(EtcdLeaderProfile.forName(leader.getProfile()));
+		if (leader.getTtl() != null) {
+			initiator.setTtl(leader.getTtl());
+		}
+		if (leader.getHeartbeatInterval() != null) {
+			initiator.setHeartbeatInterval(leader.getHeartbeatInterval());
+		}
+		if (leader.getRetryJitter() != null) {
+			initiator.setRetryJitter(leader.getRetryJitter());
+		}
+		if (leader.getRequestTimeout() != null) {
+			initiator.setRequestTimeout(leader.getRequestTimeout());
+		}
 		return initiator;
 	}
 
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.cluster.autoconfigure.leader.EtcdLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.etcd.EtcdClusterProperties;
+import org.springframework.cloud.cluster.etcd.lock.EtcdLockService;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import mousio.etcd4j.EtcdClient;
+
+/**
+ * Auto-configuration for {@link EtcdLockService} using an existing
+ * {@link EtcdClient}. Backs off if another {@link LockService} is
+ * already configured, as the client may exist just for leader election.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnClass(EtcdLockService.class)
+@ConditionalOnProperty(value = { "spring.cloud.cluster.etcd.lock.enabled",
+		"spring.cloud.cluster.lock.enabled" }, matchIfMissing = true)
+@EnableConfigurationProperties(EtcdClusterProperties.class)
+@ConditionalOnBean(EtcdClient.class)
+@AutoConfigureAfter({ EtcdLeaderAutoConfiguration.class, RedisLockServiceAutoConfiguration.class,
+		ZookeeperLockServiceAutoConfiguration.class, HazelcastLockServiceAutoConfiguration.class })
+public class EtcdLockServiceAutoConfiguration {
+
+	@Autowired
+	private EtcdClient etcdClient;
+
+	@Autowired
+	private EtcdClusterProperties etcdClusterProperties;
+
+	@Bean
+	@ConditionalOnMissingBean(LockService.class)
+	public EtcdLockService etcdLockService() {
+		Integer ttl = etcdClusterProperties.getLock().getTtl();
+		return new EtcdLockService(etcdClient, etcdClusterProperties.getNamespace(),
+				ttl != null ? ttl : EtcdLockService.DEFAULT_TTL);
+	}
+
+}
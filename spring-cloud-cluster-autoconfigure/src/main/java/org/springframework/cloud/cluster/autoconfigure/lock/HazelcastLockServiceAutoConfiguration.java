@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.cluster.autoconfigure.leader.HazelcastLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.hazelcast.HazelcastClusterProperties;
+import org.springframework.cloud.cluster.hazelcast.lock.HazelcastLockService;
+import org.springframework.cloud.cluster.lock.DistributedLockProperties;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Auto-configuration for {@link HazelcastLockService} using an existing
+ * {@link HazelcastInstance}. Backs off if another {@link LockService} is
+ * already configured, as the instance may exist just for leader election.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnClass(HazelcastLockService.class)
+@ConditionalOnProperty(value = { "spring.cloud.cluster.hazelcast.lock.enabled",
+		"spring.cloud.cluster.lock.enabled" }, matchIfMissing = true)
+@EnableConfigurationProperties({ DistributedLockProperties.class,
+		HazelcastClusterProperties.class })
+@ConditionalOnBean(HazelcastInstance.class)
+@AutoConfigureAfter({ HazelcastLeaderAutoConfiguration.class, RedisLockServiceAutoConfiguration.class,
+		ZookeeperLockServiceAutoConfiguration.class })
+public class HazelcastLockServiceAutoConfiguration {
+
+	@Autowired
+	private HazelcastInstance hazelcastInstance;
+
+	@Autowired
+	private DistributedLockProperties distributedLockProperties;
+
+	@Autowired
+	private HazelcastClusterProperties hazelcastClusterProperties;
+
+	@Bean
+	@ConditionalOnMissingBean(LockService.class)
+	public HazelcastLockService hazelcastLockService() {
+		String role = distributedLockProperties.getRole();
+		HazelcastLockService service = role != null ? new HazelcastLockService(hazelcastInstance, role)
+				: new HazelcastLockService(hazelcastInstance);
+		service.setPartitionKeyDepth(hazelcastClusterProperties.getLock().getPartitionKeyDepth());
+		return service;
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.InMemoryLockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto-configuration for an {@link InMemoryLockService} used as a fallback
+ * when no distributed {@link LockService} is configured, so that a single
+ * instance deployment gets a lock registry without a lock server. Locks are
+ * then local to the instance.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.cloud.cluster.lock.enabled", matchIfMissing = true)
+@AutoConfigureAfter({ RedisLockServiceAutoConfiguration.class, ZookeeperLockServiceAutoConfiguration.class,
+		HazelcastLockServiceAutoConfiguration.class, EtcdLockServiceAutoConfiguration.class })
+public class InMemoryLockServiceAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean(LockService.class)
+	public InMemoryLockService inMemoryLockService() {
+		return new InMemoryLockService();
+	}
+
+}
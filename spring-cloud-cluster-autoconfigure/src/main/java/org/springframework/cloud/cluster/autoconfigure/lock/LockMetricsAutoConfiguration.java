@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.cluster.lock.DistributedLockProperties;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.InstrumentedLockService;
+import org.springframework.cloud.cluster.lock.support.LockDiagnostics;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto-configuration for {@link LockMetrics} exported through an endpoint
+ * and public metrics. Statistics are recorded by lock services wrapped into
+ * an {@link InstrumentedLockService} or located from a
+ * {@link DefaultLockServiceLocator} created with this {@link LockMetrics},
+ * like the one of {@link LockRegistryAutoConfiguration}.
+ * Slow acquisitions and long holds detected by {@link LockDiagnostics} are
+ * exposed through a separate endpoint.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnClass(AbstractEndpoint.class)
+@ConditionalOnProperty(value = "spring.cloud.cluster.lock.metrics.enabled", matchIfMissing = true)
+@EnableConfigurationProperties(DistributedLockProperties.class)
+public class LockMetricsAutoConfiguration {
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LockMetrics lockMetrics(DistributedLockProperties properties) {
+		DistributedLockProperties.Diagnostics config = properties.getDiagnostics();
+		LockDiagnostics diagnostics = new LockDiagnostics(config.getBufferSize());
+		diagnostics.setSlowAcquireThreshold(config.getSlowAcquireThreshold());
+		diagnostics.setLongHoldThreshold(config.getLongHoldThreshold());
+		diagnostics.setStackSampleInterval(config.getStackSampleInterval());
+		diagnostics.setCheckInterval(config.getCheckInterval());
+		return new LockMetrics(diagnostics);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LockMetricsEndpoint lockMetricsEndpoint(LockMetrics lockMetrics) {
+		return new LockMetricsEndpoint(lockMetrics);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public SlowLocksEndpoint slowLocksEndpoint(LockMetrics lockMetrics) {
+		return new SlowLocksEndpoint(lockMetrics.getDiagnostics());
+	}
+
+	@Bean
+	public LockPublicMetrics lockPublicMetrics(LockMetrics lockMetrics) {
+		return new LockPublicMetrics(lockMetrics);
+	}
+
+}
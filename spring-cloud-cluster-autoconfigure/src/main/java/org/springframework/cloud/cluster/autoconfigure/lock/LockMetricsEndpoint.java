@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.cluster.lock.support.LatencyHistogram;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.cloud.cluster.lock.support.LockStatistics;
+import org.springframework.util.Assert;
+
+/**
+ * Endpoint exposing {@link LockStatistics} of {@link LockMetrics} by name.
+ * Times are reported in milliseconds.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ConfigurationProperties(prefix = "endpoints.locks")
+public class LockMetricsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LockMetrics lockMetrics;
+
+	/**
+	 * Instantiates a new lock metrics endpoint.
+	 *
+	 * @param lockMetrics the lock metrics
+	 */
+	public LockMetricsEndpoint(LockMetrics lockMetrics) {
+		super("locks");
+		Assert.notNull(lockMetrics, "Lock metrics must be set");
+		this.lockMetrics = lockMetrics;
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		Map<String, Object> result = new TreeMap<String, Object>();
+		for (LockStatistics stats : lockMetrics.getStatistics()) {
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("acquire", histogram(stats.getAcquireTime()));
+			values.put("hold", histogram(stats.getHoldTime()));
+			values.put("tryLockAttempts", stats.getTryLockAttempts());
+			values.put("tryLockFailures", stats.getTryLockFailures());
+			values.put("waiters", stats.getWaiters());
+			result.put(stats.getName(), values);
+		}
+		return result;
+	}
+
+	private static Map<String, Object> histogram(LatencyHistogram histogram) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		values.put("count", histogram.getCount());
+		values.put("mean", histogram.getMean() / NANOS_PER_MILLI);
+		values.put("p50", histogram.getValueAtPercentile(50) / NANOS_PER_MILLI);
+		values.put("p95", histogram.getValueAtPercentile(95) / NANOS_PER_MILLI);
+		values.put("p99", histogram.getValueAtPercentile(99) / NANOS_PER_MILLI);
+		values.put("max", histogram.getMax() / NANOS_PER_MILLI);
+		return values;
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.cluster.lock.support.LatencyHistogram;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.cloud.cluster.lock.support.LockStatistics;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PublicMetrics} for {@link LockMetrics}, exposing statistics as
+ * {@code locks.<name>.*} metrics. Times are in milliseconds.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockPublicMetrics implements PublicMetrics {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LockMetrics lockMetrics;
+
+	/**
+	 * Instantiates a new lock public metrics.
+	 *
+	 * @param lockMetrics the lock metrics
+	 */
+	public LockPublicMetrics(LockMetrics lockMetrics) {
+		Assert.notNull(lockMetrics, "Lock metrics must be set");
+		this.lockMetrics = lockMetrics;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		for (LockStatistics stats : lockMetrics.getStatistics()) {
+			String prefix = "locks." + stats.getName() + ".";
+			addHistogram(metrics, prefix + "acquire.", stats.getAcquireTime());
+			addHistogram(metrics, prefix + "hold.", stats.getHoldTime());
+			metrics.add(new Metric<Long>(prefix + "tryLock.attempts", stats.getTryLockAttempts()));
+			metrics.add(new Metric<Long>(prefix + "tryLock.failures", stats.getTryLockFailures()));
+			metrics.add(new Metric<Integer>(prefix + "waiters", stats.getWaiters()));
+		}
+		return metrics;
+	}
+
+	private static void addHistogram(List<Metric<?>> metrics, String prefix, LatencyHistogram histogram) {
+		metrics.add(new Metric<Long>(prefix + "count", histogram.getCount()));
+		metrics.add(new Metric<Double>(prefix + "mean", histogram.getMean() / NANOS_PER_MILLI));
+		metrics.add(new Metric<Double>(prefix + "p99", histogram.getValueAtPercentile(99) / NANOS_PER_MILLI));
+		metrics.add(new Metric<Double>(prefix + "max", histogram.getMax() / NANOS_PER_MILLI));
+	}
+
+}
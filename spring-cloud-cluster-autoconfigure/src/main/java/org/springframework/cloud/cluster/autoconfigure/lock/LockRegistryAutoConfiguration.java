@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.LockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.DefaultLockRegistry;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto-configuration for a {@link DefaultLockRegistry} locating all lock
+ * keys from the primary {@link LockService}. When {@link LockMetrics} are
+ * available, the lock service is instrumented through the locator so that
+ * locks obtained from the registry are recorded under
+ * {@link DefaultLockServiceLocator#FALLBACK_NAME}. Without a distributed
+ * lock service the registry uses the fallback of
+ * {@link InMemoryLockServiceAutoConfiguration}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.cloud.cluster.lock.enabled", matchIfMissing = true)
+@ConditionalOnSingleCandidate(LockService.class)
+@AutoConfigureAfter({ RedisLockServiceAutoConfiguration.class, ZookeeperLockServiceAutoConfiguration.class,
+		HazelcastLockServiceAutoConfiguration.class, EtcdLockServiceAutoConfiguration.class,
+		InMemoryLockServiceAutoConfiguration.class, LockMetricsAutoConfiguration.class })
+public class LockRegistryAutoConfiguration {
+
+	@Autowired(required = false)
+	private LockMetrics lockMetrics;
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LockServiceLocator lockServiceLocator(LockService lockService) {
+		return new DefaultLockServiceLocator(lockService, lockMetrics);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(LockRegistry.class)
+	public DefaultLockRegistry lockRegistry(LockServiceLocator lockServiceLocator) {
+		return new DefaultLockRegistry(lockServiceLocator);
+	}
+
+}
@@ -15,20 +15,48 @@
  */
 package org.springframework.cloud.cluster.autoconfigure.lock;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.cluster.lock.DistributedLockProperties;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.ShardedLockService;
 import org.springframework.cloud.cluster.redis.RedisClusterProperties;
+import org.springframework.cloud.cluster.redis.RedisClusterProperties.RedisDistributedLockProperties;
 import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+import org.springframework.cloud.cluster.redis.lock.RedisScriptLockService;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.ConditionContext;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.type.AnnotatedTypeMetadata;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.util.StringUtils;
+
+import redis.clients.jedis.JedisPoolConfig;
 
 /**
- * Auto-configuration for {@link RedisLockService}.
+ * Auto-configuration for {@link RedisLockService}, or for
+ * {@link RedisScriptLockService} if
+ * {@code spring.cloud.cluster.redis.lock.implementation} is {@code script}.
+ * If {@code spring.cloud.cluster.redis.lock.shards} lists Redis instances,
+ * a {@link ShardedLockService} spreading locks across them is
+ * configured as well and takes precedence as the primary
+ * {@link LockService}. Shards use the connection settings of
+ * {@link RedisProperties} apart from host and port.
  * 
  * @author Janne Valkealahti
  *
@@ -52,18 +80,193 @@ public class RedisLockServiceAutoConfiguration {
 	private RedisClusterProperties redisClusterProperties;
 	
 	@Bean
+	@ConditionalOnProperty(value = "spring.cloud.cluster.redis.lock.implementation", havingValue = "registry", matchIfMissing = true)
 	public RedisLockService redisLockService() {
+		return createRedisLockService(redisConnectionFactory, distributedLockProperties, redisClusterProperties);
+	}
+
+	@Bean
+	@ConditionalOnProperty(value = "spring.cloud.cluster.redis.lock.implementation", havingValue = "script")
+	public RedisScriptLockService redisScriptLockService() {
+		return createRedisScriptLockService(redisConnectionFactory, distributedLockProperties, redisClusterProperties);
+	}
+
+	private static LockService createLockService(RedisConnectionFactory connectionFactory,
+			DistributedLockProperties distributedLockProperties, RedisClusterProperties redisClusterProperties) {
+		if ("script".equalsIgnoreCase(redisClusterProperties.getLock().getImplementation())) {
+			return createRedisScriptLockService(connectionFactory, distributedLockProperties, redisClusterProperties);
+		}
+		return createRedisLockService(connectionFactory, distributedLockProperties, redisClusterProperties);
+	}
+
+	private static RedisScriptLockService createRedisScriptLockService(RedisConnectionFactory connectionFactory,
+			DistributedLockProperties distributedLockProperties, RedisClusterProperties redisClusterProperties) {
+		RedisDistributedLockProperties lock = redisClusterProperties.getLock();
+		String role = distributedLockProperties.getRole();
+		RedisScriptLockService service = new RedisScriptLockService(connectionFactory,
+				role != null ? role : RedisScriptLockService.DEFAULT_REGISTRY_KEY,
+				lock.getExpireAfter() != null ? lock.getExpireAfter() : RedisScriptLockService.DEFAULT_EXPIRE_AFTER);
+		if (lock.getRenewalInterval() != null) {
+			service.setRenewalInterval(lock.getRenewalInterval());
+		}
+		if (lock.getRetryInterval() != null) {
+			service.setRetryInterval(lock.getRetryInterval());
+		}
+		service.setUnlockNotifications(lock.isUnlockNotifications());
+		return service;
+	}
+
+	private static RedisLockService createRedisLockService(RedisConnectionFactory connectionFactory,
+			DistributedLockProperties distributedLockProperties, RedisClusterProperties redisClusterProperties) {
 		String role = distributedLockProperties.getRole();
 		Long expire = redisClusterProperties.getLock().getExpireAfter();				
 		if (role != null && expire != null) {
-			return new RedisLockService(redisConnectionFactory, role, expire);
+			return new RedisLockService(connectionFactory, role, expire);
 		} else if (role != null) {
-			return new RedisLockService(redisConnectionFactory, role);
+			return new RedisLockService(connectionFactory, role);
 		} else if (expire != null) {
-			return new RedisLockService(redisConnectionFactory, expire);
+			return new RedisLockService(connectionFactory, expire);
 		} else {
-			return new RedisLockService(redisConnectionFactory);
+			return new RedisLockService(connectionFactory);
+		}
+	}
+
+	@Configuration
+	@Conditional(RedisLockShardsCondition.class)
+	@EnableConfigurationProperties(RedisProperties.class)
+	protected static class ShardedRedisLockServiceConfiguration {
+
+		@Autowired
+		private DistributedLockProperties distributedLockProperties;
+
+		@Autowired
+		private RedisClusterProperties redisClusterProperties;
+
+		@Autowired
+		private RedisProperties redisProperties;
+
+		@Bean
+		public RedisLockShards redisLockShards() {
+			RedisLockShards shards = new RedisLockShards();
+			for (String shard : redisClusterProperties.getLock().getShards()) {
+				shard = shard.trim();
+				shards.lockServices.put(shard, createLockService(shards.add(shard, redisProperties),
+						distributedLockProperties, redisClusterProperties));
+			}
+			return shards;
+		}
+
+		@Bean
+		@Primary
+		public ShardedLockService shardedRedisLockService() {
+			return new ShardedLockService(redisLockShards().lockServices,
+					redisClusterProperties.getLock().getVirtualNodes());
 		}
+
+	}
+
+	/**
+	 * Configuration exporting renewal metrics of script based locks.
+	 */
+	@Configuration
+	@ConditionalOnClass(PublicMetrics.class)
+	@ConditionalOnProperty(value = "spring.cloud.cluster.redis.lock.implementation", havingValue = "script")
+	protected static class RedisScriptLockMetricsConfiguration {
+
+		@Autowired
+		private RedisScriptLockService redisScriptLockService;
+
+		@Autowired(required = false)
+		private RedisLockShards redisLockShards;
+
+		@Bean
+		public RedisScriptLockPublicMetrics redisScriptLockPublicMetrics() {
+			Map<String, RedisScriptLockService> services = new LinkedHashMap<String, RedisScriptLockService>();
+			services.put("default", redisScriptLockService);
+			if (redisLockShards != null) {
+				for (Map.Entry<String, LockService> entry : redisLockShards.lockServices.entrySet()) {
+					services.put("shards." + entry.getKey(), (RedisScriptLockService) entry.getValue());
+				}
+			}
+			return new RedisScriptLockPublicMetrics(services);
+		}
+
+	}
+
+	/**
+	 * Connection factories of Redis instances locks are sharded across and
+	 * lock services created for them, keyed by their {@code host:port}
+	 * which is also used as shard name.
+	 */
+	protected static class RedisLockShards implements DisposableBean {
+
+		private final Map<String, JedisConnectionFactory> connectionFactories = new LinkedHashMap<String, JedisConnectionFactory>();
+
+		private final Map<String, LockService> lockServices = new LinkedHashMap<String, LockService>();
+
+		JedisConnectionFactory add(String shard, RedisProperties properties) {
+			int index = shard.lastIndexOf(':');
+			JedisConnectionFactory connectionFactory = properties.getPool() != null
+					? new JedisConnectionFactory(poolConfig(properties.getPool())) : new JedisConnectionFactory();
+			if (StringUtils.hasText(properties.getPassword())) {
+				connectionFactory.setPassword(properties.getPassword());
+			}
+			connectionFactory.setDatabase(properties.getDatabase());
+			if (properties.getTimeout() > 0) {
+				connectionFactory.setTimeout(properties.getTimeout());
+			}
+			if (index == -1) {
+				connectionFactory.setHostName(shard);
+			}
+			else {
+				connectionFactory.setHostName(shard.substring(0, index));
+				connectionFactory.setPort(Integer.parseInt(shard.substring(index + 1)));
+			}
+			connectionFactory.afterPropertiesSet();
+			connectionFactories.put(shard, connectionFactory);
+			return connectionFactory;
+		}
+
+		private static JedisPoolConfig poolConfig(RedisProperties.Pool pool) {
+			JedisPoolConfig config = new JedisPoolConfig();
+			config.setMaxTotal(pool.getMaxActive());
+			config.setMaxIdle(pool.getMaxIdle());
+			config.setMinIdle(pool.getMinIdle());
+			config.setMaxWaitMillis(pool.getMaxWait());
+			return config;
+		}
+
+		@Override
+		public void destroy() throws Exception {
+			for (LockService lockService : lockServices.values()) {
+				if (lockService instanceof DisposableBean) {
+					((DisposableBean) lockService).destroy();
+				}
+			}
+			for (JedisConnectionFactory connectionFactory : connectionFactories.values()) {
+				connectionFactory.destroy();
+			}
+		}
+
+	}
+
+	/**
+	 * Matches if at least one Redis lock shard is configured, either as a
+	 * comma delimited value or as indexed properties.
+	 */
+	static class RedisLockShardsCondition extends SpringBootCondition {
+
+		@Override
+		public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+			RelaxedPropertyResolver resolver = new RelaxedPropertyResolver(context.getEnvironment(),
+					"spring.cloud.cluster.redis.lock.");
+			if (StringUtils.hasText(resolver.getProperty("shards"))
+					|| !resolver.getSubProperties("shards[").isEmpty()) {
+				return ConditionOutcome.match("Redis lock shards configured");
+			}
+			return ConditionOutcome.noMatch("No redis lock shards configured");
+		}
+
 	}
 
 }
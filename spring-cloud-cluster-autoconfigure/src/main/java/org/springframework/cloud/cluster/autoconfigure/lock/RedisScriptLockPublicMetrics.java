@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.cloud.cluster.redis.lock.RedisScriptLockService;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PublicMetrics} for lease renewal of {@link RedisScriptLockService}s,
+ * exposed as {@code locks.redis.<name>.renewal.*} metrics. Lags are in
+ * milliseconds.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisScriptLockPublicMetrics implements PublicMetrics {
+
+	private final Map<String, RedisScriptLockService> lockServices;
+
+	/**
+	 * Instantiates a new redis script lock public metrics.
+	 *
+	 * @param lockServices the lock services keyed by metric name
+	 */
+	public RedisScriptLockPublicMetrics(Map<String, RedisScriptLockService> lockServices) {
+		Assert.notNull(lockServices, "Lock services must be set");
+		this.lockServices = lockServices;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		for (Map.Entry<String, RedisScriptLockService> entry : lockServices.entrySet()) {
+			String prefix = "locks.redis." + entry.getKey() + ".renewal.";
+			RedisScriptLockService service = entry.getValue();
+			metrics.add(new Metric<Long>(prefix + "lag", service.getRenewalLag()));
+			metrics.add(new Metric<Long>(prefix + "maxLag", service.getMaxRenewalLag()));
+			metrics.add(new Metric<Long>(prefix + "failures", service.getRenewalFailures()));
+			metrics.add(new Metric<Integer>(prefix + "locks", service.getRenewedLocks()));
+		}
+		return metrics;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cloud.cluster.lock.support.LockDiagnostics;
+import org.springframework.cloud.cluster.lock.support.SlowLockEvent;
+import org.springframework.util.Assert;
+
+/**
+ * Endpoint exposing {@link SlowLockEvent}s kept by {@link LockDiagnostics},
+ * newest first. Ongoing waits and holds are checked first, so that locks
+ * stuck past a threshold are reported as well. Times are reported in
+ * milliseconds.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@ConfigurationProperties(prefix = "endpoints.slowlocks")
+public class SlowLocksEndpoint extends AbstractEndpoint<List<Map<String, Object>>> {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LockDiagnostics diagnostics;
+
+	/**
+	 * Instantiates a new slow locks endpoint.
+	 *
+	 * @param diagnostics the lock diagnostics
+	 */
+	public SlowLocksEndpoint(LockDiagnostics diagnostics) {
+		super("slowlocks");
+		Assert.notNull(diagnostics, "Lock diagnostics must be set");
+		this.diagnostics = diagnostics;
+	}
+
+	@Override
+	public List<Map<String, Object>> invoke() {
+		diagnostics.check();
+		List<SlowLockEvent> events = diagnostics.getEvents();
+		List<Map<String, Object>> result = new ArrayList<Map<String, Object>>(events.size());
+		for (int i = events.size() - 1; i >= 0; i--) {
+			SlowLockEvent event = events.get(i);
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put("type", event.getType());
+			values.put("name", event.getName());
+			values.put("lockKey", event.getLockKey());
+			values.put("thread", event.getThreadName());
+			values.put("threadId", event.getThreadId());
+			if (event.getHolderThreadName() != null) {
+				values.put("holderThread", event.getHolderThreadName());
+				values.put("holderThreadId", event.getHolderThreadId());
+			}
+			values.put("duration", event.getDuration() / NANOS_PER_MILLI);
+			values.put("timestamp", new Date(event.getTimestamp()));
+			if (event.getStackTrace() != null) {
+				List<String> stackTrace = new ArrayList<String>(event.getStackTrace().length);
+				for (StackTraceElement element : event.getStackTrace()) {
+					stackTrace.add(element.toString());
+				}
+				values.put("stackTrace", stackTrace);
+			}
+			result.add(values);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.cluster.autoconfigure.leader.ZookeeperLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.lock.DistributedLockProperties;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.zk.ZookeeperClusterProperties;
+import org.springframework.cloud.cluster.zk.lock.ZookeeperLockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto-configuration for {@link ZookeeperLockService} using an existing
+ * {@link CuratorFramework} client. Backs off if another {@link LockService}
+ * is already configured, as the client may exist just for leader election.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnClass(ZookeeperLockService.class)
+@ConditionalOnProperty(value = { "spring.cloud.cluster.zookeeper.lock.enabled",
+		"spring.cloud.cluster.lock.enabled" }, matchIfMissing = true)
+@EnableConfigurationProperties({ DistributedLockProperties.class,
+		ZookeeperClusterProperties.class })
+@ConditionalOnBean(CuratorFramework.class)
+@AutoConfigureAfter({ ZookeeperLeaderAutoConfiguration.class, RedisLockServiceAutoConfiguration.class })
+public class ZookeeperLockServiceAutoConfiguration {
+
+	@Autowired
+	private CuratorFramework curatorFramework;
+
+	@Autowired
+	private DistributedLockProperties distributedLockProperties;
+
+	@Autowired
+	private ZookeeperClusterProperties zookeeperClusterProperties;
+
+	@Bean
+	@ConditionalOnMissingBean(LockService.class)
+	public ZookeeperLockService zookeeperLockService() {
+		String role = distributedLockProperties.getRole();
+		String namespace = zookeeperClusterProperties.getNamespace();
+		String root = role != null ? role : ZookeeperLockService.DEFAULT_ROOT;
+		if (namespace != null) {
+			root = ZKPaths.makePath(namespace, root);
+		}
+		return new ZookeeperLockService(curatorFramework, ZKPaths.makePath("/", root));
+	}
+
+}
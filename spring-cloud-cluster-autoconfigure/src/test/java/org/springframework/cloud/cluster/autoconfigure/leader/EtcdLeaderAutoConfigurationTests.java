@@ -20,6 +20,8 @@ import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
 import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.etcd.leader.EtcdLeaderProfile;
+import org.springframework.cloud.cluster.etcd.leader.LeaderInitiator;
 
 /**
  * Tests for {@link EtcdLeaderAutoConfiguration}.
@@ -79,4 +81,20 @@ public class EtcdLeaderAutoConfigurationTests extends AbstractLeaderAutoConfigur
 		assertThat(context.containsBean("etcdLeaderCandidate"), is(true));
 	}
 
+	@Test
+	public void testProfile() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+			"spring.cloud.cluster.etcd.leader.profile:fast-failover",
+			"spring.cloud.cluster.etcd.leader.ttl:5"
+		);
+		context.register(LeaderAutoConfiguration.class, EtcdLeaderAutoConfiguration.class);
+		context.refresh();
+
+		LeaderInitiator initiator = context.getBean(LeaderInitiator.class);
+		assertThat(initiator.getTtl(), is(5));
+		assertThat(initiator.getHeartbeatInterval(), is(EtcdLeaderProfile.FAST_FAILOVER.getHeartbeatInterval()));
+		assertThat(initiator.getRetryJitter(), is(EtcdLeaderProfile.FAST_FAILOVER.getRetryJitter()));
+		assertThat(initiator.getRequestTimeout(), is(EtcdLeaderProfile.FAST_FAILOVER.getRequestTimeout()));
+	}
+
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.autoconfigure.TestUtils;
+import org.springframework.cloud.cluster.etcd.lock.EtcdLockService;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import mousio.etcd4j.EtcdClient;
+
+/**
+ * Tests for {@link EtcdLockServiceAutoConfiguration}.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdLockServiceAutoConfigurationTests extends AbstractLockAutoConfigurationTests {
+
+	@Test
+	public void testDefaults() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(EtcdClientConfig.class, EtcdLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		EtcdLockService service = context.getBean(EtcdLockService.class);
+		String basePath = TestUtils.readField("basePath", service);
+		Integer ttl = TestUtils.readField("ttl", service);
+		assertThat(basePath, is("spring-cloud/locks/"));
+		assertThat(ttl, is(EtcdLockService.DEFAULT_TTL));
+	}
+
+	@Test
+	public void testChangeNamespaceAndTtl() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.etcd.namespace:foo",
+				"spring.cloud.cluster.etcd.lock.ttl:5");
+		context.register(EtcdClientConfig.class, EtcdLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		EtcdLockService service = context.getBean(EtcdLockService.class);
+		String basePath = TestUtils.readField("basePath", service);
+		Integer ttl = TestUtils.readField("ttl", service);
+		assertThat(basePath, is("foo/locks/"));
+		assertThat(ttl, is(5));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.etcd.lock.enabled:false");
+		context.register(EtcdClientConfig.class, EtcdLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdLockService"), is(false));
+	}
+
+	@Test
+	public void testNoEtcdClient() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(EtcdLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdLockService"), is(false));
+	}
+
+	@Test
+	public void testRedisLockServiceTakesPrecedence() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		// registered in auto-configuration order
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class,
+				EtcdClientConfig.class, EtcdLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdLockService"), is(false));
+		assertThat(context.getBean(LockService.class), instanceOf(RedisLockService.class));
+	}
+
+	@Configuration
+	static class EtcdClientConfig {
+
+		@Bean
+		public EtcdClient etcdClient() {
+			return new EtcdClient(URI.create("http://localhost:4001"));
+		}
+
+	}
+
+}
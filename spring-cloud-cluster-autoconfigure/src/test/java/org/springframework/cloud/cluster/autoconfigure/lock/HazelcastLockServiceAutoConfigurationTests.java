@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.autoconfigure.TestUtils;
+import org.springframework.cloud.cluster.autoconfigure.leader.HazelcastLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.autoconfigure.leader.LeaderAutoConfiguration;
+import org.springframework.cloud.cluster.hazelcast.lock.HazelcastLockService;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+
+/**
+ * Tests for {@link HazelcastLockServiceAutoConfiguration}.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastLockServiceAutoConfigurationTests extends AbstractLockAutoConfigurationTests {
+
+	@Test
+	public void testDefaults() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LeaderAutoConfiguration.class, HazelcastLeaderAutoConfiguration.class,
+				HazelcastLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		HazelcastLockService service = context.getBean(HazelcastLockService.class);
+		String registryKey = TestUtils.readField("registryKey", service);
+		assertThat(registryKey, is(HazelcastLockService.DEFAULT_REGISTRY_KEY));
+		assertThat(service.obtain("lock").tryLock(), is(true));
+	}
+
+	@Test
+	public void testChangeRoleAndPartitioning() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.role:foo",
+				"spring.cloud.cluster.hazelcast.lock.partitionKeyDepth:2");
+		context.register(LeaderAutoConfiguration.class, HazelcastLeaderAutoConfiguration.class,
+				HazelcastLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		HazelcastLockService service = context.getBean(HazelcastLockService.class);
+		String registryKey = TestUtils.readField("registryKey", service);
+		Integer partitionKeyDepth = TestUtils.readField("partitionKeyDepth", service);
+		assertThat(registryKey, is("foo"));
+		assertThat(partitionKeyDepth, is(2));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.hazelcast.lock.enabled:false");
+		context.register(LeaderAutoConfiguration.class, HazelcastLeaderAutoConfiguration.class,
+				HazelcastLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("hazelcastLockService"), is(false));
+	}
+
+	@Test
+	public void testRedisLockServiceTakesPrecedence() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		// registered in auto-configuration order
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class,
+				LeaderAutoConfiguration.class, HazelcastLeaderAutoConfiguration.class,
+				HazelcastLockServiceAutoConfiguration.class, LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("hazelcastLockService"), is(false));
+		assertThat(context.getBean(LockService.class), instanceOf(RedisLockService.class));
+		assertThat(context.getBeansOfType(LockRegistry.class).size(), is(1));
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.InMemoryLockService;
+import org.springframework.cloud.cluster.lock.support.InstrumentedLockService;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.cloud.cluster.lock.support.SlowLockEvent;
+
+/**
+ * Tests for {@link LockMetricsAutoConfiguration}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockMetricsAutoConfigurationTests extends AbstractLockAutoConfigurationTests {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDefaults() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LockMetricsAutoConfiguration.class);
+		context.refresh();
+
+		LockMetrics lockMetrics = context.getBean(LockMetrics.class);
+		InMemoryLockService lockService = new InMemoryLockService();
+		DefaultLockServiceLocator locator = new DefaultLockServiceLocator(lockService, lockMetrics);
+		locator.addMapping("/orders/**", lockService);
+		DistributedLock lock = locator.locate("/orders/1").obtain("/orders/1");
+		lock.lock();
+		lock.unlock();
+
+		Map<String, Object> locks = context.getBean(LockMetricsEndpoint.class).invoke();
+		assertThat(locks, hasKey("/orders/**"));
+		Map<String, Object> acquire = (Map<String, Object>) ((Map<String, Object>) locks.get("/orders/**"))
+				.get("acquire");
+		assertThat((Long) acquire.get("count"), is(1L));
+
+		Map<String, Number> metrics = new HashMap<String, Number>();
+		for (Metric<?> metric : context.getBean(LockPublicMetrics.class).metrics()) {
+			metrics.put(metric.getName(), metric.getValue());
+		}
+		assertThat((Long) metrics.get("locks./orders/**.hold.count"), is(1L));
+		assertThat((Integer) metrics.get("locks./orders/**.waiters"), is(0));
+	}
+
+	@Test
+	public void testSlowLocks() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.diagnostics.longHoldThreshold:1",
+				"spring.cloud.cluster.lock.diagnostics.bufferSize:2",
+				"spring.cloud.cluster.lock.diagnostics.stackSampleInterval:0");
+		context.register(LockMetricsAutoConfiguration.class);
+		context.refresh();
+
+		LockMetrics lockMetrics = context.getBean(LockMetrics.class);
+		InstrumentedLockService lockService = new InstrumentedLockService(new InMemoryLockService(), "locks",
+				lockMetrics);
+		for (int i = 0; i < 3; i++) {
+			DistributedLock lock = lockService.obtain("lock" + i);
+			lock.lock();
+			Thread.sleep(5);
+			lock.unlock();
+		}
+
+		List<Map<String, Object>> slowLocks = context.getBean(SlowLocksEndpoint.class).invoke();
+		assertThat(slowLocks.size(), is(2));
+		assertThat((String) slowLocks.get(0).get("lockKey"), is("lock2"));
+		assertThat(slowLocks.get(0), hasKey("stackTrace"));
+		assertThat((String) slowLocks.get(1).get("lockKey"), is("lock1"));
+	}
+
+	@Test
+	public void testStuckLockReported() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.diagnostics.longHoldThreshold:1");
+		context.register(LockMetricsAutoConfiguration.class);
+		context.refresh();
+
+		InstrumentedLockService lockService = new InstrumentedLockService(new InMemoryLockService(), "locks",
+				context.getBean(LockMetrics.class));
+		DistributedLock lock = lockService.obtain("lock");
+		lock.lock();
+		Thread.sleep(5);
+
+		List<Map<String, Object>> slowLocks = context.getBean(SlowLocksEndpoint.class).invoke();
+		assertThat(slowLocks.size(), is(1));
+		assertThat(slowLocks.get(0).get("type"), is((Object) SlowLockEvent.Type.OVERDUE_HOLD));
+		assertThat((String) slowLocks.get(0).get("thread"), is(Thread.currentThread().getName()));
+		lock.unlock();
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.metrics.enabled:false");
+		context.register(LockMetricsAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.getBeansOfType(LockMetrics.class).isEmpty(), is(true));
+		assertThat(context.getBeansOfType(LockMetricsEndpoint.class).isEmpty(), is(true));
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.LockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.InMemoryLockService;
+import org.springframework.cloud.cluster.lock.support.InstrumentedLockService;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tests for {@link LockRegistryAutoConfiguration}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockRegistryAutoConfigurationTests extends AbstractLockAutoConfigurationTests {
+
+	@Test
+	public void testRegistryRecordsMetrics() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LockServiceConfig.class, LockMetricsAutoConfiguration.class,
+				LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		LockServiceLocator locator = context.getBean(LockServiceLocator.class);
+		assertThat(locator.locate("lock"), instanceOf(InstrumentedLockService.class));
+		DistributedLock lock = context.getBean(LockRegistry.class).get("lock");
+		lock.lock();
+		lock.unlock();
+
+		LockMetrics lockMetrics = context.getBean(LockMetrics.class);
+		assertThat(lockMetrics.getStatistics(DefaultLockServiceLocator.FALLBACK_NAME).getHoldTime().getCount(),
+				is(1L));
+	}
+
+	@Test
+	public void testMetricsDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.metrics.enabled:false");
+		context.register(LockServiceConfig.class, LockMetricsAutoConfiguration.class,
+				LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		LockServiceLocator locator = context.getBean(LockServiceLocator.class);
+		assertThat(locator.locate("lock"), not(instanceOf(InstrumentedLockService.class)));
+		assertThat(context.getBeansOfType(LockRegistry.class).size(), is(1));
+	}
+
+	@Test
+	public void testNoLockService() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LockMetricsAutoConfiguration.class, LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.getBeansOfType(LockRegistry.class).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testInMemoryFallback() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(InMemoryLockServiceAutoConfiguration.class, LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.getBean(LockService.class), instanceOf(InMemoryLockService.class));
+		DistributedLock lock = context.getBean(LockRegistry.class).get("lock");
+		assertThat(lock.tryLock(), is(true));
+		lock.unlock();
+	}
+
+	@Test
+	public void testInMemoryFallbackBacksOff() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LockServiceConfig.class, InMemoryLockServiceAutoConfiguration.class,
+				LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("inMemoryLockService"), is(false));
+		assertThat(context.getBean(LockService.class), sameInstance(context.getBean("lockService")));
+		assertThat(context.getBeansOfType(LockRegistry.class).size(), is(1));
+	}
+
+	@Test
+	public void testInMemoryFallbackDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.lock.enabled:false");
+		context.register(InMemoryLockServiceAutoConfiguration.class, LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.getBeansOfType(LockService.class).isEmpty(), is(true));
+		assertThat(context.getBeansOfType(LockRegistry.class).isEmpty(), is(true));
+	}
+
+	@Configuration
+	static class LockServiceConfig {
+
+		@Bean
+		public LockService lockService() {
+			return new InMemoryLockService();
+		}
+
+	}
+
+}
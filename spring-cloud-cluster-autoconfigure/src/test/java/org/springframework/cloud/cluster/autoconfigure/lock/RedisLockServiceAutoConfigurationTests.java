@@ -15,14 +15,23 @@
  */
 package org.springframework.cloud.cluster.autoconfigure.lock;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
+import java.util.Map;
+
 import org.junit.Test;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.test.EnvironmentTestUtils;
 import org.springframework.cloud.cluster.autoconfigure.TestUtils;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.ShardedLockService;
 import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+import org.springframework.cloud.cluster.redis.lock.RedisScriptLockService;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.integration.redis.util.RedisLockRegistry;
 
 /**
@@ -40,6 +49,92 @@ public class RedisLockServiceAutoConfigurationTests extends AbstractLockAutoConf
 		context.refresh();
 		
 		assertThat(context.containsBean("redisLockService"), is(true));		
+		assertThat(context.containsBean("shardedRedisLockService"), is(false));
+	}
+
+	@Test
+	public void testShards() throws Exception {
+		EnvironmentTestUtils
+				.addEnvironment(
+						this.context,
+						"spring.cloud.cluster.redis.lock.shards:localhost:6379,localhost:6380",
+						"spring.cloud.cluster.redis.lock.virtualNodes:10");
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		ShardedLockService service = context.getBean(ShardedLockService.class);
+		Integer virtualNodes = TestUtils.readField("virtualNodes", service);
+
+		assertThat(service.getShards().keySet(), contains("localhost:6379", "localhost:6380"));
+		assertThat(service.getShards().get("localhost:6379"), instanceOf(RedisLockService.class));
+		assertThat(virtualNodes, is(10));
+		assertThat(context.getBean(LockService.class), sameInstance((LockService) service));
+	}
+
+	@Test
+	public void testShardsUseRedisProperties() throws Exception {
+		EnvironmentTestUtils
+				.addEnvironment(
+						this.context,
+						"spring.redis.password:secret",
+						"spring.redis.database:2",
+						"spring.redis.timeout:1500",
+						"spring.redis.pool.maxActive:3",
+						"spring.cloud.cluster.redis.lock.shards:otherhost:6380");
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		Map<String, JedisConnectionFactory> connectionFactories = TestUtils.readField("connectionFactories",
+				context.getBean(RedisLockServiceAutoConfiguration.RedisLockShards.class));
+		JedisConnectionFactory connectionFactory = connectionFactories.get("otherhost:6380");
+		assertThat(connectionFactory.getHostName(), is("otherhost"));
+		assertThat(connectionFactory.getPort(), is(6380));
+		assertThat(connectionFactory.getPassword(), is("secret"));
+		assertThat(connectionFactory.getDatabase(), is(2));
+		assertThat(connectionFactory.getTimeout(), is(1500));
+		assertThat(connectionFactory.getPoolConfig().getMaxTotal(), is(3));
+	}
+
+	@Test
+	public void testScriptImplementation() throws Exception {
+		EnvironmentTestUtils
+				.addEnvironment(
+						this.context,
+						"spring.cloud.cluster.lock.role:foo",
+						"spring.cloud.cluster.redis.lock.implementation:script",
+						"spring.cloud.cluster.redis.lock.expireAfter:5000",
+						"spring.cloud.cluster.redis.lock.renewalInterval:1000",
+						"spring.cloud.cluster.redis.lock.unlockNotifications:true");
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("redisLockService"), is(false));
+		RedisScriptLockService service = context.getBean(RedisScriptLockService.class);
+		String keyPrefix = TestUtils.readField("keyPrefix", service);
+		Long expireAfter = TestUtils.readField("expireAfter", service);
+		Long renewalInterval = TestUtils.readField("renewalInterval", service);
+		Boolean unlockNotifications = TestUtils.readField("unlockNotifications", service);
+
+		assertThat(keyPrefix, is("{foo}"));
+		assertThat(expireAfter, is(5000l));
+		assertThat(renewalInterval, is(1000l));
+		assertThat(unlockNotifications, is(true));
+		assertThat(context.containsBean("redisScriptLockPublicMetrics"), is(true));
+	}
+
+	@Test
+	public void testScriptImplementationShards() throws Exception {
+		EnvironmentTestUtils
+				.addEnvironment(
+						this.context,
+						"spring.cloud.cluster.redis.lock.implementation:script",
+						"spring.cloud.cluster.redis.lock.shards:localhost:6379,localhost:6380");
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		ShardedLockService service = context.getBean(ShardedLockService.class);
+		assertThat(service.getShards().get("localhost:6379"), instanceOf(RedisScriptLockService.class));
+		assertThat(service.getShards().get("localhost:6380"), instanceOf(RedisScriptLockService.class));
 	}
 
 	@Test
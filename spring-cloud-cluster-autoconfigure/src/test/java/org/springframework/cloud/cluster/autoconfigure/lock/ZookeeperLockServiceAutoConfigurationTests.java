@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.autoconfigure.lock;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.autoconfigure.TestUtils;
+import org.springframework.cloud.cluster.autoconfigure.leader.LeaderAutoConfiguration;
+import org.springframework.cloud.cluster.autoconfigure.leader.ZookeeperLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+import org.springframework.cloud.cluster.zk.lock.ZookeeperLockService;
+
+/**
+ * Tests for {@link ZookeeperLockServiceAutoConfiguration}.
+ * 
+ * @author Janne Valkealahti
+ *
+ */
+public class ZookeeperLockServiceAutoConfigurationTests extends AbstractLockAutoConfigurationTests {
+
+	private TestingServer testingServer;
+
+	@Before
+	public void startServer() throws Exception {
+		testingServer = new TestingServer(true);
+	}
+
+	@After
+	public void closeServer() throws Exception {
+		testingServer.close();
+	}
+
+	@Test
+	public void testDefaults() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.zookeeper.connect:" + testingServer.getConnectString());
+		context.register(LeaderAutoConfiguration.class, ZookeeperLeaderAutoConfiguration.class,
+				ZookeeperLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		ZookeeperLockService service = context.getBean(ZookeeperLockService.class);
+		String root = TestUtils.readField("root", service);
+		assertThat(root, is(ZookeeperLockService.DEFAULT_ROOT));
+		assertThat(service.obtain("lock").tryLock(), is(true));
+	}
+
+	@Test
+	public void testChangeRole() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.zookeeper.connect:" + testingServer.getConnectString(),
+				"spring.cloud.cluster.zookeeper.namespace:foo",
+				"spring.cloud.cluster.lock.role:bar");
+		context.register(LeaderAutoConfiguration.class, ZookeeperLeaderAutoConfiguration.class,
+				ZookeeperLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		String root = TestUtils.readField("root", context.getBean(ZookeeperLockService.class));
+		assertThat(root, is("/foo/bar"));
+	}
+
+	@Test
+	public void testDisabled() {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.zookeeper.connect:" + testingServer.getConnectString(),
+				"spring.cloud.cluster.zookeeper.lock.enabled:false");
+		context.register(LeaderAutoConfiguration.class, ZookeeperLeaderAutoConfiguration.class,
+				ZookeeperLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("zookeeperLockService"), is(false));
+	}
+
+	@Test
+	public void testRedisLockServiceTakesPrecedence() {
+		EnvironmentTestUtils.addEnvironment(this.context,
+				"spring.cloud.cluster.zookeeper.connect:" + testingServer.getConnectString());
+		// registered in auto-configuration order
+		context.register(RedisAutoConfiguration.class, RedisLockServiceAutoConfiguration.class,
+				LeaderAutoConfiguration.class, ZookeeperLeaderAutoConfiguration.class,
+				ZookeeperLockServiceAutoConfiguration.class, LockRegistryAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("zookeeperLockService"), is(false));
+		assertThat(context.getBean(LockService.class), instanceOf(RedisLockService.class));
+		assertThat(context.getBeansOfType(LockRegistry.class).size(), is(1));
+	}
+
+	@Test
+	public void testNoCuratorClient() {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(ZookeeperLockServiceAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("zookeeperLockService"), is(false));
+	}
+
+}
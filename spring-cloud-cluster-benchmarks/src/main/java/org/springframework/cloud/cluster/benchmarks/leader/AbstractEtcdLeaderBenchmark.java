@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.leader;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.cloud.cluster.etcd.leader.EtcdLeaderProfile;
+import org.springframework.cloud.cluster.etcd.leader.LeaderInitiator;
+import org.springframework.cloud.cluster.leader.Candidate;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+
+import mousio.etcd4j.EtcdClient;
+
+/**
+ * Base class for benchmarks of etcd leader election running against an
+ * {@link EtcdStandIn}, for each tuning profile with followers either
+ * polling or watching the leader entry.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractEtcdLeaderBenchmark {
+
+	protected static final String NAMESPACE = "benchmarks";
+
+	@Param({ "default", "fast-failover", "low-load" })
+	private String profile;
+
+	@Param({ "false", "true" })
+	private boolean watch;
+
+	protected EtcdStandIn standIn;
+
+	private EtcdClient client;
+
+	@Setup(Level.Trial)
+	public void setupStandIn() throws Exception {
+		standIn = new EtcdStandIn();
+		standIn.start();
+		client = new EtcdClient(standIn.getUri());
+		setupCandidates();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownStandIn() throws Exception {
+		try {
+			destroyCandidates();
+		}
+		finally {
+			client.close();
+			standIn.stop();
+		}
+	}
+
+	/**
+	 * Sets up candidates kept for the whole trial, called once the
+	 * stand-in is running.
+	 *
+	 * @throws Exception if candidates couldn't be set up
+	 */
+	protected void setupCandidates() throws Exception {
+	}
+
+	/**
+	 * Destroys candidates kept for the whole trial.
+	 *
+	 * @throws Exception if candidates couldn't be destroyed
+	 */
+	protected void destroyCandidates() throws Exception {
+	}
+
+	/**
+	 * Creates a started initiator for a candidate using the benchmarked
+	 * profile and follower mode.
+	 *
+	 * @param candidate the candidate
+	 * @return the initiator
+	 */
+	protected LeaderInitiator startInitiator(Candidate candidate) {
+		LeaderInitiator initiator = new LeaderInitiator(client, candidate, NAMESPACE);
+		initiator.setProfile(EtcdLeaderProfile.forName(profile));
+		initiator.setWatch(watch);
+		initiator.start();
+		return initiator;
+	}
+
+	/**
+	 * Candidate counting down a latch once granted leadership.
+	 */
+	protected static class LatchCandidate extends DefaultCandidate {
+
+		final CountDownLatch granted = new CountDownLatch(1);
+
+		LatchCandidate() {
+			super(UUID.randomUUID().toString(), "benchmark");
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			granted.countDown();
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+		}
+
+	}
+
+}
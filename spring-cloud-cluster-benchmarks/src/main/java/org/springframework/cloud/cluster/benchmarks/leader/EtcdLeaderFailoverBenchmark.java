@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.leader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.cluster.etcd.leader.LeaderInitiator;
+
+/**
+ * Benchmarks the time it takes a follower to become leader after the
+ * current leader crashes. The crashed leader stops writing to etcd but
+ * its entry is left to expire by ttl.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class EtcdLeaderFailoverBenchmark extends AbstractEtcdLeaderBenchmark {
+
+	private LatchCandidate leader;
+
+	private LatchCandidate follower;
+
+	private LeaderInitiator leaderInitiator;
+
+	private LeaderInitiator followerInitiator;
+
+	@Setup(Level.Invocation)
+	public void elect() throws Exception {
+		standIn.reset();
+		leader = new LatchCandidate();
+		follower = new LatchCandidate();
+		leaderInitiator = startInitiator(leader);
+		if (!leader.granted.await(1, TimeUnit.MINUTES)) {
+			throw new IllegalStateException("Leader wasn't elected");
+		}
+		followerInitiator = startInitiator(follower);
+		// let the follower fail its first attempt
+		Thread.sleep(200);
+	}
+
+	@TearDown(Level.Invocation)
+	public void resign() throws Exception {
+		leaderInitiator.destroy();
+		followerInitiator.destroy();
+	}
+
+	@Benchmark
+	public boolean failover() throws InterruptedException {
+		standIn.crash(leader.getId());
+		return follower.granted.await(5, TimeUnit.MINUTES);
+	}
+
+}
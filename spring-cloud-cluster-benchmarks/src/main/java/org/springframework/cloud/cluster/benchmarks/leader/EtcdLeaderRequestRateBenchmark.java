@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.leader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.cluster.etcd.leader.LeaderInitiator;
+
+/**
+ * Benchmarks the rate of etcd requests caused by a leader and its
+ * followers competing for a single role while nothing fails. The rate
+ * is reported as secondary result {@code requests} in requests per
+ * second, the primary score only reflects the sampling period.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 30)
+@Measurement(iterations = 3, time = 30)
+@Fork(1)
+public class EtcdLeaderRequestRateBenchmark extends AbstractEtcdLeaderBenchmark {
+
+	private static final long SAMPLE_PERIOD = 100;
+
+	@Param({ "10" })
+	private int candidates;
+
+	private final List<LeaderInitiator> initiators = new ArrayList<LeaderInitiator>();
+
+	@Override
+	protected void setupCandidates() {
+		for (int i = 0; i < candidates; i++) {
+			initiators.add(startInitiator(new LatchCandidate()));
+		}
+	}
+
+	@Override
+	protected void destroyCandidates() throws Exception {
+		for (LeaderInitiator initiator : initiators) {
+			initiator.destroy();
+		}
+		initiators.clear();
+	}
+
+	@Benchmark
+	public void idle(Requests requests) throws InterruptedException {
+		long before = standIn.getRequests();
+		Thread.sleep(SAMPLE_PERIOD);
+		requests.requests += standIn.getRequests() - before;
+	}
+
+	/**
+	 * Counter of etcd requests reported as a rate.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters
+	public static class Requests {
+
+		public long requests;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			requests = 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.leader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the etcd v2 keys api, supporting just what leader
+ * election uses: conditional puts with a ttl, conditional deletes and
+ * watches of a single key. Counts all requests it serves, and can make
+ * a candidate appear crashed by rejecting every write of its id without
+ * removing the entry it holds, which then expires by ttl.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdStandIn {
+
+	private static final String KEYS_PATH = "/v2/keys";
+
+	private static final int HISTORY_SIZE = 1000;
+
+	private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+	private final LinkedList<Event> history = new LinkedList<Event>();
+
+	private final Set<String> crashed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private long index;
+
+	private HttpServer server;
+
+	private ExecutorService serverExecutor;
+
+	private ScheduledExecutorService expirer;
+
+	/**
+	 * Starts the stand-in on a free loopback port.
+	 *
+	 * @throws IOException if server couldn't be started
+	 */
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext(KEYS_PATH, new KeysHandler());
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.start();
+		expirer = Executors.newSingleThreadScheduledExecutor();
+		expirer.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				expire();
+			}
+		}, 10, 10, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the stand-in.
+	 */
+	public void stop() {
+		expirer.shutdownNow();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	public URI getUri() {
+		return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+	}
+
+	/**
+	 * Gets the number of requests served so far.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Rejects all further writes of a candidate id.
+	 *
+	 * @param value the candidate id
+	 */
+	public void crash(String value) {
+		crashed.add(value);
+	}
+
+	/**
+	 * Removes all entries and stops rejecting writes.
+	 */
+	public synchronized void reset() {
+		crashed.clear();
+		for (String key : new ArrayList<String>(nodes.keySet())) {
+			remove(key, "delete");
+		}
+	}
+
+	private synchronized Response put(String key, Map<String, String> params) {
+		String value = params.get("value");
+		Node current = nodes.get(key);
+		if (value != null && crashed.contains(value)) {
+			return Response.error(412, 101, "Compare failed", key, index);
+		}
+		if ("false".equals(params.get("prevExist")) && current != null) {
+			return Response.error(412, 105, "Key already exists", key, index);
+		}
+		String prevValue = params.get("prevValue");
+		if (prevValue != null) {
+			if (current == null) {
+				return Response.error(404, 100, "Key not found", key, index);
+			}
+			if (!prevValue.equals(current.value)) {
+				return Response.error(412, 101, "Compare failed", key, index);
+			}
+		}
+		String action = prevValue != null ? "compareAndSwap" : current == null ? "create" : "set";
+		String ttl = params.get("ttl");
+		Node node = new Node(key, value, ttl != null && !ttl.isEmpty() ? Long.parseLong(ttl) : 0,
+				current != null && prevValue != null ? current.createdIndex : index + 1, index + 1);
+		nodes.put(key, node);
+		Event event = record(action, node, current);
+		return Response.ok(current == null ? 201 : 200, event);
+	}
+
+	private synchronized Response delete(String key, Map<String, String> params) {
+		Node current = nodes.get(key);
+		if (current == null) {
+			return Response.error(404, 100, "Key not found", key, index);
+		}
+		String prevValue = params.get("prevValue");
+		if (prevValue != null && (crashed.contains(prevValue) || !prevValue.equals(current.value))) {
+			return Response.error(412, 101, "Compare failed", key, index);
+		}
+		return Response.ok(200, remove(key, prevValue != null ? "compareAndDelete" : "delete"));
+	}
+
+	private synchronized Response get(String key, Map<String, String> params) throws InterruptedException {
+		if (!"true".equals(params.get("wait"))) {
+			Node current = nodes.get(key);
+			if (current == null) {
+				return Response.error(404, 100, "Key not found", key, index);
+			}
+			return Response.ok(200, new Event("get", current, null, index));
+		}
+		long waitIndex = params.containsKey("waitIndex") ? Long.parseLong(params.get("waitIndex")) : index + 1;
+		if (!history.isEmpty() && waitIndex < history.getFirst().index) {
+			return Response.error(400, 401, "The event in requested index is outdated and cleared", key, index);
+		}
+		while (true) {
+			for (Event event : history) {
+				if (event.index >= waitIndex && event.node.key.equals(key)) {
+					return Response.ok(200, event);
+				}
+			}
+			// woken up by every recorded event, client timeout ends abandoned watches
+			wait();
+		}
+	}
+
+	private synchronized void expire() {
+		long now = System.nanoTime();
+		for (Node node : new ArrayList<Node>(nodes.values())) {
+			if (node.expiresAt != 0 && now - node.expiresAt >= 0) {
+				remove(node.key, "expire");
+			}
+		}
+	}
+
+	private Event remove(String key, String action) {
+		Node current = nodes.remove(key);
+		return record(action, new Node(key, null, 0, current.createdIndex, index + 1), current);
+	}
+
+	private Event record(String action, Node node, Node prevNode) {
+		index++;
+		Event event = new Event(action, node, prevNode, index);
+		history.add(event);
+		if (history.size() > HISTORY_SIZE) {
+			history.removeFirst();
+		}
+		notifyAll();
+		return event;
+	}
+
+	private static Map<String, String> parseParams(String query, Map<String, String> params) {
+		if (query == null || query.isEmpty()) {
+			return params;
+		}
+		try {
+			for (String pair : query.split("&")) {
+				int i = pair.indexOf('=');
+				String name = URLDecoder.decode(i < 0 ? pair : pair.substring(0, i), "UTF-8");
+				String value = i < 0 ? "" : URLDecoder.decode(pair.substring(i + 1), "UTF-8");
+				params.put(name, value);
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return params;
+	}
+
+	private static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	private static String quote(String value) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\');
+			}
+			builder.append(c);
+		}
+		return builder.append('"').toString();
+	}
+
+	private class KeysHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			try {
+				String key = exchange.getRequestURI().getPath().substring(KEYS_PATH.length());
+				Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery(),
+						new HashMap<String, String>());
+				parseParams(readBody(exchange.getRequestBody()), params);
+				Response response;
+				String method = exchange.getRequestMethod();
+				if ("PUT".equals(method) || "POST".equals(method)) {
+					response = put(key, params);
+				}
+				else if ("DELETE".equals(method)) {
+					response = delete(key, params);
+				}
+				else {
+					response = get(key, params);
+				}
+				byte[] body = response.body.getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.getResponseHeaders().set("X-Etcd-Index", String.valueOf(response.index));
+				exchange.getResponseHeaders().set("X-Raft-Index", String.valueOf(response.index));
+				exchange.getResponseHeaders().set("X-Raft-Term", "1");
+				exchange.sendResponseHeaders(response.status, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				exchange.close();
+			}
+		}
+
+	}
+
+	private static class Node {
+
+		final String key;
+
+		final String value;
+
+		final long ttl;
+
+		final long expiresAt;
+
+		final long createdIndex;
+
+		final long modifiedIndex;
+
+		Node(String key, String value, long ttl, long createdIndex, long modifiedIndex) {
+			this.key = key;
+			this.value = value;
+			this.ttl = ttl;
+			this.expiresAt = ttl > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl) : 0;
+			this.createdIndex = createdIndex;
+			this.modifiedIndex = modifiedIndex;
+		}
+
+		String toJson() {
+			StringBuilder builder = new StringBuilder("{\"key\":").append(quote(key));
+			if (value != null) {
+				builder.append(",\"value\":").append(quote(value));
+			}
+			if (ttl > 0) {
+				builder.append(",\"ttl\":").append(ttl);
+			}
+			return builder.append(",\"modifiedIndex\":").append(modifiedIndex).append(",\"createdIndex\":")
+					.append(createdIndex).append('}').toString();
+		}
+
+	}
+
+	private static class Event {
+
+		final String action;
+
+		final Node node;
+
+		final Node prevNode;
+
+		final long index;
+
+		Event(String action, Node node, Node prevNode, long index) {
+			this.action = action;
+			this.node = node;
+			this.prevNode = prevNode;
+			this.index = index;
+		}
+
+	}
+
+	private static class Response {
+
+		final int status;
+
+		final String body;
+
+		final long index;
+
+		Response(int status, String body, long index) {
+			this.status = status;
+			this.body = body;
+			this.index = index;
+		}
+
+		static Response ok(int status, Event event) {
+			StringBuilder builder = new StringBuilder("{\"action\":").append(quote(event.action))
+					.append(",\"node\":").append(event.node.toJson());
+			if (event.prevNode != null) {
+				builder.append(",\"prevNode\":").append(event.prevNode.toJson());
+			}
+			return new Response(status, builder.append('}').toString(), event.index);
+		}
+
+		static Response error(int status, int errorCode, String message, String cause, long index) {
+			return new Response(status, "{\"errorCode\":" + errorCode + ",\"message\":" + quote(message)
+					+ ",\"cause\":" + quote(cause) + ",\"index\":" + index + "}", index);
+		}
+
+	}
+
+}
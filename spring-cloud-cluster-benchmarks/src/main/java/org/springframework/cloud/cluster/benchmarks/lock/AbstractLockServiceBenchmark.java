@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+
+/**
+ * Base class for benchmarks measuring a lock and unlock cycle through
+ * a {@link LockService}, either with a key per thread or with all
+ * threads competing for a single key. Reports throughput together with
+ * sampled latency percentiles.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractLockServiceBenchmark {
+
+	private static final String CONTENDED_KEY = "/benchmarks/contended";
+
+	private LockService lockService;
+
+	@Setup(Level.Trial)
+	public void setupLockService() throws Exception {
+		lockService = createLockService();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownLockService() throws Exception {
+		destroyLockService();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void uncontended(ThreadKey threadKey) {
+		lockAndUnlock(threadKey.key);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void contended() {
+		lockAndUnlock(CONTENDED_KEY);
+	}
+
+	/**
+	 * Creates the lock service under test.
+	 *
+	 * @return the lock service
+	 * @throws Exception if lock service couldn't be created
+	 */
+	protected abstract LockService createLockService() throws Exception;
+
+	/**
+	 * Releases resources of the lock service under test.
+	 *
+	 * @throws Exception if resources couldn't be released
+	 */
+	protected void destroyLockService() throws Exception {
+	}
+
+	private void lockAndUnlock(String lockKey) {
+		DistributedLock lock = lockService.obtain(lockKey);
+		lock.lock();
+		lock.unlock();
+	}
+
+	/**
+	 * Lock key owned by a single benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadKey {
+
+		private static final AtomicInteger COUNTER = new AtomicInteger();
+
+		private final String key = "/benchmarks/thread" + COUNTER.incrementAndGet();
+
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.cloud.cluster.hazelcast.lock.HazelcastLockService;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.CoalescingLockService;
+import org.springframework.cloud.cluster.lock.support.DelegatingDistributedLock;
+import org.springframework.cloud.cluster.lock.support.InMemoryLockService;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Benchmarks lock services running within the benchmark JVM. Hazelcast
+ * runs as a single member cluster. Backend {@code reentrantLock} keeps a
+ * {@link ReentrantLock} per key which is never discarded, showing what
+ * {@link InMemoryLockService} costs on top of plain JVM locks, while
+ * {@code inMemory} is the baseline distributed lock services are
+ * compared against.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class InProcessLockServiceBenchmark extends AbstractLockServiceBenchmark {
+
+	@Param({ "reentrantLock", "inMemory", "coalescing", "hazelcast" })
+	private String backend;
+
+	private HazelcastInstance hazelcastInstance;
+
+	@Override
+	protected LockService createLockService() throws Exception {
+		if ("reentrantLock".equals(backend)) {
+			return new ReentrantLockService();
+		}
+		else if ("inMemory".equals(backend)) {
+			return new InMemoryLockService();
+		}
+		else if ("coalescing".equals(backend)) {
+			return new CoalescingLockService(new InMemoryLockService());
+		}
+		else if ("hazelcast".equals(backend)) {
+			Config config = new Config();
+			config.setProperty("hazelcast.logging.type", "slf4j");
+			config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+			hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+			return new HazelcastLockService(hazelcastInstance);
+		}
+		throw new IllegalArgumentException("Unknown backend [" + backend + "]");
+	}
+
+	@Override
+	protected void destroyLockService() throws Exception {
+		if (hazelcastInstance != null) {
+			hazelcastInstance.shutdown();
+		}
+	}
+
+	/**
+	 * {@link LockService} keeping a {@link ReentrantLock} per key forever.
+	 */
+	private static class ReentrantLockService implements LockService {
+
+		private final ConcurrentMap<String, DistributedLock> locks = new ConcurrentHashMap<String, DistributedLock>();
+
+		@Override
+		public DistributedLock obtain(String lockKey) {
+			DistributedLock lock = locks.get(lockKey);
+			if (lock == null) {
+				DistributedLock created = new DelegatingDistributedLock(lockKey, new ReentrantLock());
+				lock = locks.putIfAbsent(lockKey, created);
+				if (lock == null) {
+					lock = created;
+				}
+			}
+			return lock;
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.lock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.support.DefaultLockRegistry;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.InMemoryLockService;
+
+/**
+ * Measures {@link DefaultLockRegistry#get(String)} with many mappings in
+ * its {@link DefaultLockServiceLocator}, alone and together with a lock
+ * and unlock cycle of the returned lock.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockRegistryBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	@Param({ "10", "100", "500" })
+	private int mappings;
+
+	private DefaultLockRegistry registry;
+
+	private String[] keys;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		DefaultLockServiceLocator locator = new DefaultLockServiceLocator(new InMemoryLockService());
+		for (int i = 0; i < mappings; i++) {
+			locator.addMapping("/tenant" + i + "/**", new InMemoryLockService());
+		}
+		registry = new DefaultLockRegistry(locator);
+		Random random = new Random(0);
+		keys = new String[KEY_COUNT];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			keys[i] = "/tenant" + random.nextInt(mappings + 1) + "/lock" + random.nextInt(KEY_COUNT);
+		}
+	}
+
+	@Benchmark
+	public DistributedLock get() {
+		return registry.get(nextKey());
+	}
+
+	@Benchmark
+	public void getAndLock() {
+		DistributedLock lock = registry.get(nextKey());
+		lock.lock();
+		lock.unlock();
+	}
+
+	private String nextKey() {
+		return keys[next++ & (KEY_COUNT - 1)];
+	}
+
+}
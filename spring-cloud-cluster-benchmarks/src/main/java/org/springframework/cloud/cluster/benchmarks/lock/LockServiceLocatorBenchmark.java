@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.lock;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.LockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Compares {@link DefaultLockServiceLocator} against a plain linear scan
+ * over all mappings, which is how lookups were resolved before mappings
+ * were compiled into an index.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockServiceLocatorBenchmark {
+
+	private static final int KEY_COUNT = 1024;
+
+	@Param({ "10", "100", "500" })
+	private int mappings;
+
+	/** lookup cache size of the indexed locator, zero measures the trie alone. */
+	@Param({ "0", "4096" })
+	private int cacheLimit;
+
+	private DefaultLockServiceLocator indexed;
+
+	private LinearScanLockServiceLocator linear;
+
+	private String[] keys;
+
+	private int next;
+
+	@Setup
+	public void setup() {
+		LockService fallback = new NoopLockService();
+		indexed = new DefaultLockServiceLocator(fallback);
+		indexed.setCacheLimit(cacheLimit);
+		linear = new LinearScanLockServiceLocator(fallback);
+		for (int i = 0; i < mappings; i++) {
+			LockService service = new NoopLockService();
+			String path = "/tenant" + i + "/**";
+			indexed.addMapping(path, service);
+			linear.addMapping(path, service);
+		}
+		Random random = new Random(0);
+		keys = new String[KEY_COUNT];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			keys[i] = "/tenant" + random.nextInt(mappings + 1) + "/lock" + random.nextInt(KEY_COUNT);
+		}
+	}
+
+	@Benchmark
+	public LockService indexedLocate() {
+		return indexed.locate(nextKey());
+	}
+
+	@Benchmark
+	public LockService linearLocate() {
+		return linear.locate(nextKey());
+	}
+
+	private String nextKey() {
+		return keys[next++ & (KEY_COUNT - 1)];
+	}
+
+	/**
+	 * Linear scan locator matching every mapping in order.
+	 */
+	static class LinearScanLockServiceLocator implements LockServiceLocator {
+
+		private final List<String> paths = new CopyOnWriteArrayList<String>();
+
+		private final List<LockService> services = new CopyOnWriteArrayList<LockService>();
+
+		private final PathMatcher matcher = new AntPathMatcher();
+
+		private final LockService fallback;
+
+		LinearScanLockServiceLocator(LockService fallback) {
+			this.fallback = fallback;
+		}
+
+		void addMapping(String path, LockService lockService) {
+			paths.add(path);
+			services.add(lockService);
+		}
+
+		@Override
+		public LockService locate(String lockKey) {
+			for (int i = 0; i < paths.size(); i++) {
+				if (matcher.match(paths.get(i), lockKey)) {
+					return services.get(i);
+				}
+			}
+			return fallback;
+		}
+
+	}
+
+	static class NoopLockService implements LockService {
+
+		@Override
+		public DistributedLock obtain(String lockKey) {
+			return null;
+		}
+
+	}
+
+}
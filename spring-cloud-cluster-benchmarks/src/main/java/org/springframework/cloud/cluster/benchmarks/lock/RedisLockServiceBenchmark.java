@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.benchmarks.lock;
+
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.redis.lock.RedisLockService;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.util.SocketUtils;
+
+import redis.embedded.RedisServer;
+
+/**
+ * Benchmarks {@link RedisLockService} against an embedded Redis server
+ * started on a free local port, so results include a loopback round
+ * trip but no real network.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisLockServiceBenchmark extends AbstractLockServiceBenchmark {
+
+	private RedisServer redisServer;
+
+	private JedisConnectionFactory connectionFactory;
+
+	@Override
+	protected LockService createLockService() throws Exception {
+		int port = SocketUtils.findAvailableTcpPort();
+		redisServer = new RedisServer(port);
+		redisServer.start();
+		connectionFactory = new JedisConnectionFactory();
+		connectionFactory.setPort(port);
+		connectionFactory.getPoolConfig().setMaxTotal(16);
+		connectionFactory.afterPropertiesSet();
+		return new RedisLockService(connectionFactory);
+	}
+
+	@Override
+	protected void destroyLockService() throws Exception {
+		if (connectionFactory != null) {
+			connectionFactory.destroy();
+		}
+		if (redisServer != null) {
+			redisServer.stop();
+		}
+	}
+
+}
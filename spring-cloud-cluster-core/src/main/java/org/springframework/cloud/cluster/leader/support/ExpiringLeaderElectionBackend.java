@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.leader.support;
+
+/**
+ * {@link LeaderElectionBackend} knowing when leadership expires in the
+ * coordination system, e.g. because leases are kept alive in the background
+ * rather than extended by {@link #renew(String, String)}. Leadership is then
+ * considered valid until that expiry at most, instead of a full lease
+ * duration after every successful renew.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface ExpiringLeaderElectionBackend extends LeaderElectionBackend {
+
+	/**
+	 * Gets the time in milliseconds leadership of a role held by a
+	 * candidate stays valid from now on without further renewals. Should
+	 * not exceed the time after which the coordination system lets another
+	 * candidate take the role over.
+	 *
+	 * @param role the role
+	 * @param id the candidate identifier
+	 * @return the remaining lease, zero or negative if already expired
+	 */
+	long getRemainingLease(String role, String id);
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.leader.support;
+
+/**
+ * Non-blocking leadership operations of a coordination system, driven
+ * for many roles by {@link SharedLeaderInitiator}. None of the methods
+ * may wait for leadership to become available, and all of them may be
+ * called from any thread.
+ *
+ * <p>Leadership acquired or renewed is assumed to be valid for the lease
+ * duration of the backend, after which another candidate may take the
+ * role over unless it was renewed meanwhile.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface LeaderElectionBackend {
+
+	/**
+	 * Tries to claim leadership of a role for a candidate once. Should
+	 * also succeed if the candidate already holds the role.
+	 *
+	 * @param role the role
+	 * @param id the candidate identifier
+	 * @return true, if candidate is the leader of a role
+	 * @throws Exception if the coordination system couldn't be accessed
+	 */
+	boolean tryAcquire(String role, String id) throws Exception;
+
+	/**
+	 * Confirms and extends leadership of a role held by a candidate.
+	 *
+	 * @param role the role
+	 * @param id the candidate identifier
+	 * @return true, if candidate is still the leader of a role
+	 * @throws Exception if the coordination system couldn't be accessed
+	 */
+	boolean renew(String role, String id) throws Exception;
+
+	/**
+	 * Releases leadership of a role if held by a candidate.
+	 *
+	 * @param role the role
+	 * @param id the candidate identifier
+	 * @throws Exception if the coordination system couldn't be accessed
+	 */
+	void release(String role, String id) throws Exception;
+
+	/**
+	 * Gets the time in milliseconds leadership stays valid after a
+	 * successful {@link #tryAcquire(String, String)} or
+	 * {@link #renew(String, String)} without further renewals. Should not
+	 * exceed the time after which the coordination system lets another
+	 * candidate take the role over.
+	 *
+	 * @return the lease duration
+	 */
+	long getLeaseDuration();
+
+}
@@ -0,0 +1,660 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.leader.support;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.cluster.leader.Candidate;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.event.DefaultLeaderEventPublisher;
+import org.springframework.cloud.cluster.leader.event.LeaderEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Bootstrap leadership {@link Candidate candidates} of many roles with a
+ * single {@link LeaderElectionBackend}. Unlike per role initiators, no
+ * thread is parked while a role is held or awaited. Every role is driven
+ * by a periodic heartbeat on a shared {@link TaskScheduler}, which tries
+ * to acquire a role while following and renews it while leading, and
+ * leadership is tracked as state.
+ *
+ * <p>Leadership of a role expires once the lease duration of the backend
+ * has passed since the start of the last successful acquire or renew, or
+ * earlier if an {@link ExpiringLeaderElectionBackend} reports less of the
+ * lease remaining. From then on the candidate is no longer reported as
+ * leader, and its leadership is revoked by the next heartbeat, even if that
+ * heartbeat was delayed by slow backend calls of other roles. Heartbeat
+ * interval must therefore not exceed half of the lease duration.
+ *
+ * <p>{@link Candidate#onGranted(Context)} and
+ * {@link Candidate#onRevoked(Context)} are dispatched on a callback
+ * executor, in order per candidate. A candidate blocking in
+ * {@code onGranted} until interrupted still works, but keeps a callback
+ * thread busy for as long as it leads, so candidates should rather
+ * return promptly.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SharedLeaderInitiator implements SmartLifecycle, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(SharedLeaderInitiator.class);
+
+	private static final long DEFAULT_HEARTBEAT_INTERVAL = 5000;
+
+	private static final int DEFAULT_SCHEDULER_POOL_SIZE = 2;
+
+	private static final int LEASE_HEARTBEATS = 2;
+
+	/**
+	 * Backend used for all roles.
+	 */
+	private final LeaderElectionBackend backend;
+
+	/**
+	 * Roles of registered candidates.
+	 */
+	private final ConcurrentMap<Candidate, Role> roles = new ConcurrentHashMap<Candidate, Role>();
+
+	/**
+	 * Interval in milliseconds between heartbeats of a role.
+	 */
+	private volatile long heartbeatInterval = DEFAULT_HEARTBEAT_INTERVAL;
+
+	private volatile int schedulerPoolSize = DEFAULT_SCHEDULER_POOL_SIZE;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private ThreadPoolTaskScheduler internalTaskScheduler;
+
+	private volatile Executor callbackExecutor;
+
+	private ExecutorService internalCallbackExecutor;
+
+	/**
+	 * @see SmartLifecycle
+	 */
+	private volatile boolean autoStartup = true;
+
+	/**
+	 * @see SmartLifecycle
+	 */
+	private volatile int phase;
+
+	/**
+	 * Flag that indicates whether the leadership election is running.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Leader event publisher.
+	 */
+	private volatile LeaderEventPublisher leaderEventPublisher = new DefaultLeaderEventPublisher();
+
+	/**
+	 * Construct a {@link SharedLeaderInitiator}.
+	 *
+	 * @param backend the leader election backend
+	 */
+	public SharedLeaderInitiator(LeaderElectionBackend backend) {
+		Assert.notNull(backend, "Leader election backend must be set");
+		this.backend = backend;
+	}
+
+	/**
+	 * Registers a candidate for leader election. Election of the
+	 * candidate starts immediately if this initiator is running.
+	 *
+	 * @param candidate leadership election candidate
+	 */
+	public synchronized void addCandidate(Candidate candidate) {
+		Assert.notNull(candidate, "Candidate must be set");
+		if (running) {
+			checkHeartbeatInterval();
+		}
+		Role role = new Role(candidate);
+		Assert.state(roles.putIfAbsent(candidate, role) == null, "Candidate " + candidate + " already registered");
+		if (running) {
+			role.start();
+		}
+	}
+
+	/**
+	 * Unregisters a candidate from leader election. If the candidate is
+	 * currently leader, its leadership will be revoked.
+	 *
+	 * @param candidate leadership election candidate
+	 */
+	public synchronized void removeCandidate(Candidate candidate) {
+		Role role = roles.remove(candidate);
+		if (role != null) {
+			role.stop();
+		}
+	}
+
+	/**
+	 * Checks if a registered candidate is currently the leader, with a
+	 * lease which hasn't expired.
+	 *
+	 * @param candidate leadership election candidate
+	 * @return true, if candidate is registered and is the leader
+	 */
+	public boolean isLeader(Candidate candidate) {
+		Role role = roles.get(candidate);
+		return role != null && role.isLeading();
+	}
+
+	/**
+	 * Start leader election of all registered candidates.
+	 *
+	 * @throws IllegalStateException if heartbeat interval exceeds half of
+	 * the lease duration of the backend
+	 */
+	@Override
+	public synchronized void start() {
+		if (!running) {
+			checkHeartbeatInterval();
+			running = true;
+			for (Role role : roles.values()) {
+				role.start();
+			}
+		}
+	}
+
+	/**
+	 * Stop leader election of all registered candidates. Candidates
+	 * currently leading will have their leadership revoked.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (running) {
+			running = false;
+			for (Role role : roles.values()) {
+				role.stop();
+			}
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	/**
+	 * @return true if leader election is running
+	 */
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		return phase;
+	}
+
+	/**
+	 * @param phase the phase
+	 * @see SmartLifecycle
+	 */
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return autoStartup;
+	}
+
+	/**
+	 * @param autoStartup true to start automatically
+	 * @see SmartLifecycle
+	 */
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		stop();
+		synchronized (this) {
+			if (internalTaskScheduler != null) {
+				internalTaskScheduler.shutdown();
+				internalTaskScheduler = null;
+			}
+			if (internalCallbackExecutor != null) {
+				internalCallbackExecutor.shutdown();
+				internalCallbackExecutor = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the {@link LeaderEventPublisher}.
+	 *
+	 * @param leaderEventPublisher the event publisher
+	 */
+	public void setLeaderEventPublisher(LeaderEventPublisher leaderEventPublisher) {
+		Assert.notNull(leaderEventPublisher, "Leader event publisher must be set");
+		this.leaderEventPublisher = leaderEventPublisher;
+	}
+
+	/**
+	 * Sets the interval in milliseconds between heartbeats of a role,
+	 * meaning how often a follower tries to acquire a role and how often
+	 * a leader renews it. Defaults to five seconds, and must not exceed
+	 * half of the lease duration of the backend. Takes effect for roles
+	 * started afterwards.
+	 *
+	 * @param heartbeatInterval the heartbeat interval
+	 */
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		Assert.isTrue(heartbeatInterval > 0, "Heartbeat interval must be positive");
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	/**
+	 * Sets the task scheduler running heartbeats of all roles. If not
+	 * set, a scheduler with {@link #setSchedulerPoolSize(int) scheduler
+	 * pool size} threads is created on demand.
+	 *
+	 * @param taskScheduler the task scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "Task scheduler must be set");
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Sets the number of threads of the scheduler created if no task
+	 * scheduler is set. Backend calls of heartbeats run on these threads,
+	 * so with many roles and a slow backend more threads keep heartbeats
+	 * of all roles on time. Defaults to two.
+	 *
+	 * @param schedulerPoolSize the scheduler pool size
+	 */
+	public void setSchedulerPoolSize(int schedulerPoolSize) {
+		Assert.isTrue(schedulerPoolSize > 0, "Scheduler pool size must be positive");
+		this.schedulerPoolSize = schedulerPoolSize;
+	}
+
+	private void checkHeartbeatInterval() {
+		long leaseDuration = backend.getLeaseDuration();
+		Assert.state(heartbeatInterval * LEASE_HEARTBEATS <= leaseDuration, "Heartbeat interval " + heartbeatInterval
+				+ "ms must not exceed half of the lease duration " + leaseDuration + "ms of the backend");
+	}
+
+	/**
+	 * Sets the executor candidate callbacks are dispatched on. If not
+	 * set, a cached thread pool is created on demand.
+	 *
+	 * @param callbackExecutor the callback executor
+	 */
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		Assert.notNull(callbackExecutor, "Callback executor must be set");
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	private TaskScheduler getTaskScheduler() {
+		TaskScheduler scheduler = taskScheduler;
+		if (scheduler == null) {
+			synchronized (this) {
+				if (internalTaskScheduler == null) {
+					internalTaskScheduler = new ThreadPoolTaskScheduler();
+					internalTaskScheduler.setPoolSize(schedulerPoolSize);
+					internalTaskScheduler.setThreadNamePrefix("leadership-");
+					internalTaskScheduler.setDaemon(true);
+					internalTaskScheduler.initialize();
+				}
+				scheduler = internalTaskScheduler;
+			}
+		}
+		return scheduler;
+	}
+
+	private Executor getCallbackExecutor() {
+		Executor executor = callbackExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				if (internalCallbackExecutor == null) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("leadership-callback-");
+					threadFactory.setDaemon(true);
+					internalCallbackExecutor = Executors.newCachedThreadPool(threadFactory);
+				}
+				executor = internalCallbackExecutor;
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Election state of a single candidate. Heartbeats and state changes
+	 * are serialized by the role monitor, callbacks by a serial executor.
+	 */
+	private class Role implements Runnable {
+
+		private final Candidate candidate;
+
+		private final RoleContext context = new RoleContext(this);
+
+		private final SerialExecutor callbacks = new SerialExecutor();
+
+		private volatile boolean leader;
+
+		/**
+		 * Time in nanoseconds when current leadership expires unless renewed.
+		 */
+		private volatile long leaseDeadline;
+
+		private boolean active;
+
+		private ScheduledFuture<?> heartbeat;
+
+		private GrantedTask granted;
+
+		Role(Candidate candidate) {
+			this.candidate = candidate;
+		}
+
+		@Override
+		public void run() {
+			heartbeat();
+		}
+
+		synchronized void start() {
+			if (!active) {
+				active = true;
+				heartbeat = getTaskScheduler().scheduleWithFixedDelay(this, heartbeatInterval);
+			}
+		}
+
+		synchronized void stop() {
+			if (active) {
+				active = false;
+				heartbeat.cancel(false);
+				heartbeat = null;
+				revoke();
+			}
+		}
+
+		boolean isLeading() {
+			return leader && System.nanoTime() - leaseDeadline < 0;
+		}
+
+		synchronized void heartbeat() {
+			if (!active) {
+				return;
+			}
+			long start = System.nanoTime();
+			if (leader) {
+				if (start - leaseDeadline >= 0) {
+					logger.warn("Lease of role " + candidate.getRole() + " expired before it was renewed, relinquishing");
+					revoke();
+					return;
+				}
+				boolean renewed = false;
+				try {
+					renewed = backend.renew(candidate.getRole(), candidate.getId());
+				}
+				catch (Exception e) {
+					logger.warn("Couldn't renew leadership of role " + candidate.getRole() + ", relinquishing", e);
+				}
+				if (!renewed || !extendLease(start)) {
+					revoke();
+				}
+			}
+			else {
+				try {
+					if (backend.tryAcquire(candidate.getRole(), candidate.getId()) && extendLease(start)) {
+						grant();
+					}
+				}
+				catch (Exception e) {
+					logger.warn("Couldn't acquire leadership of role " + candidate.getRole(), e);
+				}
+			}
+		}
+
+		synchronized void yieldLeadership() {
+			if (active) {
+				revoke();
+			}
+		}
+
+		/**
+		 * Extends the lease from the start of a successful backend call,
+		 * limited by the lease remaining in the backend if it knows it,
+		 * unless the lease already expired.
+		 */
+		private boolean extendLease(long start) {
+			long deadline = start + TimeUnit.MILLISECONDS.toNanos(backend.getLeaseDuration());
+			if (backend instanceof ExpiringLeaderElectionBackend) {
+				long now = System.nanoTime();
+				long expiry = now + TimeUnit.MILLISECONDS.toNanos(((ExpiringLeaderElectionBackend) backend)
+						.getRemainingLease(candidate.getRole(), candidate.getId()));
+				if (expiry - deadline < 0) {
+					deadline = expiry;
+				}
+			}
+			if (System.nanoTime() - deadline >= 0) {
+				logger.warn("Lease of role " + candidate.getRole() + " expired during backend call or in backend");
+				return false;
+			}
+			leaseDeadline = deadline;
+			return true;
+		}
+
+		private void grant() {
+			leader = true;
+			granted = new GrantedTask(this);
+			callbacks.execute(granted);
+		}
+
+		private void revoke() {
+			if (!leader) {
+				return;
+			}
+			leader = false;
+			try {
+				// harmless if leadership was already lost
+				backend.release(candidate.getRole(), candidate.getId());
+			}
+			catch (Exception e) {
+				logger.warn("Couldn't release leadership of role " + candidate.getRole(), e);
+			}
+			final GrantedTask task = granted;
+			granted = null;
+			task.cancel(true);
+			callbacks.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (task.started) {
+						try {
+							candidate.onRevoked(context);
+						}
+						finally {
+							leaderEventPublisher.publishOnRevoked(SharedLeaderInitiator.this, context,
+									candidate.getRole());
+						}
+					}
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * Task publishing granted event and invoking {@link Candidate#onGranted(Context)}.
+	 * Cancelled with an interrupt when leadership is revoked.
+	 */
+	private class GrantedTask extends FutureTask<Void> {
+
+		private final Role role;
+
+		private volatile boolean started;
+
+		GrantedTask(final Role role) {
+			super(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					leaderEventPublisher.publishOnGranted(SharedLeaderInitiator.this, role.context,
+							role.candidate.getRole());
+					role.candidate.onGranted(role.context);
+					return null;
+				}
+			});
+			this.role = role;
+		}
+
+		@Override
+		public void run() {
+			if (isDone()) {
+				return;
+			}
+			started = true;
+			super.run();
+		}
+
+		@Override
+		protected void done() {
+			if (isCancelled()) {
+				return;
+			}
+			try {
+				get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			catch (Exception e) {
+				if (!(e.getCause() instanceof InterruptedException)) {
+					logger.error("Exception thrown by candidate of role " + role.candidate.getRole(), e.getCause());
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Runs tasks one at a time and in submission order on the shared
+	 * callback executor.
+	 */
+	private class SerialExecutor implements Executor {
+
+		private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		private boolean draining;
+
+		@Override
+		public void execute(Runnable task) {
+			synchronized (this) {
+				tasks.add(task);
+				if (draining) {
+					return;
+				}
+				draining = true;
+			}
+			getCallbackExecutor().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		}
+
+		private void drain() {
+			while (true) {
+				Runnable task;
+				synchronized (this) {
+					task = tasks.poll();
+					if (task == null) {
+						draining = false;
+						return;
+					}
+				}
+				try {
+					task.run();
+				}
+				catch (RuntimeException e) {
+					logger.error("Exception thrown by candidate", e);
+				}
+				finally {
+					// don't leak an interrupt of a cancelled task into the next one
+					Thread.interrupted();
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Implementation of leadership context backed by tracked state.
+	 */
+	private class RoleContext implements Context {
+
+		private final Role role;
+
+		RoleContext(Role role) {
+			this.role = role;
+		}
+
+		@Override
+		public boolean isLeader() {
+			return role.isLeading();
+		}
+
+		@Override
+		public void yield() {
+			getTaskScheduler().schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					role.yieldLeadership();
+				}
+			}, new Date());
+		}
+
+		@Override
+		public String toString() {
+			return String.format("SharedContext{role=%s, id=%s, isLeader=%s}",
+					role.candidate.getRole(), role.candidate.getId(), isLeader());
+		}
+
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * {@link DistributedLock} which can also be acquired without blocking
+ * the calling thread.
+ *
+ * <p>Unlike locks acquired via {@link #lock()} and its variants, a lock
+ * acquired asynchronously is not owned by a thread but by the acquisition
+ * itself. It has to be released using {@link #unlockAsync()} which can be
+ * called from any thread. Asynchronous acquisitions are never reentrant
+ * and every successful acquisition needs its own release.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface AsyncDistributedLock extends DistributedLock {
+
+	/**
+	 * Acquires the lock asynchronously. Returned future completes
+	 * once the lock is acquired. Cancelling the future abandons
+	 * the acquisition.
+	 *
+	 * @return the future completing when lock is acquired
+	 */
+	ListenableFuture<Void> lockAsync();
+
+	/**
+	 * Tries to acquire the lock asynchronously within a given time.
+	 *
+	 * @param time the maximum time to wait for the lock
+	 * @param unit the time unit of the time argument
+	 * @return the future completing with {@code true} if lock was
+	 *         acquired and {@code false} if waiting time elapsed
+	 */
+	ListenableFuture<Boolean> tryLockAsync(long time, TimeUnit unit);
+
+	/**
+	 * Releases the most recent asynchronous acquisition of this lock.
+	 * Returned future fails with {@link IllegalMonitorStateException}
+	 * if this lock is not held asynchronously.
+	 *
+	 * @return the future completing when lock is released
+	 */
+	ListenableFuture<Void> unlockAsync();
+
+}
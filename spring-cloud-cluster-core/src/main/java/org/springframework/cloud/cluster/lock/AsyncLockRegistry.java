@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * {@link LockRegistry} which is able to provide {@link AsyncDistributedLock}s
+ * for every locking key regardless of whether the backing {@link LockService}
+ * supports asynchronous locking natively.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface AsyncLockRegistry extends LockRegistry {
+
+	/**
+	 * Gets an {@link AsyncDistributedLock} from a registry.
+	 *
+	 * @param lockKey the locking key
+	 * @return asynchronous distributed lock
+	 */
+	AsyncDistributedLock getAsync(String lockKey);
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * {@link LockService} whose backing system natively supports acquiring
+ * locks without blocking a thread while waiting.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface AsyncLockService extends LockService {
+
+	/**
+	 * Obtains an {@link AsyncDistributedLock} from a service.
+	 *
+	 * @param lockKey the locking key
+	 * @return asynchronous distributed lock
+	 * @see LockService#obtain(String)
+	 */
+	@Override
+	AsyncDistributedLock obtain(String lockKey);
+
+}
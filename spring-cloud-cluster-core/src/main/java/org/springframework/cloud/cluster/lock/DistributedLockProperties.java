@@ -31,6 +31,8 @@ public class DistributedLockProperties {
 
 	/** distributed locking role. */
 	private String role;
+
+	private Diagnostics diagnostics = new Diagnostics();
 	
 	public boolean isEnabled() {
 		return enabled;
@@ -47,5 +49,72 @@ public class DistributedLockProperties {
 	public void setRole(String role) {
 		this.role = role;
 	}
-	
+
+	public Diagnostics getDiagnostics() {
+		return diagnostics;
+	}
+
+	public void setDiagnostics(Diagnostics diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	public static class Diagnostics {
+
+		/** acquire time in milliseconds above which acquisitions are recorded, 0 disables. */
+		private long slowAcquireThreshold;
+
+		/** hold time in milliseconds above which holds are recorded, 0 disables. */
+		private long longHoldThreshold;
+
+		/** number of recorded slow locks kept. */
+		private int bufferSize = 256;
+
+		/** minimum interval in milliseconds between sampled stack traces. */
+		private long stackSampleInterval = 1000;
+
+		/** interval in milliseconds between checks of ongoing waits and holds, 0 checks only when read. */
+		private long checkInterval;
+
+		public long getSlowAcquireThreshold() {
+			return slowAcquireThreshold;
+		}
+
+		public void setSlowAcquireThreshold(long slowAcquireThreshold) {
+			this.slowAcquireThreshold = slowAcquireThreshold;
+		}
+
+		public long getLongHoldThreshold() {
+			return longHoldThreshold;
+		}
+
+		public void setLongHoldThreshold(long longHoldThreshold) {
+			this.longHoldThreshold = longHoldThreshold;
+		}
+
+		public int getBufferSize() {
+			return bufferSize;
+		}
+
+		public void setBufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+		}
+
+		public long getStackSampleInterval() {
+			return stackSampleInterval;
+		}
+
+		public void setStackSampleInterval(long stackSampleInterval) {
+			this.stackSampleInterval = stackSampleInterval;
+		}
+
+		public long getCheckInterval() {
+			return checkInterval;
+		}
+
+		public void setCheckInterval(long checkInterval) {
+			this.checkInterval = checkInterval;
+		}
+
+	}
+
 }
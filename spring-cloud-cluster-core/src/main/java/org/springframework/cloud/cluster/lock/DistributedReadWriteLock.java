@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Distributed implementation of a {@link ReadWriteLock}. Any number of
+ * holders may hold the read lock at once while the write lock is
+ * exclusive. Once a writer is waiting, new readers are held back so
+ * that a steady stream of readers can't starve writers.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface DistributedReadWriteLock extends ReadWriteLock {
+
+	/**
+	 * Gets the associated lock key.
+	 *
+	 * @return associated lock key
+	 */
+	String getLockKey();
+
+	@Override
+	DistributedLock readLock();
+
+	@Override
+	DistributedLock writeLock();
+
+}
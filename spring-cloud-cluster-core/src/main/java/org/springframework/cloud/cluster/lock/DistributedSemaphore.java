@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distributed counting semaphore handing out a fixed number of permits
+ * for a key. Any number of permits can be acquired or released with a
+ * single operation against the backing system.
+ *
+ * <p>Unlike {@link DistributedLock}, permits are not owned by a thread.
+ * Implementations bind permits to a lease of the process which acquired
+ * them, so that permits of a crashed holder are eventually returned.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface DistributedSemaphore {
+
+	/**
+	 * Gets the associated semaphore key.
+	 *
+	 * @return associated semaphore key
+	 */
+	String getSemaphoreKey();
+
+	/**
+	 * Acquires given number of permits, waiting until all of them
+	 * are available.
+	 *
+	 * @param permits the number of permits
+	 * @throws InterruptedException if current thread is interrupted
+	 */
+	void acquire(int permits) throws InterruptedException;
+
+	/**
+	 * Acquires given number of permits only if all of them are
+	 * available at the time of invocation.
+	 *
+	 * @param permits the number of permits
+	 * @return true if permits were acquired
+	 */
+	boolean tryAcquire(int permits);
+
+	/**
+	 * Acquires given number of permits if all of them become available
+	 * within given waiting time.
+	 *
+	 * @param permits the number of permits
+	 * @param time the maximum time to wait for the permits
+	 * @param unit the time unit of the {@code time} argument
+	 * @return true if permits were acquired
+	 * @throws InterruptedException if current thread is interrupted
+	 */
+	boolean tryAcquire(int permits, long time, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Releases given number of permits.
+	 *
+	 * @param permits the number of permits
+	 * @throws IllegalMonitorStateException if implementation keeps track
+	 *         of holders and more permits are released than are held
+	 *         by this process
+	 */
+	void release(int permits);
+
+	/**
+	 * Gets the number of currently available permits.
+	 *
+	 * @return the number of available permits
+	 */
+	int availablePermits();
+
+}
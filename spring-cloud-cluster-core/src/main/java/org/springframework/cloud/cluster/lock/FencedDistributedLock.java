@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * {@link DistributedLock} issuing a fencing token for every successful
+ * acquisition. Tokens for a locking key are monotonically increasing,
+ * so a resource guarded by a lock can reject requests carrying a token
+ * older than the newest one it has seen, even if the holder has lost
+ * its lock without knowing it.
+ *
+ * <p>Reentrant acquisitions by a current holder don't issue a new token.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface FencedDistributedLock extends DistributedLock {
+
+	/**
+	 * Gets the fencing token of the current hold of this lock.
+	 *
+	 * @return the fencing token
+	 * @throws IllegalMonitorStateException if lock is not held
+	 */
+	long getFencingToken();
+
+}
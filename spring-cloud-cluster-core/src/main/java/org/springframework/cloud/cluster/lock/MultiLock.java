@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+import java.util.List;
+
+/**
+ * Handle for locks held for multiple locking keys at once.
+ *
+ * <p>A multi lock doesn't issue fencing tokens, even if single key locks
+ * of the same service are {@link FencedDistributedLock}s. Resources which
+ * need to reject writes of an expired holder should be guarded by single
+ * key locks instead.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface MultiLock {
+
+	/**
+	 * Gets the locking keys held by this lock in acquisition order.
+	 *
+	 * @return the locking keys
+	 */
+	List<String> getLockKeys();
+
+	/**
+	 * Releases locks for all keys in reverse acquisition order. Every
+	 * key is attempted even if releasing some of them fails.
+	 */
+	void unlock();
+
+}
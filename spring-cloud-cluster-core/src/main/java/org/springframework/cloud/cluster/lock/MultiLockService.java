@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LockService} which is able to acquire locks for multiple
+ * locking keys with a single operation against its backing system.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface MultiLockService extends LockService {
+
+	/**
+	 * Tries to acquire locks for all given keys atomically, either all
+	 * of them or none.
+	 *
+	 * @param lockKeys the locking keys
+	 * @param time the maximum time to wait for the locks
+	 * @param unit the time unit of the {@code time} argument
+	 * @return lock for all keys or null if locks were not acquired
+	 *         within given time
+	 * @throws InterruptedException if current thread is interrupted
+	 */
+	MultiLock tryLockAll(List<String> lockKeys, long time, TimeUnit unit) throws InterruptedException;
+
+}
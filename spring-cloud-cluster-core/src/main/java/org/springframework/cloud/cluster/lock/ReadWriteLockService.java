@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * {@code ReadWriteLockService} implementations provide low level access
+ * to read/write locks of a particular locking service, similarly to
+ * what {@link LockService} does for exclusive locks.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface ReadWriteLockService {
+
+	/**
+	 * Obtains a {@link DistributedReadWriteLock} from a service. Obtaining
+	 * a lock should not do any locking operations.
+	 *
+	 * @param lockKey the locking key
+	 * @return distributed read/write lock
+	 */
+	DistributedReadWriteLock obtain(String lockKey);
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * Strategy interface locating a {@link ReadWriteLockService} for a
+ * locking key. Follows the same consistency rules as
+ * {@link LockServiceLocator}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface ReadWriteLockServiceLocator {
+
+	/**
+	 * Locates a bound {@link ReadWriteLockService} for a locking key.
+	 *
+	 * @param lockKey the locking key
+	 * @return read/write lock service or null if key is not bound to any service
+	 */
+	ReadWriteLockService locate(String lockKey);
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock;
+
+/**
+ * {@code SemaphoreService} implementations provide access to
+ * {@link DistributedSemaphore}s of a particular distributed system.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public interface SemaphoreService {
+
+	/**
+	 * Obtains a {@link DistributedSemaphore} from a service. All users of
+	 * a semaphore key are expected to use the same number of permits.
+	 *
+	 * @param semaphoreKey the semaphore key
+	 * @param permits the total number of permits
+	 * @return distributed semaphore
+	 */
+	DistributedSemaphore obtain(String semaphoreKey, int permits);
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockRegistry} caching {@link DistributedLock} instances
+ * per locking key on top of another {@link LockRegistry}, typically
+ * a {@link DefaultLockRegistry}. Same key returns the same lock
+ * instance until it's evicted.
+ *
+ * <p>Entries are evicted when the cache grows over its capacity or
+ * when an entry has not been requested within the idle timeout.
+ * Capacity eviction approximates least recently used order by giving
+ * recently requested entries a second chance, and examines only a
+ * few entries per lookup. A lock which is currently held through its
+ * cached instance is never evicted, and it replaces an instance cached
+ * for the same key meanwhile if that one isn't held.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CachingLockRegistry implements LockRegistry {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+	/**
+	 * Maximum number of entries examined by a single lookup
+	 * while cache is over its capacity.
+	 */
+	private static final int EVICTION_BATCH = 16;
+
+	private final LockRegistry lockRegistry;
+
+	private final ConcurrentMap<String, CachedDistributedLock> locks = new ConcurrentHashMap<String, CachedDistributedLock>();
+
+	/**
+	 * Cached locks in eviction order, each at most once.
+	 */
+	private final Queue<CachedDistributedLock> queue = new ConcurrentLinkedQueue<CachedDistributedLock>();
+
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private volatile int capacity = DEFAULT_CAPACITY;
+
+	private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	private volatile long nextIdleSweep;
+
+	/**
+	 * Instantiates a new caching lock registry.
+	 *
+	 * @param lockRegistry the lock registry to cache locks from
+	 */
+	public CachingLockRegistry(LockRegistry lockRegistry) {
+		Assert.notNull(lockRegistry, "Lock registry must be set");
+		this.lockRegistry = lockRegistry;
+	}
+
+	@Override
+	public DistributedLock get(String lockKey) {
+		CachedDistributedLock lock = locks.get(lockKey);
+		if (lock == null) {
+			CachedDistributedLock created = new CachedDistributedLock(lockKey, lockRegistry.get(lockKey));
+			lock = locks.putIfAbsent(lockKey, created);
+			if (lock == null) {
+				lock = created;
+				enqueue(lock);
+			}
+		}
+		long now = System.currentTimeMillis();
+		lock.lastAccess = now;
+		lock.referenced = true;
+		if (locks.size() > capacity || now >= nextIdleSweep) {
+			evict(now);
+		}
+		return lock;
+	}
+
+	/**
+	 * Sets the maximum number of cached locks. Cache may temporarily
+	 * exceed this capacity if more locks than capacity are held.
+	 *
+	 * @param capacity the capacity
+	 */
+	public void setCapacity(int capacity) {
+		Assert.isTrue(capacity > 0, "Capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which a lock which
+	 * is not held and has not been requested is evicted.
+	 *
+	 * @param idleTimeout the idle timeout in milliseconds
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		Assert.isTrue(idleTimeout > 0, "Idle timeout must be positive");
+		this.idleTimeout = idleTimeout;
+		this.nextIdleSweep = 0;
+	}
+
+	private void evict(long now) {
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (now >= nextIdleSweep) {
+				long timeout = idleTimeout;
+				sweep(now, timeout);
+				nextIdleSweep = now + Math.max(timeout / 2, 1);
+			}
+			int excess = locks.size() - capacity;
+			for (int i = 0; i < EVICTION_BATCH && excess > 0; i++) {
+				CachedDistributedLock lock = queue.poll();
+				if (lock == null) {
+					break;
+				}
+				if (lock.referenced) {
+					lock.referenced = false;
+				}
+				else if (remove(lock)) {
+					excess--;
+				}
+				dequeued(lock);
+			}
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Evicts idle locks and drops queue entries of locks
+	 * which are no longer cached.
+	 */
+	private void sweep(long now, long timeout) {
+		for (Iterator<CachedDistributedLock> iterator = queue.iterator(); iterator.hasNext();) {
+			CachedDistributedLock lock = iterator.next();
+			if (now - lock.lastAccess >= timeout) {
+				remove(lock);
+			}
+			if (locks.get(lock.getLockKey()) != lock) {
+				iterator.remove();
+				dequeued(lock);
+			}
+		}
+	}
+
+	private boolean remove(CachedDistributedLock lock) {
+		if (lock.holds.get() != 0 || !locks.remove(lock.getLockKey(), lock)) {
+			return false;
+		}
+		// lock may have been acquired while it was removed
+		if (lock.holds.get() != 0) {
+			pin(lock);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes a held lock the cached instance of its key, replacing
+	 * an instance cached meanwhile unless that one is held too.
+	 */
+	private void pin(CachedDistributedLock lock) {
+		String lockKey = lock.getLockKey();
+		while (true) {
+			CachedDistributedLock current = locks.get(lockKey);
+			if (current == lock) {
+				return;
+			}
+			if (current == null) {
+				if (locks.putIfAbsent(lockKey, lock) == null) {
+					break;
+				}
+			}
+			else if (current.holds.get() != 0) {
+				return;
+			}
+			else if (locks.replace(lockKey, current, lock)) {
+				break;
+			}
+		}
+		enqueue(lock);
+	}
+
+	private void enqueue(CachedDistributedLock lock) {
+		if (lock.queued.compareAndSet(false, true)) {
+			queue.offer(lock);
+		}
+	}
+
+	/**
+	 * Marks a lock taken out from the queue, putting it back if it's
+	 * still cached. Lock pinned concurrently is put back either here or
+	 * by the pinning thread.
+	 */
+	private void dequeued(CachedDistributedLock lock) {
+		lock.queued.set(false);
+		if (locks.get(lock.getLockKey()) == lock) {
+			enqueue(lock);
+		}
+	}
+
+	/**
+	 * {@link DistributedLock} tracking how many times it's held
+	 * in order to protect held locks from eviction.
+	 */
+	private class CachedDistributedLock extends AbstractDistributedLock {
+
+		private final DistributedLock lock;
+
+		private final AtomicInteger holds = new AtomicInteger();
+
+		private final AtomicBoolean queued = new AtomicBoolean();
+
+		private volatile long lastAccess;
+
+		private volatile boolean referenced;
+
+		CachedDistributedLock(String lockKey, DistributedLock lock) {
+			super(lockKey);
+			Assert.notNull(lock, "Lock must be set");
+			this.lock = lock;
+		}
+
+		@Override
+		public void lock() {
+			lock.lock();
+			acquired();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			lock.lockInterruptibly();
+			acquired();
+		}
+
+		@Override
+		public boolean tryLock() {
+			if (lock.tryLock()) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			if (lock.tryLock(time, unit)) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void unlock() {
+			lock.unlock();
+			holds.decrementAndGet();
+		}
+
+		@Override
+		public Condition newCondition() {
+			return lock.newCondition();
+		}
+
+		private void acquired() {
+			holds.incrementAndGet();
+			// held lock must stay cached even if it was just evicted
+			pin(this);
+		}
+
+	}
+
+}
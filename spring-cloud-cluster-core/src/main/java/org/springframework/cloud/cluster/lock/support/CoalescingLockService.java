@@ -0,0 +1,252 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockService} decorator which queues waiters from the same JVM
+ * on a local lock before letting them compete for the distributed lock.
+ * Only the thread at the head of a local queue talks to the backing
+ * system, which keeps backend round-trips independent of how many
+ * local threads contend for the same key.
+ *
+ * <p>Local locks are kept per key and discarded as soon as there are
+ * no holders or waiters left, so unrelated keys never block each other.
+ * Conditions are not supported.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CoalescingLockService implements LockService {
+
+	private final LockService lockService;
+
+	private final ConcurrentMap<String, LocalLock> localLocks = new ConcurrentHashMap<String, LocalLock>();
+
+	private volatile boolean fair;
+
+	/**
+	 * Instantiates a new coalescing lock service.
+	 *
+	 * @param lockService the lock service to coalesce waiters for
+	 */
+	public CoalescingLockService(LockService lockService) {
+		Assert.notNull(lockService, "Lock service must be set");
+		this.lockService = lockService;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		return new CoalescingDistributedLock(lockKey, lockService.obtain(lockKey));
+	}
+
+	/**
+	 * Sets whether local waiters are granted the lock in arrival
+	 * order. Defaults to {@code false}.
+	 *
+	 * @param fair the fairness flag
+	 */
+	public void setFair(boolean fair) {
+		this.fair = fair;
+	}
+
+	private LocalLock reference(String lockKey) {
+		while (true) {
+			LocalLock local = localLocks.get(lockKey);
+			if (local == null) {
+				LocalLock created = new LocalLock(fair);
+				local = localLocks.putIfAbsent(lockKey, created);
+				if (local == null) {
+					local = created;
+				}
+			}
+			synchronized (local) {
+				if (!local.discarded) {
+					local.references++;
+					return local;
+				}
+			}
+		}
+	}
+
+	private void release(String lockKey, LocalLock local) {
+		synchronized (local) {
+			if (--local.references == 0) {
+				local.discarded = true;
+				localLocks.remove(lockKey, local);
+			}
+		}
+	}
+
+	/**
+	 * Local lock shared by all threads using the same key. Referenced
+	 * by every holder and waiter.
+	 */
+	@SuppressWarnings("serial")
+	private static class LocalLock extends ReentrantLock {
+
+		private int references;
+
+		private boolean discarded;
+
+		LocalLock(boolean fair) {
+			super(fair);
+		}
+
+	}
+
+	/**
+	 * {@link DistributedLock} acquiring the local lock first and
+	 * the distributed lock only once local lock is held.
+	 */
+	private class CoalescingDistributedLock extends AbstractDistributedLock {
+
+		private final DistributedLock lock;
+
+		CoalescingDistributedLock(String lockKey, DistributedLock lock) {
+			super(lockKey);
+			this.lock = lock;
+		}
+
+		@Override
+		public void lock() {
+			LocalLock local = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				local.lock();
+				try {
+					lock.lock();
+					acquired = true;
+				}
+				finally {
+					if (!acquired) {
+						local.unlock();
+					}
+				}
+			}
+			finally {
+				if (!acquired) {
+					release(getLockKey(), local);
+				}
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			LocalLock local = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				local.lockInterruptibly();
+				try {
+					lock.lockInterruptibly();
+					acquired = true;
+				}
+				finally {
+					if (!acquired) {
+						local.unlock();
+					}
+				}
+			}
+			finally {
+				if (!acquired) {
+					release(getLockKey(), local);
+				}
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			LocalLock local = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				if (local.tryLock()) {
+					try {
+						acquired = lock.tryLock();
+					}
+					finally {
+						if (!acquired) {
+							local.unlock();
+						}
+					}
+				}
+			}
+			finally {
+				if (!acquired) {
+					release(getLockKey(), local);
+				}
+			}
+			return acquired;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(time);
+			LocalLock local = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				if (local.tryLock(time, unit)) {
+					try {
+						long remaining = Math.max(deadline - System.nanoTime(), 0);
+						acquired = lock.tryLock(remaining, TimeUnit.NANOSECONDS);
+					}
+					finally {
+						if (!acquired) {
+							local.unlock();
+						}
+					}
+				}
+			}
+			finally {
+				if (!acquired) {
+					release(getLockKey(), local);
+				}
+			}
+			return acquired;
+		}
+
+		@Override
+		public void unlock() {
+			LocalLock local = localLocks.get(getLockKey());
+			if (local == null || !local.isHeldByCurrentThread()) {
+				throw new IllegalMonitorStateException("Lock [" + getLockKey()
+						+ "] is not held by current thread");
+			}
+			try {
+				lock.unlock();
+			}
+			finally {
+				local.unlock();
+				release(getLockKey(), local);
+			}
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+	}
+
+}
@@ -15,24 +15,55 @@
  */
 package org.springframework.cloud.cluster.lock.support;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.AsyncLockRegistry;
+import org.springframework.cloud.cluster.lock.AsyncLockService;
 import org.springframework.cloud.cluster.lock.DistributedLock;
 import org.springframework.cloud.cluster.lock.LockRegistry;
 import org.springframework.cloud.cluster.lock.LockService;
 import org.springframework.cloud.cluster.lock.LockServiceLocator;
 import org.springframework.cloud.cluster.lock.LockingException;
+import org.springframework.cloud.cluster.lock.MultiLock;
+import org.springframework.cloud.cluster.lock.MultiLockRegistry;
+import org.springframework.cloud.cluster.lock.MultiLockService;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
 /**
  * Default implementation of a {@link LockRegistry} delegating
  * to a {@link LockServiceLocator}.
- * 
+ *
+ * <p>Asynchronous locks are obtained directly from services implementing
+ * {@link AsyncLockService}. Locks from other services are adapted with
+ * {@link ExecutorAsyncDistributedLock}, by default on a bounded pool of
+ * daemon threads. As such lock keeps its thread while held, acquisitions
+ * over the pool size wait until some adapted lock is released.
+ *
  * @author Janne Valkealahti
  *
  */
-public class DefaultLockRegistry implements LockRegistry {
+public class DefaultLockRegistry implements AsyncLockRegistry, MultiLockRegistry {
+
+	private static final int DEFAULT_ASYNC_POOL_SIZE = 16;
+
+	private static final long ASYNC_THREAD_KEEP_ALIVE = 60;
 
 	private final LockServiceLocator lockServiceLocator;
 
+	private volatile Executor asyncExecutor;
+
+	private volatile int asyncPoolSize = DEFAULT_ASYNC_POOL_SIZE;
+
 	/**
 	 * Instantiates a new default lock registry.
 	 *
@@ -45,12 +76,181 @@ public class DefaultLockRegistry implements LockRegistry {
 
 	@Override
 	public DistributedLock get(String lockKey) {
+		return locate(lockKey).obtain(lockKey);
+	}
+
+	@Override
+	public AsyncDistributedLock getAsync(String lockKey) {
+		LockService service = locate(lockKey);
+		if (service instanceof AsyncLockService) {
+			return ((AsyncLockService) service).obtain(lockKey);
+		}
+		return new ExecutorAsyncDistributedLock(service.obtain(lockKey), getAsyncExecutor());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>Keys are sorted and acquired in natural order. Consecutive keys
+	 * bound to the same {@link MultiLockService} are acquired with a single
+	 * call to that service while other keys are acquired one by one.
+	 */
+	@Override
+	public MultiLock lockAll(Collection<String> lockKeys, long time, TimeUnit unit) throws InterruptedException {
+		Assert.notNull(lockKeys, "Lock keys must be set");
+		long deadline = System.nanoTime() + unit.toNanos(time);
+		List<String> sortedKeys = new ArrayList<String>(new TreeSet<String>(lockKeys));
+		List<MultiLock> acquired = new ArrayList<MultiLock>();
+		boolean success = false;
+		try {
+			int start = 0;
+			while (start < sortedKeys.size()) {
+				LockService service = locate(sortedKeys.get(start));
+				int end = start + 1;
+				if (service instanceof MultiLockService) {
+					while (end < sortedKeys.size() && locate(sortedKeys.get(end)) == service) {
+						end++;
+					}
+				}
+				long remaining = Math.max(deadline - System.nanoTime(), 0);
+				MultiLock lock;
+				if (end - start > 1) {
+					lock = ((MultiLockService) service).tryLockAll(
+							new ArrayList<String>(sortedKeys.subList(start, end)), remaining, TimeUnit.NANOSECONDS);
+				}
+				else {
+					DistributedLock single = service.obtain(sortedKeys.get(start));
+					lock = single.tryLock(remaining, TimeUnit.NANOSECONDS) ? new SingleKeyMultiLock(single) : null;
+				}
+				if (lock == null) {
+					return null;
+				}
+				acquired.add(lock);
+				start = end;
+			}
+			success = true;
+			return new CompositeMultiLock(sortedKeys, acquired);
+		}
+		finally {
+			if (!success) {
+				new CompositeMultiLock(sortedKeys, acquired).unlock();
+			}
+		}
+	}
+
+	/**
+	 * Sets the executor used to adapt locks from services which don't
+	 * support asynchronous locking natively. An executor thread is held
+	 * for as long as such lock is held, so the executor should bound its
+	 * threads while still queueing acquisitions it can't run yet.
+	 *
+	 * @param asyncExecutor the executor
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		Assert.notNull(asyncExecutor, "Executor must be set");
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Sets the maximum number of threads of the default executor, which
+	 * is also the maximum number of adapted asynchronous locks held at
+	 * the same time. Defaults to {@code 16}. Takes effect if set before
+	 * the first asynchronous lock is requested and no executor is set.
+	 *
+	 * @param asyncPoolSize the pool size
+	 */
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		Assert.isTrue(asyncPoolSize > 0, "Pool size must be positive");
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
+	private Executor getAsyncExecutor() {
+		Executor executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				if (asyncExecutor == null) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lock-registry-");
+					threadFactory.setDaemon(true);
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize,
+							ASYNC_THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+					pool.allowCoreThreadTimeOut(true);
+					asyncExecutor = pool;
+				}
+				executor = asyncExecutor;
+			}
+		}
+		return executor;
+	}
+
+	private LockService locate(String lockKey) {
 		LockService service = lockServiceLocator.locate(lockKey);
 		if (service == null) {
 			throw new LockingException("Unable to find lockservice for key=["
 					+ lockKey + "]");
 		}
-		return service.obtain(lockKey);
+		return service;
+	}
+
+	/**
+	 * {@link MultiLock} holding a single {@link DistributedLock}.
+	 */
+	private static class SingleKeyMultiLock implements MultiLock {
+
+		private final DistributedLock lock;
+
+		SingleKeyMultiLock(DistributedLock lock) {
+			this.lock = lock;
+		}
+
+		@Override
+		public List<String> getLockKeys() {
+			return Collections.singletonList(lock.getLockKey());
+		}
+
+		@Override
+		public void unlock() {
+			lock.unlock();
+		}
+
+	}
+
+	/**
+	 * {@link MultiLock} releasing its parts in reverse acquisition order.
+	 */
+	private static class CompositeMultiLock implements MultiLock {
+
+		private final List<String> lockKeys;
+
+		private final List<MultiLock> locks;
+
+		CompositeMultiLock(List<String> lockKeys, List<MultiLock> locks) {
+			this.lockKeys = Collections.unmodifiableList(lockKeys);
+			this.locks = locks;
+		}
+
+		@Override
+		public List<String> getLockKeys() {
+			return lockKeys;
+		}
+
+		@Override
+		public void unlock() {
+			RuntimeException failure = null;
+			for (int i = locks.size() - 1; i >= 0; i--) {
+				try {
+					locks.get(i).unlock();
+				}
+				catch (RuntimeException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
 	}
 
 }
@@ -15,29 +15,41 @@
  */
 package org.springframework.cloud.cluster.lock.support;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
 import org.springframework.cloud.cluster.lock.LockService;
 import org.springframework.cloud.cluster.lock.LockServiceLocator;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 import org.springframework.util.PathMatcher;
 
 /**
  * Default implementation of a {@link LockServiceLocator} which uses a set of
  * {@link LockService}s where matching happens using a simple {@link PathMatcher}.
- * 
+ *
+ * <p>Mappings are compiled into a trie keyed by the literal leading path
+ * segments of each pattern, so a lookup only evaluates patterns whose
+ * literal prefix matches the lock key. Candidates are still evaluated in
+ * registration order, which keeps first-match-wins semantics. Resolved
+ * keys are kept in a bounded cache which is flushed when full and whenever
+ * a new mapping is added.
+ *
+ * <p>When created with {@link LockMetrics}, every mapped lock service is
+ * wrapped into an {@link InstrumentedLockService} recording statistics
+ * under its mapping pattern and keeping its asynchronous and multi key
+ * capabilities, and the fallback under {@link #FALLBACK_NAME},
+ * so the number of recorded statistics doesn't grow with lock keys.
+ *
  * @author Janne Valkealahti
  *
  */
 public class DefaultLockServiceLocator implements LockServiceLocator {
 
-	private final List<PathMapping> mappings = new CopyOnWriteArrayList<PathMapping>();
+	/**
+	 * Name of statistics recorded for the fallback lock service.
+	 */
+	public static final String FALLBACK_NAME = "fallback";
 
-	private final PathMatcher matcher = new AntPathMatcher();
+	private final PathMappings<LockService> mappings;
 
-	private final LockService fallback;
+	private final LockMetrics lockMetrics;
 
 	/**
 	 * Instantiates a new default lock service locator.
@@ -45,14 +57,25 @@ public class DefaultLockServiceLocator implements LockServiceLocator {
 	 * @param fallback the primary lock service
 	 */
 	public DefaultLockServiceLocator(LockService fallback) {
+		this(fallback, null);
+	}
+
+	/**
+	 * Instantiates a new default lock service locator recording
+	 * statistics of located lock services per mapping pattern.
+	 *
+	 * @param fallback the primary lock service
+	 * @param lockMetrics the lock metrics, {@code null} disables recording
+	 */
+	public DefaultLockServiceLocator(LockService fallback, LockMetrics lockMetrics) {
 		Assert.notNull(fallback, "Fallback lock service must be set");
-		this.fallback = fallback;
+		this.lockMetrics = lockMetrics;
+		this.mappings = new PathMappings<LockService>(instrument(fallback, FALLBACK_NAME));
 	}
 
 	@Override
 	public LockService locate(String lockKey) {
-		LockService match = match(lockKey);
-		return match != null ? match : fallback;
+		return mappings.locate(lockKey);
 	}
 
 	/**
@@ -62,38 +85,28 @@ public class DefaultLockServiceLocator implements LockServiceLocator {
 	 * @param lockService the lock service
 	 */
 	public void addMapping(String path, LockService lockService) {
+		Assert.notNull(path, "Path must not be null");
 		Assert.notNull(lockService, "Lock service must not be null");
-		mappings.add(new PathMapping(path, lockService));
+		mappings.addMapping(path, instrument(lockService, path));
 	}
 
-	private LockService match(String path) {
-		for (PathMapping m : mappings) {
-			if (matcher.match(m.getPath(), path)) {
-				return m.getLockService();
-			}
-		}
-		return null;
+	/**
+	 * Sets the maximum number of resolved lock keys to cache. Cache is
+	 * flushed once this limit is reached. Setting the limit to zero
+	 * disables caching.
+	 *
+	 * @param cacheLimit the cache limit
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		mappings.setCacheLimit(cacheLimit);
 	}
 
-	private static class PathMapping {
-
-		private String path;
-
-		private LockService lockService;
-
-		public PathMapping(String path, LockService lockService) {
-			this.path = path;
-			this.lockService = lockService;
-		}
-
-		public String getPath() {
-			return path;
-		}
-
-		public LockService getLockService() {
-			return lockService;
-		}
+	private LockService instrument(LockService lockService, String name) {
+		return lockMetrics != null ? InstrumentedLockService.instrument(lockService, name, lockMetrics) : lockService;
+	}
 
+	private LockService match(String path) {
+		return mappings.match(path);
 	}
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import org.springframework.cloud.cluster.lock.ReadWriteLockService;
+import org.springframework.cloud.cluster.lock.ReadWriteLockServiceLocator;
+import org.springframework.util.Assert;
+
+/**
+ * Default implementation of a {@link ReadWriteLockServiceLocator} using
+ * the same path based mappings as {@link DefaultLockServiceLocator}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class DefaultReadWriteLockServiceLocator implements ReadWriteLockServiceLocator {
+
+	private final PathMappings<ReadWriteLockService> mappings;
+
+	/**
+	 * Instantiates a new default read/write lock service locator.
+	 *
+	 * @param fallback the primary read/write lock service
+	 */
+	public DefaultReadWriteLockServiceLocator(ReadWriteLockService fallback) {
+		Assert.notNull(fallback, "Fallback lock service must be set");
+		this.mappings = new PathMappings<ReadWriteLockService>(fallback);
+	}
+
+	@Override
+	public ReadWriteLockService locate(String lockKey) {
+		return mappings.locate(lockKey);
+	}
+
+	/**
+	 * Adds a mapping path for read/write lock service.
+	 *
+	 * @param path the path
+	 * @param lockService the read/write lock service
+	 */
+	public void addMapping(String path, ReadWriteLockService lockService) {
+		Assert.notNull(path, "Path must not be null");
+		Assert.notNull(lockService, "Lock service must not be null");
+		mappings.addMapping(path, lockService);
+	}
+
+	/**
+	 * Sets the maximum number of resolved lock keys to cache.
+	 *
+	 * @param cacheLimit the cache limit
+	 * @see DefaultLockServiceLocator#setCacheLimit(int)
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		mappings.setCacheLimit(cacheLimit);
+	}
+
+}
@@ -23,7 +23,10 @@ import org.springframework.cloud.cluster.lock.DistributedLock;
 import org.springframework.util.Assert;
 
 /**
- * {@link DistributedLock} which simply delegates to a {@link Lock}.
+ * {@link DistributedLock} which simply delegates to a {@link Lock}. Use
+ * {@link FencedDelegatingDistributedLock} to keep fencing tokens of a
+ * {@link org.springframework.cloud.cluster.lock.FencedDistributedLock}
+ * visible.
  * 
  * @author Janne Valkealahti
  *
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * {@link AsyncDistributedLock} adapting a blocking {@link DistributedLock}
+ * by running acquisitions on an {@link Executor}.
+ *
+ * <p>Because plain locks are owned by the thread which acquired them,
+ * the executor thread stays assigned to an acquisition until it is
+ * released via {@link #unlockAsync()}. This adapter is a fallback for
+ * backends without native asynchronous support and does not reduce
+ * the number of threads needed to hold locks. Timeouts of acquisitions
+ * count from the request, so time spent queued in a bounded executor
+ * counts against them.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ExecutorAsyncDistributedLock extends AbstractDistributedLock implements AsyncDistributedLock {
+
+	private final DistributedLock lock;
+
+	private final Executor executor;
+
+	private final Deque<Acquisition> acquisitions = new ConcurrentLinkedDeque<Acquisition>();
+
+	/**
+	 * Instantiates a new executor async distributed lock.
+	 *
+	 * @param lock the lock to adapt
+	 * @param executor the executor running acquisitions
+	 */
+	public ExecutorAsyncDistributedLock(DistributedLock lock, Executor executor) {
+		super(lock != null ? lock.getLockKey() : null);
+		Assert.notNull(lock, "Lock must be set");
+		Assert.notNull(executor, "Executor must be set");
+		this.lock = lock;
+		this.executor = executor;
+	}
+
+	@Override
+	public void lock() {
+		lock.lock();
+	}
+
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		lock.lockInterruptibly();
+	}
+
+	@Override
+	public boolean tryLock() {
+		return lock.tryLock();
+	}
+
+	@Override
+	public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+		return lock.tryLock(time, unit);
+	}
+
+	@Override
+	public void unlock() {
+		lock.unlock();
+	}
+
+	@Override
+	public Condition newCondition() {
+		return lock.newCondition();
+	}
+
+	@Override
+	public ListenableFuture<Void> lockAsync() {
+		SettableListenableFuture<Void> future = new SettableListenableFuture<Void>();
+		executor.execute(new Acquisition(future, -1));
+		return future;
+	}
+
+	@Override
+	public ListenableFuture<Boolean> tryLockAsync(long time, TimeUnit unit) {
+		SettableListenableFuture<Boolean> future = new SettableListenableFuture<Boolean>();
+		executor.execute(new Acquisition(future, unit.toNanos(time)));
+		return future;
+	}
+
+	@Override
+	public ListenableFuture<Void> unlockAsync() {
+		Acquisition acquisition = acquisitions.poll();
+		if (acquisition == null) {
+			SettableListenableFuture<Void> future = new SettableListenableFuture<Void>();
+			future.setException(new IllegalMonitorStateException("Lock [" + getLockKey()
+					+ "] is not held asynchronously"));
+			return future;
+		}
+		acquisition.releaseRequested.countDown();
+		return acquisition.released;
+	}
+
+	/**
+	 * Acquires the lock on an executor thread and keeps that
+	 * thread until release is requested.
+	 */
+	private class Acquisition implements Runnable {
+
+		private final SettableListenableFuture<?> future;
+
+		private final long timeout;
+
+		private final long deadline;
+
+		private final CountDownLatch releaseRequested = new CountDownLatch(1);
+
+		private final SettableListenableFuture<Void> released = new SettableListenableFuture<Void>();
+
+		Acquisition(SettableListenableFuture<?> future, long timeout) {
+			this.future = future;
+			this.timeout = timeout;
+			this.deadline = System.nanoTime() + Math.max(timeout, 0);
+		}
+
+		@Override
+		public void run() {
+			if (future.isCancelled()) {
+				return;
+			}
+			try {
+				if (timeout < 0) {
+					lock.lockInterruptibly();
+				}
+				else if (!lock.tryLock(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS)) {
+					complete(Boolean.FALSE);
+					return;
+				}
+			}
+			catch (InterruptedException e) {
+				future.setException(e);
+				return;
+			}
+			catch (RuntimeException e) {
+				future.setException(e);
+				return;
+			}
+			acquisitions.push(this);
+			if (!complete(timeout < 0 ? null : Boolean.TRUE)) {
+				acquisitions.remove(this);
+				releaseRequested.countDown();
+			}
+			boolean interrupted = false;
+			while (releaseRequested.getCount() > 0) {
+				try {
+					releaseRequested.await();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			try {
+				lock.unlock();
+				released.set(null);
+			}
+			catch (RuntimeException e) {
+				released.setException(e);
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private boolean complete(Object value) {
+			return ((SettableListenableFuture<Object>) future).set(value);
+		}
+
+	}
+
+}
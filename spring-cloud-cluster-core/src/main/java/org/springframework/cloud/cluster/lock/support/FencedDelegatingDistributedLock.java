@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+
+/**
+ * {@link DelegatingDistributedLock} for a delegate issuing fencing tokens.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class FencedDelegatingDistributedLock extends DelegatingDistributedLock implements FencedDistributedLock {
+
+	private final FencedDistributedLock lock;
+
+	/**
+	 * Instantiates a new fenced delegating distributed lock.
+	 *
+	 * @param lockKey the locking key
+	 * @param lock the fenced lock
+	 */
+	public FencedDelegatingDistributedLock(String lockKey, FencedDistributedLock lock) {
+		super(lockKey, lock);
+		this.lock = lock;
+	}
+
+	@Override
+	public long getFencingToken() {
+		return lock.getFencingToken();
+	}
+
+}
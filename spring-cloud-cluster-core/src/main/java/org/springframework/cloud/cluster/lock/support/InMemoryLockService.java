@@ -0,0 +1,235 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockService} implementation keeping locks within the JVM, meant
+ * for single node deployments, tests and as a baseline for benchmarking
+ * distributed implementations.
+ *
+ * <p>Every lock key has its own {@link ReentrantLock}, so unrelated keys
+ * never contend. Locks are kept in a fixed number of stripes, each guarding
+ * its share of keys only while a lock is looked up or created. Entries are
+ * weakly referenced and are discarded once a lock is neither held nor
+ * referenced by any {@link DistributedLock}, which keeps the table bounded
+ * by the number of locks actually in use.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class InMemoryLockService implements LockService {
+
+	private static final int DEFAULT_STRIPES = 16;
+
+	private final Stripe[] stripes;
+
+	private final int mask;
+
+	/**
+	 * Instantiates a new in-memory lock service.
+	 */
+	public InMemoryLockService() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Instantiates a new in-memory lock service.
+	 *
+	 * @param stripes the number of stripes, rounded up to a power of two
+	 */
+	public InMemoryLockService(int stripes) {
+		Assert.isTrue(stripes > 0, "Stripes must be positive");
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) {
+			size <<= 1;
+		}
+		this.stripes = new Stripe[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.mask = size - 1;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		Assert.notNull(lockKey, "Lock key must be set");
+		int hash = lockKey.hashCode();
+		hash ^= (hash >>> 16);
+		return new InMemoryLock(lockKey, stripes[hash & mask].get(lockKey));
+	}
+
+	/**
+	 * Gets the number of lock entries currently in the table.
+	 *
+	 * @return the number of lock entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Part of the lock table with its own monitor and reference queue.
+	 */
+	private static class Stripe {
+
+		private final Map<String, LockReference> locks = new HashMap<String, LockReference>();
+
+		private final ReferenceQueue<KeyLock> queue = new ReferenceQueue<KeyLock>();
+
+		/**
+		 * Gets or creates the lock of a key. The lock is returned strongly
+		 * referenced, so it can't be discarded before the caller holds on
+		 * to it.
+		 */
+		synchronized KeyLock get(String lockKey) {
+			expunge();
+			LockReference reference = locks.get(lockKey);
+			KeyLock lock = reference != null ? reference.get() : null;
+			if (lock == null) {
+				lock = new KeyLock();
+				lock.reference = new LockReference(lockKey, lock, queue);
+				locks.put(lockKey, lock.reference);
+			}
+			return lock;
+		}
+
+		synchronized int size() {
+			expunge();
+			return locks.size();
+		}
+
+		private void expunge() {
+			LockReference reference;
+			while ((reference = (LockReference) queue.poll()) != null) {
+				if (locks.get(reference.lockKey) == reference) {
+					locks.remove(reference.lockKey);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Lock of a key knowing its table entry.
+	 */
+	@SuppressWarnings("serial")
+	private static class KeyLock extends ReentrantLock {
+
+		private LockReference reference;
+
+	}
+
+	/**
+	 * Weak table entry. While a lock is held, the entry also keeps a strong
+	 * reference so that a held lock is never discarded. The pin is only
+	 * written by the thread holding the lock, set after acquiring and
+	 * cleared before releasing, so that it can't overwrite the pin of the
+	 * next holder.
+	 */
+	private static class LockReference extends WeakReference<KeyLock> {
+
+		private final String lockKey;
+
+		private volatile KeyLock pinned;
+
+		LockReference(String lockKey, KeyLock lock, ReferenceQueue<KeyLock> queue) {
+			super(lock, queue);
+			this.lockKey = lockKey;
+		}
+
+	}
+
+	/**
+	 * {@link DistributedLock} holding its {@link KeyLock} strongly.
+	 */
+	private static class InMemoryLock extends AbstractDistributedLock {
+
+		private final KeyLock lock;
+
+		InMemoryLock(String lockKey, KeyLock lock) {
+			super(lockKey);
+			this.lock = lock;
+		}
+
+		@Override
+		public void lock() {
+			lock.lock();
+			acquired();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			lock.lockInterruptibly();
+			acquired();
+		}
+
+		@Override
+		public boolean tryLock() {
+			if (lock.tryLock()) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			if (lock.tryLock(time, unit)) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void unlock() {
+			if (lock.getHoldCount() == 1) {
+				// this lock instance keeps the lock reachable until released
+				lock.reference.pinned = null;
+			}
+			lock.unlock();
+		}
+
+		@Override
+		public Condition newCondition() {
+			return lock.newCondition();
+		}
+
+		private void acquired() {
+			if (lock.getHoldCount() == 1) {
+				lock.reference.pinned = lock;
+			}
+		}
+
+	}
+
+}
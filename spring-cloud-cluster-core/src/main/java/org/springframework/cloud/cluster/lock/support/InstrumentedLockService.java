@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.AsyncLockService;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.MultiLock;
+import org.springframework.cloud.cluster.lock.MultiLockService;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * {@link LockService} decorator recording acquire times, hold times,
+ * {@code tryLock} failures and current waiters of obtained locks into
+ * {@link LockStatistics} of a single name. All locks obtained from this
+ * service share the same statistics regardless of their lock key.
+ *
+ * <p>Hold time is measured from the outermost acquisition of a lock key
+ * by a thread to the matching release, whichever lock instances of the
+ * key were used. Asynchronous holds are measured per lock instance, and
+ * locks acquired together by a {@link MultiLockService} count as a single
+ * hold. Acquire and hold times are also checked against thresholds of
+ * {@link LockDiagnostics} of the metrics.
+ *
+ * <p>Use {@link #instrument(LockService, String, LockMetrics)} to keep
+ * asynchronous, multi key and fencing capabilities of the delegate
+ * service and its locks visible to callers like
+ * {@link DefaultLockRegistry}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class InstrumentedLockService implements LockService {
+
+	private final LockService lockService;
+
+	private final LockStatistics statistics;
+
+	private final LockDiagnostics diagnostics;
+
+	private final ConcurrentMap<HoldKey, Hold> holds = new ConcurrentHashMap<HoldKey, Hold>();
+
+	/**
+	 * Instantiates a new instrumented lock service.
+	 *
+	 * @param lockService the delegate lock service
+	 * @param name the name of statistics to record into
+	 * @param lockMetrics the lock metrics
+	 * @see #instrument(LockService, String, LockMetrics)
+	 */
+	public InstrumentedLockService(LockService lockService, String name, LockMetrics lockMetrics) {
+		Assert.notNull(lockService, "Lock service must be set");
+		Assert.notNull(lockMetrics, "Lock metrics must be set");
+		this.lockService = lockService;
+		this.statistics = lockMetrics.getStatistics(name);
+		this.diagnostics = lockMetrics.getDiagnostics();
+	}
+
+	/**
+	 * Wraps a lock service into an instrumented lock service which is an
+	 * {@link AsyncLockService} and a {@link MultiLockService} if the delegate
+	 * is one. Obtained locks are {@link AsyncDistributedLock}s and
+	 * {@link FencedDistributedLock}s if the delegate locks are.
+	 *
+	 * @param lockService the delegate lock service
+	 * @param name the name of statistics to record into
+	 * @param lockMetrics the lock metrics
+	 * @return the instrumented lock service
+	 */
+	public static InstrumentedLockService instrument(LockService lockService, String name, LockMetrics lockMetrics) {
+		if (lockService instanceof AsyncLockService) {
+			if (lockService instanceof MultiLockService) {
+				return new InstrumentedAsyncMultiLockService(lockService, name, lockMetrics);
+			}
+			return new InstrumentedAsyncLockService(lockService, name, lockMetrics);
+		}
+		if (lockService instanceof MultiLockService) {
+			return new InstrumentedMultiLockService(lockService, name, lockMetrics);
+		}
+		return new InstrumentedLockService(lockService, name, lockMetrics);
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		DistributedLock lock = lockService.obtain(lockKey);
+		if (lock instanceof AsyncDistributedLock) {
+			AsyncDistributedLock asyncLock = (AsyncDistributedLock) lock;
+			return lock instanceof FencedDistributedLock ? new FencedAsyncInstrumentedLock(lockKey, asyncLock)
+					: new AsyncInstrumentedLock(lockKey, asyncLock);
+		}
+		return lock instanceof FencedDistributedLock ? new FencedInstrumentedLock(lockKey, lock)
+				: new InstrumentedLock(lockKey, lock);
+	}
+
+	/**
+	 * Gets the delegate lock service.
+	 *
+	 * @return the delegate lock service
+	 */
+	public LockService getLockService() {
+		return lockService;
+	}
+
+	/**
+	 * Tries to acquire locks of all keys from a delegate
+	 * {@link MultiLockService}, recording a single acquisition.
+	 */
+	MultiLock tryLockAllInstrumented(List<String> lockKeys, long time, TimeUnit unit)
+			throws InterruptedException {
+		String lockKey = lockKeys.toString();
+		long start = System.nanoTime();
+		statistics.waitStarted();
+		LockDiagnostics.Activity wait = diagnostics.waiting(statistics.getName(), lockKey);
+		MultiLock lock = null;
+		try {
+			lock = ((MultiLockService) lockService).tryLockAll(lockKeys, time, unit);
+		}
+		finally {
+			long now = System.nanoTime();
+			statistics.waitFinished(now - start, true, lock != null);
+			diagnostics.acquired(wait, statistics.getName(), lockKey, now - start);
+		}
+		return lock != null ? new InstrumentedMultiLock(lock, hold(lockKey, Thread.currentThread())) : null;
+	}
+
+	private Hold hold(String lockKey, Thread thread) {
+		long now = System.nanoTime();
+		return new Hold(now, diagnostics.holding(statistics.getName(), lockKey, thread, now));
+	}
+
+	private void held(String lockKey) {
+		HoldKey key = new HoldKey(lockKey, Thread.currentThread());
+		Hold hold = holds.get(key);
+		if (hold == null) {
+			holds.put(key, hold(lockKey, key.thread));
+		}
+		else {
+			hold.count++;
+		}
+	}
+
+	private void releasing(String lockKey) {
+		Hold hold = holds.get(new HoldKey(lockKey, Thread.currentThread()));
+		if (hold != null && hold.count == 1) {
+			diagnostics.releasing(hold.activity);
+		}
+	}
+
+	private void unheld(String lockKey) {
+		HoldKey key = new HoldKey(lockKey, Thread.currentThread());
+		Hold hold = holds.get(key);
+		if (hold != null && --hold.count == 0) {
+			holds.remove(key);
+			released(lockKey, hold);
+		}
+	}
+
+	private void released(String lockKey, Hold hold) {
+		long held = System.nanoTime() - hold.acquiredAt;
+		statistics.released(held);
+		diagnostics.released(hold.activity, statistics.getName(), lockKey, held);
+	}
+
+	/**
+	 * Lock key held by a thread.
+	 */
+	private static class HoldKey {
+
+		private final String lockKey;
+
+		private final Thread thread;
+
+		HoldKey(String lockKey, Thread thread) {
+			this.lockKey = lockKey;
+			this.thread = thread;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof HoldKey)) {
+				return false;
+			}
+			HoldKey other = (HoldKey) obj;
+			return thread == other.thread && lockKey.equals(other.lockKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * lockKey.hashCode() + System.identityHashCode(thread);
+		}
+
+	}
+
+	/**
+	 * Hold of a lock key by a thread, only modified by that thread.
+	 */
+	private static class Hold {
+
+		private final long acquiredAt;
+
+		private final LockDiagnostics.Activity activity;
+
+		private int count = 1;
+
+		Hold(long acquiredAt, LockDiagnostics.Activity activity) {
+			this.acquiredAt = acquiredAt;
+			this.activity = activity;
+		}
+
+	}
+
+	/**
+	 * {@link InstrumentedLockService} of an {@link AsyncLockService}.
+	 */
+	private static class InstrumentedAsyncLockService extends InstrumentedLockService implements AsyncLockService {
+
+		InstrumentedAsyncLockService(LockService lockService, String name, LockMetrics lockMetrics) {
+			super(lockService, name, lockMetrics);
+		}
+
+		@Override
+		public AsyncDistributedLock obtain(String lockKey) {
+			return (AsyncDistributedLock) super.obtain(lockKey);
+		}
+
+	}
+
+	/**
+	 * {@link InstrumentedLockService} of a {@link MultiLockService}.
+	 */
+	private static class InstrumentedMultiLockService extends InstrumentedLockService implements MultiLockService {
+
+		InstrumentedMultiLockService(LockService lockService, String name, LockMetrics lockMetrics) {
+			super(lockService, name, lockMetrics);
+		}
+
+		@Override
+		public MultiLock tryLockAll(List<String> lockKeys, long time, TimeUnit unit) throws InterruptedException {
+			return tryLockAllInstrumented(lockKeys, time, unit);
+		}
+
+	}
+
+	/**
+	 * {@link InstrumentedLockService} of a service which is both an
+	 * {@link AsyncLockService} and a {@link MultiLockService}.
+	 */
+	private static class InstrumentedAsyncMultiLockService extends InstrumentedAsyncLockService
+			implements MultiLockService {
+
+		InstrumentedAsyncMultiLockService(LockService lockService, String name, LockMetrics lockMetrics) {
+			super(lockService, name, lockMetrics);
+		}
+
+		@Override
+		public MultiLock tryLockAll(List<String> lockKeys, long time, TimeUnit unit) throws InterruptedException {
+			return tryLockAllInstrumented(lockKeys, time, unit);
+		}
+
+	}
+
+	/**
+	 * {@link MultiLock} recording its hold time when released.
+	 */
+	private class InstrumentedMultiLock implements MultiLock {
+
+		private final MultiLock lock;
+
+		private final Hold hold;
+
+		InstrumentedMultiLock(MultiLock lock, Hold hold) {
+			this.lock = lock;
+			this.hold = hold;
+		}
+
+		@Override
+		public List<String> getLockKeys() {
+			return lock.getLockKeys();
+		}
+
+		@Override
+		public void unlock() {
+			diagnostics.releasing(hold.activity);
+			try {
+				lock.unlock();
+			}
+			finally {
+				released(lock.getLockKeys().toString(), hold);
+			}
+		}
+
+	}
+
+	/**
+	 * {@link DistributedLock} recording its usage.
+	 */
+	private class InstrumentedLock extends DelegatingDistributedLock {
+
+		InstrumentedLock(String lockKey, DistributedLock lock) {
+			super(lockKey, lock);
+		}
+
+		@Override
+		public void lock() {
+			long start = System.nanoTime();
+			statistics.waitStarted();
+			LockDiagnostics.Activity wait = diagnostics.waiting(statistics.getName(), getLockKey());
+			boolean acquired = false;
+			try {
+				super.lock();
+				acquired = true;
+			}
+			finally {
+				finished(start, wait, false, acquired);
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			long start = System.nanoTime();
+			statistics.waitStarted();
+			LockDiagnostics.Activity wait = diagnostics.waiting(statistics.getName(), getLockKey());
+			boolean acquired = false;
+			try {
+				super.lockInterruptibly();
+				acquired = true;
+			}
+			finally {
+				finished(start, wait, false, acquired);
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			long start = System.nanoTime();
+			statistics.waitStarted();
+			LockDiagnostics.Activity wait = diagnostics.waiting(statistics.getName(), getLockKey());
+			boolean acquired = false;
+			try {
+				acquired = super.tryLock();
+			}
+			finally {
+				finished(start, wait, true, acquired);
+			}
+			return acquired;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long start = System.nanoTime();
+			statistics.waitStarted();
+			LockDiagnostics.Activity wait = diagnostics.waiting(statistics.getName(), getLockKey());
+			boolean acquired = false;
+			try {
+				acquired = super.tryLock(time, unit);
+			}
+			finally {
+				finished(start, wait, true, acquired);
+			}
+			return acquired;
+		}
+
+		@Override
+		public void unlock() {
+			releasing(getLockKey());
+			super.unlock();
+			unheld(getLockKey());
+		}
+
+		private void finished(long start, LockDiagnostics.Activity wait, boolean tryLock, boolean acquired) {
+			long now = System.nanoTime();
+			statistics.waitFinished(now - start, tryLock, acquired);
+			diagnostics.acquired(wait, statistics.getName(), getLockKey(), now - start);
+			if (acquired) {
+				held(getLockKey());
+			}
+		}
+
+	}
+
+	/**
+	 * {@link InstrumentedLock} of a {@link FencedDistributedLock}.
+	 */
+	private class FencedInstrumentedLock extends InstrumentedLock implements FencedDistributedLock {
+
+		private final FencedDistributedLock lock;
+
+		FencedInstrumentedLock(String lockKey, DistributedLock lock) {
+			super(lockKey, lock);
+			this.lock = (FencedDistributedLock) lock;
+		}
+
+		@Override
+		public long getFencingToken() {
+			return lock.getFencingToken();
+		}
+
+	}
+
+	/**
+	 * {@link InstrumentedLock} of an {@link AsyncDistributedLock}. As
+	 * asynchronous holds are not owned by a thread, their acquisition
+	 * times are kept per lock instance in the order the delegate
+	 * releases them.
+	 */
+	private class AsyncInstrumentedLock extends InstrumentedLock implements AsyncDistributedLock {
+
+		private final AsyncDistributedLock lock;
+
+		private final Deque<Hold> asyncHolds = new ConcurrentLinkedDeque<Hold>();
+
+		AsyncInstrumentedLock(String lockKey, AsyncDistributedLock lock) {
+			super(lockKey, lock);
+			this.lock = lock;
+		}
+
+		@Override
+		public ListenableFuture<Void> lockAsync() {
+			final long start = System.nanoTime();
+			statistics.waitStarted();
+			ListenableFuture<Void> future = lock.lockAsync();
+			// registered first, so recorded before callbacks of the caller run
+			future.addCallback(new ListenableFutureCallback<Void>() {
+
+				@Override
+				public void onSuccess(Void result) {
+					asyncFinished(start, false, true);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					asyncFinished(start, false, false);
+				}
+			});
+			return future;
+		}
+
+		@Override
+		public ListenableFuture<Boolean> tryLockAsync(long time, TimeUnit unit) {
+			final long start = System.nanoTime();
+			statistics.waitStarted();
+			ListenableFuture<Boolean> future = lock.tryLockAsync(time, unit);
+			future.addCallback(new ListenableFutureCallback<Boolean>() {
+
+				@Override
+				public void onSuccess(Boolean result) {
+					asyncFinished(start, true, Boolean.TRUE.equals(result));
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					asyncFinished(start, true, false);
+				}
+			});
+			return future;
+		}
+
+		@Override
+		public ListenableFuture<Void> unlockAsync() {
+			final Hold hold = asyncHolds.poll();
+			ListenableFuture<Void> future = lock.unlockAsync();
+			if (hold != null) {
+				future.addCallback(new ListenableFutureCallback<Void>() {
+
+					@Override
+					public void onSuccess(Void result) {
+						released(getLockKey(), hold);
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+					}
+				});
+			}
+			return future;
+		}
+
+		private void asyncFinished(long start, boolean tryLock, boolean acquired) {
+			long now = System.nanoTime();
+			statistics.waitFinished(now - start, tryLock, acquired);
+			diagnostics.acquired(statistics.getName(), getLockKey(), now - start);
+			if (acquired) {
+				// not owned by a thread, so tracked without a holder and
+				// released most recent first like nested holds of a delegate
+				asyncHolds.push(hold(getLockKey(), null));
+			}
+		}
+
+	}
+
+	/**
+	 * {@link AsyncInstrumentedLock} of a {@link FencedDistributedLock}.
+	 */
+	private class FencedAsyncInstrumentedLock extends AsyncInstrumentedLock implements FencedDistributedLock {
+
+		private final FencedDistributedLock lock;
+
+		FencedAsyncInstrumentedLock(String lockKey, AsyncDistributedLock lock) {
+			super(lockKey, lock);
+			this.lock = (FencedDistributedLock) lock;
+		}
+
+		@Override
+		public long getFencingToken() {
+			return lock.getFencingToken();
+		}
+
+	}
+
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Detector of slow lock acquisitions and long lock holds, recorded by
+ * {@link InstrumentedLockService}. Acquisitions waiting longer than
+ * slow acquire threshold and holds longer than long hold threshold are
+ * kept as {@link SlowLockEvent}s in a fixed size ring buffer, replacing
+ * the oldest events once full.
+ *
+ * <p>Both thresholds are disabled by default. While a threshold is
+ * enabled, ongoing waits and holds are tracked along with the waiting
+ * and holding threads. Waits and holds are checked when they end, and
+ * {@link #check()} additionally reports waits and holds which are still
+ * going on past a threshold, so that locks which are never released are
+ * noticed too. Checks run whenever events are read by an endpoint, and
+ * periodically if a check interval is set.
+ *
+ * <p>A slow acquisition is reported with the stack trace of the thread
+ * holding the lock, sampled when the holder releases the lock or by a
+ * check while it still holds it. Stack traces are sampled at most once
+ * per stack sample interval, later events within the interval are
+ * recorded without a stack trace.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockDiagnostics implements DisposableBean {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final long DEFAULT_STACK_SAMPLE_INTERVAL = 1000;
+
+	private final AtomicReferenceArray<SlowLockEvent> events;
+
+	private final AtomicLong recorded = new AtomicLong();
+
+	private final AtomicLong nextStackSample = new AtomicLong(Long.MIN_VALUE);
+
+	private final Set<Activity> waits = Collections.newSetFromMap(new ConcurrentHashMap<Activity, Boolean>());
+
+	private final Set<Activity> holds = Collections.newSetFromMap(new ConcurrentHashMap<Activity, Boolean>());
+
+	private volatile long slowAcquireThreshold;
+
+	private volatile long longHoldThreshold;
+
+	private volatile long stackSampleInterval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_STACK_SAMPLE_INTERVAL);
+
+	private ScheduledExecutorService checker;
+
+	/**
+	 * Instantiates a new lock diagnostics keeping
+	 * {@link #DEFAULT_CAPACITY} events.
+	 */
+	public LockDiagnostics() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Instantiates a new lock diagnostics.
+	 *
+	 * @param capacity the number of kept events
+	 */
+	public LockDiagnostics(int capacity) {
+		Assert.isTrue(capacity > 0, "Capacity must be positive");
+		this.events = new AtomicReferenceArray<SlowLockEvent>(capacity);
+	}
+
+	/**
+	 * Sets the threshold in milliseconds for acquisitions to be
+	 * recorded. Defaults to {@code 0} meaning that acquisitions are
+	 * not checked.
+	 *
+	 * @param slowAcquireThreshold the slow acquire threshold
+	 */
+	public void setSlowAcquireThreshold(long slowAcquireThreshold) {
+		Assert.isTrue(slowAcquireThreshold >= 0, "Slow acquire threshold must not be negative");
+		this.slowAcquireThreshold = TimeUnit.MILLISECONDS.toNanos(slowAcquireThreshold);
+	}
+
+	/**
+	 * Sets the threshold in milliseconds for holds to be recorded.
+	 * Defaults to {@code 0} meaning that holds are not checked.
+	 *
+	 * @param longHoldThreshold the long hold threshold
+	 */
+	public void setLongHoldThreshold(long longHoldThreshold) {
+		Assert.isTrue(longHoldThreshold >= 0, "Long hold threshold must not be negative");
+		this.longHoldThreshold = TimeUnit.MILLISECONDS.toNanos(longHoldThreshold);
+	}
+
+	/**
+	 * Sets the minimum interval in milliseconds between sampled stack
+	 * traces. Defaults to one second. Next event is sampled regardless
+	 * of previous interval.
+	 *
+	 * @param stackSampleInterval the stack sample interval
+	 */
+	public void setStackSampleInterval(long stackSampleInterval) {
+		Assert.isTrue(stackSampleInterval >= 0, "Stack sample interval must not be negative");
+		this.stackSampleInterval = TimeUnit.MILLISECONDS.toNanos(stackSampleInterval);
+		this.nextStackSample.set(Long.MIN_VALUE);
+	}
+
+	/**
+	 * Sets the interval in milliseconds between periodic checks of
+	 * ongoing waits and holds, run on a daemon thread. Defaults to
+	 * {@code 0} meaning that checks only run when {@link #check()} is
+	 * called.
+	 *
+	 * @param checkInterval the check interval
+	 */
+	public synchronized void setCheckInterval(long checkInterval) {
+		Assert.isTrue(checkInterval >= 0, "Check interval must not be negative");
+		stopChecker();
+		if (checkInterval > 0) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("lock-diagnostics-");
+			threadFactory.setDaemon(true);
+			checker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+			checker.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					check();
+				}
+			}, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void destroy() {
+		stopChecker();
+	}
+
+	/**
+	 * Gets kept events from oldest to newest.
+	 *
+	 * @return the slow lock events
+	 */
+	public List<SlowLockEvent> getEvents() {
+		int capacity = events.length();
+		long end = recorded.get();
+		List<SlowLockEvent> result = new ArrayList<SlowLockEvent>();
+		for (long i = Math.max(end - capacity, 0); i < end; i++) {
+			SlowLockEvent event = events.get((int) (i % capacity));
+			if (event != null) {
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the number of events recorded so far, including events
+	 * no longer kept.
+	 *
+	 * @return the number of recorded events
+	 */
+	public long getRecorded() {
+		return recorded.get();
+	}
+
+	/**
+	 * Discards all kept events.
+	 */
+	public void reset() {
+		for (int i = 0; i < events.length(); i++) {
+			events.set(i, null);
+		}
+	}
+
+	/**
+	 * Checks ongoing waits and holds against thresholds. A hold past long
+	 * hold threshold is recorded as {@link SlowLockEvent.Type#OVERDUE_HOLD}
+	 * and a wait past slow acquire threshold as
+	 * {@link SlowLockEvent.Type#SLOW_ACQUIRE}, each at most once.
+	 */
+	public void check() {
+		long now = System.nanoTime();
+		long holdThreshold = longHoldThreshold;
+		if (holdThreshold > 0) {
+			for (Activity hold : holds) {
+				if (!hold.reported && now - hold.startedAt > holdThreshold) {
+					hold.reported = true;
+					record(new SlowLockEvent(SlowLockEvent.Type.OVERDUE_HOLD, hold.name, hold.lockKey, hold.thread,
+							null, now - hold.startedAt, System.currentTimeMillis(), sampleStackTrace(hold.thread)));
+				}
+			}
+		}
+		long acquireThreshold = slowAcquireThreshold;
+		if (acquireThreshold > 0) {
+			for (Activity wait : waits) {
+				if (!wait.reported && now - wait.startedAt > acquireThreshold) {
+					wait.reported = true;
+					Thread holder = wait.holder != null ? wait.holder : findHolder(wait);
+					StackTraceElement[] stackTrace = wait.holder != null ? wait.holderStackTrace
+							: sampleStackTrace(holder);
+					record(new SlowLockEvent(SlowLockEvent.Type.SLOW_ACQUIRE, wait.name, wait.lockKey, wait.thread,
+							holder, now - wait.startedAt, System.currentTimeMillis(), stackTrace));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts tracking a wait of the current thread, returning
+	 * {@code null} if acquisitions are not checked.
+	 */
+	Activity waiting(String name, String lockKey) {
+		if (slowAcquireThreshold == 0) {
+			return null;
+		}
+		Activity wait = new Activity(name, lockKey, Thread.currentThread(), System.nanoTime());
+		waits.add(wait);
+		return wait;
+	}
+
+	/**
+	 * Starts tracking a hold, returning {@code null} if neither holds nor
+	 * acquisitions are checked.
+	 *
+	 * @param holder the holding thread, {@code null} if the hold is not
+	 * owned by a thread
+	 */
+	Activity holding(String name, String lockKey, Thread holder, long acquiredAt) {
+		if (slowAcquireThreshold == 0 && longHoldThreshold == 0) {
+			return null;
+		}
+		Activity hold = new Activity(name, lockKey, holder, acquiredAt);
+		holds.add(hold);
+		return hold;
+	}
+
+	void acquired(String name, String lockKey, long nanos) {
+		acquired(null, name, lockKey, nanos);
+	}
+
+	void acquired(Activity wait, String name, String lockKey, long nanos) {
+		if (wait != null) {
+			waits.remove(wait);
+			if (wait.reported) {
+				return;
+			}
+		}
+		long threshold = slowAcquireThreshold;
+		if (threshold > 0 && nanos > threshold) {
+			Thread holder = wait != null ? wait.holder : null;
+			StackTraceElement[] stackTrace = wait != null ? wait.holderStackTrace : null;
+			record(new SlowLockEvent(SlowLockEvent.Type.SLOW_ACQUIRE, name, lockKey, Thread.currentThread(), holder,
+					nanos, System.currentTimeMillis(), stackTrace));
+		}
+	}
+
+	void released(String name, String lockKey, long nanos) {
+		released(null, name, lockKey, nanos);
+	}
+
+	void released(Activity hold, String name, String lockKey, long nanos) {
+		if (hold != null) {
+			holds.remove(hold);
+		}
+		Thread thread = Thread.currentThread();
+		long threshold = longHoldThreshold;
+		if (threshold > 0 && nanos > threshold) {
+			record(new SlowLockEvent(SlowLockEvent.Type.LONG_HOLD, name, lockKey, thread, null, nanos,
+					System.currentTimeMillis(), sampleStackTrace(thread)));
+		}
+	}
+
+	/**
+	 * Hands the stack trace of a holder about to release a lock over to
+	 * waits of the same lock which are already slow. Called before the
+	 * lock is released, so that waits can't end before.
+	 */
+	void releasing(Activity hold) {
+		long threshold = slowAcquireThreshold;
+		if (hold == null || hold.thread != Thread.currentThread() || threshold == 0 || waits.isEmpty()) {
+			return;
+		}
+		long now = System.nanoTime();
+		StackTraceElement[] stackTrace = null;
+		boolean sampled = false;
+		for (Activity wait : waits) {
+			if (wait.holder == null && !wait.reported && wait.sameLock(hold) && now - wait.startedAt > threshold) {
+				if (!sampled) {
+					stackTrace = sampleStackTrace(hold.thread);
+					sampled = true;
+				}
+				wait.holderStackTrace = stackTrace;
+				wait.holder = hold.thread;
+			}
+		}
+	}
+
+	private Thread findHolder(Activity wait) {
+		for (Activity hold : holds) {
+			if (hold.sameLock(wait)) {
+				return hold.thread;
+			}
+		}
+		return null;
+	}
+
+	private void record(SlowLockEvent event) {
+		long index = recorded.getAndIncrement();
+		events.set((int) (index % events.length()), event);
+	}
+
+	private StackTraceElement[] sampleStackTrace(Thread thread) {
+		if (thread == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		long next = nextStackSample.get();
+		if (next != Long.MIN_VALUE && now - next < 0) {
+			return null;
+		}
+		if (!nextStackSample.compareAndSet(next, now + stackSampleInterval)) {
+			return null;
+		}
+		StackTraceElement[] stackTrace = thread.getStackTrace();
+		int skipped = 0;
+		if (thread == Thread.currentThread()) {
+			// drop frames of thread and diagnostics internals
+			while (skipped < stackTrace.length && isInternal(stackTrace[skipped])) {
+				skipped++;
+			}
+		}
+		return Arrays.copyOfRange(stackTrace, skipped, stackTrace.length);
+	}
+
+	private static boolean isInternal(StackTraceElement element) {
+		return element.getClassName().equals(Thread.class.getName())
+				|| element.getClassName().startsWith(LockDiagnostics.class.getName());
+	}
+
+	private void stopChecker() {
+		if (checker != null) {
+			checker.shutdownNow();
+			checker = null;
+		}
+	}
+
+	/**
+	 * Ongoing wait or hold of a lock.
+	 */
+	static class Activity {
+
+		private final String name;
+
+		private final String lockKey;
+
+		private final Thread thread;
+
+		private final long startedAt;
+
+		private volatile boolean reported;
+
+		private volatile Thread holder;
+
+		private volatile StackTraceElement[] holderStackTrace;
+
+		Activity(String name, String lockKey, Thread thread, long startedAt) {
+			this.name = name;
+			this.lockKey = lockKey;
+			this.thread = thread;
+			this.startedAt = startedAt;
+		}
+
+		boolean sameLock(Activity other) {
+			return lockKey.equals(other.lockKey) && name.equals(other.name);
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+/**
+ * Registry of {@link LockStatistics} by name. Names are expected to be
+ * of bounded cardinality, like mapping patterns of a
+ * {@link DefaultLockServiceLocator}, rather than raw lock keys.
+ *
+ * <p>Slow acquisitions and long holds of individual lock keys are
+ * detected by {@link LockDiagnostics} shared by all statistics.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockMetrics implements DisposableBean {
+
+	private final ConcurrentMap<String, LockStatistics> statistics = new ConcurrentHashMap<String, LockStatistics>();
+
+	private final LockDiagnostics diagnostics;
+
+	/**
+	 * Instantiates a new lock metrics with default diagnostics.
+	 */
+	public LockMetrics() {
+		this(new LockDiagnostics());
+	}
+
+	/**
+	 * Instantiates a new lock metrics.
+	 *
+	 * @param diagnostics the lock diagnostics
+	 */
+	public LockMetrics(LockDiagnostics diagnostics) {
+		Assert.notNull(diagnostics, "Lock diagnostics must be set");
+		this.diagnostics = diagnostics;
+	}
+
+	/**
+	 * Gets statistics for given name, creating them if needed.
+	 *
+	 * @param name the statistics name
+	 * @return the lock statistics
+	 */
+	public LockStatistics getStatistics(String name) {
+		Assert.notNull(name, "Name must be set");
+		LockStatistics stats = statistics.get(name);
+		if (stats == null) {
+			stats = new LockStatistics(name);
+			LockStatistics existing = statistics.putIfAbsent(name, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Gets all known statistics.
+	 *
+	 * @return the lock statistics
+	 */
+	public Collection<LockStatistics> getStatistics() {
+		return Collections.unmodifiableCollection(statistics.values());
+	}
+
+	/**
+	 * Gets the lock diagnostics.
+	 *
+	 * @return the lock diagnostics
+	 */
+	public LockDiagnostics getDiagnostics() {
+		return diagnostics;
+	}
+
+	@Override
+	public void destroy() {
+		diagnostics.destroy();
+	}
+
+	/**
+	 * Clears all recorded statistics and diagnostics.
+	 */
+	public void reset() {
+		for (LockStatistics stats : statistics.values()) {
+			stats.reset();
+		}
+		diagnostics.reset();
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of locks sharing a name, recorded by
+ * {@link InstrumentedLockService}. Times are in nanoseconds.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class LockStatistics {
+
+	private final String name;
+
+	private final LatencyHistogram acquireTime = new LatencyHistogram();
+
+	private final LatencyHistogram holdTime = new LatencyHistogram();
+
+	private final AtomicLong tryLockAttempts = new AtomicLong();
+
+	private final AtomicLong tryLockFailures = new AtomicLong();
+
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	/**
+	 * Instantiates a new lock statistics.
+	 *
+	 * @param name the statistics name
+	 */
+	public LockStatistics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the statistics name.
+	 *
+	 * @return the statistics name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the histogram of times spent acquiring a lock, including
+	 * failed attempts with a timeout.
+	 *
+	 * @return the acquire time histogram
+	 */
+	public LatencyHistogram getAcquireTime() {
+		return acquireTime;
+	}
+
+	/**
+	 * Gets the histogram of times locks were held.
+	 *
+	 * @return the hold time histogram
+	 */
+	public LatencyHistogram getHoldTime() {
+		return holdTime;
+	}
+
+	/**
+	 * Gets the number of {@code tryLock} calls.
+	 *
+	 * @return the number of tryLock calls
+	 */
+	public long getTryLockAttempts() {
+		return tryLockAttempts.get();
+	}
+
+	/**
+	 * Gets the number of {@code tryLock} calls which didn't get the lock.
+	 *
+	 * @return the number of failed tryLock calls
+	 */
+	public long getTryLockFailures() {
+		return tryLockFailures.get();
+	}
+
+	/**
+	 * Gets the number of threads currently waiting for a lock.
+	 *
+	 * @return the number of waiting threads
+	 */
+	public int getWaiters() {
+		return waiters.get();
+	}
+
+	/**
+	 * Clears all recorded statistics except current waiters.
+	 */
+	public void reset() {
+		acquireTime.reset();
+		holdTime.reset();
+		tryLockAttempts.set(0);
+		tryLockFailures.set(0);
+	}
+
+	void waitStarted() {
+		waiters.incrementAndGet();
+	}
+
+	void waitFinished(long nanos, boolean tryLock, boolean acquired) {
+		waiters.decrementAndGet();
+		acquireTime.record(nanos);
+		if (tryLock) {
+			tryLockAttempts.incrementAndGet();
+			if (!acquired) {
+				tryLockFailures.incrementAndGet();
+			}
+		}
+	}
+
+	void released(long nanos) {
+		holdTime.record(nanos);
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Ant style path mappings resolving lock keys to bound targets, shared
+ * by the service locators in this package. See
+ * {@link DefaultLockServiceLocator} for the matching and caching rules.
+ *
+ * @author Janne Valkealahti
+ *
+ * @param <T> the type of mapped target
+ */
+class PathMappings<T> {
+
+	private static final String PATH_SEPARATOR = AntPathMatcher.DEFAULT_PATH_SEPARATOR;
+
+	private static final int DEFAULT_CACHE_LIMIT = 4096;
+
+	private final AntPathMatcher matcher = new AntPathMatcher(PATH_SEPARATOR);
+
+	private final T fallback;
+
+	private volatile MappingIndex index = new MappingIndex(Collections.<PathMapping<T>>emptyList());
+
+	private volatile int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+	/**
+	 * Instantiates new path mappings.
+	 *
+	 * @param fallback the target used when no mapping matches
+	 */
+	PathMappings(T fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Resolves a lock key to a mapped target or to the fallback.
+	 *
+	 * @param lockKey the lock key
+	 * @return the resolved target
+	 */
+	T locate(String lockKey) {
+		MappingIndex current = index;
+		T target = current.cache.get(lockKey);
+		if (target == null) {
+			T match = current.match(lockKey);
+			target = match != null ? match : fallback;
+			current.cache(lockKey, target, cacheLimit);
+		}
+		return target;
+	}
+
+	/**
+	 * Resolves a path against mappings without using the fallback or
+	 * the cache.
+	 *
+	 * @param path the path
+	 * @return the matched target or {@code null}
+	 */
+	T match(String path) {
+		return index.match(path);
+	}
+
+	synchronized void addMapping(String path, T target) {
+		List<PathMapping<T>> mappings = new ArrayList<PathMapping<T>>(index.mappings);
+		mappings.add(new PathMapping<T>(path, target, mappings.size()));
+		index = new MappingIndex(mappings);
+	}
+
+	void setCacheLimit(int cacheLimit) {
+		Assert.isTrue(cacheLimit >= 0, "Cache limit must not be negative");
+		this.cacheLimit = cacheLimit;
+		index.cache.clear();
+	}
+
+	private static String[] tokenize(String path) {
+		return StringUtils.tokenizeToStringArray(path, PATH_SEPARATOR, true, true);
+	}
+
+	private static boolean isLiteral(String token) {
+		return token.indexOf('*') == -1 && token.indexOf('?') == -1 && token.indexOf('{') == -1;
+	}
+
+	/**
+	 * Immutable compiled view of mappings together with a cache
+	 * of resolved keys. A new index is created for every added
+	 * mapping which also discards cached resolutions.
+	 */
+	private class MappingIndex {
+
+		private final List<PathMapping<T>> mappings;
+
+		private final Node<T> root = new Node<T>();
+
+		private final Map<String, T> cache = new ConcurrentHashMap<String, T>();
+
+		MappingIndex(List<PathMapping<T>> mappings) {
+			this.mappings = mappings;
+			for (PathMapping<T> mapping : mappings) {
+				String[] tokens = tokenize(mapping.getPath());
+				Node<T> node = root;
+				int depth = 0;
+				while (depth < tokens.length && isLiteral(tokens[depth])) {
+					node = node.child(tokens[depth++]);
+				}
+				if (depth == tokens.length) {
+					node.exact.add(mapping);
+				}
+				else {
+					node.wildcard.add(mapping);
+				}
+			}
+		}
+
+		T match(String path) {
+			if (mappings.isEmpty()) {
+				return null;
+			}
+			String[] tokens = tokenize(path);
+			List<PathMapping<T>> candidates = new ArrayList<PathMapping<T>>();
+			Node<T> node = root;
+			candidates.addAll(node.wildcard);
+			for (int i = 0; i < tokens.length && node != null; i++) {
+				node = node.children.get(tokens[i]);
+				if (node != null) {
+					candidates.addAll(node.wildcard);
+					if (i == tokens.length - 1) {
+						candidates.addAll(node.exact);
+					}
+				}
+			}
+			if (tokens.length == 0) {
+				candidates.addAll(root.exact);
+			}
+			if (candidates.size() > 1) {
+				Collections.sort(candidates);
+			}
+			for (PathMapping<T> m : candidates) {
+				if (matcher.match(m.getPath(), path)) {
+					return m.getTarget();
+				}
+			}
+			return null;
+		}
+
+		void cache(String lockKey, T target, int limit) {
+			if (limit > 0) {
+				if (cache.size() >= limit) {
+					cache.clear();
+				}
+				cache.put(lockKey, target);
+			}
+		}
+
+	}
+
+	/**
+	 * Trie node for a literal path segment. Patterns are attached to
+	 * the node where their literal prefix ends, either as exact
+	 * patterns without any wildcards or as wildcard patterns which
+	 * need to be evaluated for any key passing through this node.
+	 */
+	private static class Node<T> {
+
+		private final Map<String, Node<T>> children = new HashMap<String, Node<T>>();
+
+		private final List<PathMapping<T>> exact = new ArrayList<PathMapping<T>>();
+
+		private final List<PathMapping<T>> wildcard = new ArrayList<PathMapping<T>>();
+
+		Node<T> child(String token) {
+			Node<T> child = children.get(token);
+			if (child == null) {
+				child = new Node<T>();
+				children.put(token, child);
+			}
+			return child;
+		}
+
+	}
+
+	private static class PathMapping<T> implements Comparable<PathMapping<T>> {
+
+		private final String path;
+
+		private final T target;
+
+		private final int order;
+
+		public PathMapping(String path, T target, int order) {
+			this.path = path;
+			this.target = target;
+			this.order = order;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public T getTarget() {
+			return target;
+		}
+
+		@Override
+		public int compareTo(PathMapping<T> other) {
+			return order < other.order ? -1 : (order == other.order ? 0 : 1);
+		}
+
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockService} spreading lock keys over named shards, each backed
+ * by its own {@link LockService}, e.g. a {@code RedisLockService} per
+ * Redis instance.
+ *
+ * <p>Keys are placed on a consistent hash ring where every shard owns a
+ * number of virtual nodes derived from its name. Adding or removing a
+ * shard only moves keys between that shard and its ring neighbours, on
+ * average one key in {@code n + 1} when growing to {@code n + 1} shards.
+ * Shards should therefore keep their names when restarted or reordered.
+ *
+ * <p>A lock obtained before a shard is added or removed stays bound to
+ * the shard it was obtained from.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ShardedLockService implements LockService {
+
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+	private final int virtualNodes;
+
+	private volatile Ring ring = new Ring(Collections.<String, LockService>emptyMap(), 0);
+
+	/**
+	 * Instantiates a new sharded lock service with
+	 * {@link #DEFAULT_VIRTUAL_NODES} virtual nodes per shard.
+	 */
+	public ShardedLockService() {
+		this(DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Instantiates a new sharded lock service.
+	 *
+	 * @param virtualNodes the number of virtual nodes per shard
+	 */
+	public ShardedLockService(int virtualNodes) {
+		Assert.isTrue(virtualNodes > 0, "Virtual nodes must be positive");
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * Instantiates a new sharded lock service.
+	 *
+	 * @param shards the lock services keyed by shard name
+	 * @param virtualNodes the number of virtual nodes per shard
+	 */
+	public ShardedLockService(Map<String, ? extends LockService> shards, int virtualNodes) {
+		this(virtualNodes);
+		Assert.notNull(shards, "Shards must be set");
+		for (Map.Entry<String, ? extends LockService> entry : shards.entrySet()) {
+			addShard(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		return locate(lockKey).obtain(lockKey);
+	}
+
+	/**
+	 * Adds a shard, replacing a shard with the same name.
+	 *
+	 * @param name the shard name
+	 * @param lockService the lock service of a shard
+	 */
+	public synchronized void addShard(String name, LockService lockService) {
+		Assert.hasText(name, "Shard name must be set");
+		Assert.notNull(lockService, "Lock service must be set");
+		Map<String, LockService> shards = new LinkedHashMap<String, LockService>(ring.shards);
+		shards.put(name, lockService);
+		ring = new Ring(shards, virtualNodes);
+	}
+
+	/**
+	 * Removes a shard.
+	 *
+	 * @param name the shard name
+	 * @return the removed lock service or {@code null} if there was no such shard
+	 */
+	public synchronized LockService removeShard(String name) {
+		Map<String, LockService> shards = new LinkedHashMap<String, LockService>(ring.shards);
+		LockService removed = shards.remove(name);
+		if (removed != null) {
+			ring = new Ring(shards, virtualNodes);
+		}
+		return removed;
+	}
+
+	/**
+	 * Gets the shards keyed by name.
+	 *
+	 * @return the unmodifiable shards
+	 */
+	public Map<String, LockService> getShards() {
+		return Collections.unmodifiableMap(ring.shards);
+	}
+
+	/**
+	 * Gets the name of a shard a lock key is placed on.
+	 *
+	 * @param lockKey the lock key
+	 * @return the shard name
+	 */
+	public String getShardName(String lockKey) {
+		Ring current = ring;
+		return current.names[current.index(lockKey)];
+	}
+
+	private LockService locate(String lockKey) {
+		Ring current = ring;
+		return current.services[current.index(lockKey)];
+	}
+
+	private static long hash(String value) {
+		// 64 bit FNV-1a followed by murmur3 finalizer to spread similar strings
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Immutable hash ring kept as parallel arrays sorted by virtual
+	 * node position. A new ring is built for every shard change.
+	 */
+	private static class Ring {
+
+		private final Map<String, LockService> shards;
+
+		private final long[] positions;
+
+		private final String[] names;
+
+		private final LockService[] services;
+
+		Ring(Map<String, LockService> shards, int virtualNodes) {
+			this.shards = shards;
+			int size = shards.size() * virtualNodes;
+			Node[] nodes = new Node[size];
+			int i = 0;
+			for (Map.Entry<String, LockService> entry : shards.entrySet()) {
+				for (int v = 0; v < virtualNodes; v++) {
+					nodes[i++] = new Node(hash(entry.getKey() + "#" + v), entry.getKey(), entry.getValue());
+				}
+			}
+			Arrays.sort(nodes);
+			positions = new long[size];
+			names = new String[size];
+			services = new LockService[size];
+			for (i = 0; i < size; i++) {
+				positions[i] = nodes[i].position;
+				names[i] = nodes[i].name;
+				services[i] = nodes[i].service;
+			}
+		}
+
+		int index(String lockKey) {
+			if (positions.length == 0) {
+				throw new IllegalStateException("No shards available for lock [" + lockKey + "]");
+			}
+			int index = Arrays.binarySearch(positions, hash(lockKey));
+			if (index < 0) {
+				index = -index - 1;
+			}
+			return index == positions.length ? 0 : index;
+		}
+
+	}
+
+	private static class Node implements Comparable<Node> {
+
+		private final long position;
+
+		private final String name;
+
+		private final LockService service;
+
+		Node(long position, String name, LockService service) {
+			this.position = position;
+			this.name = name;
+			this.service = service;
+		}
+
+		@Override
+		public int compareTo(Node other) {
+			if (position != other.position) {
+				return position < other.position ? -1 : 1;
+			}
+			// equal positions are ordered by name to keep placement stable
+			return name.compareTo(other.name);
+		}
+
+	}
+
+}
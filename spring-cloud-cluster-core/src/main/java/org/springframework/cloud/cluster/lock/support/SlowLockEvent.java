@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+/**
+ * Lock acquisition or hold which exceeded a threshold of
+ * {@link LockDiagnostics}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SlowLockEvent {
+
+	/**
+	 * Kind of a threshold which was exceeded.
+	 */
+	public enum Type {
+
+		/** acquisition waited longer than threshold. */
+		SLOW_ACQUIRE,
+
+		/** lock was held longer than threshold. */
+		LONG_HOLD,
+
+		/** lock is still held after threshold. */
+		OVERDUE_HOLD
+
+	}
+
+	private final Type type;
+
+	private final String name;
+
+	private final String lockKey;
+
+	private final String threadName;
+
+	private final long threadId;
+
+	private final String holderThreadName;
+
+	private final long holderThreadId;
+
+	private final long duration;
+
+	private final long timestamp;
+
+	private final StackTraceElement[] stackTrace;
+
+	/**
+	 * Instantiates a new slow lock event.
+	 *
+	 * @param type the event type
+	 * @param name the statistics name
+	 * @param lockKey the lock key
+	 * @param thread the waiting or holding thread
+	 * @param duration the wait or hold time in nanoseconds
+	 * @param timestamp the time of the event in milliseconds
+	 * @param stackTrace the sampled stack trace or {@code null}
+	 */
+	public SlowLockEvent(Type type, String name, String lockKey, Thread thread, long duration, long timestamp,
+			StackTraceElement[] stackTrace) {
+		this(type, name, lockKey, thread, null, duration, timestamp, stackTrace);
+	}
+
+	/**
+	 * Instantiates a new slow lock event.
+	 *
+	 * @param type the event type
+	 * @param name the statistics name
+	 * @param lockKey the lock key
+	 * @param thread the waiting or holding thread, {@code null} for holds
+	 * not owned by a thread
+	 * @param holder the thread holding the lock a slow acquisition waited
+	 * for, or {@code null} if not known
+	 * @param duration the wait or hold time in nanoseconds
+	 * @param timestamp the time of the event in milliseconds
+	 * @param stackTrace the sampled stack trace or {@code null}
+	 */
+	public SlowLockEvent(Type type, String name, String lockKey, Thread thread, Thread holder, long duration,
+			long timestamp, StackTraceElement[] stackTrace) {
+		this.type = type;
+		this.name = name;
+		this.lockKey = lockKey;
+		this.threadName = thread != null ? thread.getName() : null;
+		this.threadId = thread != null ? thread.getId() : -1;
+		this.holderThreadName = holder != null ? holder.getName() : null;
+		this.holderThreadId = holder != null ? holder.getId() : -1;
+		this.duration = duration;
+		this.timestamp = timestamp;
+		this.stackTrace = stackTrace;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the name of statistics the lock was recorded into.
+	 *
+	 * @return the statistics name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public String getLockKey() {
+		return lockKey;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+	public long getThreadId() {
+		return threadId;
+	}
+
+	/**
+	 * Gets the name of the thread holding the lock a slow acquisition
+	 * waited for.
+	 *
+	 * @return the holder thread name or {@code null} if not known
+	 */
+	public String getHolderThreadName() {
+		return holderThreadName;
+	}
+
+	public long getHolderThreadId() {
+		return holderThreadId;
+	}
+
+	/**
+	 * Gets the wait or hold time in nanoseconds.
+	 *
+	 * @return the duration
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Gets the time the event was recorded in milliseconds.
+	 *
+	 * @return the timestamp
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Gets the stack trace of the holding thread, sampled when the hold
+	 * ended or was found overdue, or when the holder of a lock a slow
+	 * acquisition waited for released it. Returns {@code null} if stack
+	 * sampling was rate limited or the holder is not known.
+	 *
+	 * @return the stack trace or {@code null}
+	 */
+	public StackTraceElement[] getStackTrace() {
+		return stackTrace;
+	}
+
+}
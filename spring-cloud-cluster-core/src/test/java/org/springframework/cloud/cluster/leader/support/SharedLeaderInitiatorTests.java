@@ -0,0 +1,304 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.leader.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+import org.springframework.cloud.cluster.leader.event.LeaderEventPublisher;
+
+/**
+ * Tests for {@link SharedLeaderInitiator}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class SharedLeaderInitiatorTests {
+
+	private InMemoryBackend backend;
+
+	private TestEventPublisher publisher;
+
+	private SharedLeaderInitiator initiator;
+
+	@Before
+	public void setup() {
+		backend = new InMemoryBackend();
+		publisher = new TestEventPublisher();
+		initiator = new SharedLeaderInitiator(backend);
+		initiator.setHeartbeatInterval(20);
+		initiator.setLeaderEventPublisher(publisher);
+	}
+
+	@After
+	public void clean() throws Exception {
+		initiator.destroy();
+	}
+
+	@Test
+	public void testManyRoles() throws Exception {
+		List<TestCandidate> candidates = new ArrayList<TestCandidate>();
+		for (int i = 0; i < 300; i++) {
+			TestCandidate candidate = new TestCandidate("id", "role" + i);
+			candidates.add(candidate);
+			initiator.addCandidate(candidate);
+		}
+		initiator.start();
+		for (TestCandidate candidate : candidates) {
+			assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+			assertThat(initiator.isLeader(candidate), is(true));
+			assertThat(candidate.context.isLeader(), is(true));
+		}
+		assertThat(publisher.granted.get(), is(300));
+
+		publisher.revokedLatch = new CountDownLatch(300);
+		initiator.stop();
+		for (TestCandidate candidate : candidates) {
+			assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+			assertThat(initiator.isLeader(candidate), is(false));
+		}
+		assertThat(backend.holders.isEmpty(), is(true));
+		assertThat(publisher.revokedLatch.await(5, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testFailover() throws Exception {
+		TestCandidate candidate1 = new TestCandidate("id1", "role");
+		TestCandidate candidate2 = new TestCandidate("id2", "role");
+		initiator.addCandidate(candidate1);
+		initiator.start();
+		assertThat(candidate1.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+
+		initiator.addCandidate(candidate2);
+		Thread.sleep(100);
+		assertThat(initiator.isLeader(candidate2), is(false));
+
+		initiator.removeCandidate(candidate1);
+		assertThat(candidate1.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate2.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(backend.holders.get("role"), is("id2"));
+	}
+
+	@Test
+	public void testLostLeadershipInterruptsCandidate() throws Exception {
+		BlockingCandidate candidate = new BlockingCandidate("id", "role");
+		initiator.addCandidate(candidate);
+		initiator.start();
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+
+		backend.holders.put("role", "other");
+		assertThat(candidate.interruptedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate), is(false));
+		assertThat(backend.holders.get("role"), is("other"));
+	}
+
+	@Test
+	public void testYield() throws Exception {
+		TestCandidate candidate = new TestCandidate("id", "role");
+		initiator.addCandidate(candidate);
+		initiator.start();
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+
+		candidate.onGrantedLatch = new CountDownLatch(1);
+		candidate.context.yield();
+		assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		// nobody else competes, so leadership is regained
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testLeadershipExpiresWithLease() throws Exception {
+		backend.leaseDuration = 100;
+		TestCandidate candidate = new TestCandidate("id", "role");
+		initiator.addCandidate(candidate);
+		initiator.start();
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+
+		// renewal hangs past the lease
+		backend.renewed = new CountDownLatch(1);
+		backend.renewing = new CountDownLatch(1);
+		assertThat(backend.renewing.await(5, TimeUnit.SECONDS), is(true));
+		Thread.sleep(150);
+		assertThat(initiator.isLeader(candidate), is(false));
+		assertThat(candidate.context.isLeader(), is(false));
+		assertThat(candidate.onRevokedLatch.getCount(), is(1L));
+
+		// late renewal doesn't count
+		backend.renewed.countDown();
+		assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testLeadershipExpiresWithBackendLease() throws Exception {
+		ExpiringInMemoryBackend expiringBackend = new ExpiringInMemoryBackend();
+		initiator.destroy();
+		initiator = new SharedLeaderInitiator(expiringBackend);
+		initiator.setHeartbeatInterval(20);
+		initiator.setLeaderEventPublisher(publisher);
+		TestCandidate candidate = new TestCandidate("id", "role");
+		initiator.addCandidate(candidate);
+		initiator.start();
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+
+		// lease stops being kept alive while renewals keep succeeding
+		expiringBackend.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+		Thread.sleep(50);
+		assertThat(initiator.isLeader(candidate), is(true));
+		assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(System.nanoTime() - expiringBackend.expiresAt >= 0, is(true));
+		assertThat(initiator.isLeader(candidate), is(false));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHeartbeatIntervalAboveHalfLease() {
+		initiator.setHeartbeatInterval(600);
+		initiator.start();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDuplicateCandidate() {
+		TestCandidate candidate = new TestCandidate("id", "role");
+		initiator.addCandidate(candidate);
+		initiator.addCandidate(candidate);
+	}
+
+	static class InMemoryBackend implements LeaderElectionBackend {
+
+		final ConcurrentMap<String, String> holders = new ConcurrentHashMap<String, String>();
+
+		volatile long leaseDuration = 1000;
+
+		volatile CountDownLatch renewing = new CountDownLatch(0);
+
+		volatile CountDownLatch renewed = new CountDownLatch(0);
+
+		@Override
+		public boolean tryAcquire(String role, String id) {
+			String current = holders.putIfAbsent(role, id);
+			return current == null || current.equals(id);
+		}
+
+		@Override
+		public boolean renew(String role, String id) throws InterruptedException {
+			renewing.countDown();
+			renewed.await();
+			return id.equals(holders.get(role));
+		}
+
+		@Override
+		public void release(String role, String id) {
+			holders.remove(role, id);
+		}
+
+		@Override
+		public long getLeaseDuration() {
+			return leaseDuration;
+		}
+
+	}
+
+	static class ExpiringInMemoryBackend extends InMemoryBackend implements ExpiringLeaderElectionBackend {
+
+		volatile long expiresAt = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+
+		@Override
+		public long getRemainingLease(String role, String id) {
+			return TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+		}
+
+	}
+
+	static class TestCandidate extends DefaultCandidate {
+
+		volatile CountDownLatch onGrantedLatch = new CountDownLatch(1);
+
+		final CountDownLatch onRevokedLatch = new CountDownLatch(1);
+
+		volatile Context context;
+
+		TestCandidate(String id, String role) {
+			super(id, role);
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			super.onGranted(ctx);
+			context = ctx;
+			onGrantedLatch.countDown();
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+			super.onRevoked(ctx);
+			onRevokedLatch.countDown();
+		}
+
+	}
+
+	static class BlockingCandidate extends TestCandidate {
+
+		final CountDownLatch interruptedLatch = new CountDownLatch(1);
+
+		BlockingCandidate(String id, String role) {
+			super(id, role);
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			super.onGranted(ctx);
+			try {
+				Thread.sleep(Long.MAX_VALUE);
+			}
+			catch (InterruptedException e) {
+				interruptedLatch.countDown();
+			}
+		}
+
+	}
+
+	static class TestEventPublisher implements LeaderEventPublisher {
+
+		final AtomicInteger granted = new AtomicInteger();
+
+		volatile CountDownLatch revokedLatch = new CountDownLatch(0);
+
+		@Override
+		public void publishOnGranted(Object source, Context context, String role) {
+			granted.incrementAndGet();
+		}
+
+		@Override
+		public void publishOnRevoked(Object source, Context context, String role) {
+			revokedLatch.countDown();
+		}
+
+	}
+
+}
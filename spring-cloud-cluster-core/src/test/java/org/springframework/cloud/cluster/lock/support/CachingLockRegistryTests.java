@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.TestUtils;
+import org.springframework.cloud.cluster.lock.AbstractLockingTests;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+
+/**
+ * Tests for {@link CachingLockRegistry}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CachingLockRegistryTests extends AbstractLockingTests {
+
+	@Test
+	public void testSameInstanceForKey() {
+		CachingLockRegistry registry = new CachingLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1())));
+		DistributedLock lock1 = registry.get("lock1");
+		assertThat(registry.get("lock1"), sameInstance(lock1));
+		assertThat(registry.get("lock2"), not(sameInstance(lock1)));
+	}
+
+	@Test
+	public void testCapacityEvictionKeepsHeldLocks() throws Exception {
+		CachingLockRegistry registry = new CachingLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1())));
+		registry.setCapacity(2);
+
+		DistributedLock held = registry.get("held");
+		held.lock();
+		DistributedLock cold = registry.get("cold");
+		for (int i = 0; i < 10; i++) {
+			registry.get("lock" + i);
+		}
+
+		Map<String, DistributedLock> locks = TestUtils.readField("locks", registry);
+		assertThat(locks.size(), is(2));
+		assertThat(registry.get("held"), sameInstance(held));
+		assertThat(registry.get("cold"), not(sameInstance(cold)));
+
+		held.unlock();
+		for (int i = 0; i < 10; i++) {
+			registry.get("lock" + i);
+		}
+		assertThat(registry.get("held"), not(sameInstance(held)));
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		CachingLockRegistry registry = new CachingLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1())));
+		registry.setIdleTimeout(20);
+
+		DistributedLock held = registry.get("held");
+		assertThat(held.tryLock(), is(true));
+		DistributedLock idle = registry.get("idle");
+		Thread.sleep(50);
+		registry.get("other");
+
+		Map<String, DistributedLock> locks = TestUtils.readField("locks", registry);
+		assertThat(locks.containsKey("idle"), is(false));
+		assertThat(registry.get("held"), sameInstance(held));
+		assertThat(registry.get("idle"), not(sameInstance(idle)));
+		held.unlock();
+	}
+
+	@Test
+	public void testHeldInstanceReplacesFreshInstance() throws Exception {
+		CachingLockRegistry registry = new CachingLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1())));
+		registry.setIdleTimeout(20);
+
+		DistributedLock evicted = registry.get("lock");
+		Thread.sleep(50);
+		registry.get("other");
+		DistributedLock fresh = registry.get("lock");
+		assertThat(fresh, not(sameInstance(evicted)));
+
+		evicted.lock();
+		assertThat(registry.get("lock"), sameInstance(evicted));
+		Map<String, DistributedLock> locks = TestUtils.readField("locks", registry);
+		assertThat(locks.get("lock"), sameInstance(evicted));
+		evicted.unlock();
+	}
+
+}
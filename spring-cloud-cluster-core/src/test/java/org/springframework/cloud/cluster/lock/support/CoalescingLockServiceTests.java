@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.TestUtils;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+
+/**
+ * Tests for {@link CoalescingLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class CoalescingLockServiceTests {
+
+	@Test
+	public void testOnlyOneLocalWaiterReachesBackend() throws Exception {
+		final CountingLockService backend = new CountingLockService();
+		final CoalescingLockService service = new CoalescingLockService(backend);
+		final AtomicInteger inside = new AtomicInteger();
+		final AtomicInteger violations = new AtomicInteger();
+		int threads = 20;
+		final CountDownLatch done = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 50; j++) {
+						DistributedLock lock = service.obtain("lock");
+						lock.lock();
+						try {
+							if (inside.incrementAndGet() != 1) {
+								violations.incrementAndGet();
+							}
+							inside.decrementAndGet();
+						}
+						finally {
+							lock.unlock();
+						}
+					}
+					done.countDown();
+				}
+			});
+		}
+		assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+		executor.shutdown();
+
+		assertThat(violations.get(), is(0));
+		assertThat(backend.maxWaiting.get(), is(1));
+		Map<?, ?> localLocks = TestUtils.readField("localLocks", service);
+		assertThat(localLocks.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testTryLockFromOtherThread() throws Exception {
+		final CoalescingLockService service = new CoalescingLockService(new CountingLockService());
+		DistributedLock lock = service.obtain("lock");
+		assertThat(lock.tryLock(), is(true));
+
+		final AtomicInteger acquired = new AtomicInteger(-1);
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					acquired.set(service.obtain("lock").tryLock(50, TimeUnit.MILLISECONDS) ? 1 : 0);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		assertThat(acquired.get(), is(0));
+
+		lock.unlock();
+		assertThat(service.obtain("lock").tryLock(), is(true));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		new CoalescingLockService(new CountingLockService()).obtain("lock").unlock();
+	}
+
+	private static class CountingLockService implements LockService {
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final AtomicInteger waiting = new AtomicInteger();
+
+		private final AtomicInteger maxWaiting = new AtomicInteger();
+
+		@Override
+		public DistributedLock obtain(String lockKey) {
+			return new DelegatingDistributedLock(lockKey, lock) {
+
+				@Override
+				public void lock() {
+					int current = waiting.incrementAndGet();
+					if (current > maxWaiting.get()) {
+						maxWaiting.set(current);
+					}
+					try {
+						super.lock();
+					}
+					finally {
+						waiting.decrementAndGet();
+					}
+				}
+			};
+		}
+
+	}
+
+}
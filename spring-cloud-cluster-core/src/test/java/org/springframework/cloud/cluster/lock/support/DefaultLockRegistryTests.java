@@ -15,10 +15,30 @@
  */
 package org.springframework.cloud.cluster.lock.support;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
+import org.springframework.cloud.cluster.lock.AbstractLockingTests;
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.DistributedLock;
 import org.springframework.cloud.cluster.lock.LockService;
 import org.springframework.cloud.cluster.lock.LockServiceLocator;
 import org.springframework.cloud.cluster.lock.LockingException;
+import org.springframework.cloud.cluster.lock.MultiLock;
+import org.springframework.cloud.cluster.lock.MultiLockService;
 
 /**
  * Tests for {@link DefaultLockRegistry}.
@@ -26,7 +46,7 @@ import org.springframework.cloud.cluster.lock.LockingException;
  * @author Janne Valkealahti
  *
  */
-public class DefaultLockRegistryTests {
+public class DefaultLockRegistryTests extends AbstractLockingTests {
 
 	@Test(expected = LockingException.class)
 	public void testFailureWithMissingLocate() {
@@ -39,6 +59,125 @@ public class DefaultLockRegistryTests {
 		new DefaultLockRegistry(null);
 	}	
 
+	@Test
+	public void testAsyncLockWithBlockingService() throws Exception {
+		DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1()));
+		AsyncDistributedLock lock = registry.getAsync("lock");
+		assertThat(lock, instanceOf(ExecutorAsyncDistributedLock.class));
+		assertThat(lock.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+
+		DistributedLock other = registry.get("lock");
+		assertThat(other.tryLock(), is(false));
+		assertThat(lock.tryLockAsync(10, TimeUnit.MILLISECONDS).get(), is(false));
+
+		lock.unlockAsync().get(1, TimeUnit.SECONDS);
+		assertThat(other.tryLock(), is(true));
+		other.unlock();
+	}
+
+	@Test
+	public void testAsyncPoolIsBounded() throws Exception {
+		DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1()));
+		registry.setAsyncPoolSize(1);
+		AsyncDistributedLock lock1 = registry.getAsync("lock1");
+		AsyncDistributedLock lock2 = registry.getAsync("lock2");
+		lock1.lockAsync().get(1, TimeUnit.SECONDS);
+
+		// only pool thread holds lock1, so lock2 waits for it
+		Future<Boolean> future = lock2.tryLockAsync(5, TimeUnit.SECONDS);
+		Thread.sleep(50);
+		assertThat(future.isDone(), is(false));
+
+		lock1.unlockAsync().get(1, TimeUnit.SECONDS);
+		assertThat(future.get(1, TimeUnit.SECONDS), is(true));
+		lock2.unlockAsync().get(1, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testAsyncUnlockWithoutLock() throws Throwable {
+		DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1()));
+		try {
+			registry.getAsync("lock").unlockAsync().get();
+		}
+		catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Test
+	public void testLockAllReleasesOnFailure() throws Exception {
+		final DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(new LockService1()));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertThat(executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					return registry.get("b").tryLock();
+				}
+			}).get(), is(true));
+
+			assertThat(registry.lockAll(Arrays.asList("c", "a", "b"), 20, TimeUnit.MILLISECONDS), nullValue());
+			assertThat(executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					boolean locked = registry.get("a").tryLock();
+					if (locked) {
+						registry.get("a").unlock();
+					}
+					registry.get("b").unlock();
+					return locked;
+				}
+			}).get(), is(true));
+
+			MultiLock lock = registry.lockAll(Arrays.asList("c", "a", "b"), 20, TimeUnit.MILLISECONDS);
+			assertThat(lock.getLockKeys(), is(Arrays.asList("a", "b", "c")));
+			lock.unlock();
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLockAllBatchesMultiLockService() throws Exception {
+		BatchingLockService service = new BatchingLockService();
+		DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(service));
+
+		MultiLock lock = registry.lockAll(Arrays.asList("c", "a", "b", "a"), 1, TimeUnit.SECONDS);
+		assertThat(lock.getLockKeys(), is(Arrays.asList("a", "b", "c")));
+		assertThat(service.batches, is(Arrays.asList(Arrays.asList("a", "b", "c"))));
+
+		lock.unlock();
+		assertThat(service.released, is(1));
+	}
+
+	private static class BatchingLockService extends BaseLockService implements MultiLockService {
+
+		private final List<List<String>> batches = new ArrayList<List<String>>();
+
+		private int released;
+
+		@Override
+		public MultiLock tryLockAll(final List<String> lockKeys, long time, TimeUnit unit) {
+			batches.add(lockKeys);
+			return new MultiLock() {
+
+				@Override
+				public List<String> getLockKeys() {
+					return lockKeys;
+				}
+
+				@Override
+				public void unlock() {
+					released++;
+				}
+			};
+		}
+
+	}
+
 	private static class AlwaysNullLockServiceLocator implements LockServiceLocator {
 
 		@Override
@@ -69,6 +69,34 @@ public class DefaultLockServiceLocatorTests extends AbstractLockingTests {
 		assertThat(service, instanceOf(LockService3.class));
 	}
 	
+	@Test
+	public void testFirstMatchWins() throws Exception {
+		DefaultLockServiceLocator locator = new DefaultLockServiceLocator(
+				new LockService1());
+		locator.addMapping("/path2/**", new LockService2());
+		locator.addMapping("/path2/sub/**", new LockService3());
+		locator.addMapping("/*/exact", new LockService3());
+		locator.addMapping("/path3/exact", new LockService2());
+
+		assertThat(locator.locate("/path2/sub/dlock1"), instanceOf(LockService2.class));
+		assertThat(locator.locate("/path3/exact"), instanceOf(LockService3.class));
+		assertThat(locator.locate("/path3/exact/dlock1"), instanceOf(LockService1.class));
+		assertThat(locator.locate("path2/dlock1"), instanceOf(LockService1.class));
+	}
+
+	@Test
+	public void testAddMappingDiscardsCachedLocations() throws Exception {
+		DefaultLockServiceLocator locator = new DefaultLockServiceLocator(
+				new LockService1());
+		assertThat(locator.locate("/path2/dlock1"), instanceOf(LockService1.class));
+
+		locator.addMapping("/path2/**", new LockService2());
+		assertThat(locator.locate("/path2/dlock1"), instanceOf(LockService2.class));
+
+		locator.setCacheLimit(0);
+		assertThat(locator.locate("/path2/dlock1"), instanceOf(LockService2.class));
+	}
+
 	private static LockService match(Object locator, String key)
 			throws Exception {
 		return TestUtils.callMethod("match", locator, new String[] { key },
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.DistributedReadWriteLock;
+import org.springframework.cloud.cluster.lock.LockingException;
+import org.springframework.cloud.cluster.lock.ReadWriteLockService;
+import org.springframework.cloud.cluster.lock.ReadWriteLockServiceLocator;
+
+/**
+ * Tests for {@link DefaultReadWriteLockRegistry}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class DefaultReadWriteLockRegistryTests {
+
+	@Test
+	public void testLocateWithMappings() {
+		LocalReadWriteLockService service1 = new LocalReadWriteLockService();
+		LocalReadWriteLockService service2 = new LocalReadWriteLockService();
+		DefaultReadWriteLockServiceLocator locator = new DefaultReadWriteLockServiceLocator(service1);
+		locator.addMapping("/foo/**", service2);
+		DefaultReadWriteLockRegistry registry = new DefaultReadWriteLockRegistry(locator);
+
+		assertThat(registry.get("/foo/bar"), sameInstance(service2.obtain("/foo/bar")));
+		assertThat(registry.get("/bar"), sameInstance(service1.obtain("/bar")));
+	}
+
+	@Test
+	public void testReadersShareWriterExcludes() {
+		DefaultReadWriteLockRegistry registry = new DefaultReadWriteLockRegistry(
+				new DefaultReadWriteLockServiceLocator(new LocalReadWriteLockService()));
+		DistributedReadWriteLock lock = registry.get("lock");
+		assertThat(lock.getLockKey(), is("lock"));
+		assertThat(lock.readLock().tryLock(), is(true));
+		assertThat(registry.get("lock").readLock().tryLock(), is(true));
+		lock.readLock().unlock();
+		lock.readLock().unlock();
+		assertThat(lock.writeLock().tryLock(), is(true));
+		lock.writeLock().unlock();
+	}
+
+	@Test(expected = LockingException.class)
+	public void testFailureWithMissingLocate() {
+		DefaultReadWriteLockRegistry registry = new DefaultReadWriteLockRegistry(new ReadWriteLockServiceLocator() {
+
+			@Override
+			public ReadWriteLockService locate(String lockKey) {
+				return null;
+			}
+		});
+		registry.get("cantfind");
+	}
+
+	private static class LocalReadWriteLockService implements ReadWriteLockService {
+
+		private final Map<String, DistributedReadWriteLock> locks = new HashMap<String, DistributedReadWriteLock>();
+
+		@Override
+		public synchronized DistributedReadWriteLock obtain(final String lockKey) {
+			DistributedReadWriteLock lock = locks.get(lockKey);
+			if (lock == null) {
+				final ReentrantReadWriteLock l = new ReentrantReadWriteLock();
+				final DistributedLock readLock = new DelegatingDistributedLock(lockKey, l.readLock());
+				final DistributedLock writeLock = new DelegatingDistributedLock(lockKey, l.writeLock());
+				lock = new DistributedReadWriteLock() {
+
+					@Override
+					public String getLockKey() {
+						return lockKey;
+					}
+
+					@Override
+					public DistributedLock readLock() {
+						return readLock;
+					}
+
+					@Override
+					public DistributedLock writeLock() {
+						return writeLock;
+					}
+				};
+				locks.put(lockKey, lock);
+			}
+			return lock;
+		}
+
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+
+/**
+ * Tests for {@link FencedDelegatingDistributedLock}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class FencedDelegatingDistributedLockTests {
+
+	@Test
+	public void testFencingTokenFromDelegate() {
+		FencedDistributedLock lock = new FencedDelegatingDistributedLock("lock", new FencedLock("lock"));
+		lock.lock();
+		assertThat(lock.getFencingToken(), is(1L));
+		lock.unlock();
+		lock.lock();
+		assertThat(lock.getFencingToken(), is(2L));
+		lock.unlock();
+	}
+
+	@Test
+	public void testPlainDelegateNotFenced() {
+		DelegatingDistributedLock lock = new DelegatingDistributedLock("lock", new ReentrantLock());
+		assertThat(lock instanceof FencedDistributedLock, is(false));
+	}
+
+	private static class FencedLock extends DelegatingDistributedLock implements FencedDistributedLock {
+
+		private long token;
+
+		FencedLock(String lockKey) {
+			super(lockKey, new ReentrantLock());
+		}
+
+		@Override
+		public void lock() {
+			super.lock();
+			token++;
+		}
+
+		@Override
+		public long getFencingToken() {
+			return token;
+		}
+
+	}
+
+}
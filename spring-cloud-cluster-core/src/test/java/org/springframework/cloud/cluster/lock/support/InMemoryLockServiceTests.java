@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.TestUtils;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+
+/**
+ * Tests for {@link InMemoryLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class InMemoryLockServiceTests {
+
+	@Test
+	public void testReentrantAndExclusive() throws Exception {
+		InMemoryLockService service = new InMemoryLockService();
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		assertThat(lock.tryLock(), is(true));
+		assertThat(tryLockInOtherThread(service, "lock"), is(false));
+		lock.unlock();
+		assertThat(tryLockInOtherThread(service, "lock"), is(false));
+		lock.unlock();
+		assertThat(tryLockInOtherThread(service, "lock"), is(true));
+	}
+
+	@Test
+	public void testDistinctKeysDoNotBlock() throws Exception {
+		InMemoryLockService service = new InMemoryLockService(1);
+		DistributedLock lock = service.obtain("lock1");
+		lock.lock();
+		try {
+			assertThat(tryLockInOtherThread(service, "lock2"), is(true));
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockNotHeld() {
+		new InMemoryLockService().obtain("lock").unlock();
+	}
+
+	@Test
+	public void testUnusedLocksAreDiscarded() throws Exception {
+		InMemoryLockService service = new InMemoryLockService();
+		DistributedLock held = service.obtain("held");
+		held.lock();
+		held = null;
+		for (int i = 0; i < 100; i++) {
+			DistributedLock lock = service.obtain("lock" + i);
+			lock.lock();
+			lock.unlock();
+		}
+		for (int i = 0; i < 50 && service.size() > 1; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertThat(service.size(), is(1));
+		assertThat(tryLockInOtherThread(service, "held"), is(false));
+	}
+
+	@Test
+	public void testHeldLockStaysPinnedWhenHandedOver() throws Exception {
+		final InMemoryLockService service = new InMemoryLockService(1);
+		final AtomicInteger unpinned = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						for (int i = 0; i < 20000; i++) {
+							DistributedLock lock = service.obtain("lock");
+							lock.lock();
+							try {
+								if (pinned(service, "lock") == null) {
+									unpinned.incrementAndGet();
+								}
+							}
+							finally {
+								lock.unlock();
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat(unpinned.get(), is(0));
+		assertThat(pinned(service, "lock") == null, is(true));
+	}
+
+	private static Object pinned(InMemoryLockService service, String lockKey) throws Exception {
+		Object[] stripes = TestUtils.readField("stripes", service);
+		for (Object stripe : stripes) {
+			synchronized (stripe) {
+				Map<String, Object> locks = TestUtils.readField("locks", stripe);
+				Object reference = locks.get(lockKey);
+				if (reference != null) {
+					return TestUtils.readField("pinned", reference);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean tryLockInOtherThread(final InMemoryLockService service, final String lockKey)
+			throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			return executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					DistributedLock lock = service.obtain(lockKey);
+					if (lock.tryLock()) {
+						lock.unlock();
+						return true;
+					}
+					return false;
+				}
+			}).get(5, TimeUnit.SECONDS);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.AsyncLockService;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.MultiLockService;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * Tests for {@link InstrumentedLockService}, {@link LockDiagnostics} and
+ * {@link LatencyHistogram}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class InstrumentedLockServiceTests {
+
+	@Test
+	public void testStatisticsPerMappingPattern() {
+		LockMetrics metrics = new LockMetrics();
+		LockService lockService = new InMemoryLockService();
+		DefaultLockServiceLocator locator = new DefaultLockServiceLocator(lockService, metrics);
+		locator.addMapping("/orders/**", lockService);
+
+		for (int i = 0; i < 10; i++) {
+			DistributedLock lock = locator.locate("/orders/" + i).obtain("/orders/" + i);
+			lock.lock();
+			assertThat(lock.tryLock(), is(true));
+			lock.unlock();
+			lock.unlock();
+		}
+		DistributedLock lock = locator.locate("/other").obtain("/other");
+		lock.lock();
+		lock.unlock();
+
+		assertThat(metrics.getStatistics().size(), is(2));
+		LockStatistics orders = metrics.getStatistics("/orders/**");
+		assertThat(orders.getAcquireTime().getCount(), is(20L));
+		assertThat(orders.getHoldTime().getCount(), is(10L));
+		assertThat(orders.getTryLockAttempts(), is(10L));
+		assertThat(orders.getTryLockFailures(), is(0L));
+		assertThat(orders.getWaiters(), is(0));
+		assertThat(metrics.getStatistics(DefaultLockServiceLocator.FALLBACK_NAME).getHoldTime().getCount(), is(1L));
+	}
+
+	@Test
+	public void testTryLockFailuresAndWaiters() throws Exception {
+		LockMetrics metrics = new LockMetrics();
+		final InstrumentedLockService service = new InstrumentedLockService(new InMemoryLockService(), "locks",
+				metrics);
+		final LockStatistics stats = metrics.getStatistics("locks");
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				DistributedLock lock = service.obtain("lock");
+				assertThat(lock.tryLock(), is(false));
+				lock.lock();
+				lock.unlock();
+				done.countDown();
+			}
+		});
+		waiter.start();
+		for (int i = 0; i < 100 && stats.getWaiters() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(stats.getWaiters(), is(1));
+		assertThat(stats.getTryLockAttempts(), is(1L));
+		assertThat(stats.getTryLockFailures(), is(1L));
+
+		lock.unlock();
+		assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(stats.getWaiters(), is(0));
+		assertThat(stats.getHoldTime().getCount(), is(2L));
+	}
+
+	@Test
+	public void testHoldTrackedPerKeyAndThread() throws Exception {
+		LockMetrics metrics = new LockMetrics();
+		InstrumentedLockService service = new InstrumentedLockService(new InMemoryLockService(), "locks", metrics);
+		LockStatistics stats = metrics.getStatistics("locks");
+		DistributedLock lock1 = service.obtain("lock");
+		DistributedLock lock2 = service.obtain("lock");
+		lock1.lock();
+		lock2.lock();
+		lock1.unlock();
+		assertThat(stats.getHoldTime().getCount(), is(0L));
+		lock2.unlock();
+		assertThat(stats.getHoldTime().getCount(), is(1L));
+	}
+
+	@Test
+	public void testCapabilitiesKept() throws Exception {
+		LockMetrics metrics = new LockMetrics();
+		assertThat(InstrumentedLockService.instrument(new InMemoryLockService(), "locks", metrics)
+				instanceof AsyncLockService, is(false));
+
+		LockService lockService = InstrumentedLockService.instrument(new AsyncFencedLockService(), "locks", metrics);
+		assertThat(lockService instanceof AsyncLockService, is(true));
+		assertThat(lockService instanceof MultiLockService, is(false));
+		DistributedLock lock = lockService.obtain("lock");
+		assertThat(lock instanceof FencedDistributedLock, is(true));
+		AsyncDistributedLock asyncLock = (AsyncDistributedLock) lock;
+		await(asyncLock.lockAsync());
+		assertThat(((FencedDistributedLock) lock).getFencingToken(), is(1L));
+		await(asyncLock.unlockAsync());
+
+		LockStatistics stats = metrics.getStatistics("locks");
+		assertThat(stats.getAcquireTime().getCount(), is(1L));
+		assertThat(stats.getHoldTime().getCount(), is(1L));
+	}
+
+	@Test
+	public void testNestedAsyncHoldsReleasedMostRecentFirst() throws Exception {
+		LockMetrics metrics = new LockMetrics();
+		LockService lockService = InstrumentedLockService.instrument(new AsyncNoopLockService(), "locks", metrics);
+		AsyncDistributedLock lock = (AsyncDistributedLock) lockService.obtain("lock");
+		await(lock.lockAsync());
+		Thread.sleep(200);
+		await(lock.lockAsync());
+		await(lock.unlockAsync());
+
+		// inner hold released first, outer one still accumulating
+		LatencyHistogram holdTime = metrics.getStatistics("locks").getHoldTime();
+		assertThat(holdTime.getCount(), is(1L));
+		assertThat(holdTime.getMax(), lessThan(TimeUnit.MILLISECONDS.toNanos(200)));
+		await(lock.unlockAsync());
+		assertThat(holdTime.getCount(), is(2L));
+		assertThat(holdTime.getMax(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200)));
+	}
+
+	@Test
+	public void testSlowAcquireAndLongHold() throws Exception {
+		LockDiagnostics diagnostics = new LockDiagnostics();
+		diagnostics.setSlowAcquireThreshold(20);
+		diagnostics.setLongHoldThreshold(20);
+		final InstrumentedLockService service = new InstrumentedLockService(new InMemoryLockService(), "locks",
+				new LockMetrics(diagnostics));
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		lock.unlock();
+		assertThat(diagnostics.getEvents().size(), is(0));
+
+		lock.lock();
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				DistributedLock lock = service.obtain("lock");
+				lock.lock();
+				lock.unlock();
+			}
+		}, "waiter");
+		waiter.start();
+		Thread.sleep(50);
+		lock.unlock();
+		waiter.join(5000);
+
+		List<SlowLockEvent> events = diagnostics.getEvents();
+		assertThat(events.size(), is(2));
+		// waiter may record its acquisition before holder records release
+		SlowLockEvent hold = events.get(0).getType() == SlowLockEvent.Type.LONG_HOLD ? events.get(0) : events.get(1);
+		SlowLockEvent acquire = events.get(0) == hold ? events.get(1) : events.get(0);
+		assertThat(hold.getType(), is(SlowLockEvent.Type.LONG_HOLD));
+		assertThat(hold.getThreadName(), is(Thread.currentThread().getName()));
+		assertThat(acquire.getType(), is(SlowLockEvent.Type.SLOW_ACQUIRE));
+		assertThat(acquire.getName(), is("locks"));
+		assertThat(acquire.getLockKey(), is("lock"));
+		assertThat(acquire.getThreadName(), is("waiter"));
+		assertThat(acquire.getHolderThreadName(), is(Thread.currentThread().getName()));
+		// holder stack is sampled while it releases, leaving none for the
+		// hold itself within default interval
+		assertThat(hasFrame(acquire.getStackTrace(), "testSlowAcquireAndLongHold"), is(true));
+		assertThat(hold.getStackTrace(), nullValue());
+	}
+
+	@Test
+	public void testOverdueHoldAndWaitReported() throws Exception {
+		LockDiagnostics diagnostics = new LockDiagnostics();
+		diagnostics.setSlowAcquireThreshold(20);
+		diagnostics.setLongHoldThreshold(20);
+		diagnostics.setStackSampleInterval(0);
+		final InstrumentedLockService service = new InstrumentedLockService(new InMemoryLockService(), "locks",
+				new LockMetrics(diagnostics));
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				DistributedLock lock = service.obtain("lock");
+				lock.lock();
+				locked.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+				}
+				lock.unlock();
+			}
+		}, "holder");
+		holder.start();
+		assertThat(locked.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(service.obtain("lock").tryLock(), is(false));
+		Thread.sleep(50);
+		diagnostics.check();
+		List<SlowLockEvent> events = diagnostics.getEvents();
+		assertThat(events.size(), is(1));
+		assertThat(events.get(0).getType(), is(SlowLockEvent.Type.OVERDUE_HOLD));
+		assertThat(events.get(0).getThreadName(), is("holder"));
+		assertThat(hasFrame(events.get(0).getStackTrace(), "run"), is(true));
+
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				DistributedLock lock = service.obtain("lock");
+				lock.lock();
+				lock.unlock();
+			}
+		}, "waiter");
+		waiter.start();
+		Thread.sleep(50);
+		diagnostics.check();
+		events = diagnostics.getEvents();
+		assertThat(events.size(), is(2));
+		assertThat(events.get(1).getType(), is(SlowLockEvent.Type.SLOW_ACQUIRE));
+		assertThat(events.get(1).getThreadName(), is("waiter"));
+		assertThat(events.get(1).getHolderThreadName(), is("holder"));
+		assertThat(hasFrame(events.get(1).getStackTrace(), "run"), is(true));
+
+		// reported once while ongoing, and the hold again once it ends
+		diagnostics.check();
+		release.countDown();
+		holder.join(5000);
+		waiter.join(5000);
+		events = diagnostics.getEvents();
+		assertThat(events.size(), is(3));
+		assertThat(events.get(2).getType(), is(SlowLockEvent.Type.LONG_HOLD));
+	}
+
+	@Test
+	public void testDiagnosticsRingBuffer() throws Exception {
+		LockDiagnostics diagnostics = new LockDiagnostics(4);
+		diagnostics.setLongHoldThreshold(1);
+		for (int i = 0; i < 10; i++) {
+			diagnostics.released("locks", "lock" + i, 2000000);
+		}
+		List<SlowLockEvent> events = diagnostics.getEvents();
+		assertThat(diagnostics.getRecorded(), is(10L));
+		assertThat(events.size(), is(4));
+		assertThat(events.get(0).getLockKey(), is("lock6"));
+		assertThat(events.get(3).getLockKey(), is("lock9"));
+		assertThat(events.get(3).getStackTrace(), nullValue());
+
+		diagnostics.setStackSampleInterval(0);
+		diagnostics.released("locks", "lock10", 2000000);
+		events = diagnostics.getEvents();
+		assertThat(events.get(3).getStackTrace()[0].getMethodName(), is("testDiagnosticsRingBuffer"));
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertThat(histogram.getCount(), is(1000L));
+		assertThat(histogram.getMax(), is(1000000L));
+		assertThat(histogram.getValueAtPercentile(100), is(1000000L));
+		long p50 = histogram.getValueAtPercentile(50);
+		assertThat(p50, greaterThanOrEqualTo(500000L));
+		assertThat(p50, lessThanOrEqualTo(500000L * 9 / 8));
+		long p99 = histogram.getValueAtPercentile(99);
+		assertThat(p99, greaterThanOrEqualTo(990000L));
+
+		for (long value : new long[] { 0, 7, 8, 1023, 1024, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.index(value);
+			assertThat(LatencyHistogram.highestEquivalentValue(index), greaterThanOrEqualTo(value));
+		}
+
+		histogram.reset();
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getValueAtPercentile(99), is(0L));
+	}
+
+	private static class AsyncFencedLockService implements AsyncLockService {
+
+		private final InMemoryLockService lockService = new InMemoryLockService();
+
+		private final Executor executor = Executors.newCachedThreadPool();
+
+		@Override
+		public AsyncDistributedLock obtain(String lockKey) {
+			return new AsyncFencedLock(lockService.obtain(lockKey), executor);
+		}
+
+	}
+
+	private static class AsyncFencedLock extends ExecutorAsyncDistributedLock implements FencedDistributedLock {
+
+		AsyncFencedLock(DistributedLock lock, Executor executor) {
+			super(lock, executor);
+		}
+
+		@Override
+		public long getFencingToken() {
+			return 1;
+		}
+
+	}
+
+	private static class AsyncNoopLockService implements AsyncLockService {
+
+		private final Executor executor = Executors.newCachedThreadPool();
+
+		@Override
+		public AsyncDistributedLock obtain(String lockKey) {
+			return new ExecutorAsyncDistributedLock(new DelegatingDistributedLock(lockKey, new NoopLock()), executor);
+		}
+
+	}
+
+	/**
+	 * {@link Lock} always granted, allowing nested holds from any thread.
+	 */
+	private static class NoopLock implements Lock {
+
+		@Override
+		public void lock() {
+		}
+
+		@Override
+		public void lockInterruptibly() {
+		}
+
+		@Override
+		public boolean tryLock() {
+			return true;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) {
+			return true;
+		}
+
+		@Override
+		public void unlock() {
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	/**
+	 * Waits for a future through a callback, which runs after callbacks
+	 * registered by the instrumentation, unlike a plain {@code get()}.
+	 */
+	private static void await(ListenableFuture<?> future) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(1);
+		future.addCallback(new ListenableFutureCallback<Object>() {
+
+			@Override
+			public void onSuccess(Object result) {
+				latch.countDown();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				latch.countDown();
+			}
+		});
+		assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+	}
+
+	private static boolean hasFrame(StackTraceElement[] stackTrace, String methodName) {
+		for (StackTraceElement element : stackTrace) {
+			if (element.getMethodName().equals(methodName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
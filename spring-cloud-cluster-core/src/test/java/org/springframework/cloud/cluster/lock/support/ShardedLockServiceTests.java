@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.lock.support;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+
+/**
+ * Tests for {@link ShardedLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ShardedLockServiceTests {
+
+	private static final int KEYS = 10000;
+
+	@Test
+	public void testObtainFromOwningShard() {
+		ShardedLockService service = new ShardedLockService();
+		InMemoryLockService shard1 = new InMemoryLockService();
+		InMemoryLockService shard2 = new InMemoryLockService();
+		service.addShard("shard1", shard1);
+		service.addShard("shard2", shard2);
+		for (int i = 0; i < 100; i++) {
+			String key = "lock" + i;
+			InMemoryLockService owner = service.getShardName(key).equals("shard1") ? shard1 : shard2;
+			DistributedLock lock = service.obtain(key);
+			lock.lock();
+			try {
+				assertThat(owner.obtain(key).tryLock(), is(true));
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Test
+	public void testKeysAreSpread() {
+		ShardedLockService service = newService(4);
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (int i = 0; i < KEYS; i++) {
+			String name = service.getShardName("/locks/" + i);
+			Integer count = counts.get(name);
+			counts.put(name, count == null ? 1 : count + 1);
+		}
+		assertThat(counts.size(), is(4));
+		for (Integer count : counts.values()) {
+			assertThat(count, greaterThan(KEYS / 4 * 3 / 4));
+			assertThat(count, lessThan(KEYS / 4 * 5 / 4));
+		}
+	}
+
+	@Test
+	public void testAddingShardMovesKeysOnlyToNewShard() {
+		ShardedLockService service = newService(4);
+		String[] before = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			before[i] = service.getShardName("/locks/" + i);
+		}
+		service.addShard("shard4", new InMemoryLockService());
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			String after = service.getShardName("/locks/" + i);
+			if (!after.equals(before[i])) {
+				assertThat(after, is("shard4"));
+				moved++;
+			}
+		}
+		assertThat(moved, greaterThan(KEYS / 5 / 2));
+		assertThat(moved, lessThan(KEYS / 5 * 3 / 2));
+	}
+
+	@Test
+	public void testRemovingShardRestoresPlacement() {
+		ShardedLockService service = newService(4);
+		String[] before = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			before[i] = service.getShardName("/locks/" + i);
+		}
+		service.addShard("shard4", new InMemoryLockService());
+		service.removeShard("shard4");
+		for (int i = 0; i < KEYS; i++) {
+			assertThat(service.getShardName("/locks/" + i), is(before[i]));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoShards() {
+		new ShardedLockService().obtain("lock");
+	}
+
+	private static ShardedLockService newService(int shards) {
+		ShardedLockService service = new ShardedLockService();
+		for (int i = 0; i < shards; i++) {
+			service.addShard("shard" + i, new InMemoryLockService());
+		}
+		return service;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.v3.autoconfigure;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.cluster.autoconfigure.leader.EtcdLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.etcd.EtcdClusterProperties;
+import org.springframework.cloud.cluster.etcd.EtcdClusterProperties.EtcdLeaderProperties;
+import org.springframework.cloud.cluster.etcd.leader.EtcdLeaderProfile;
+import org.springframework.cloud.cluster.etcd.v3.leader.EtcdV3LeaderElectionBackend;
+import org.springframework.cloud.cluster.leader.Candidate;
+import org.springframework.cloud.cluster.leader.event.LeaderEventPublisher;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import io.etcd.jetcd.Client;
+
+/**
+ * Auto-configuration for leader election with the etcd v3 api, attaching
+ * the candidate of {@link EtcdLeaderAutoConfiguration} to a lease kept
+ * alive over a single stream.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+@Configuration
+@ConditionalOnClass({ EtcdLeaderAutoConfiguration.class, Client.class })
+@ConditionalOnProperty(value = "spring.cloud.cluster.etcd.leader.backend", havingValue = "v3")
+@ConditionalOnBean(name = "etcdLeaderCandidate")
+@AutoConfigureAfter(EtcdLeaderAutoConfiguration.class)
+public class EtcdV3LeaderAutoConfiguration {
+
+	@Autowired
+	private EtcdClusterProperties ecp;
+
+	@Autowired
+	private LeaderEventPublisher publisher;
+
+	@Autowired
+	private Candidate etcdLeaderCandidate;
+
+	@Bean(destroyMethod = "close")
+	public Client etcdV3Client() {
+		return Client.builder().endpoints(StringUtils.commaDelimitedListToStringArray(ecp.getConnect())).build();
+	}
+
+	@Bean
+	public EtcdV3LeaderElectionBackend etcdLeaderElectionBackend() {
+		EtcdLeaderProperties leader = ecp.getLeader();
+		EtcdLeaderProfile profile = EtcdLeaderProfile.forName(leader.getProfile());
+		EtcdV3LeaderElectionBackend backend = new EtcdV3LeaderElectionBackend(etcdV3Client(), ecp.getNamespace());
+		backend.setTtl(leader.getTtl() != null ? leader.getTtl() : profile.getTtl());
+		long requestTimeout = leader.getRequestTimeout() != null ? leader.getRequestTimeout()
+				: profile.getRequestTimeout();
+		if (requestTimeout > 0) {
+			backend.setRequestTimeout(requestTimeout);
+		}
+		return backend;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean(name = "etcdLeaderInitiator")
+	public SharedLeaderInitiator etcdLeaderInitiator() {
+		EtcdLeaderProperties leader = ecp.getLeader();
+		EtcdLeaderProfile profile = EtcdLeaderProfile.forName(leader.getProfile());
+		SharedLeaderInitiator initiator = new SharedLeaderInitiator(etcdLeaderElectionBackend());
+		initiator.setHeartbeatInterval(leader.getHeartbeatInterval() != null ? leader.getHeartbeatInterval()
+				: profile.getHeartbeatInterval());
+		initiator.setLeaderEventPublisher(publisher);
+		initiator.addCandidate(etcdLeaderCandidate);
+		return initiator;
+	}
+
+}
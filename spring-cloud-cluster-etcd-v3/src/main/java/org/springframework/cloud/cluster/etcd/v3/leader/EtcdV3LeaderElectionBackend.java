@@ -0,0 +1,342 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.v3.leader;
+
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.cluster.leader.support.ExpiringLeaderElectionBackend;
+import org.springframework.cloud.cluster.leader.support.LeaderElectionBackend;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+import org.springframework.util.Assert;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.TxnResponse;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import io.etcd.jetcd.op.Cmp;
+import io.etcd.jetcd.op.CmpTarget;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.support.CloseableClient;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * {@link LeaderElectionBackend} for the etcd v3 api. Election keys of all
+ * roles are attached to a single lease, kept alive over one streaming
+ * keepalive instead of a write per role and heartbeat. Renewing a role
+ * is therefore a local check of the lease, which fails once the stream
+ * reports the lease lost or once a ttl has passed since the last
+ * successful keepalive. A lost lease is revoked, so that keys attached
+ * to it don't outlive it on the server, and all roles are revoked at
+ * once by the next heartbeat of {@link SharedLeaderInitiator}. As renewing
+ * doesn't extend the lease, the remaining lease is reported to
+ * {@link SharedLeaderInitiator} to bound leadership by it.
+ *
+ * <p>A role is acquired by a transaction creating the key only if it
+ * doesn't exist, and released by a transaction deleting the key only if
+ * it wasn't modified since.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdV3LeaderElectionBackend implements ExpiringLeaderElectionBackend, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(EtcdV3LeaderElectionBackend.class);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String DEFAULT_NAMESPACE = "spring-cloud";
+
+	private static final long DEFAULT_TTL = 10;
+
+	private static final long DEFAULT_REQUEST_TIMEOUT = 5000;
+
+	private final Client client;
+
+	private final KV kv;
+
+	private final String namespace;
+
+	/**
+	 * Roles held under current lease, mapped to revision of the key.
+	 */
+	private final ConcurrentMap<String, Long> held = new ConcurrentHashMap<String, Long>();
+
+	private volatile long ttl = DEFAULT_TTL;
+
+	private volatile long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+
+	private volatile Session session;
+
+	/**
+	 * Instantiates a new etcd v3 leader election backend.
+	 *
+	 * @param client the etcd v3 client
+	 */
+	public EtcdV3LeaderElectionBackend(Client client) {
+		this(client, null);
+	}
+
+	/**
+	 * Instantiates a new etcd v3 leader election backend.
+	 *
+	 * @param client the etcd v3 client
+	 * @param namespace the etcd namespace
+	 */
+	public EtcdV3LeaderElectionBackend(Client client, String namespace) {
+		Assert.notNull(client, "Etcd client must be set");
+		this.client = client;
+		this.kv = client.getKVClient();
+		this.namespace = namespace == null ? DEFAULT_NAMESPACE : namespace;
+	}
+
+	/**
+	 * Sets the ttl of the lease in seconds, which bounds the time it
+	 * takes to notice a dead leader. Defaults to ten seconds. Takes
+	 * effect with the next lease.
+	 *
+	 * @param ttl the ttl
+	 */
+	public void setTtl(long ttl) {
+		Assert.isTrue(ttl > 0, "Ttl must be positive");
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Sets the timeout in milliseconds of etcd requests. Defaults to five
+	 * seconds.
+	 *
+	 * @param requestTimeout the request timeout
+	 */
+	public void setRequestTimeout(long requestTimeout) {
+		Assert.isTrue(requestTimeout > 0, "Request timeout must be positive");
+		this.requestTimeout = requestTimeout;
+	}
+
+	@Override
+	public boolean tryAcquire(String role, String id) throws Exception {
+		Session current = obtainSession();
+		ByteSequence key = key(role);
+		ByteSequence value = ByteSequence.from(id, UTF8);
+		TxnResponse response = kv.txn()
+				.If(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.createRevision(0)))
+				.Then(Op.put(key, value, PutOption.newBuilder().withLeaseId(current.leaseId).build()))
+				.Else(Op.get(key, GetOption.DEFAULT))
+				.commit().get(requestTimeout, TimeUnit.MILLISECONDS);
+		if (response.isSucceeded()) {
+			return hold(current, role, response.getHeader().getRevision());
+		}
+		// key exists, which is fine if it's already ours
+		for (GetResponse get : response.getGetResponses()) {
+			List<KeyValue> kvs = get.getKvs();
+			if (!kvs.isEmpty() && kvs.get(0).getLease() == current.leaseId && kvs.get(0).getValue().equals(value)) {
+				return hold(current, role, kvs.get(0).getModRevision());
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean renew(String role, String id) throws Exception {
+		Session current = session;
+		return current != null && current.isValid() && held.containsKey(role);
+	}
+
+	/**
+	 * Gets the time until a ttl has passed since the last successful
+	 * keepalive. Counted from receipt of the keepalive response, so the
+	 * lease may expire on the server earlier by the latency of that
+	 * response.
+	 *
+	 * @param role the role
+	 * @param id the candidate identifier
+	 * @return the remaining lease
+	 */
+	@Override
+	public long getRemainingLease(String role, String id) {
+		Session current = session;
+		if (current == null || !current.isValid() || !held.containsKey(role)) {
+			return 0;
+		}
+		return TimeUnit.NANOSECONDS.toMillis(current.lastKeepAlive + current.ttl - System.nanoTime());
+	}
+
+	@Override
+	public void release(String role, String id) throws Exception {
+		Long revision = held.remove(role);
+		if (revision == null) {
+			return;
+		}
+		ByteSequence key = key(role);
+		kv.txn()
+				.If(new Cmp(key, Cmp.Op.EQUAL, CmpTarget.modRevision(revision)))
+				.Then(Op.delete(key, DeleteOption.DEFAULT))
+				.commit().get(requestTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets the ttl of the lease in milliseconds.
+	 *
+	 * @return the lease duration
+	 */
+	@Override
+	public long getLeaseDuration() {
+		return TimeUnit.SECONDS.toMillis(ttl);
+	}
+
+	@Override
+	public synchronized void destroy() throws Exception {
+		Session current = session;
+		session = null;
+		held.clear();
+		if (current != null) {
+			current.close();
+			try {
+				client.getLeaseClient().revoke(current.leaseId).get(requestTimeout, TimeUnit.MILLISECONDS);
+			}
+			catch (Exception e) {
+				logger.warn("Couldn't revoke etcd lease, keys expire by ttl", e);
+			}
+		}
+	}
+
+	private boolean hold(Session current, String role, long revision) {
+		held.put(role, revision);
+		if (current != session || !current.isValid()) {
+			// lease was lost meanwhile, key is gone with it
+			held.remove(role, revision);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the current session, granting a new lease if there's none or
+	 * if the previous lease was lost.
+	 */
+	private synchronized Session obtainSession() throws Exception {
+		Session current = session;
+		if (current != null && current.isValid()) {
+			return current;
+		}
+		held.clear();
+		long grantedAt = System.nanoTime();
+		long ttl = this.ttl;
+		long leaseId = client.getLeaseClient().grant(ttl).get(requestTimeout, TimeUnit.MILLISECONDS).getID();
+		current = new Session(leaseId, ttl, grantedAt);
+		current.keepAlive = client.getLeaseClient().keepAlive(leaseId, current);
+		session = current;
+		return current;
+	}
+
+	private ByteSequence key(String role) {
+		return ByteSequence.from(namespace + "/" + role, UTF8);
+	}
+
+	/**
+	 * Lease shared by all roles and the stream keeping it alive.
+	 */
+	private class Session implements StreamObserver<LeaseKeepAliveResponse> {
+
+		private final long leaseId;
+
+		private final long ttl;
+
+		private volatile boolean alive = true;
+
+		/**
+		 * Time in nanoseconds of the last successful keepalive.
+		 */
+		private volatile long lastKeepAlive;
+
+		private volatile CloseableClient keepAlive;
+
+		Session(long leaseId, long ttl, long grantedAt) {
+			this.leaseId = leaseId;
+			this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+			this.lastKeepAlive = grantedAt;
+		}
+
+		@Override
+		public void onNext(LeaseKeepAliveResponse response) {
+			if (response.getTTL() <= 0) {
+				lost("etcd lease " + leaseId + " expired", null);
+			}
+			else {
+				lastKeepAlive = System.nanoTime();
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			lost("etcd lease " + leaseId + " keepalive failed", t);
+		}
+
+		@Override
+		public void onCompleted() {
+			lost("etcd lease " + leaseId + " keepalive completed", null);
+		}
+
+		/**
+		 * Checks if the lease is alive and was kept alive within its ttl,
+		 * giving it up otherwise.
+		 */
+		boolean isValid() {
+			if (!alive) {
+				return false;
+			}
+			if (System.nanoTime() - lastKeepAlive >= ttl) {
+				lost("etcd lease " + leaseId + " not kept alive within its ttl", null);
+				return false;
+			}
+			return true;
+		}
+
+		void close() {
+			alive = false;
+			if (keepAlive != null) {
+				keepAlive.close();
+			}
+		}
+
+		private void lost(String message, Throwable t) {
+			synchronized (this) {
+				if (!alive) {
+					return;
+				}
+				close();
+			}
+			logger.warn(message + ", relinquishing all roles", t);
+			// the lease may still exist on the server, keeping its keys
+			// until it expires, so it's revoked without waiting
+			client.getLeaseClient().revoke(leaseId);
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.v3.autoconfigure;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.autoconfigure.leader.EtcdLeaderAutoConfiguration;
+import org.springframework.cloud.cluster.autoconfigure.leader.LeaderAutoConfiguration;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Tests for {@link EtcdV3LeaderAutoConfiguration}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdV3LeaderAutoConfigurationTests {
+
+	private AnnotationConfigApplicationContext context;
+
+	@Before
+	public void setup() {
+		context = new AnnotationConfigApplicationContext();
+	}
+
+	@After
+	public void close() {
+		if (context != null) {
+			context.close();
+		}
+	}
+
+	@Test
+	public void testV3Backend() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+			"spring.cloud.cluster.etcd.leader.backend:v3"
+		);
+		context.register(LeaderAutoConfiguration.class, EtcdLeaderAutoConfiguration.class,
+				EtcdV3LeaderAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdInstance"), is(false));
+		assertThat(context.containsBean("etcdV3Client"), is(true));
+		assertThat(context.containsBean("etcdLeaderElectionBackend"), is(true));
+		assertThat(context.getBean("etcdLeaderInitiator"), instanceOf(SharedLeaderInitiator.class));
+	}
+
+	@Test
+	public void testV2Backend() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context);
+		context.register(LeaderAutoConfiguration.class, EtcdLeaderAutoConfiguration.class,
+				EtcdV3LeaderAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdInstance"), is(true));
+		assertThat(context.containsBean("etcdV3Client"), is(false));
+		assertThat(context.containsBean("etcdLeaderElectionBackend"), is(false));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		EnvironmentTestUtils.addEnvironment(this.context,
+			"spring.cloud.cluster.etcd.leader.backend:v3",
+			"spring.cloud.cluster.etcd.leader.enabled:false"
+		);
+		context.register(LeaderAutoConfiguration.class, EtcdLeaderAutoConfiguration.class,
+				EtcdV3LeaderAutoConfiguration.class);
+		context.refresh();
+
+		assertThat(context.containsBean("etcdV3Client"), is(false));
+		assertThat(context.containsBean("etcdLeaderInitiator"), is(false));
+	}
+
+}
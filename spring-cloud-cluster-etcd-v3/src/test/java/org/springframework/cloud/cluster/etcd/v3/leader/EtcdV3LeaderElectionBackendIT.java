@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.v3.leader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.support.CloseableClient;
+
+/**
+ * Integration tests for {@link EtcdV3LeaderElectionBackend} using external
+ * etcd v3 server.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdV3LeaderElectionBackendIT {
+
+	private static final String NAMESPACE = "etcd-v3-test";
+
+	private Client client1;
+	private Client client2;
+	private EtcdV3LeaderElectionBackend backend1;
+	private EtcdV3LeaderElectionBackend backend2;
+
+	@Before
+	public void setup() {
+		client1 = Client.builder().endpoints("http://localhost:2379").build();
+		client2 = Client.builder().endpoints("http://localhost:2379").build();
+		backend1 = new EtcdV3LeaderElectionBackend(client1, NAMESPACE);
+		backend2 = new EtcdV3LeaderElectionBackend(client2, NAMESPACE);
+	}
+
+	@After
+	public void close() throws Exception {
+		backend1.destroy();
+		backend2.destroy();
+		client1.close();
+		client2.close();
+	}
+
+	@Test
+	public void testManyRolesShareLease() throws Exception {
+		for (int i = 0; i < 300; i++) {
+			assertThat(backend1.tryAcquire("role" + i, "id1"), is(true));
+		}
+		for (int i = 0; i < 300; i++) {
+			assertThat(backend1.tryAcquire("role" + i, "id1"), is(true));
+			assertThat(backend1.renew("role" + i, "id1"), is(true));
+			assertThat(backend2.tryAcquire("role" + i, "id2"), is(false));
+		}
+	}
+
+	@Test
+	public void testRelease() throws Exception {
+		assertThat(backend1.tryAcquire("role", "id1"), is(true));
+		assertThat(backend2.tryAcquire("role", "id2"), is(false));
+		backend1.release("role", "id1");
+		assertThat(backend1.renew("role", "id1"), is(false));
+		assertThat(backend2.tryAcquire("role", "id2"), is(true));
+	}
+
+	@Test
+	public void testDestroyRevokesLease() throws Exception {
+		assertThat(backend1.tryAcquire("role", "id1"), is(true));
+		// revokes the lease, removing all keys attached to it
+		backend1.destroy();
+		assertThat(backend1.renew("role", "id1"), is(false));
+		assertThat(backend2.tryAcquire("role", "id2"), is(true));
+	}
+
+	@Test
+	public void testLostLease() throws Exception {
+		assertThat(backend1.tryAcquire("role", "id1"), is(true));
+		// lease revoked behind the back of backend1, keepalive stream
+		// then reports it gone
+		long leaseId = client2.getKVClient().get(ByteSequence.from(NAMESPACE + "/role", Charset.forName("UTF-8")))
+				.get().getKvs().get(0).getLease();
+		client2.getLeaseClient().revoke(leaseId).get();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (backend1.renew("role", "id1") && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		assertThat(backend1.renew("role", "id1"), is(false));
+		assertThat(backend2.tryAcquire("role", "id2"), is(true));
+		assertThat(backend1.tryAcquire("role", "id1"), is(false));
+	}
+
+	@Test
+	public void testLeaseNotKeptAlive() throws Exception {
+		assertThat(backend1.tryAcquire("role", "id1"), is(true));
+		// no keepalive succeeded within ttl, lease is given up and revoked
+		// even if the server would still consider it alive
+		Object session = ReflectionTestUtils.getField(backend1, "session");
+		ReflectionTestUtils.setField(session, "lastKeepAlive", System.nanoTime() - TimeUnit.SECONDS.toNanos(20));
+		assertThat(backend1.renew("role", "id1"), is(false));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		boolean acquired = false;
+		while (!(acquired = backend2.tryAcquire("role", "id2")) && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		assertThat(acquired, is(true));
+	}
+
+	@Test
+	public void testKeepAliveStalled() throws Exception {
+		backend1.setTtl(2);
+		assertThat(backend1.tryAcquire("role", "id1"), is(true));
+		assertThat(backend1.getRemainingLease("role", "id1") > 0, is(true));
+		assertThat(backend1.getRemainingLease("role", "id1") <= 2000, is(true));
+		// keepalives stop without the stream reporting anything, so the
+		// lease runs out on the server while renewals still succeed
+		stallKeepAlive(backend1);
+		long remaining = backend1.getRemainingLease("role", "id1");
+		Thread.sleep(500);
+		assertThat(backend1.renew("role", "id1"), is(true));
+		assertThat(backend1.getRemainingLease("role", "id1") < remaining, is(true));
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (backend1.renew("role", "id1") && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		assertThat(backend1.renew("role", "id1"), is(false));
+		assertThat(backend1.getRemainingLease("role", "id1") <= 0, is(true));
+	}
+
+	@Test
+	public void testLeadershipBoundedByStalledLease() throws Exception {
+		backend1.setTtl(2);
+		SharedLeaderInitiator initiator = new SharedLeaderInitiator(backend1);
+		initiator.setHeartbeatInterval(500);
+		DefaultCandidate candidate = new DefaultCandidate("id1", "role");
+		initiator.addCandidate(candidate);
+		initiator.start();
+		try {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (!initiator.isLeader(candidate) && System.nanoTime() < deadline) {
+				Thread.sleep(20);
+			}
+			assertThat(initiator.isLeader(candidate), is(true));
+			stallKeepAlive(backend1);
+			// once the server lets another candidate in, first one must
+			// already be done leading
+			deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			boolean acquired = false;
+			while (!(acquired = backend2.tryAcquire("role", "id2")) && System.nanoTime() < deadline) {
+				Thread.sleep(20);
+			}
+			assertThat(acquired, is(true));
+			assertThat(initiator.isLeader(candidate), is(false));
+		}
+		finally {
+			initiator.destroy();
+		}
+	}
+
+	private static void stallKeepAlive(EtcdV3LeaderElectionBackend backend) {
+		Object session = ReflectionTestUtils.getField(backend, "session");
+		((CloseableClient) ReflectionTestUtils.getField(session, "keepAlive")).close();
+	}
+
+}
@@ -18,7 +18,7 @@ package org.springframework.cloud.cluster.etcd;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
- * Configuration properties for etcd leader election.
+ * Configuration properties for etcd leader election and locking.
  * 
  * @author Venil Noronha
  */
@@ -34,6 +34,9 @@ public class EtcdClusterProperties {
 	/** etcd leader properties. */
 	private EtcdLeaderProperties leader = new EtcdLeaderProperties();
 
+	/** etcd lock properties. */
+	private EtcdLockProperties lock = new EtcdLockProperties();
+
 	public String getNamespace() {
 		return namespace;
 	}
@@ -57,6 +60,14 @@ public class EtcdClusterProperties {
 	public void setLeader(EtcdLeaderProperties leader) {
 		this.leader = leader;
 	}
+
+	public EtcdLockProperties getLock() {
+		return lock;
+	}
+
+	public void setLock(EtcdLockProperties lock) {
+		this.lock = lock;
+	}
 	
 	public static class EtcdLeaderProperties {
 
@@ -71,6 +82,109 @@ public class EtcdClusterProperties {
 			this.enabled = enabled;
 		}
 
+		/** if followers watch the leader entry instead of polling it. */
+		private boolean watch = false;
+
+		public boolean isWatch() {
+			return watch;
+		}
+
+		public void setWatch(boolean watch) {
+			this.watch = watch;
+		}
+
+		/** election backend, v2 for one etcd v2 entry per role or v3 for keys sharing an etcd v3 lease. */
+		private String backend = "v2";
+
+		public String getBackend() {
+			return backend;
+		}
+
+		public void setBackend(String backend) {
+			this.backend = backend;
+		}
+
+		/** tuning profile, one of default, fast-failover or low-load. */
+		private String profile = "default";
+
+		/** ttl of leader entry in seconds, overrides the profile. */
+		private Integer ttl;
+
+		/** interval between heartbeats in milliseconds, overrides the profile. */
+		private Long heartbeatInterval;
+
+		/** maximum random delay added to retries of followers in milliseconds, overrides the profile. */
+		private Long retryJitter;
+
+		/** timeout of etcd requests in milliseconds, overrides the profile. */
+		private Long requestTimeout;
+
+		public String getProfile() {
+			return profile;
+		}
+
+		public void setProfile(String profile) {
+			this.profile = profile;
+		}
+
+		public Integer getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Integer ttl) {
+			this.ttl = ttl;
+		}
+
+		public Long getHeartbeatInterval() {
+			return heartbeatInterval;
+		}
+
+		public void setHeartbeatInterval(Long heartbeatInterval) {
+			this.heartbeatInterval = heartbeatInterval;
+		}
+
+		public Long getRetryJitter() {
+			return retryJitter;
+		}
+
+		public void setRetryJitter(Long retryJitter) {
+			this.retryJitter = retryJitter;
+		}
+
+		public Long getRequestTimeout() {
+			return requestTimeout;
+		}
+
+		public void setRequestTimeout(Long requestTimeout) {
+			this.requestTimeout = requestTimeout;
+		}
+
+	}
+
+	public static class EtcdLockProperties {
+
+		/** if etcd distributed locking is enabled. */
+		private boolean enabled = true;
+
+		/** ttl of lock keys in seconds. */
+		private Integer ttl;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Integer getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Integer ttl) {
+			this.ttl = ttl;
+		}
+
 	}
-	
+
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.leader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.leader.support.LeaderElectionBackend;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+import org.springframework.util.Assert;
+
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.responses.EtcdException;
+
+/**
+ * {@link LeaderElectionBackend} for etcd. A role is held by keeping the
+ * candidate id in an entry with a ttl, created only if absent and
+ * refreshed only while still holding the candidate id. The ttl is the
+ * lease duration, so heartbeat interval of {@link SharedLeaderInitiator}
+ * must not exceed half of it.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdLeaderElectionBackend implements LeaderElectionBackend {
+
+	private final static int DEFAULT_TTL = 10;
+
+	private final static String DEFAULT_NAMESPACE = "spring-cloud";
+
+	private final EtcdClient client;
+
+	private final String namespace;
+
+	private volatile int ttl = DEFAULT_TTL;
+
+	/**
+	 * Instantiates a new etcd leader election backend.
+	 *
+	 * @param client the etcd client
+	 */
+	public EtcdLeaderElectionBackend(EtcdClient client) {
+		this(client, null);
+	}
+
+	/**
+	 * Instantiates a new etcd leader election backend.
+	 *
+	 * @param client the etcd client
+	 * @param namespace the etcd namespace
+	 */
+	public EtcdLeaderElectionBackend(EtcdClient client, String namespace) {
+		Assert.notNull(client, "Etcd client must be set");
+		this.client = client;
+		this.namespace = namespace == null ? DEFAULT_NAMESPACE : namespace;
+	}
+
+	/**
+	 * Sets the ttl of role entries in seconds. Defaults to ten seconds.
+	 *
+	 * @param ttl the ttl
+	 */
+	public void setTtl(int ttl) {
+		Assert.isTrue(ttl > 0, "Ttl must be positive");
+		this.ttl = ttl;
+	}
+
+	@Override
+	public boolean tryAcquire(String role, String id) throws Exception {
+		try {
+			client.put(path(role), id).ttl(ttl).prevExist(false).send().get();
+			return true;
+		}
+		catch (EtcdException e) {
+			// entry exists, which is fine if it's already ours
+			return renew(role, id);
+		}
+	}
+
+	@Override
+	public boolean renew(String role, String id) throws Exception {
+		try {
+			client.put(path(role), id).ttl(ttl).prevValue(id).send().get();
+			return true;
+		}
+		catch (EtcdException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void release(String role, String id) throws Exception {
+		try {
+			client.delete(path(role)).prevValue(id).send().get();
+		}
+		catch (EtcdException e) {
+			// entry already expired or taken over
+		}
+	}
+
+	/**
+	 * Gets the ttl of role entries in milliseconds.
+	 *
+	 * @return the lease duration
+	 */
+	@Override
+	public long getLeaseDuration() {
+		return TimeUnit.SECONDS.toMillis(ttl);
+	}
+
+	private String path(String role) {
+		return namespace + "/" + role;
+	}
+
+}
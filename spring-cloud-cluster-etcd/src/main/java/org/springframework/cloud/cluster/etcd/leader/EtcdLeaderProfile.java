@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.leader;
+
+/**
+ * Named tuning profiles of etcd leader election, trading failover time
+ * against the rate of etcd requests.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public enum EtcdLeaderProfile {
+
+	/** ttl of 10s with a heartbeat every 5s. */
+	DEFAULT("default", 10, 5000, 0, 0),
+
+	/** ttl of 3s with a heartbeat every second and short request timeouts. */
+	FAST_FAILOVER("fast-failover", 3, 1000, 200, 1000),
+
+	/** ttl of 30s with a heartbeat every 10s and widely spread retries. */
+	LOW_LOAD("low-load", 30, 10000, 5000, 5000);
+
+	private final String name;
+
+	private final int ttl;
+
+	private final long heartbeatInterval;
+
+	private final long retryJitter;
+
+	private final long requestTimeout;
+
+	private EtcdLeaderProfile(String name, int ttl, long heartbeatInterval, long retryJitter, long requestTimeout) {
+		this.name = name;
+		this.ttl = ttl;
+		this.heartbeatInterval = heartbeatInterval;
+		this.retryJitter = retryJitter;
+		this.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * Gets the profile name as used in configuration.
+	 *
+	 * @return the profile name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the ttl of the leader entry in seconds.
+	 *
+	 * @return the ttl
+	 */
+	public int getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Gets the interval in milliseconds between heartbeats.
+	 *
+	 * @return the heartbeat interval
+	 */
+	public long getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	/**
+	 * Gets the maximum random delay in milliseconds added to retries
+	 * of followers.
+	 *
+	 * @return the retry jitter
+	 */
+	public long getRetryJitter() {
+		return retryJitter;
+	}
+
+	/**
+	 * Gets the timeout in milliseconds of etcd requests, {@code 0} for
+	 * the etcd client default.
+	 *
+	 * @return the request timeout
+	 */
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * Resolves a profile by its name, e.g. {@code fast-failover}, or by
+	 * its constant name ignoring case.
+	 *
+	 * @param name the profile name
+	 * @return the profile
+	 * @throws IllegalArgumentException if no profile matches
+	 */
+	public static EtcdLeaderProfile forName(String name) {
+		for (EtcdLeaderProfile profile : values()) {
+			if (profile.name.equalsIgnoreCase(name) || profile.name().equalsIgnoreCase(name)) {
+				return profile;
+			}
+		}
+		throw new IllegalArgumentException("Unknown etcd leader profile [" + name + "]");
+	}
+
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
@@ -39,34 +40,41 @@ import org.springframework.context.Lifecycle;
 import org.springframework.util.Assert;
 
 import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.requests.EtcdKeyGetRequest;
+import mousio.etcd4j.requests.EtcdKeyRequest;
 import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeyAction;
+import mousio.etcd4j.responses.EtcdKeysResponse;
 
 /**
  * Bootstrap leadership {@link Candidate candidates}
  * with etcd. Upon construction, {@link #start} must be invoked to
  * register the candidate for leadership election.
  *
+ * <p>By default a follower polls for leadership once per heartbeat, so
+ * failover takes up to the ttl of the leader entry plus a heartbeat. With
+ * {@link #setWatch(boolean) watch} enabled a follower instead watches the
+ * leader entry and races for it as soon as it is deleted or expires,
+ * after a random delay of up to the retry jitter, bounding failover by
+ * the ttl plus the jitter.
+ *
  * @author Venil Noronha
  * @author Patrick Peralta
+ * @author Janne Valkealahti
  */
 public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableBean {
 
 	private static final Logger logger = LoggerFactory.getLogger(LeaderInitiator.class);
 
 	/**
-	 * TTL for etcd entry in seconds.
+	 * Default namespace for etcd entry.
 	 */
-	private final static int TTL = 10;
+	private final static String DEFAULT_NAMESPACE = "spring-cloud";
 
 	/**
-	 * Number of seconds to sleep between issuing heartbeats.
+	 * Etcd error code for an already existing key.
 	 */
-	private final static int HEART_BEAT_SLEEP = TTL / 2;
-
-	/**
-	 * Default namespace for etcd entry.
-	 */
-	private final static String DEFAULT_NAMESPACE = "spring-cloud";
+	private final static int NODE_EXIST = 105;
 
 	/**
 	 * {@link EtcdClient} instance.
@@ -132,6 +140,32 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	 */
 	private volatile boolean running;
 
+	/**
+	 * Flag that indicates whether followers watch the leader entry
+	 * instead of polling it.
+	 */
+	private volatile boolean watch;
+
+	/**
+	 * TTL for etcd entry in seconds.
+	 */
+	private volatile int ttl = EtcdLeaderProfile.DEFAULT.getTtl();
+
+	/**
+	 * Number of milliseconds to sleep between issuing heartbeats.
+	 */
+	private volatile long heartbeatInterval = EtcdLeaderProfile.DEFAULT.getHeartbeatInterval();
+
+	/**
+	 * Maximum number of milliseconds randomly added to sleeps of followers.
+	 */
+	private volatile long retryJitter = EtcdLeaderProfile.DEFAULT.getRetryJitter();
+
+	/**
+	 * Timeout of etcd requests in milliseconds, 0 for client default.
+	 */
+	private volatile long requestTimeout = EtcdLeaderProfile.DEFAULT.getRequestTimeout();
+
 	/**
 	 * Leader event publisher.
 	 */
@@ -167,6 +201,8 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	@Override
 	public synchronized void start() {
 		if (!running) {
+			Assert.state(heartbeatInterval < TimeUnit.SECONDS.toMillis(ttl),
+					"Heartbeat interval must be shorter than ttl");
 			running = true;
 			initiatorFuture = leaderExecutorService.submit(new Initiator());
 		}
@@ -216,6 +252,117 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		this.leaderEventPublisher = leaderEventPublisher;
 	}
 
+	/**
+	 * Sets whether a follower watches the leader entry and tries to
+	 * acquire leadership as soon as the entry is deleted or expires,
+	 * instead of trying once per heartbeat. Defaults to {@code false}.
+	 *
+	 * @param watch true to watch the leader entry
+	 */
+	public void setWatch(boolean watch) {
+		this.watch = watch;
+	}
+
+	/**
+	 * Applies ttl, heartbeat interval, retry jitter and request timeout
+	 * of a tuning profile. Individual settings may be overridden
+	 * afterwards.
+	 *
+	 * @param profile the tuning profile
+	 */
+	public void setProfile(EtcdLeaderProfile profile) {
+		Assert.notNull(profile, "Profile must be set");
+		setTtl(profile.getTtl());
+		setHeartbeatInterval(profile.getHeartbeatInterval());
+		setRetryJitter(profile.getRetryJitter());
+		setRequestTimeout(profile.getRequestTimeout());
+	}
+
+	/**
+	 * Gets the ttl of the leader entry in seconds.
+	 *
+	 * @return the ttl
+	 */
+	public int getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * Sets the ttl of the leader entry in seconds, which bounds the time
+	 * it takes to notice a dead leader. Defaults to ten seconds.
+	 *
+	 * @param ttl the ttl
+	 */
+	public void setTtl(int ttl) {
+		Assert.isTrue(ttl > 0, "Ttl must be positive");
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Gets the interval in milliseconds between heartbeats.
+	 *
+	 * @return the heartbeat interval
+	 */
+	public long getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	/**
+	 * Sets the interval in milliseconds between heartbeats of a leader
+	 * and between attempts of a polling follower. Must be shorter than
+	 * the ttl. Defaults to five seconds.
+	 *
+	 * @param heartbeatInterval the heartbeat interval
+	 */
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		Assert.isTrue(heartbeatInterval > 0, "Heartbeat interval must be positive");
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	/**
+	 * Gets the maximum random delay in milliseconds added to retries of
+	 * followers.
+	 *
+	 * @return the retry jitter
+	 */
+	public long getRetryJitter() {
+		return retryJitter;
+	}
+
+	/**
+	 * Sets the maximum random delay in milliseconds added to retries of
+	 * followers, spreading attempts of many followers over time. With
+	 * {@link #setWatch(boolean) watch} enabled, followers also wait up to
+	 * this delay after the leader entry was vacated before racing for it.
+	 * Defaults to {@code 0}.
+	 *
+	 * @param retryJitter the retry jitter
+	 */
+	public void setRetryJitter(long retryJitter) {
+		Assert.isTrue(retryJitter >= 0, "Retry jitter must not be negative");
+		this.retryJitter = retryJitter;
+	}
+
+	/**
+	 * Gets the timeout in milliseconds of etcd requests.
+	 *
+	 * @return the request timeout
+	 */
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * Sets the timeout in milliseconds of etcd requests other than
+	 * watches. Defaults to {@code 0} meaning the etcd client default.
+	 *
+	 * @param requestTimeout the request timeout
+	 */
+	public void setRequestTimeout(long requestTimeout) {
+		Assert.isTrue(requestTimeout >= 0, "Request timeout must not be negative");
+		this.requestTimeout = requestTimeout;
+	}
+
 	/**
 	 * Notifies that the candidate has acquired leadership.
 	 */
@@ -254,7 +401,7 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	 */
 	private void tryDeleteCandidateEntry() {
 		try {
-			client.delete(baseEtcdPath).prevValue(candidate.getId()).send().get();
+			withTimeout(client.delete(baseEtcdPath).prevValue(candidate.getId())).send().get();
 		}
 		catch (EtcdException e) {
 			logger.warn("Couldn't delete candidate's entry from etcd", e);
@@ -264,6 +411,32 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		}
 	}
 
+	/**
+	 * Applies the request timeout to an etcd request if set.
+	 */
+	private <T extends EtcdKeyRequest> T withTimeout(T request) {
+		if (requestTimeout > 0) {
+			request.timeout(requestTimeout, TimeUnit.MILLISECONDS);
+		}
+		return request;
+	}
+
+	/**
+	 * Gets the time in milliseconds to sleep before next attempt of a
+	 * follower.
+	 */
+	private long retryDelay() {
+		return heartbeatInterval + jitter();
+	}
+
+	/**
+	 * Gets a random delay in milliseconds up to the retry jitter.
+	 */
+	private long jitter() {
+		long jitter = retryJitter;
+		return jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0;
+	}
+
 	/**
 	 * Callable that invokes {@link Candidate#onGranted(Context)}
 	 * when the candidate is granted leadership.
@@ -302,9 +475,15 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 						sendHeartBeat();
 					}
 					else {
-						tryAcquire();
+						long index = tryAcquire();
+						if (index >= 0 && watch) {
+							awaitVacancy(index);
+							// spread the race of followers woken up by the same vacancy
+							TimeUnit.MILLISECONDS.sleep(jitter());
+							continue;
+						}
 					}
-					TimeUnit.SECONDS.sleep(HEART_BEAT_SLEEP);
+					TimeUnit.MILLISECONDS.sleep(isLeader ? heartbeatInterval : retryDelay());
 				}
 			}
 			finally {
@@ -340,7 +519,7 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		 */
 		private void sendHeartBeat() throws InterruptedException {
 			try {
-				client.put(baseEtcdPath, candidate.getId()).ttl(TTL).prevValue(candidate.getId()).send().get();
+				withTimeout(client.put(baseEtcdPath, candidate.getId()).ttl(ttl).prevValue(candidate.getId())).send().get();
 			}
 			catch (EtcdException e) {
 				notifyRevoked();
@@ -355,19 +534,70 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		/**
 		 * Tries to acquire leadership by posting the candidate's id to etcd. If the etcd call
 		 * is successful, it is assumed that the current candidate is now leader.
+		 *
+		 * @return etcd index of the existing leader entry, {@code 0} if index is not
+		 * known, or {@code -1} if leadership was acquired or etcd couldn't be accessed
 		 */
-		private void tryAcquire() {
+		private long tryAcquire() {
 			try {
-				client.put(baseEtcdPath, candidate.getId()).ttl(TTL).prevExist(false).send().get();
+				withTimeout(client.put(baseEtcdPath, candidate.getId()).ttl(ttl).prevExist(false)).send().get();
 				notifyGranted();
 			}
 			catch (EtcdException e) {
 				// Couldn't set the value to current candidate's id, therefore, keep trying.
+				if (e.errorCode == NODE_EXIST) {
+					return e.index != null ? e.index : 0;
+				}
 			}
 			catch (IOException | TimeoutException e) {
 				// Couldn't access etcd, therefore, keep trying.
 				logger.warn("Couldn't access etcd", e);
 			}
+			return -1;
+		}
+
+		/**
+		 * Watches the leader entry until it's deleted or expires. Heartbeats
+		 * of the current leader only move the watched index forward. Returns
+		 * early after a ttl without changes, or if the watch fails, so that
+		 * leadership is tried again.
+		 *
+		 * @param index the etcd index to watch changes after
+		 * @throws InterruptedException if the current thread was interrupted
+		 */
+		private void awaitVacancy(long index) throws InterruptedException {
+			while (running) {
+				EtcdKeyGetRequest request = client.get(baseEtcdPath).timeout(ttl, TimeUnit.SECONDS);
+				request = index > 0 ? request.waitForChange(index + 1) : request.waitForChange();
+				try {
+					EtcdKeysResponse response = request.send().get();
+					if (isVacated(response)) {
+						return;
+					}
+					index = response.node.modifiedIndex;
+				}
+				catch (EtcdException e) {
+					// index may have been cleared from etcd history
+					return;
+				}
+				catch (TimeoutException e) {
+					// nothing changed within ttl
+					return;
+				}
+				catch (IOException e) {
+					logger.warn("Couldn't access etcd", e);
+					TimeUnit.MILLISECONDS.sleep(retryDelay());
+					return;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		}
+
+		private boolean isVacated(EtcdKeysResponse response) {
+			return response.action == EtcdKeyAction.delete || response.action == EtcdKeyAction.compareAndDelete
+					|| response.action == EtcdKeyAction.expire || response.node == null;
 		}
 
 	}
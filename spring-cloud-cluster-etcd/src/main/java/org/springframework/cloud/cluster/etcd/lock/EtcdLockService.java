@@ -0,0 +1,372 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.lock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.LockingException;
+import org.springframework.cloud.cluster.lock.support.AbstractDistributedLock;
+import org.springframework.util.Assert;
+
+import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.promises.EtcdResponsePromise;
+import mousio.etcd4j.requests.EtcdKeyGetRequest;
+import mousio.etcd4j.responses.EtcdException;
+import mousio.etcd4j.responses.EtcdKeysResponse;
+
+/**
+ * {@link LockService} implementation based on etcd. A lock is an etcd key
+ * {@code namespace/locks/lockKey} created with {@code prevExist=false} and
+ * a TTL, holding the id of its owner.
+ *
+ * <p>Waiters watch the lock key with {@code waitForChange} instead of
+ * polling and retry once the key is deleted or has expired. Expiration of
+ * all locks held by a service is extended in a single keepalive pass every
+ * half of the TTL, which sends all refreshes before waiting for any of the
+ * responses. Locks which couldn't be refreshed are considered lost.
+ *
+ * <p>Locks are owned by the calling thread and are reentrant. Reentrant
+ * acquisitions are counted locally without contacting etcd.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdLockService implements LockService, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(EtcdLockService.class);
+
+	/**
+	 * Default TTL for lock keys in seconds.
+	 */
+	public static final int DEFAULT_TTL = 10;
+
+	/**
+	 * Default namespace for lock keys.
+	 */
+	private static final String DEFAULT_NAMESPACE = "spring-cloud";
+
+	/**
+	 * etcd error code for a key which already exists.
+	 */
+	private static final int NODE_EXIST = 105;
+
+	private final EtcdClient client;
+
+	private final String basePath;
+
+	private final int ttl;
+
+	private final String clientId = UUID.randomUUID().toString();
+
+	/**
+	 * Locks held by this service keyed by etcd key.
+	 */
+	private final ConcurrentMap<String, Hold> holds = new ConcurrentHashMap<String, Hold>();
+
+	private ScheduledExecutorService renewalExecutorService;
+
+	/**
+	 * Instantiates a new etcd lock service.
+	 *
+	 * @param client {@link EtcdClient} instance
+	 * @param namespace etcd namespace
+	 */
+	public EtcdLockService(EtcdClient client, String namespace) {
+		this(client, namespace, DEFAULT_TTL);
+	}
+
+	/**
+	 * Instantiates a new etcd lock service.
+	 *
+	 * @param client {@link EtcdClient} instance
+	 * @param namespace etcd namespace
+	 * @param ttl TTL for lock keys in seconds
+	 */
+	public EtcdLockService(EtcdClient client, String namespace, int ttl) {
+		Assert.notNull(client, "Etcd client must be set");
+		Assert.isTrue(ttl > 1, "TTL must be at least 2 seconds");
+		this.client = client;
+		this.basePath = (namespace == null ? DEFAULT_NAMESPACE : namespace) + "/locks/";
+		this.ttl = ttl;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		return new EtcdLock(lockKey);
+	}
+
+	@Override
+	public synchronized void destroy() throws Exception {
+		if (renewalExecutorService != null) {
+			renewalExecutorService.shutdownNow();
+			renewalExecutorService = null;
+		}
+		for (Map.Entry<String, Hold> entry : holds.entrySet()) {
+			try {
+				client.delete(entry.getKey()).prevValue(entry.getValue().owner).send().get();
+			}
+			catch (EtcdException | IOException | TimeoutException e) {
+				logger.warn("Couldn't release lock [" + entry.getKey() + "]", e);
+			}
+		}
+		holds.clear();
+	}
+
+	private String threadOwner() {
+		return clientId + ":" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * Tries to acquire a lock once. Returns {@code -1} if lock was acquired,
+	 * otherwise an etcd index to watch changes from or {@code 0} if index
+	 * is not known.
+	 */
+	private long tryAcquire(String etcdKey, String owner) {
+		Hold hold = holds.get(etcdKey);
+		if (hold != null && hold.owner.equals(owner)) {
+			hold.count++;
+			return -1;
+		}
+		try {
+			client.put(etcdKey, owner).ttl(ttl).prevExist(false).send().get();
+			holds.put(etcdKey, new Hold(owner));
+			startRenewal();
+			return -1;
+		}
+		catch (EtcdException e) {
+			if (e.errorCode != NODE_EXIST) {
+				throw new LockingException("Failed to lock [" + etcdKey + "]", e);
+			}
+			return e.index != null ? e.index : 0;
+		}
+		catch (IOException | TimeoutException e) {
+			throw new LockingException("Couldn't access etcd", e);
+		}
+	}
+
+	/**
+	 * Acquires a lock for the calling thread, watching the lock key
+	 * between attempts until given deadline.
+	 */
+	private boolean acquire(String etcdKey, String owner, long deadline) throws InterruptedException {
+		while (true) {
+			long index = tryAcquire(etcdKey, owner);
+			if (index < 0) {
+				return true;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			awaitChange(etcdKey, index, Math.min(remaining, TimeUnit.SECONDS.toMillis(ttl)));
+		}
+	}
+
+	/**
+	 * Waits until lock key changes after given index or timeout passes.
+	 */
+	private void awaitChange(String etcdKey, long index, long timeout) {
+		EtcdKeyGetRequest request = client.get(etcdKey).timeout(timeout, TimeUnit.MILLISECONDS);
+		request = index > 0 ? request.waitForChange(index + 1) : request.waitForChange();
+		try {
+			request.send().get();
+		}
+		catch (EtcdException e) {
+			// index may have been cleared from etcd history, try again
+		}
+		catch (TimeoutException e) {
+			// nothing changed within timeout
+		}
+		catch (IOException e) {
+			// failure is reported by next attempt
+		}
+	}
+
+	private void release(String lockKey, String etcdKey, String owner) {
+		Hold hold = holds.get(etcdKey);
+		if (hold == null || !hold.owner.equals(owner)) {
+			throw new IllegalMonitorStateException("Lock [" + lockKey
+					+ "] is not held by this owner, it may have expired");
+		}
+		if (--hold.count > 0) {
+			return;
+		}
+		holds.remove(etcdKey, hold);
+		try {
+			client.delete(etcdKey).prevValue(owner).send().get();
+		}
+		catch (EtcdException e) {
+			throw new IllegalMonitorStateException("Lock [" + lockKey
+					+ "] is not held by this owner, it may have expired");
+		}
+		catch (IOException | TimeoutException e) {
+			throw new LockingException("Couldn't access etcd", e);
+		}
+	}
+
+	private synchronized void startRenewal() {
+		if (renewalExecutorService != null) {
+			return;
+		}
+		renewalExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Etcd-Lock-Renewal");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long interval = TimeUnit.SECONDS.toMillis(ttl) / 2;
+		renewalExecutorService.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					renew();
+				}
+				catch (RuntimeException e) {
+					logger.error("Lock renewal failed", e);
+				}
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Refreshes TTL of all held locks. All requests are sent before
+	 * waiting for responses, so a pass takes roughly one round-trip
+	 * regardless of the number of locks.
+	 */
+	private void renew() {
+		List<Map.Entry<String, Hold>> renewed = new ArrayList<Map.Entry<String, Hold>>();
+		List<EtcdResponsePromise<EtcdKeysResponse>> responses = new ArrayList<EtcdResponsePromise<EtcdKeysResponse>>();
+		for (Map.Entry<String, Hold> entry : holds.entrySet()) {
+			String owner = entry.getValue().owner;
+			try {
+				responses.add(client.put(entry.getKey(), owner).ttl(ttl).prevValue(owner).send());
+				renewed.add(entry);
+			}
+			catch (IOException e) {
+				logger.warn("Couldn't access etcd", e);
+			}
+		}
+		for (int i = 0; i < responses.size(); i++) {
+			Map.Entry<String, Hold> entry = renewed.get(i);
+			try {
+				responses.get(i).get();
+			}
+			catch (EtcdException e) {
+				if (holds.remove(entry.getKey(), entry.getValue())) {
+					logger.warn("Lock [" + entry.getKey() + "] was lost before it could be renewed");
+				}
+			}
+			catch (IOException | TimeoutException e) {
+				logger.warn("Couldn't access etcd", e);
+			}
+		}
+	}
+
+	/**
+	 * Local hold of a lock.
+	 */
+	private static class Hold {
+
+		private final String owner;
+
+		private volatile int count = 1;
+
+		Hold(String owner) {
+			this.owner = owner;
+		}
+
+	}
+
+	/**
+	 * {@link DistributedLock} backed by an etcd key.
+	 */
+	private class EtcdLock extends AbstractDistributedLock {
+
+		private final String etcdKey;
+
+		EtcdLock(String lockKey) {
+			super(lockKey);
+			this.etcdKey = basePath + (lockKey.startsWith("/") ? lockKey.substring(1) : lockKey);
+		}
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					acquire(etcdKey, threadOwner(), Long.MAX_VALUE);
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			acquire(etcdKey, threadOwner(), Long.MAX_VALUE);
+		}
+
+		@Override
+		public boolean tryLock() {
+			return tryAcquire(etcdKey, threadOwner()) < 0;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return acquire(etcdKey, threadOwner(), System.currentTimeMillis() + unit.toMillis(time));
+		}
+
+		@Override
+		public void unlock() {
+			release(getLockKey(), etcdKey, threadOwner());
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+	}
+
+}
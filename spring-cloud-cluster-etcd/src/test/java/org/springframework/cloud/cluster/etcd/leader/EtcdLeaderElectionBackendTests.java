@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.leader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+
+import mousio.etcd4j.EtcdClient;
+
+/**
+ * Tests for {@link EtcdLeaderElectionBackend}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdLeaderElectionBackendTests {
+
+	private EtcdClient client;
+
+	private EtcdLeaderElectionBackend backend;
+
+	private SharedLeaderInitiator initiator;
+
+	@Before
+	public void setup() {
+		client = new EtcdClient(URI.create("http://localhost:4001"));
+		backend = new EtcdLeaderElectionBackend(client, "etcd-backend-test");
+		initiator = new SharedLeaderInitiator(backend);
+		initiator.setHeartbeatInterval(500);
+	}
+
+	@After
+	public void close() throws Exception {
+		initiator.destroy();
+		client.close();
+	}
+
+	@Test
+	public void testFailover() throws Exception {
+		TestCandidate candidate1 = new TestCandidate("id1");
+		TestCandidate candidate2 = new TestCandidate("id2");
+		initiator.addCandidate(candidate1);
+		initiator.start();
+		assertThat(candidate1.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate1), is(true));
+
+		initiator.addCandidate(candidate2);
+		Thread.sleep(1000);
+		assertThat(initiator.isLeader(candidate2), is(false));
+
+		initiator.removeCandidate(candidate1);
+		assertThat(candidate1.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate2.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate2), is(true));
+	}
+
+	@Test
+	public void testLeaseDurationIsTtl() {
+		assertThat(backend.getLeaseDuration(), is(10000L));
+		backend.setTtl(3);
+		assertThat(backend.getLeaseDuration(), is(3000L));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHeartbeatIntervalAboveHalfLease() {
+		backend.setTtl(1);
+		initiator.setHeartbeatInterval(600);
+		initiator.start();
+	}
+
+	static class TestCandidate extends DefaultCandidate {
+
+		final CountDownLatch onGrantedLatch = new CountDownLatch(1);
+
+		final CountDownLatch onRevokedLatch = new CountDownLatch(1);
+
+		TestCandidate(String id) {
+			super(id, "role");
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			super.onGranted(ctx);
+			onGrantedLatch.countDown();
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+			super.onRevoked(ctx);
+			onRevokedLatch.countDown();
+		}
+
+	}
+
+}
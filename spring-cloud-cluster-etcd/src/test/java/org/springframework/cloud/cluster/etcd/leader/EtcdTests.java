@@ -97,6 +97,28 @@ public class EtcdTests {
 		ctx.close();
 	}
 
+	@Test
+	public void testWatchFailover() throws Exception {
+		EtcdClient client = new EtcdClient(URI.create("http://localhost:4001"));
+		TestCandidate candidate1 = new TestCandidate();
+		TestCandidate candidate2 = new TestCandidate();
+		LeaderInitiator initiator1 = new LeaderInitiator(client, candidate1, "etcd-watch-test");
+		LeaderInitiator initiator2 = new LeaderInitiator(client, candidate2, "etcd-watch-test");
+		initiator1.setWatch(true);
+		initiator2.setWatch(true);
+		initiator1.start();
+		assertThat(candidate1.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		initiator2.start();
+		Thread.sleep(1000);
+		assertThat(candidate2.onGrantedLatch.getCount(), is(1L));
+		initiator1.stop();
+		// follower reacts to deletion of the leader entry instead of waiting for next poll
+		assertThat(candidate2.onGrantedLatch.await(2, TimeUnit.SECONDS), is(true));
+		initiator1.destroy();
+		initiator2.destroy();
+		client.close();
+	}
+
 	@Configuration
 	static class SimpleTestConfig {
 
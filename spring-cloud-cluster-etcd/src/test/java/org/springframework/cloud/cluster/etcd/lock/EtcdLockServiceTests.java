@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.etcd.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+
+import mousio.etcd4j.EtcdClient;
+
+/**
+ * Tests for {@link EtcdLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class EtcdLockServiceTests {
+
+	private EtcdClient client;
+
+	private EtcdLockService service;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		client = new EtcdClient(URI.create("http://localhost:4001"));
+		service = new EtcdLockService(client, "etcd-test", 2);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void close() throws Exception {
+		executor.shutdownNow();
+		service.destroy();
+		client.close();
+	}
+
+	@Test
+	public void testReentrantLock() throws Exception {
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		assertThat(lock.tryLock(), is(true));
+		assertThat(tryLockFromOtherThread(100), is(false));
+
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(100), is(false));
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(100), is(true));
+	}
+
+	@Test
+	public void testRenewalKeepsLock() throws Exception {
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		Thread.sleep(5000);
+		assertThat(tryLockFromOtherThread(100), is(false));
+		lock.unlock();
+	}
+
+	@Test
+	public void testWaiterWokenOnUnlock() throws Exception {
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		Future<Boolean> waiter = executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				DistributedLock other = service.obtain("lock");
+				boolean locked = other.tryLock(10, TimeUnit.SECONDS);
+				if (locked) {
+					other.unlock();
+				}
+				return locked;
+			}
+		});
+		Thread.sleep(500);
+		long unlocked = System.currentTimeMillis();
+		lock.unlock();
+		assertThat(waiter.get(10, TimeUnit.SECONDS), is(true));
+		assertThat(System.currentTimeMillis() - unlocked < 1000, is(true));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		service.obtain("lock").unlock();
+	}
+
+	private boolean tryLockFromOtherThread(final long timeout) throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				DistributedLock lock = service.obtain("lock");
+				boolean locked = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+				if (locked) {
+					lock.unlock();
+				}
+				return locked;
+			}
+		}).get();
+	}
+
+}
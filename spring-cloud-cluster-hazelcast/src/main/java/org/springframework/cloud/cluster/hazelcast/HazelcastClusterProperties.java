@@ -19,7 +19,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.io.Resource;
 
 /**
- * Configuration properties for hazelcast leader election.
+ * Configuration properties for hazelcast leader election and locking.
  * 
  * @author Janne Valkealahti
  *
@@ -32,6 +32,9 @@ public class HazelcastClusterProperties {
 
 	/** hazelcast leader properties. */
 	private HazelcastLeaderProperties leader = new HazelcastLeaderProperties();
+
+	/** hazelcast lock properties. */
+	private HazelcastLockProperties lock = new HazelcastLockProperties();
 	
 	public Resource getConfigLocation() {
 		return configLocation;
@@ -48,6 +51,14 @@ public class HazelcastClusterProperties {
 	public void setLeader(HazelcastLeaderProperties leader) {
 		this.leader = leader;
 	}
+
+	public HazelcastLockProperties getLock() {
+		return lock;
+	}
+
+	public void setLock(HazelcastLockProperties lock) {
+		this.lock = lock;
+	}
 	
 	public static class HazelcastLeaderProperties {
 
@@ -63,5 +74,31 @@ public class HazelcastClusterProperties {
 		}
 
 	}
-	
+
+	public static class HazelcastLockProperties {
+
+		/** if hazelcast distributed locking is enabled. */
+		private boolean enabled = true;
+
+		/** number of leading lock key path segments used as a partition key. */
+		private int partitionKeyDepth;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getPartitionKeyDepth() {
+			return partitionKeyDepth;
+		}
+
+		public void setPartitionKeyDepth(int partitionKeyDepth) {
+			this.partitionKeyDepth = partitionKeyDepth;
+		}
+
+	}
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.leader;
+
+import org.springframework.cloud.cluster.leader.support.LeaderElectionBackend;
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Member;
+
+/**
+ * {@link LeaderElectionBackend} for Hazelcast. A role is held by an
+ * entry in a distributed map owning the candidate id and the uuid of
+ * the local cluster member. An entry owned by a member which has left
+ * the cluster is taken over by the next candidate trying to acquire it.
+ *
+ * <p>A member cut off from the cluster keeps its entries until the
+ * cluster removes it, so the lease duration should stay below the time
+ * the cluster takes to remove an unresponsive member, configured by
+ * {@code hazelcast.max.no.heartbeat.seconds}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastLeaderElectionBackend implements LeaderElectionBackend {
+
+	private static final String DEFAULT_MAP_NAME = "spring-cloud-leadership";
+
+	private static final long DEFAULT_LEASE_DURATION = 30000;
+
+	private final HazelcastInstance client;
+
+	private final IMap<String, String> roles;
+
+	private volatile long leaseDuration = DEFAULT_LEASE_DURATION;
+
+	/**
+	 * Instantiates a new hazelcast leader election backend.
+	 *
+	 * @param client the hazelcast instance
+	 */
+	public HazelcastLeaderElectionBackend(HazelcastInstance client) {
+		this(client, DEFAULT_MAP_NAME);
+	}
+
+	/**
+	 * Instantiates a new hazelcast leader election backend.
+	 *
+	 * @param client the hazelcast instance
+	 * @param mapName the name of the map holding roles
+	 */
+	public HazelcastLeaderElectionBackend(HazelcastInstance client, String mapName) {
+		Assert.notNull(client, "Hazelcast instance must be set");
+		Assert.hasText(mapName, "Map name must be set");
+		this.client = client;
+		this.roles = client.getMap(mapName);
+	}
+
+	/**
+	 * Sets the time in milliseconds leadership is considered valid after
+	 * a successful acquire or renew. Defaults to thirty seconds.
+	 *
+	 * @param leaseDuration the lease duration
+	 */
+	public void setLeaseDuration(long leaseDuration) {
+		Assert.isTrue(leaseDuration > 0, "Lease duration must be positive");
+		this.leaseDuration = leaseDuration;
+	}
+
+	@Override
+	public long getLeaseDuration() {
+		return leaseDuration;
+	}
+
+	@Override
+	public boolean tryAcquire(String role, String id) throws Exception {
+		String owner = owner(id);
+		String current = roles.putIfAbsent(role, owner);
+		if (current == null || current.equals(owner)) {
+			return true;
+		}
+		if (!isMember(current.substring(current.lastIndexOf('@') + 1))) {
+			return roles.replace(role, current, owner);
+		}
+		return false;
+	}
+
+	@Override
+	public boolean renew(String role, String id) throws Exception {
+		return owner(id).equals(roles.get(role));
+	}
+
+	@Override
+	public void release(String role, String id) throws Exception {
+		roles.remove(role, owner(id));
+	}
+
+	private String owner(String id) {
+		return id + "@" + client.getCluster().getLocalMember().getUuid();
+	}
+
+	private boolean isMember(String uuid) {
+		for (Member member : client.getCluster().getMembers()) {
+			if (member.getUuid().equals(uuid)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
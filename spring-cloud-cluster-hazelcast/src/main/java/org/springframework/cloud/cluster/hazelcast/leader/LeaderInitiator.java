@@ -34,6 +34,12 @@ import org.springframework.util.Assert;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.core.LifecycleEvent.LifecycleState;
+import com.hazelcast.core.LifecycleListener;
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,8 +48,16 @@ import org.slf4j.LoggerFactory;
  * with Hazelcast. Upon construction, {@link #start} must be invoked to
  * register the candidate for leadership election.
  *
+ * <p>Leadership is tracked locally, so {@link Context#isLeader()} doesn't
+ * need a cluster round trip. The lock may still be lost without this
+ * candidate releasing it, when members holding the partition of the lock
+ * leave or when this member merges back after a split brain. Ownership is
+ * therefore verified whenever a member leaves the cluster, and
+ * leadership is revoked when this member merges or shuts down.
+ *
  * @author Patrick Peralta
  * @author Gary Russell
+ * @author Janne Valkealahti
  */
 public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableBean {
 
@@ -71,6 +85,18 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		}
 	});
 
+	/**
+	 * Executor service for verifying leadership after cluster changes.
+	 */
+	private final ExecutorService verifierExecutorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Hazelcast leadership verifier");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
 	/**
 	 * Future returned by submitting an {@link Initiator} to {@link #executorService}.
 	 * This is used to cancel leadership.
@@ -88,6 +114,28 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	 */
 	private volatile boolean running;
 
+	/**
+	 * Flag that indicates whether the current candidate is
+	 * the leader.
+	 */
+	private volatile boolean isLeader;
+
+	/**
+	 * Thread running the {@link Initiator}, interrupted to relinquish
+	 * leadership. Cancelling {@link #future} interrupts it only once.
+	 */
+	private volatile Thread initiatorThread;
+
+	/**
+	 * Registration id of {@link ClusterListener} as membership listener.
+	 */
+	private String membershipRegistration;
+
+	/**
+	 * Registration id of {@link ClusterListener} as lifecycle listener.
+	 */
+	private String lifecycleRegistration;
+
 	/**
 	 * Leader event publisher.
 	 */
@@ -111,6 +159,9 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	public synchronized void start() {
 		if (!running) {
 			mapLocks = client.getMap("spring-cloud-leader");
+			ClusterListener listener = new ClusterListener();
+			membershipRegistration = client.getCluster().addMembershipListener(listener);
+			lifecycleRegistration = client.getLifecycleService().addLifecycleListener(listener);
 			running = true;
 			future = executorService.submit(new Initiator());
 		}
@@ -124,7 +175,15 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	public synchronized void stop() {
 		if (running) {
 			running = false;
+			relinquishLeadership();
 			future.cancel(true);
+			try {
+				client.getCluster().removeMembershipListener(membershipRegistration);
+				client.getLifecycleService().removeLifecycleListener(lifecycleRegistration);
+			}
+			catch (RuntimeException e) {
+				logger.warn("Couldn't remove cluster listeners", e);
+			}
 		}
 	}
 
@@ -145,6 +204,7 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 	public void destroy() throws Exception {
 		stop();
 		executorService.shutdown();
+		verifierExecutorService.shutdown();
 	}
 
 	/**
@@ -157,6 +217,42 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		this.leaderEventPublisher = leaderEventPublisher;
 	}
 
+	/**
+	 * Checks that the lock and entry of the role are still held by this
+	 * candidate and revokes leadership if not.
+	 */
+	private void verifyLeadership() {
+		if (!isLeader) {
+			return;
+		}
+		String role = candidate.getRole();
+		boolean owned;
+		try {
+			owned = mapLocks.isLocked(role) && candidate.getId().equals(mapLocks.get(role));
+		}
+		catch (RuntimeException e) {
+			logger.warn("Couldn't verify leadership, relinquishing", e);
+			owned = false;
+		}
+		if (!owned) {
+			relinquishLeadership();
+		}
+	}
+
+	/**
+	 * Marks leadership lost and interrupts the {@link Initiator}, which then
+	 * notifies revocation and tries to acquire leadership again.
+	 */
+	private void relinquishLeadership() {
+		if (isLeader) {
+			isLeader = false;
+			Thread thread = initiatorThread;
+			if (thread != null) {
+				thread.interrupt();
+			}
+		}
+	}
+
 	/**
 	 * Callable that manages the acquisition of Hazelcast locks
 	 * for leadership election.
@@ -166,6 +262,7 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 		@Override
 		public Void call() throws Exception {
 			Assert.state(mapLocks != null);
+			initiatorThread = Thread.currentThread();
 			HazelcastContext context = new HazelcastContext();
 			String role = candidate.getRole();
 			boolean locked = false;
@@ -175,6 +272,7 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 					locked = mapLocks.tryLock(role, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
 					if (locked) {
 						mapLocks.put(role, candidate.getId());
+						isLeader = true;
 						leaderEventPublisher.publishOnGranted(LeaderInitiator.this, context, candidate.getRole());
 						candidate.onGranted(context);
 						Thread.sleep(Long.MAX_VALUE);
@@ -192,8 +290,26 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 				}
 				finally {
 					if (locked) {
-						mapLocks.remove(role);
-						mapLocks.unlock(role);
+						isLeader = false;
+						// an interrupt not consumed by sleep would fail the
+						// hazelcast calls below, and running is checked by
+						// the loop anyway
+						Thread.interrupted();
+						try {
+							// lock may already be lost, don't remove entry of a new leader
+							mapLocks.remove(role, candidate.getId());
+						}
+						catch (RuntimeException e) {
+							logger.warn("Couldn't remove leadership entry", e);
+						}
+						finally {
+							try {
+								mapLocks.unlock(role);
+							}
+							catch (RuntimeException e) {
+								logger.warn("Couldn't release leadership lock", e);
+							}
+						}
 						candidate.onRevoked(context);
 						leaderEventPublisher.publishOnRevoked(LeaderInitiator.this, context, candidate.getRole());
 						locked = false;
@@ -212,14 +328,12 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 
 		@Override
 		public boolean isLeader() {
-			return mapLocks != null && mapLocks.isLocked(candidate.getRole());
+			return isLeader;
 		}
 
 		@Override
 		public void yield() {
-			if (future != null) {
-				future.cancel(true);
-			}
+			relinquishLeadership();
 		}
 
 		@Override
@@ -228,4 +342,45 @@ public class LeaderInitiator implements Lifecycle, InitializingBean, DisposableB
 					candidate.getRole(), candidate.getId(), isLeader());
 		}
 	}
+
+	/**
+	 * Listener of cluster changes which may take the lock away from
+	 * this candidate.
+	 */
+	class ClusterListener implements MembershipListener, LifecycleListener {
+
+		@Override
+		public void memberAdded(MembershipEvent membershipEvent) {
+		}
+
+		@Override
+		public void memberRemoved(MembershipEvent membershipEvent) {
+			// partition of the lock may have been lost with the member,
+			// verify off the event thread as it's a remote call
+			if (isLeader) {
+				verifierExecutorService.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						verifyLeadership();
+					}
+				});
+			}
+		}
+
+		@Override
+		public void memberAttributeChanged(MemberAttributeEvent memberAttributeEvent) {
+		}
+
+		@Override
+		public void stateChanged(LifecycleEvent event) {
+			// locks of a merging member are dropped in favour of the
+			// cluster it merges into
+			if (event.getState() == LifecycleState.MERGING || event.getState() == LifecycleState.SHUTTING_DOWN) {
+				relinquishLeadership();
+			}
+		}
+
+	}
+
 }
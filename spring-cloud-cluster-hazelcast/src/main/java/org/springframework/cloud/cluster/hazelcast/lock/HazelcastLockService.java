@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.DelegatingDistributedLock;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ILock;
+import com.hazelcast.core.Member;
+
+/**
+ * {@link LockService} implementation based on Hazelcast {@link ILock}s
+ * named {@code registryKey:lockKey}. Locks are owned by the calling thread,
+ * are reentrant and are released when the owning member leaves the cluster.
+ *
+ * <p>A lock is managed by the member owning its partition, and acquiring
+ * it is a local operation on that member. Lock names have to be equal on
+ * all members, so instead of placing locks next to whoever uses them the
+ * most, related locks can be grouped into the same partition. With a
+ * partition key depth set, leading segments of a lock key are used as a
+ * partition key, which places locks like {@code /orders/1/items} and
+ * {@code /orders/1/payment} together with other partition aware data of
+ * {@code /orders/1}. Work routed to the partition owner, for example with
+ * {@code IExecutorService.executeOnKeyOwner}, then locks without a remote
+ * call, and {@link #isOwnedLocally(String)} tells if that is the case.
+ *
+ * <p>Lock handles are cached per lock key only while held through this
+ * service, so that keys which are no longer used don't accumulate. As
+ * Hazelcast tracks holds by thread, any handle of a key is equivalent.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastLockService implements LockService {
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-locks";
+
+	private static final String PATH_SEPARATOR = "/";
+
+	private final HazelcastInstance hazelcastInstance;
+
+	private final String registryKey;
+
+	private final ConcurrentMap<String, HazelcastLock> locks = new ConcurrentHashMap<String, HazelcastLock>();
+
+	private volatile int partitionKeyDepth;
+
+	private volatile boolean obtained;
+
+	/**
+	 * Instantiates a new hazelcast lock service.
+	 *
+	 * @param hazelcastInstance the hazelcast instance
+	 */
+	public HazelcastLockService(HazelcastInstance hazelcastInstance) {
+		this(hazelcastInstance, DEFAULT_REGISTRY_KEY);
+	}
+
+	/**
+	 * Instantiates a new hazelcast lock service.
+	 *
+	 * @param hazelcastInstance the hazelcast instance
+	 * @param registryKey the name prefix for locks
+	 */
+	public HazelcastLockService(HazelcastInstance hazelcastInstance, String registryKey) {
+		Assert.notNull(hazelcastInstance, "Hazelcast instance must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		this.hazelcastInstance = hazelcastInstance;
+		this.registryKey = registryKey;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		obtained = true;
+		HazelcastLock lock = locks.get(lockKey);
+		return lock != null ? lock : new HazelcastLock(lockKey, hazelcastInstance.getLock(lockName(lockKey)));
+	}
+
+	/**
+	 * Sets the number of leading path segments of a lock key used as
+	 * a partition key. Defaults to zero, meaning that locks are spread
+	 * over partitions by their full name. All members need to use the
+	 * same depth.
+	 *
+	 * @param partitionKeyDepth the partition key depth
+	 */
+	public void setPartitionKeyDepth(int partitionKeyDepth) {
+		Assert.isTrue(partitionKeyDepth >= 0, "Partition key depth must not be negative");
+		Assert.isTrue(!obtained, "Partition key depth can't be changed after locks are obtained");
+		this.partitionKeyDepth = partitionKeyDepth;
+	}
+
+	/**
+	 * Checks if a lock is managed by the local member, in which case
+	 * locking operations don't need a remote call.
+	 *
+	 * @param lockKey the locking key
+	 * @return true if lock is owned by local member
+	 */
+	public boolean isOwnedLocally(String lockKey) {
+		String partitionKey = partitionKey(lockKey);
+		Object key = partitionKey != null ? partitionKey : lockName(lockKey);
+		Member owner = hazelcastInstance.getPartitionService().getPartition(key).getOwner();
+		return owner != null && owner.localMember();
+	}
+
+	private String lockName(String lockKey) {
+		String partitionKey = partitionKey(lockKey);
+		String name = registryKey + ":" + lockKey;
+		return partitionKey != null ? name + "@" + partitionKey : name;
+	}
+
+	private String partitionKey(String lockKey) {
+		if (partitionKeyDepth == 0) {
+			return null;
+		}
+		String[] tokens = StringUtils.tokenizeToStringArray(lockKey, PATH_SEPARATOR);
+		if (tokens.length < partitionKeyDepth) {
+			return null;
+		}
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < partitionKeyDepth; i++) {
+			buf.append(PATH_SEPARATOR).append(tokens[i]);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * {@link DistributedLock} delegating to an {@link ILock}, registered as
+	 * the handle of its key while it is held.
+	 */
+	private class HazelcastLock extends DelegatingDistributedLock {
+
+		private int holdCount;
+
+		HazelcastLock(String lockKey, ILock lock) {
+			super(lockKey, lock);
+		}
+
+		@Override
+		public void lock() {
+			super.lock();
+			acquired();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			super.lockInterruptibly();
+			acquired();
+		}
+
+		@Override
+		public boolean tryLock() {
+			if (super.tryLock()) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			if (super.tryLock(time, unit)) {
+				acquired();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void unlock() {
+			super.unlock();
+			synchronized (this) {
+				if (--holdCount == 0) {
+					locks.remove(getLockKey(), this);
+				}
+			}
+		}
+
+		private synchronized void acquired() {
+			if (holdCount++ == 0) {
+				locks.putIfAbsent(getLockKey(), this);
+			}
+		}
+
+	}
+
+}
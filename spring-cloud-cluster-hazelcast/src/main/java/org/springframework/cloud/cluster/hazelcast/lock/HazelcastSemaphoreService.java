@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.lock;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.lock.DistributedSemaphore;
+import org.springframework.cloud.cluster.lock.SemaphoreService;
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ISemaphore;
+
+/**
+ * {@link SemaphoreService} implementation based on Hazelcast
+ * {@link ISemaphore}s named {@code registryKey:semaphoreKey}.
+ *
+ * <p>Permits are bound to the cluster member which acquired them and
+ * Hazelcast returns permits of a member once it leaves the cluster, which
+ * takes the place of an expiration time.
+ *
+ * <p>A semaphore is initialized with its permits only by the first
+ * {@link #obtain(String, int)} in the cluster, which is claimed with a
+ * marker entry in map {@code registryKey}. Later calls never touch the
+ * permits, so obtaining an exhausted semaphore doesn't re-arm it.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastSemaphoreService implements SemaphoreService {
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-semaphores";
+
+	private final HazelcastInstance hazelcastInstance;
+
+	private final String registryKey;
+
+	private final IMap<String, Integer> initialized;
+
+	/**
+	 * Instantiates a new hazelcast semaphore service.
+	 *
+	 * @param hazelcastInstance the hazelcast instance
+	 */
+	public HazelcastSemaphoreService(HazelcastInstance hazelcastInstance) {
+		this(hazelcastInstance, DEFAULT_REGISTRY_KEY);
+	}
+
+	/**
+	 * Instantiates a new hazelcast semaphore service.
+	 *
+	 * @param hazelcastInstance the hazelcast instance
+	 * @param registryKey the name prefix for semaphores
+	 */
+	public HazelcastSemaphoreService(HazelcastInstance hazelcastInstance, String registryKey) {
+		Assert.notNull(hazelcastInstance, "Hazelcast instance must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		this.hazelcastInstance = hazelcastInstance;
+		this.registryKey = registryKey;
+		this.initialized = hazelcastInstance.getMap(registryKey);
+	}
+
+	@Override
+	public DistributedSemaphore obtain(String semaphoreKey, int permits) {
+		Assert.isTrue(permits > 0, "Permits must be positive");
+		ISemaphore semaphore = hazelcastInstance.getSemaphore(registryKey + ":" + semaphoreKey);
+		if (initialized.putIfAbsent(semaphoreKey, permits) == null) {
+			semaphore.init(permits);
+		}
+		return new HazelcastSemaphore(semaphoreKey, semaphore);
+	}
+
+	/**
+	 * {@link DistributedSemaphore} delegating to {@link ISemaphore}.
+	 */
+	private static class HazelcastSemaphore implements DistributedSemaphore {
+
+		private final String semaphoreKey;
+
+		private final ISemaphore semaphore;
+
+		HazelcastSemaphore(String semaphoreKey, ISemaphore semaphore) {
+			this.semaphoreKey = semaphoreKey;
+			this.semaphore = semaphore;
+		}
+
+		@Override
+		public String getSemaphoreKey() {
+			return semaphoreKey;
+		}
+
+		@Override
+		public void acquire(int permits) throws InterruptedException {
+			semaphore.acquire(permits);
+		}
+
+		@Override
+		public boolean tryAcquire(int permits) {
+			return semaphore.tryAcquire(permits);
+		}
+
+		@Override
+		public boolean tryAcquire(int permits, long time, TimeUnit unit) throws InterruptedException {
+			return semaphore.tryAcquire(permits, time, unit);
+		}
+
+		@Override
+		public void release(int permits) {
+			semaphore.release(permits);
+		}
+
+		@Override
+		public int availablePermits() {
+			return semaphore.availablePermits();
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.leader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Tests for {@link HazelcastLeaderElectionBackend}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastLeaderElectionBackendTests {
+
+	private HazelcastInstance hazelcastInstance;
+
+	private HazelcastLeaderElectionBackend backend;
+
+	private SharedLeaderInitiator initiator;
+
+	@Before
+	public void setup() {
+		hazelcastInstance = Hazelcast.newHazelcastInstance();
+		backend = new HazelcastLeaderElectionBackend(hazelcastInstance);
+		initiator = new SharedLeaderInitiator(backend);
+		initiator.setHeartbeatInterval(50);
+	}
+
+	@After
+	public void close() throws Exception {
+		initiator.destroy();
+		hazelcastInstance.shutdown();
+	}
+
+	@Test
+	public void testFailover() throws Exception {
+		TestCandidate candidate1 = new TestCandidate("id1");
+		TestCandidate candidate2 = new TestCandidate("id2");
+		initiator.addCandidate(candidate1);
+		initiator.start();
+		assertThat(candidate1.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate1), is(true));
+
+		initiator.addCandidate(candidate2);
+		Thread.sleep(200);
+		assertThat(initiator.isLeader(candidate2), is(false));
+
+		initiator.removeCandidate(candidate1);
+		assertThat(candidate1.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate2.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate2), is(true));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHeartbeatIntervalAboveHalfLease() {
+		backend.setLeaseDuration(80);
+		initiator.start();
+	}
+
+	static class TestCandidate extends DefaultCandidate {
+
+		final CountDownLatch onGrantedLatch = new CountDownLatch(1);
+
+		final CountDownLatch onRevokedLatch = new CountDownLatch(1);
+
+		TestCandidate(String id) {
+			super(id, "role");
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			super.onGranted(ctx);
+			onGrantedLatch.countDown();
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+			super.onRevoked(ctx);
+			onRevokedLatch.countDown();
+		}
+
+	}
+
+}
@@ -57,6 +57,26 @@ public class HazelcastTests {
 		ctx.close();
 	}
 
+	@Test
+	public void testLocalLeadershipState() throws InterruptedException {
+		AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(
+				Config2.class);
+		YieldTestCandidate candidate = ctx.getBean(YieldTestCandidate.class);
+		assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate.ctx.isLeader(), is(true));
+
+		// leadership can be yielded repeatedly
+		for (int i = 0; i < 2; i++) {
+			candidate.reset();
+			candidate.ctx.yield();
+			assertThat(candidate.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+			assertThat(candidate.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+			assertThat(candidate.ctx.isLeader(), is(true));
+		}
+		ctx.close();
+		assertThat(candidate.ctx.isLeader(), is(false));
+	}
+
 	@Configuration
 	static class Config1 {
 
@@ -89,6 +109,54 @@ public class HazelcastTests {
 		
 	}
 
+	@Configuration
+	static class Config2 {
+
+		@Bean
+		public YieldTestCandidate candidate() {
+			return new YieldTestCandidate();
+		}
+
+		@Bean
+		public HazelcastInstance hazelcastInstance() {
+			return Hazelcast.newHazelcastInstance();
+		}
+
+		@Bean
+		public LeaderInitiator initiator() {
+			return new LeaderInitiator(hazelcastInstance(), candidate());
+		}
+
+	}
+
+	static class YieldTestCandidate extends DefaultCandidate {
+
+		volatile CountDownLatch onGrantedLatch = new CountDownLatch(1);
+
+		volatile CountDownLatch onRevokedLatch = new CountDownLatch(1);
+
+		volatile Context ctx;
+
+		void reset() {
+			onGrantedLatch = new CountDownLatch(1);
+			onRevokedLatch = new CountDownLatch(1);
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			this.ctx = ctx;
+			onGrantedLatch.countDown();
+			super.onGranted(ctx);
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+			onRevokedLatch.countDown();
+			super.onRevoked(ctx);
+		}
+
+	}
+
 	static class TestCandidate extends DefaultCandidate {
 
 		CountDownLatch onGrantedLatch = new CountDownLatch(1);
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ILock;
+
+/**
+ * Tests for {@link HazelcastLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastLockServiceTests {
+
+	private HazelcastInstance hazelcastInstance;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		hazelcastInstance = Hazelcast.newHazelcastInstance();
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void close() {
+		executor.shutdownNow();
+		hazelcastInstance.shutdown();
+	}
+
+	@Test
+	public void testReentrantLock() throws Exception {
+		HazelcastLockService service = new HazelcastLockService(hazelcastInstance);
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		assertThat(service.obtain("lock"), sameInstance(lock));
+		assertThat(lock.tryLock(), is(true));
+		assertThat(tryLockFromOtherThread(service, "lock"), is(false));
+
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(service, "lock"), is(false));
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(service, "lock"), is(true));
+	}
+
+	@Test
+	public void testHandleDroppedWhenNotHeld() throws Exception {
+		HazelcastLockService service = new HazelcastLockService(hazelcastInstance);
+		Map<?, ?> locks = (Map<?, ?>) ReflectionTestUtils.getField(service, "locks");
+		DistributedLock lock = service.obtain("lock");
+		assertThat(locks.isEmpty(), is(true));
+
+		lock.lock();
+		lock.lock();
+		assertThat(locks.size(), is(1));
+		lock.unlock();
+		assertThat(service.obtain("lock"), sameInstance(lock));
+		lock.unlock();
+		assertThat(locks.isEmpty(), is(true));
+		assertThat(service.obtain("lock"), not(sameInstance(lock)));
+
+		assertThat(tryLockFromOtherThread(service, "lock"), is(true));
+		assertThat(locks.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testPartitionKey() throws Exception {
+		HazelcastLockService service = new HazelcastLockService(hazelcastInstance);
+		service.setPartitionKeyDepth(2);
+		DistributedLock lock = service.obtain("/orders/1/items");
+		assertThat(lock.tryLock(), is(true));
+
+		ILock ilock = hazelcastInstance.getLock("spring-cloud-locks:/orders/1/items@/orders/1");
+		assertThat(ilock.isLocked(), is(true));
+		assertThat(ilock.getPartitionKey(), is("/orders/1"));
+		assertThat(service.isOwnedLocally("/orders/1/items"), is(true));
+		lock.unlock();
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		new HazelcastLockService(hazelcastInstance).obtain("lock").unlock();
+	}
+
+	private boolean tryLockFromOtherThread(final HazelcastLockService service, final String lockKey)
+			throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				DistributedLock lock = service.obtain(lockKey);
+				boolean locked = lock.tryLock(20, TimeUnit.MILLISECONDS);
+				if (locked) {
+					lock.unlock();
+				}
+				return locked;
+			}
+		}).get();
+	}
+
+}
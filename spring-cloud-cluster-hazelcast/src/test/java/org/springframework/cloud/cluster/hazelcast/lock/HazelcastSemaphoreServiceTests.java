@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.hazelcast.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedSemaphore;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Tests for {@link HazelcastSemaphoreService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class HazelcastSemaphoreServiceTests {
+
+	private HazelcastInstance hazelcastInstance;
+
+	@Before
+	public void setup() {
+		hazelcastInstance = Hazelcast.newHazelcastInstance();
+	}
+
+	@After
+	public void close() {
+		hazelcastInstance.shutdown();
+	}
+
+	@Test
+	public void testBatchedPermits() throws Exception {
+		HazelcastSemaphoreService service = new HazelcastSemaphoreService(hazelcastInstance);
+		DistributedSemaphore semaphore = service.obtain("semaphore", 5);
+		assertThat(semaphore.getSemaphoreKey(), is("semaphore"));
+		assertThat(semaphore.tryAcquire(3), is(true));
+		assertThat(service.obtain("semaphore", 5).tryAcquire(3, 20, TimeUnit.MILLISECONDS), is(false));
+		assertThat(semaphore.availablePermits(), is(2));
+
+		semaphore.release(2);
+		assertThat(service.obtain("semaphore", 5).tryAcquire(4), is(true));
+		assertThat(semaphore.availablePermits(), is(0));
+	}
+
+	@Test
+	public void testObtainDoesNotRearmExhaustedSemaphore() throws Exception {
+		HazelcastSemaphoreService service = new HazelcastSemaphoreService(hazelcastInstance);
+		DistributedSemaphore semaphore = service.obtain("semaphore", 2);
+		assertThat(semaphore.tryAcquire(2), is(true));
+		assertThat(semaphore.availablePermits(), is(0));
+
+		DistributedSemaphore other = service.obtain("semaphore", 2);
+		assertThat(other.availablePermits(), is(0));
+		assertThat(other.tryAcquire(1), is(false));
+		assertThat(new HazelcastSemaphoreService(hazelcastInstance).obtain("semaphore", 2).tryAcquire(1), is(false));
+
+		semaphore.release(2);
+		assertThat(other.tryAcquire(2), is(true));
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.reactive.leader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cloud.cluster.leader.event.AbstractLeaderEvent;
+import org.springframework.cloud.cluster.leader.event.LeaderEventPublisher;
+import org.springframework.cloud.cluster.leader.event.OnGrantedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * {@link ApplicationListener} exposing leader events published via
+ * {@link LeaderEventPublisher} as a {@link Flux} per role.
+ *
+ * <p>Every role keeps its latest event which is replayed to new
+ * subscribers, so a subscriber always starts from the current
+ * leadership state of a role and then follows its grant and revoke
+ * transitions. Events are dispatched on the publishing thread.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ReactiveLeaderEvents implements ApplicationListener<AbstractLeaderEvent> {
+
+	private final ConcurrentMap<String, Sinks.Many<AbstractLeaderEvent>> sinks =
+			new ConcurrentHashMap<String, Sinks.Many<AbstractLeaderEvent>>();
+
+	@Override
+	public void onApplicationEvent(AbstractLeaderEvent event) {
+		if (event.getRole() == null) {
+			return;
+		}
+		Sinks.Many<AbstractLeaderEvent> sink = getSink(event.getRole());
+		synchronized (sink) {
+			sink.tryEmitNext(event);
+		}
+	}
+
+	/**
+	 * Gets a stream of leader events for a role.
+	 *
+	 * @param role the role
+	 * @return flux of leader events
+	 */
+	public Flux<AbstractLeaderEvent> events(String role) {
+		Assert.notNull(role, "Role must be set");
+		return getSink(role).asFlux();
+	}
+
+	/**
+	 * Gets a stream of leadership states for a role where {@code true}
+	 * means that leadership is granted.
+	 *
+	 * @param role the role
+	 * @return flux of leadership states
+	 */
+	public Flux<Boolean> leadership(String role) {
+		return events(role).map(event -> event instanceof OnGrantedEvent).distinctUntilChanged();
+	}
+
+	private Sinks.Many<AbstractLeaderEvent> getSink(String role) {
+		Sinks.Many<AbstractLeaderEvent> sink = sinks.get(role);
+		if (sink == null) {
+			Sinks.Many<AbstractLeaderEvent> created = Sinks.many().replay().latest();
+			sink = sinks.putIfAbsent(role, created);
+			if (sink == null) {
+				sink = created;
+			}
+		}
+		return sink;
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.reactive.lock;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.AsyncLockRegistry;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.support.ExecutorAsyncDistributedLock;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Reactive facade over a {@link LockRegistry}. Locks are acquired through
+ * the {@link AsyncDistributedLock} contract so that subscribers never block
+ * a thread while waiting for a lock.
+ *
+ * <p>Locks emitted from this registry are owned by the acquisition rather
+ * than by a thread and must be released via {@link #unlock(DistributedLock)}
+ * or by using {@link #withLock(String, Function)}. If given registry is not
+ * an {@link AsyncLockRegistry}, locks are adapted with
+ * {@link ExecutorAsyncDistributedLock} which still needs a thread for the
+ * whole time a lock is held. By default such threads come from a bounded
+ * pool of daemon threads, so acquisitions over the pool size wait until
+ * some adapted lock is released.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ReactiveLockRegistry {
+
+	private static final int DEFAULT_POOL_SIZE = 16;
+
+	private static final long THREAD_KEEP_ALIVE = 60;
+
+	private final LockRegistry lockRegistry;
+
+	private volatile Executor executor;
+
+	private volatile int poolSize = DEFAULT_POOL_SIZE;
+
+	/**
+	 * Instantiates a new reactive lock registry.
+	 *
+	 * @param lockRegistry the lock registry
+	 */
+	public ReactiveLockRegistry(LockRegistry lockRegistry) {
+		Assert.notNull(lockRegistry, "Lock registry must be set");
+		this.lockRegistry = lockRegistry;
+	}
+
+	/**
+	 * Sets the executor used to adapt locks from a registry which
+	 * is not an {@link AsyncLockRegistry}. Replaces the default pool.
+	 *
+	 * @param executor the executor
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor, "Executor must be set");
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the size of the default pool adapting locks from a registry
+	 * which is not an {@link AsyncLockRegistry}, which also bounds the
+	 * number of such locks held at once. Defaults to 16. Must be set
+	 * before the first lock is adapted.
+	 *
+	 * @param poolSize the pool size
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "Pool size must be positive");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Acquires a lock. Returned {@link Mono} completes with the lock once
+	 * it has been acquired. Cancelling the subscription abandons the
+	 * acquisition and releases the lock if it was already acquired.
+	 *
+	 * @param lockKey the locking key
+	 * @return mono emitting the acquired lock
+	 */
+	public Mono<DistributedLock> lock(final String lockKey) {
+		return Mono.create(sink -> {
+			AsyncDistributedLock lock = getAsync(lockKey);
+			bridge(lock, lock.lockAsync(), sink, false);
+		});
+	}
+
+	/**
+	 * Tries to acquire a lock within a given timeout. Returned {@link Mono}
+	 * completes empty if lock was not acquired.
+	 *
+	 * @param lockKey the locking key
+	 * @param timeout the maximum time to wait for a lock
+	 * @return mono emitting the acquired lock
+	 */
+	public Mono<DistributedLock> tryLock(final String lockKey, final Duration timeout) {
+		Assert.notNull(timeout, "Timeout must be set");
+		return Mono.create(sink -> {
+			AsyncDistributedLock lock = getAsync(lockKey);
+			bridge(lock, lock.tryLockAsync(timeout.toMillis(), TimeUnit.MILLISECONDS), sink, true);
+		});
+	}
+
+	/**
+	 * Releases a lock emitted from this registry.
+	 *
+	 * @param lock the lock to release
+	 * @return mono completing when lock has been released
+	 */
+	public Mono<Void> unlock(final DistributedLock lock) {
+		Assert.isInstanceOf(AsyncDistributedLock.class, lock, "Lock must be obtained from this registry");
+		return Mono.create(sink -> ((AsyncDistributedLock) lock).unlockAsync()
+				.addCallback(new ListenableFutureCallback<Void>() {
+
+					@Override
+					public void onSuccess(Void result) {
+						sink.success();
+					}
+
+					@Override
+					public void onFailure(Throwable ex) {
+						sink.error(ex);
+					}
+				}));
+	}
+
+	/**
+	 * Runs a publisher while holding a lock. Lock is acquired when returned
+	 * {@link Flux} is subscribed and released when publisher terminates or
+	 * subscription is cancelled.
+	 *
+	 * @param <T> the type of emitted elements
+	 * @param lockKey the locking key
+	 * @param closure the function creating a publisher to run under a lock
+	 * @return flux of elements from a publisher created by closure
+	 */
+	public <T> Flux<T> withLock(String lockKey, Function<DistributedLock, ? extends Publisher<? extends T>> closure) {
+		Assert.notNull(closure, "Closure must be set");
+		return Flux.usingWhen(lock(lockKey), closure, this::unlock);
+	}
+
+	private AsyncDistributedLock getAsync(String lockKey) {
+		if (lockRegistry instanceof AsyncLockRegistry) {
+			return ((AsyncLockRegistry) lockRegistry).getAsync(lockKey);
+		}
+		return new ExecutorAsyncDistributedLock(lockRegistry.get(lockKey), getExecutor());
+	}
+
+	private Executor getExecutor() {
+		Executor executor = this.executor;
+		if (executor == null) {
+			synchronized (this) {
+				if (this.executor == null) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("reactive-lock-registry-");
+					threadFactory.setDaemon(true);
+					ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize,
+							THREAD_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+					pool.allowCoreThreadTimeOut(true);
+					this.executor = pool;
+				}
+				executor = this.executor;
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Completes a sink from an acquisition future. State guards against
+	 * a race between acquisition and cancellation so that a lock which
+	 * never reached a subscriber is always released.
+	 */
+	private static void bridge(final AsyncDistributedLock lock, final ListenableFuture<?> future,
+			final MonoSink<DistributedLock> sink, final boolean timed) {
+		final AtomicInteger state = new AtomicInteger();
+		sink.onCancel(() -> {
+			int previous = state.getAndSet(2);
+			if (previous == 0) {
+				future.cancel(false);
+			}
+			else if (previous == 1) {
+				lock.unlockAsync();
+			}
+		});
+		future.addCallback(new ListenableFutureCallback<Object>() {
+
+			@Override
+			public void onSuccess(Object result) {
+				if (timed && !Boolean.TRUE.equals(result)) {
+					sink.success();
+				}
+				else if (state.compareAndSet(0, 1)) {
+					sink.success(lock);
+				}
+				else {
+					lock.unlockAsync();
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable ex) {
+				if (!(ex instanceof CancellationException)) {
+					sink.error(ex);
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.reactive.leader;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.event.AbstractLeaderEvent;
+import org.springframework.cloud.cluster.leader.event.DefaultLeaderEventPublisher;
+import org.springframework.cloud.cluster.leader.event.LeaderEventPublisher;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import reactor.test.StepVerifier;
+
+/**
+ * Tests for {@link ReactiveLeaderEvents}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ReactiveLeaderEventsTests {
+
+	@Test
+	public void testLeadershipTransitions() {
+		final ReactiveLeaderEvents events = new ReactiveLeaderEvents();
+		LeaderEventPublisher publisher = new DefaultLeaderEventPublisher(new ApplicationEventPublisher() {
+
+			@Override
+			public void publishEvent(ApplicationEvent event) {
+				events.onApplicationEvent((AbstractLeaderEvent) event);
+			}
+
+			@Override
+			public void publishEvent(Object event) {
+				publishEvent((ApplicationEvent) event);
+			}
+		});
+
+		publisher.publishOnGranted(this, null, "role1");
+		StepVerifier.create(events.leadership("role1"))
+				.expectNext(true)
+				.then(() -> publisher.publishOnGranted(this, null, "role2"))
+				.then(() -> publisher.publishOnRevoked(this, null, "role1"))
+				.expectNext(false)
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+
+		StepVerifier.create(events.leadership("role2"))
+				.expectNext(true)
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+	}
+
+}
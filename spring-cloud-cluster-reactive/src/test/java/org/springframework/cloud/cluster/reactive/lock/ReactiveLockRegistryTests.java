@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.reactive.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockRegistry;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.DefaultLockRegistry;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.DelegatingDistributedLock;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Tests for {@link ReactiveLockRegistry}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ReactiveLockRegistryTests {
+
+	@Test
+	public void testLockAndUnlock() {
+		ReentrantLock backing = new ReentrantLock();
+		ReactiveLockRegistry registry = new ReactiveLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new TestLockService(backing))));
+
+		DistributedLock lock = registry.lock("lock").block(Duration.ofSeconds(5));
+		assertThat(backing.isLocked(), is(true));
+		StepVerifier.create(registry.tryLock("lock", Duration.ofMillis(50)))
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+
+		registry.unlock(lock).block(Duration.ofSeconds(5));
+		assertThat(backing.isLocked(), is(false));
+		StepVerifier.create(registry.tryLock("lock", Duration.ofMillis(50)).flatMap(registry::unlock))
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	public void testWithLockReleasesOnCompletion() {
+		ReentrantLock backing = new ReentrantLock();
+		ReactiveLockRegistry registry = new ReactiveLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new TestLockService(backing))));
+
+		StepVerifier.create(registry.withLock("lock", lock -> Flux.just(backing.isLocked())))
+				.expectNext(true)
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+		assertThat(backing.isLocked(), is(false));
+
+		StepVerifier.create(registry.withLock("lock", lock -> Mono.error(new IllegalStateException())))
+				.expectError(IllegalStateException.class)
+				.verify(Duration.ofSeconds(5));
+		assertThat(backing.isLocked(), is(false));
+	}
+
+	@Test
+	public void testCancelReleasesLock() throws Exception {
+		ReentrantLock backing = new ReentrantLock();
+		ReactiveLockRegistry registry = new ReactiveLockRegistry(
+				new DefaultLockRegistry(new DefaultLockServiceLocator(new TestLockService(backing))));
+
+		DistributedLock lock = registry.lock("lock").block(Duration.ofSeconds(5));
+		StepVerifier.create(registry.lock("lock"))
+				.expectSubscription()
+				.thenAwait(Duration.ofMillis(50))
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+		registry.unlock(lock).block(Duration.ofSeconds(5));
+
+		StepVerifier.create(registry.tryLock("lock", Duration.ofSeconds(1)).flatMap(registry::unlock))
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+		assertThat(backing.isLocked(), is(false));
+	}
+
+	@Test
+	public void testAdaptedLocksBoundedByPool() throws Exception {
+		ReentrantLock backing1 = new ReentrantLock();
+		ReentrantLock backing2 = new ReentrantLock();
+		LockRegistry lockRegistry = lockKey -> new DelegatingDistributedLock(lockKey,
+				"lock1".equals(lockKey) ? backing1 : backing2);
+		ReactiveLockRegistry registry = new ReactiveLockRegistry(lockRegistry);
+		registry.setPoolSize(1);
+
+		DistributedLock lock1 = registry.lock("lock1").block(Duration.ofSeconds(5));
+		// only pool thread holds lock1, lock2 waits for it
+		StepVerifier.create(registry.lock("lock2"))
+				.expectSubscription()
+				.expectNoEvent(Duration.ofMillis(200))
+				.then(() -> registry.unlock(lock1).block(Duration.ofSeconds(5)))
+				.assertNext(lock2 -> assertThat(backing2.isLocked(), is(true)))
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+		assertThat(backing1.isLocked(), is(false));
+	}
+
+	private static class TestLockService implements LockService {
+
+		private final ReentrantLock lock;
+
+		TestLockService(ReentrantLock lock) {
+			this.lock = lock;
+		}
+
+		@Override
+		public DistributedLock obtain(String lockKey) {
+			return new DelegatingDistributedLock(lockKey, lock);
+		}
+
+	}
+
+}
@@ -15,6 +15,9 @@
  */
 package org.springframework.cloud.cluster.redis;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -40,9 +43,27 @@ public class RedisClusterProperties {
 
 		/** if redis distributed locking is enabled. */
 		private boolean enabled = true;
+
+		/** lock service implementation, either registry or script. */
+		private String implementation = "registry";
 		
 		/** key expire in milliseconds */
 		private Long expireAfter;
+
+		/** interval in milliseconds to renew held script locks, 0 to disable. */
+		private Long renewalInterval;
+
+		/** interval in milliseconds between attempts to acquire a held script lock. */
+		private Long retryInterval;
+
+		/** if waiters of script locks are woken up by unlock messages. */
+		private boolean unlockNotifications;
+
+		/** redis instances as host:port to shard locks across. */
+		private List<String> shards = new ArrayList<String>();
+
+		/** virtual nodes per shard on the consistent hash ring. */
+		private int virtualNodes = 160;
 	
 		public boolean isEnabled() {
 			return enabled;
@@ -52,6 +73,14 @@ public class RedisClusterProperties {
 			this.enabled = enabled;
 		}
 		
+		public String getImplementation() {
+			return implementation;
+		}
+
+		public void setImplementation(String implementation) {
+			this.implementation = implementation;
+		}
+
 		public Long getExpireAfter() {
 			return expireAfter;
 		}
@@ -59,6 +88,46 @@ public class RedisClusterProperties {
 		public void setExpireAfter(Long expireAfter) {
 			this.expireAfter = expireAfter;
 		}
+
+		public Long getRenewalInterval() {
+			return renewalInterval;
+		}
+
+		public void setRenewalInterval(Long renewalInterval) {
+			this.renewalInterval = renewalInterval;
+		}
+
+		public Long getRetryInterval() {
+			return retryInterval;
+		}
+
+		public void setRetryInterval(Long retryInterval) {
+			this.retryInterval = retryInterval;
+		}
+
+		public boolean isUnlockNotifications() {
+			return unlockNotifications;
+		}
+
+		public void setUnlockNotifications(boolean unlockNotifications) {
+			this.unlockNotifications = unlockNotifications;
+		}
+
+		public List<String> getShards() {
+			return shards;
+		}
+
+		public void setShards(List<String> shards) {
+			this.shards = shards;
+		}
+
+		public int getVirtualNodes() {
+			return virtualNodes;
+		}
+
+		public void setVirtualNodes(int virtualNodes) {
+			this.virtualNodes = virtualNodes;
+		}
 		
 	}
 	
@@ -0,0 +1,546 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.support.DelegatingDistributedLock;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockService} implementation acquiring a lock on a majority of
+ * independent Redis nodes, so that a lock survives failure of a minority
+ * of nodes.
+ *
+ * <p>Every attempt sends the acquire to all nodes in parallel and
+ * completes as soon as a majority has either granted or refused it,
+ * without waiting for slow nodes. A lock is only considered acquired if
+ * it is still valid after the time spent acquiring it and an allowance
+ * for clock drift between nodes is subtracted from the expiration. A
+ * failed attempt releases whatever nodes it managed to lock.
+ *
+ * <p>Locks are owned by the calling thread and are reentrant. Reentrant
+ * acquisitions are counted locally and do not contact the nodes, as long
+ * as the lock hasn't expired; an expired lock is acquired on the quorum
+ * again. Locks are not renewed, so work done
+ * under a lock should complete within the expiration.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisQuorumLockService implements LockService, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(RedisQuorumLockService.class);
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-quorum-locks";
+
+	private static final long DEFAULT_EXPIRE_AFTER = 30000;
+
+	private static final long DEFAULT_RETRY_INTERVAL = 100;
+
+	private static final double DEFAULT_CLOCK_DRIFT_FACTOR = 0.01;
+
+	private static final long MIN_CLOCK_DRIFT = 2;
+
+	private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<Long>(
+			"if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+			"  return 1 " +
+			"end " +
+			"return 0", Long.class);
+
+	private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<Long>(
+			"if redis.call('get', KEYS[1]) == ARGV[1] then " +
+			"  return redis.call('del', KEYS[1]) " +
+			"end " +
+			"return 0", Long.class);
+
+	private final List<StringRedisTemplate> nodes;
+
+	private final int quorum;
+
+	private final String registryKey;
+
+	private final long expireAfter;
+
+	private final String clientId = UUID.randomUUID().toString();
+
+	private final ConcurrentMap<String, Hold> holds = new ConcurrentHashMap<String, Hold>();
+
+	private volatile long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+	private volatile double clockDriftFactor = DEFAULT_CLOCK_DRIFT_FACTOR;
+
+	private volatile Executor executor;
+
+	private ExecutorService internalExecutor;
+
+	/**
+	 * Instantiates a new redis quorum lock service.
+	 *
+	 * @param connectionFactories the redis connection factories, one per node
+	 */
+	public RedisQuorumLockService(List<? extends RedisConnectionFactory> connectionFactories) {
+		this(connectionFactories, DEFAULT_REGISTRY_KEY, DEFAULT_EXPIRE_AFTER);
+	}
+
+	/**
+	 * Instantiates a new redis quorum lock service.
+	 *
+	 * @param connectionFactories the redis connection factories, one per node
+	 * @param registryKey The key prefix for locks.
+	 * @param expireAfter The expiration in milliseconds.
+	 */
+	public RedisQuorumLockService(List<? extends RedisConnectionFactory> connectionFactories, String registryKey,
+			long expireAfter) {
+		Assert.notEmpty(connectionFactories, "Redis connection factories must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		Assert.isTrue(expireAfter > 0, "Expiration must be positive");
+		List<StringRedisTemplate> nodes = new ArrayList<StringRedisTemplate>(connectionFactories.size());
+		for (RedisConnectionFactory connectionFactory : connectionFactories) {
+			Assert.notNull(connectionFactory, "Redis connection factory must not be null");
+			nodes.add(new StringRedisTemplate(connectionFactory));
+		}
+		this.nodes = Collections.unmodifiableList(nodes);
+		this.quorum = nodes.size() / 2 + 1;
+		this.registryKey = registryKey;
+		this.expireAfter = expireAfter;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		return new DelegatingDistributedLock(lockKey, new QuorumLock(lockKey));
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		synchronized (this) {
+			if (internalExecutor != null) {
+				internalExecutor.shutdown();
+				internalExecutor = null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the interval in milliseconds between attempts to acquire
+	 * a lock which is held by someone else. A random delay of up to
+	 * the same interval is added so that competing clients don't keep
+	 * splitting the nodes between them.
+	 *
+	 * @param retryInterval the retry interval
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "Retry interval must be positive");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Sets the expected clock drift between nodes as a fraction of
+	 * the expiration. Drift allowance, plus two milliseconds, is
+	 * subtracted from the validity of every acquired lock. Defaults
+	 * to {@code 0.01}.
+	 *
+	 * @param clockDriftFactor the clock drift factor
+	 */
+	public void setClockDriftFactor(double clockDriftFactor) {
+		Assert.isTrue(clockDriftFactor >= 0 && clockDriftFactor < 1, "Clock drift factor must be within [0, 1)");
+		this.clockDriftFactor = clockDriftFactor;
+	}
+
+	/**
+	 * Sets the executor used to contact nodes in parallel. Should be
+	 * able to run a task per node concurrently. If not set, a cached
+	 * thread pool is created on demand.
+	 *
+	 * @param executor the executor
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor, "Executor must be set");
+		this.executor = executor;
+	}
+
+	/**
+	 * Gets the number of nodes which need to grant a lock.
+	 *
+	 * @return the quorum
+	 */
+	public int getQuorum() {
+		return quorum;
+	}
+
+	private String redisKey(String lockKey) {
+		return registryKey + ":" + lockKey;
+	}
+
+	private String threadOwner() {
+		return clientId + ":" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * Tries to acquire a lock on a majority of nodes once and returns
+	 * the time in milliseconds until which the lock is valid, or
+	 * {@code 0} if it was not acquired.
+	 */
+	private long tryAcquire(final String redisKey, final String owner) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		final Attempt attempt = new Attempt();
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(getExecutor());
+		for (final StringRedisTemplate node : nodes) {
+			completion.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() {
+					boolean acquired = acquire(node, redisKey, owner);
+					if (acquired && attempt.abandoned) {
+						release(node, redisKey, owner);
+					}
+					return acquired;
+				}
+			});
+		}
+		int granted = 0;
+		int refused = 0;
+		long validUntil = 0;
+		try {
+			while (granted < quorum && refused <= nodes.size() - quorum) {
+				long remaining = start + expireAfter - System.currentTimeMillis();
+				Future<Boolean> result = remaining > 0 ? completion.poll(remaining, TimeUnit.MILLISECONDS) : null;
+				if (result == null) {
+					break;
+				}
+				if (getResult(result)) {
+					granted++;
+				}
+				else {
+					refused++;
+				}
+			}
+		}
+		finally {
+			if (granted >= quorum) {
+				validUntil = start + expireAfter - clockDrift();
+			}
+			if (validUntil <= System.currentTimeMillis()) {
+				attempt.abandoned = true;
+				releaseAll(redisKey, owner, false);
+				validUntil = 0;
+			}
+		}
+		return validUntil;
+	}
+
+	/**
+	 * Acquires a lock for the calling thread, waiting for retry interval
+	 * between attempts until given deadline.
+	 */
+	private long acquire(String redisKey, String owner, long deadline, boolean interruptible)
+			throws InterruptedException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (interruptible && Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				try {
+					long validUntil = tryAcquire(redisKey, owner);
+					if (validUntil > 0) {
+						return validUntil;
+					}
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						return 0;
+					}
+					long delay = retryInterval + ThreadLocalRandom.current().nextLong(retryInterval);
+					Thread.sleep(Math.min(delay, remaining));
+				}
+				catch (InterruptedException e) {
+					if (interruptible) {
+						throw e;
+					}
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Releases a lock on all nodes in parallel, optionally waiting for
+	 * all nodes to respond. Returns the number of nodes which were still
+	 * holding the lock, or {@code -1} when not waiting.
+	 */
+	private int releaseAll(final String redisKey, final String owner, boolean await) {
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(getExecutor());
+		for (final StringRedisTemplate node : nodes) {
+			completion.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() {
+					return release(node, redisKey, owner);
+				}
+			});
+		}
+		if (!await) {
+			return -1;
+		}
+		int released = 0;
+		boolean interrupted = false;
+		for (int i = 0; i < nodes.size(); i++) {
+			try {
+				if (getResult(completion.take())) {
+					released++;
+				}
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+				i--;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return released;
+	}
+
+	private boolean acquire(StringRedisTemplate node, String redisKey, String owner) {
+		try {
+			Long result = node.execute(ACQUIRE_SCRIPT, Collections.singletonList(redisKey), owner,
+					String.valueOf(expireAfter));
+			return result != null && result == 1;
+		}
+		catch (RuntimeException e) {
+			logger.debug("Acquiring lock {} failed on a node", redisKey, e);
+			return false;
+		}
+	}
+
+	private boolean release(StringRedisTemplate node, String redisKey, String owner) {
+		try {
+			Long result = node.execute(RELEASE_SCRIPT, Collections.singletonList(redisKey), owner);
+			return result != null && result == 1;
+		}
+		catch (RuntimeException e) {
+			logger.warn("Releasing lock {} failed on a node, it will expire", redisKey, e);
+			return false;
+		}
+	}
+
+	private static boolean getResult(Future<Boolean> result) throws InterruptedException {
+		try {
+			return result.get();
+		}
+		catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	private long clockDrift() {
+		return (long) (expireAfter * clockDriftFactor) + MIN_CLOCK_DRIFT;
+	}
+
+	private Executor getExecutor() {
+		Executor current = executor;
+		if (current == null) {
+			synchronized (this) {
+				if (internalExecutor == null) {
+					CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-quorum-lock-");
+					threadFactory.setDaemon(true);
+					internalExecutor = Executors.newCachedThreadPool(threadFactory);
+				}
+				current = internalExecutor;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * State of a single acquisition attempt shared with node tasks,
+	 * so that nodes granting a lock after the attempt gave up release
+	 * it again.
+	 */
+	private static class Attempt {
+
+		private volatile boolean abandoned;
+
+	}
+
+	/**
+	 * Lock held by a thread, counting reentrant acquisitions. Only
+	 * accessed by the owning thread.
+	 */
+	private static class Hold {
+
+		private final long validUntil;
+
+		private int count = 1;
+
+		Hold(long validUntil) {
+			this.validUntil = validUntil;
+		}
+
+	}
+
+	/**
+	 * {@link Lock} acquired on a majority of nodes.
+	 */
+	private class QuorumLock implements Lock {
+
+		private final String lockKey;
+
+		private final String redisKey;
+
+		QuorumLock(String lockKey) {
+			this.lockKey = lockKey;
+			this.redisKey = redisKey(lockKey);
+		}
+
+		@Override
+		public void lock() {
+			String owner = threadOwner();
+			if (reenter(owner)) {
+				return;
+			}
+			long validUntil = 0;
+			try {
+				validUntil = acquire(redisKey, owner, Long.MAX_VALUE, false);
+			}
+			catch (InterruptedException e) {
+				// never thrown as acquire is not interruptible
+				Thread.currentThread().interrupt();
+			}
+			acquired(owner, validUntil);
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			String owner = threadOwner();
+			if (!reenter(owner)) {
+				acquired(owner, acquire(redisKey, owner, Long.MAX_VALUE, true));
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			String owner = threadOwner();
+			if (reenter(owner)) {
+				return true;
+			}
+			try {
+				return acquired(owner, tryAcquire(redisKey, owner));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			String owner = threadOwner();
+			if (reenter(owner)) {
+				return true;
+			}
+			return acquired(owner, acquire(redisKey, owner, System.currentTimeMillis() + unit.toMillis(time), true));
+		}
+
+		@Override
+		public void unlock() {
+			String owner = threadOwner();
+			String holdKey = owner + ":" + redisKey;
+			Hold hold = holds.get(holdKey);
+			if (hold == null) {
+				throw new IllegalMonitorStateException("Lock [" + lockKey + "] is not held by current thread");
+			}
+			if (--hold.count > 0) {
+				return;
+			}
+			holds.remove(holdKey);
+			int released = releaseAll(redisKey, owner, true);
+			if (released < quorum && hold.validUntil <= System.currentTimeMillis()) {
+				logger.warn("Lock {} expired before it was released, released on {} of {} nodes", lockKey,
+						released, nodes.size());
+			}
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		private boolean reenter(String owner) {
+			Hold hold = holds.get(owner + ":" + redisKey);
+			if (hold == null) {
+				return false;
+			}
+			if (hold.validUntil <= System.currentTimeMillis()) {
+				// nodes may have handed the lock to someone else meanwhile,
+				// so the lock is acquired on the quorum again
+				logger.warn("Lock {} expired while held with {} outstanding acquisitions, reacquiring", lockKey,
+						hold.count);
+				return false;
+			}
+			hold.count++;
+			return true;
+		}
+
+		private boolean acquired(String owner, long validUntil) {
+			if (validUntil > 0) {
+				// an expired hold being reacquired keeps its outstanding
+				// acquisitions so that every unlock stays balanced
+				Hold hold = new Hold(validUntil);
+				Hold expired = holds.put(owner + ":" + redisKey, hold);
+				if (expired != null) {
+					hold.count += expired.count;
+				}
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+}
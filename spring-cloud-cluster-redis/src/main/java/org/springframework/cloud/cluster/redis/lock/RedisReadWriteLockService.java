@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.DistributedReadWriteLock;
+import org.springframework.cloud.cluster.lock.ReadWriteLockService;
+import org.springframework.cloud.cluster.lock.support.AbstractDistributedLock;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ReadWriteLockService} implementation based on Redis using Lua
+ * scripts for atomic lock operations.
+ *
+ * <p>Lock is stored as a Redis hash under {@code registryKey:lockKey}
+ * holding the current mode together with a hold count per owner. Locks
+ * are owned by the calling thread and both read and write locks are
+ * reentrant. A holder of the write lock may also acquire the read lock,
+ * which is kept after the write lock is released. Upgrading a read lock
+ * to a write lock is not supported.
+ *
+ * <p>A writer which fails to get the lock registers itself in a set under
+ * {@code registryKey:lockKey:writers}. New readers are refused while this
+ * set is not empty, so writers are not starved by overlapping readers.
+ * Readers already holding the lock may still reenter it. Registrations
+ * expire together with the set if waiting writers stop refreshing it.
+ *
+ * <p>Expiration applies to the lock as a whole and is extended by every
+ * acquisition and release. Waiters poll the lock using a retry interval.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisReadWriteLockService implements ReadWriteLockService {
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-rwlocks";
+
+	private static final long DEFAULT_EXPIRE_AFTER = 60000;
+
+	private static final long DEFAULT_RETRY_INTERVAL = 100;
+
+	private static final String WRITE_SUFFIX = ":write";
+
+	private static final RedisScript<Long> ACQUIRE_READ_SCRIPT = new DefaultRedisScript<Long>(
+			"local mode = redis.call('hget', KEYS[1], 'mode') " +
+			"if (mode == false) then " +
+			"  if (redis.call('scard', KEYS[2]) > 0) then " +
+			"    return 0 " +
+			"  end " +
+			"  redis.call('hset', KEYS[1], 'mode', 'read') " +
+			"elseif (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then " +
+			"  if (mode == 'write') and (redis.call('hexists', KEYS[1], ARGV[1] .. ARGV[3]) == 0) then " +
+			"    return 0 " +
+			"  end " +
+			"  if (mode == 'read') and (redis.call('scard', KEYS[2]) > 0) then " +
+			"    return 0 " +
+			"  end " +
+			"end " +
+			"redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+			"redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"return 1", Long.class);
+
+	private static final RedisScript<Long> ACQUIRE_WRITE_SCRIPT = new DefaultRedisScript<Long>(
+			"local field = ARGV[1] .. ARGV[3] " +
+			"local mode = redis.call('hget', KEYS[1], 'mode') " +
+			"if (mode == false) or ((mode == 'write') and (redis.call('hexists', KEYS[1], field) == 1)) then " +
+			"  redis.call('hset', KEYS[1], 'mode', 'write') " +
+			"  redis.call('hincrby', KEYS[1], field, 1) " +
+			"  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"  redis.call('srem', KEYS[2], ARGV[1]) " +
+			"  return 1 " +
+			"end " +
+			"redis.call('sadd', KEYS[2], ARGV[1]) " +
+			"redis.call('pexpire', KEYS[2], ARGV[2]) " +
+			"return 0", Long.class);
+
+	private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<Long>(
+			"if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then " +
+			"  return -1 " +
+			"end " +
+			"if (redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0) then " +
+			"  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"  return 0 " +
+			"end " +
+			"redis.call('hdel', KEYS[1], ARGV[1]) " +
+			"if (redis.call('hlen', KEYS[1]) == 1) then " +
+			"  redis.call('del', KEYS[1]) " +
+			"  return 1 " +
+			"end " +
+			"if (ARGV[3] == 'write') then " +
+			"  redis.call('hset', KEYS[1], 'mode', 'read') " +
+			"end " +
+			"redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"return 1", Long.class);
+
+	private final StringRedisTemplate redisTemplate;
+
+	private final String registryKey;
+
+	private final long expireAfter;
+
+	private final String clientId = UUID.randomUUID().toString();
+
+	private volatile long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+	/**
+	 * Instantiates a new redis read/write lock service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 */
+	public RedisReadWriteLockService(RedisConnectionFactory connectionFactory) {
+		this(connectionFactory, DEFAULT_REGISTRY_KEY, DEFAULT_EXPIRE_AFTER);
+	}
+
+	/**
+	 * Instantiates a new redis read/write lock service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 * @param registryKey The key prefix for locks.
+	 * @param expireAfter The expiration in milliseconds.
+	 */
+	public RedisReadWriteLockService(RedisConnectionFactory connectionFactory, String registryKey,
+			long expireAfter) {
+		Assert.notNull(connectionFactory, "Redis connection factory must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		Assert.isTrue(expireAfter > 0, "Expiration must be positive");
+		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this.registryKey = registryKey;
+		this.expireAfter = expireAfter;
+	}
+
+	@Override
+	public DistributedReadWriteLock obtain(String lockKey) {
+		return new RedisReadWriteLock(lockKey);
+	}
+
+	/**
+	 * Sets the interval in milliseconds between acquisition attempts
+	 * while waiting for a lock. Defaults to 100 milliseconds.
+	 *
+	 * @param retryInterval the retry interval
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "Retry interval must be positive");
+		this.retryInterval = retryInterval;
+	}
+
+	private String threadOwner() {
+		return clientId + ":" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * {@link DistributedReadWriteLock} exposing read and write views
+	 * of the same Redis hash.
+	 */
+	private class RedisReadWriteLock implements DistributedReadWriteLock {
+
+		private final String lockKey;
+
+		private final DistributedLock readLock;
+
+		private final DistributedLock writeLock;
+
+		RedisReadWriteLock(String lockKey) {
+			this.lockKey = lockKey;
+			List<String> redisKeys = Arrays.asList(registryKey + ":" + lockKey,
+					registryKey + ":" + lockKey + ":writers");
+			this.readLock = new RedisModeLock(lockKey, redisKeys, false);
+			this.writeLock = new RedisModeLock(lockKey, redisKeys, true);
+		}
+
+		@Override
+		public String getLockKey() {
+			return lockKey;
+		}
+
+		@Override
+		public DistributedLock readLock() {
+			return readLock;
+		}
+
+		@Override
+		public DistributedLock writeLock() {
+			return writeLock;
+		}
+
+	}
+
+	/**
+	 * Read or write view of a lock.
+	 */
+	private class RedisModeLock extends AbstractDistributedLock {
+
+		private final List<String> redisKeys;
+
+		private final boolean write;
+
+		RedisModeLock(String lockKey, List<String> redisKeys, boolean write) {
+			super(lockKey);
+			this.redisKeys = redisKeys;
+			this.write = write;
+		}
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					acquire(Long.MAX_VALUE);
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			acquire(Long.MAX_VALUE);
+		}
+
+		@Override
+		public boolean tryLock() {
+			String owner = threadOwner();
+			if (tryAcquire(owner)) {
+				return true;
+			}
+			cancel(owner);
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return acquire(System.currentTimeMillis() + unit.toMillis(time));
+		}
+
+		@Override
+		public void unlock() {
+			String owner = threadOwner();
+			Long result = redisTemplate.execute(RELEASE_SCRIPT, redisKeys, write ? owner + WRITE_SUFFIX : owner,
+					String.valueOf(expireAfter), write ? "write" : "read");
+			if (result == null || result < 0) {
+				throw new IllegalMonitorStateException("Lock [" + getLockKey()
+						+ "] is not held by this owner, it may have expired");
+			}
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		private boolean tryAcquire(String owner) {
+			Long result = redisTemplate.execute(write ? ACQUIRE_WRITE_SCRIPT : ACQUIRE_READ_SCRIPT, redisKeys,
+					owner, String.valueOf(expireAfter), WRITE_SUFFIX);
+			return result != null && result == 1;
+		}
+
+		private boolean acquire(long deadline) throws InterruptedException {
+			String owner = threadOwner();
+			boolean acquired = false;
+			try {
+				while (!(acquired = tryAcquire(owner))) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						return false;
+					}
+					Thread.sleep(Math.min(retryInterval, remaining));
+				}
+				return true;
+			}
+			finally {
+				if (!acquired) {
+					cancel(owner);
+				}
+			}
+		}
+
+		/**
+		 * Withdraws a writer registration after a failed acquisition.
+		 */
+		private void cancel(String owner) {
+			if (write) {
+				redisTemplate.opsForSet().remove(redisKeys.get(1), owner);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,1007 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.AsyncLockService;
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+import org.springframework.cloud.cluster.lock.MultiLock;
+import org.springframework.cloud.cluster.lock.MultiLockService;
+import org.springframework.cloud.cluster.lock.support.AbstractDistributedLock;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * {@link AsyncLockService} implementation based on Redis using Lua scripts
+ * for atomic lock operations.
+ *
+ * <p>Lock is stored as a Redis hash under {@code {registryKey}:lockKey}
+ * holding a hold count per owner. Registry key is wrapped into a hash tag
+ * unless it already contains one, so that with Redis Cluster all keys of
+ * a service are stored in the same slot and scripts spanning several locks
+ * never fail with a cross slot error. Locks of one service therefore live
+ * on a single cluster node, and services with different registry keys
+ * are needed to spread locks across nodes. Locks acquired via blocking methods
+ * are owned by the calling thread and are reentrant. Asynchronous
+ * acquisitions are owned by the acquisition itself and are retried on a
+ * {@link TaskScheduler} so that waiting doesn't occupy a thread.
+ *
+ * <p>Multiple keys are locked atomically with a single script execution.
+ *
+ * <p>Every release which frees a lock is published to channel
+ * {@code registryKey:unlocks}. With unlock notifications enabled, waiters
+ * are woken up by these messages and retry immediately, while retry
+ * interval is only used as a fallback for lost messages and expired locks.
+ *
+ * <p>With a renewal interval set, expiration of every lock held by this
+ * service is extended periodically for as long as the lock is held. All
+ * held locks are renewed together with a single script execution per
+ * renewal, which allows a short expiration without risking locks held by
+ * long running jobs. Renewal runs on its own scheduler thread so that it
+ * isn't delayed by asynchronous acquisitions.
+ *
+ * <p>Every acquisition of a free lock issues a fencing token from a counter
+ * stored under {@code {registryKey}:fencing}. Tokens are shared by all locks
+ * of a registry key, so they are monotonically increasing per lock. Locks
+ * acquired together via {@link #tryLockAll(List, long, TimeUnit)} don't
+ * issue fencing tokens.
+ *
+ * <p>Locks are not compatible with locks created by {@link RedisLockService}
+ * and these two services should not share a registry key.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisScriptLockService implements AsyncLockService, MultiLockService, DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(RedisScriptLockService.class);
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-locks";
+
+	public static final long DEFAULT_EXPIRE_AFTER = 60000;
+
+	private static final long DEFAULT_RETRY_INTERVAL = 100;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String FENCING_TOKEN_FIELD = "fencing-token";
+
+	private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<Long>(
+			"if (redis.call('exists', KEYS[1]) == 0) or (redis.call('hexists', KEYS[1], ARGV[1]) == 1) then " +
+			"  local token = redis.call('hget', KEYS[1], ARGV[3]) " +
+			"  if not token then " +
+			"    token = redis.call('incr', KEYS[2]) " +
+			"    redis.call('hset', KEYS[1], ARGV[3], token) " +
+			"  end " +
+			"  redis.call('hincrby', KEYS[1], ARGV[1], 1) " +
+			"  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"  return tonumber(token) " +
+			"end " +
+			"return 0", Long.class);
+
+	private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<Long>(
+			"if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then " +
+			"  return -1 " +
+			"end " +
+			"if (redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0) then " +
+			"  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"  return 0 " +
+			"end " +
+			"redis.call('del', KEYS[1]) " +
+			"redis.call('publish', ARGV[3], KEYS[1]) " +
+			"return 1", Long.class);
+
+	private static final RedisScript<Long> ACQUIRE_ALL_SCRIPT = new DefaultRedisScript<Long>(
+			"for i, key in ipairs(KEYS) do " +
+			"  if (redis.call('exists', key) == 1) and (redis.call('hexists', key, ARGV[1]) == 0) then " +
+			"    return 0 " +
+			"  end " +
+			"end " +
+			"for i, key in ipairs(KEYS) do " +
+			"  redis.call('hincrby', key, ARGV[1], 1) " +
+			"  redis.call('pexpire', key, ARGV[2]) " +
+			"end " +
+			"return 1", Long.class);
+
+	private static final RedisScript<Long> RELEASE_ALL_SCRIPT = new DefaultRedisScript<Long>(
+			"local missing = 0 " +
+			"for i, key in ipairs(KEYS) do " +
+			"  if (redis.call('hexists', key, ARGV[1]) == 0) then " +
+			"    missing = missing + 1 " +
+			"  elseif (redis.call('hincrby', key, ARGV[1], -1) > 0) then " +
+			"    redis.call('pexpire', key, ARGV[2]) " +
+			"  else " +
+			"    redis.call('del', key) " +
+			"    redis.call('publish', ARGV[3], key) " +
+			"  end " +
+			"end " +
+			"return missing", Long.class);
+
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> RENEW_SCRIPT = new DefaultRedisScript<List>(
+			"local renewed = {} " +
+			"for i, key in ipairs(KEYS) do " +
+			"  if (redis.call('hexists', key, ARGV[i + 1]) == 1) then " +
+			"    renewed[i] = redis.call('pexpire', key, ARGV[1]) " +
+			"  else " +
+			"    renewed[i] = 0 " +
+			"  end " +
+			"end " +
+			"return renewed", List.class);
+
+	private static final int RENEW_BATCH_SIZE = 1000;
+
+	private final StringRedisTemplate redisTemplate;
+
+	private final String keyPrefix;
+
+	private final String unlockChannel;
+
+	private final String fencingKey;
+
+	private final long expireAfter;
+
+	private final String clientId = UUID.randomUUID().toString();
+
+	private final AtomicLong acquisitionIds = new AtomicLong();
+
+	private final Map<String, Set<UnlockListener>> unlockListeners = new HashMap<String, Set<UnlockListener>>();
+
+	private final MessageListener unlockMessageListener = new UnlockMessageListener();
+
+	private final ConcurrentMap<Lease, AtomicInteger> leases = new ConcurrentHashMap<Lease, AtomicInteger>();
+
+	private final AtomicLong renewalFailures = new AtomicLong();
+
+	private volatile long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private ThreadPoolTaskScheduler internalTaskScheduler;
+
+	private ThreadPoolTaskScheduler renewalScheduler;
+
+	private volatile boolean unlockNotifications;
+
+	private RedisMessageListenerContainer listenerContainer;
+
+	private boolean internalListenerContainer;
+
+	private boolean subscribed;
+
+	private volatile long renewalInterval;
+
+	private ScheduledFuture<?> renewalTask;
+
+	private long nextRenewal;
+
+	private volatile long renewalLag;
+
+	private volatile long maxRenewalLag;
+
+	/**
+	 * Instantiates a new redis script lock service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 */
+	public RedisScriptLockService(RedisConnectionFactory connectionFactory) {
+		this(connectionFactory, DEFAULT_REGISTRY_KEY, DEFAULT_EXPIRE_AFTER);
+	}
+
+	/**
+	 * Instantiates a new redis script lock service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 * @param registryKey The key prefix for locks.
+	 * @param expireAfter The expiration in milliseconds.
+	 */
+	public RedisScriptLockService(RedisConnectionFactory connectionFactory, String registryKey, long expireAfter) {
+		Assert.notNull(connectionFactory, "Redis connection factory must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		Assert.isTrue(expireAfter > 0, "Expiration must be positive");
+		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this.keyPrefix = hashTagged(registryKey);
+		this.unlockChannel = registryKey + ":unlocks";
+		this.fencingKey = keyPrefix + ":fencing";
+		this.expireAfter = expireAfter;
+	}
+
+	@Override
+	public AsyncDistributedLock obtain(String lockKey) {
+		return new RedisScriptLock(lockKey);
+	}
+
+	@Override
+	public MultiLock tryLockAll(List<String> lockKeys, long time, TimeUnit unit) throws InterruptedException {
+		Assert.notEmpty(lockKeys, "Lock keys must be set");
+		List<String> redisKeys = new ArrayList<String>(lockKeys.size());
+		for (String lockKey : lockKeys) {
+			redisKeys.add(redisKey(lockKey));
+		}
+		String owner = threadOwner();
+		if (acquire(redisKeys, owner, System.currentTimeMillis() + unit.toMillis(time), true) == 0) {
+			return null;
+		}
+		track(redisKeys, owner);
+		return new RedisMultiLock(Collections.unmodifiableList(new ArrayList<String>(lockKeys)), redisKeys, owner);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		synchronized (this) {
+			if (renewalTask != null) {
+				renewalTask.cancel(false);
+				renewalTask = null;
+			}
+			if (renewalScheduler != null) {
+				renewalScheduler.shutdown();
+				renewalScheduler = null;
+			}
+			if (internalTaskScheduler != null) {
+				internalTaskScheduler.shutdown();
+				internalTaskScheduler = null;
+			}
+			if (listenerContainer != null) {
+				if (internalListenerContainer) {
+					listenerContainer.destroy();
+					listenerContainer = null;
+					internalListenerContainer = false;
+				}
+				else if (subscribed) {
+					listenerContainer.removeMessageListener(unlockMessageListener);
+				}
+				subscribed = false;
+			}
+		}
+	}
+
+	/**
+	 * Sets the interval in milliseconds between attempts to acquire
+	 * a lock which is held by someone else. With unlock notifications
+	 * enabled this is only a fallback.
+	 *
+	 * @param retryInterval the retry interval
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "Retry interval must be positive");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Sets the task scheduler used for asynchronous lock acquisitions.
+	 * If not set, a single threaded scheduler is created on demand.
+	 *
+	 * @param taskScheduler the task scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "Task scheduler must be set");
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Sets whether waiters are woken up by unlock messages instead of
+	 * only polling. If no listener container is set, one is created
+	 * on demand. Defaults to {@code false}.
+	 *
+	 * @param unlockNotifications the unlock notifications flag
+	 */
+	public void setUnlockNotifications(boolean unlockNotifications) {
+		this.unlockNotifications = unlockNotifications;
+	}
+
+	/**
+	 * Sets a shared listener container used to subscribe to unlock
+	 * messages. Setting a container enables unlock notifications.
+	 *
+	 * @param listenerContainer the redis message listener container
+	 */
+	public synchronized void setListenerContainer(RedisMessageListenerContainer listenerContainer) {
+		Assert.notNull(listenerContainer, "Listener container must be set");
+		Assert.state(this.listenerContainer == null, "Listener container already in use");
+		this.listenerContainer = listenerContainer;
+		this.unlockNotifications = true;
+	}
+
+	/**
+	 * Sets the interval in milliseconds for renewing expiration of held
+	 * locks. Should be well below the expiration. Defaults to {@code 0}
+	 * meaning that locks are not renewed.
+	 *
+	 * @param renewalInterval the renewal interval
+	 */
+	public void setRenewalInterval(long renewalInterval) {
+		Assert.isTrue(renewalInterval >= 0, "Renewal interval must not be negative");
+		Assert.isTrue(renewalInterval < expireAfter, "Renewal interval must be less than expiration");
+		this.renewalInterval = renewalInterval;
+	}
+
+	/**
+	 * Gets the lag of the last renewal in milliseconds, meaning how late
+	 * renewal completed compared to when it was due.
+	 *
+	 * @return the last renewal lag
+	 */
+	public long getRenewalLag() {
+		return renewalLag;
+	}
+
+	/**
+	 * Gets the maximum renewal lag in milliseconds seen so far.
+	 *
+	 * @return the maximum renewal lag
+	 */
+	public long getMaxRenewalLag() {
+		return maxRenewalLag;
+	}
+
+	/**
+	 * Gets the number of held locks which were found to be lost
+	 * during renewal.
+	 *
+	 * @return the number of failed renewals
+	 */
+	public long getRenewalFailures() {
+		return renewalFailures.get();
+	}
+
+	/**
+	 * Gets the number of locks currently tracked for renewal.
+	 *
+	 * @return the number of renewed locks
+	 */
+	public int getRenewedLocks() {
+		return leases.size();
+	}
+
+	private String redisKey(String lockKey) {
+		return keyPrefix + ":" + lockKey;
+	}
+
+	private static String hashTagged(String registryKey) {
+		int start = registryKey.indexOf('{');
+		if (start != -1 && registryKey.indexOf('}', start) > start + 1) {
+			return registryKey;
+		}
+		return "{" + registryKey + "}";
+	}
+
+	private String threadOwner() {
+		return clientId + ":" + Thread.currentThread().getId();
+	}
+
+	/**
+	 * Tries to acquire locks once. Returns a fencing token for a single key,
+	 * {@code 1} for multiple keys and {@code 0} if locks were not acquired.
+	 */
+	private long tryAcquire(List<String> redisKeys, String owner) {
+		Long result;
+		if (redisKeys.size() == 1) {
+			result = redisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(redisKeys.get(0), fencingKey), owner,
+					String.valueOf(expireAfter), FENCING_TOKEN_FIELD);
+		}
+		else {
+			result = redisTemplate.execute(ACQUIRE_ALL_SCRIPT, redisKeys, owner, String.valueOf(expireAfter));
+		}
+		return result != null ? result : 0;
+	}
+
+	/**
+	 * Acquires locks for the calling thread, waiting for an unlock message
+	 * or retry interval between attempts until given deadline.
+	 */
+	private long acquire(List<String> redisKeys, String owner, long deadline, boolean interruptible)
+			throws InterruptedException {
+		long acquired = tryAcquire(redisKeys, owner);
+		if (acquired > 0) {
+			return acquired;
+		}
+		BlockingUnlockListener listener = new BlockingUnlockListener();
+		addUnlockListener(redisKeys, listener);
+		boolean interrupted = false;
+		try {
+			while (true) {
+				if (interruptible && Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				long generation = listener.getGeneration();
+				acquired = tryAcquire(redisKeys, owner);
+				if (acquired > 0) {
+					return acquired;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return 0;
+				}
+				try {
+					listener.await(generation, Math.min(retryInterval, remaining));
+				}
+				catch (InterruptedException e) {
+					if (interruptible) {
+						throw e;
+					}
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			removeUnlockListener(redisKeys, listener);
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Releases a lock once and returns if lock was freed.
+	 */
+	private boolean release(String lockKey, String owner) {
+		List<String> redisKeys = Collections.singletonList(redisKey(lockKey));
+		Long result = redisTemplate.execute(RELEASE_SCRIPT, redisKeys, owner, String.valueOf(expireAfter),
+				unlockChannel);
+		untrack(redisKeys, owner);
+		if (result == null || result < 0) {
+			throw new IllegalMonitorStateException("Lock [" + lockKey
+					+ "] is not held by this owner, it may have expired");
+		}
+		return result == 1;
+	}
+
+	private void track(List<String> redisKeys, String owner) {
+		if (renewalInterval <= 0) {
+			return;
+		}
+		for (String redisKey : redisKeys) {
+			Lease lease = new Lease(redisKey, owner);
+			AtomicInteger holds = leases.get(lease);
+			if (holds == null) {
+				AtomicInteger created = new AtomicInteger();
+				holds = leases.putIfAbsent(lease, created);
+				if (holds == null) {
+					holds = created;
+				}
+			}
+			holds.incrementAndGet();
+		}
+		startRenewal();
+	}
+
+	private void untrack(List<String> redisKeys, String owner) {
+		if (leases.isEmpty()) {
+			return;
+		}
+		for (String redisKey : redisKeys) {
+			Lease lease = new Lease(redisKey, owner);
+			AtomicInteger holds = leases.get(lease);
+			if (holds != null && holds.decrementAndGet() <= 0) {
+				leases.remove(lease, holds);
+			}
+		}
+	}
+
+	private synchronized void startRenewal() {
+		if (renewalTask != null) {
+			return;
+		}
+		long interval = renewalInterval;
+		nextRenewal = System.currentTimeMillis() + interval;
+		if (renewalScheduler == null) {
+			renewalScheduler = new ThreadPoolTaskScheduler();
+			renewalScheduler.setThreadNamePrefix("redis-lock-renewal-");
+			renewalScheduler.setDaemon(true);
+			renewalScheduler.initialize();
+		}
+		renewalTask = renewalScheduler.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				renewLeases();
+			}
+		}, new Date(nextRenewal), interval);
+	}
+
+	/**
+	 * Extends expiration of all tracked leases with a single script
+	 * execution per batch. Leases no longer owned are dropped and
+	 * counted as failures.
+	 */
+	private void renewLeases() {
+		long due;
+		synchronized (this) {
+			due = nextRenewal;
+			nextRenewal += renewalInterval;
+		}
+		List<Lease> renewed = new ArrayList<Lease>(leases.keySet());
+		for (int start = 0; start < renewed.size(); start += RENEW_BATCH_SIZE) {
+			renew(renewed.subList(start, Math.min(start + RENEW_BATCH_SIZE, renewed.size())));
+		}
+		long lag = Math.max(System.currentTimeMillis() - due, 0);
+		renewalLag = lag;
+		if (lag > maxRenewalLag) {
+			maxRenewalLag = lag;
+		}
+	}
+
+	private void renew(List<Lease> batch) {
+		List<String> redisKeys = new ArrayList<String>(batch.size());
+		Object[] args = new Object[batch.size() + 1];
+		args[0] = String.valueOf(expireAfter);
+		for (int i = 0; i < batch.size(); i++) {
+			redisKeys.add(batch.get(i).redisKey);
+			args[i + 1] = batch.get(i).owner;
+		}
+		List<?> results;
+		try {
+			results = redisTemplate.execute(RENEW_SCRIPT, redisKeys, args);
+		}
+		catch (RuntimeException e) {
+			logger.warn("Renewal of held locks failed", e);
+			return;
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			Lease lease = batch.get(i);
+			if (!Long.valueOf(1).equals(results.get(i)) && leases.remove(lease) != null) {
+				renewalFailures.incrementAndGet();
+				logger.warn("Lost lock {} held by {} before it was released", lease.redisKey, lease.owner);
+			}
+		}
+	}
+
+	private void addUnlockListener(List<String> redisKeys, UnlockListener listener) {
+		if (!unlockNotifications) {
+			return;
+		}
+		subscribe();
+		synchronized (unlockListeners) {
+			for (String redisKey : redisKeys) {
+				Set<UnlockListener> listeners = unlockListeners.get(redisKey);
+				if (listeners == null) {
+					listeners = new LinkedHashSet<UnlockListener>();
+					unlockListeners.put(redisKey, listeners);
+				}
+				listeners.add(listener);
+			}
+		}
+	}
+
+	private void removeUnlockListener(List<String> redisKeys, UnlockListener listener) {
+		synchronized (unlockListeners) {
+			for (String redisKey : redisKeys) {
+				Set<UnlockListener> listeners = unlockListeners.get(redisKey);
+				if (listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+					unlockListeners.remove(redisKey);
+				}
+			}
+		}
+	}
+
+	private synchronized void subscribe() {
+		if (subscribed) {
+			return;
+		}
+		if (listenerContainer == null) {
+			RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+			container.setConnectionFactory(redisTemplate.getConnectionFactory());
+			container.afterPropertiesSet();
+			container.start();
+			listenerContainer = container;
+			internalListenerContainer = true;
+		}
+		listenerContainer.addMessageListener(unlockMessageListener, new ChannelTopic(unlockChannel));
+		subscribed = true;
+	}
+
+	private TaskScheduler getTaskScheduler() {
+		TaskScheduler scheduler = taskScheduler;
+		if (scheduler == null) {
+			synchronized (this) {
+				if (internalTaskScheduler == null) {
+					internalTaskScheduler = new ThreadPoolTaskScheduler();
+					internalTaskScheduler.setThreadNamePrefix("redis-lock-");
+					internalTaskScheduler.setDaemon(true);
+					internalTaskScheduler.initialize();
+				}
+				scheduler = internalTaskScheduler;
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Lock held by an owner and tracked for renewal.
+	 */
+	private static class Lease {
+
+		private final String redisKey;
+
+		private final String owner;
+
+		Lease(String redisKey, String owner) {
+			this.redisKey = redisKey;
+			this.owner = owner;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * redisKey.hashCode() + owner.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Lease)) {
+				return false;
+			}
+			Lease other = (Lease) obj;
+			return redisKey.equals(other.redisKey) && owner.equals(other.owner);
+		}
+
+	}
+
+	/**
+	 * Callback for waiters interested in a lock being released.
+	 */
+	private interface UnlockListener {
+
+		void unlocked();
+
+	}
+
+	/**
+	 * {@link UnlockListener} parking a blocked thread. Generation guards
+	 * against notifications arriving between an attempt and a wait.
+	 */
+	private static class BlockingUnlockListener implements UnlockListener {
+
+		private long generation;
+
+		@Override
+		public synchronized void unlocked() {
+			generation++;
+			notifyAll();
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		synchronized void await(long seen, long timeout) throws InterruptedException {
+			if (generation == seen) {
+				wait(timeout);
+			}
+		}
+
+	}
+
+	/**
+	 * {@link MessageListener} dispatching unlock messages to waiters.
+	 */
+	private class UnlockMessageListener implements MessageListener {
+
+		@Override
+		public void onMessage(Message message, byte[] pattern) {
+			String redisKey = new String(message.getBody(), UTF8);
+			List<UnlockListener> listeners;
+			synchronized (unlockListeners) {
+				Set<UnlockListener> registered = unlockListeners.get(redisKey);
+				if (registered == null) {
+					return;
+				}
+				listeners = new ArrayList<UnlockListener>(registered);
+			}
+			for (UnlockListener listener : listeners) {
+				listener.unlocked();
+			}
+		}
+
+	}
+
+	/**
+	 * {@link MultiLock} released with a single script execution.
+	 */
+	private class RedisMultiLock implements MultiLock {
+
+		private final List<String> lockKeys;
+
+		private final List<String> redisKeys;
+
+		private final String owner;
+
+		RedisMultiLock(List<String> lockKeys, List<String> redisKeys, String owner) {
+			this.lockKeys = lockKeys;
+			this.redisKeys = redisKeys;
+			this.owner = owner;
+		}
+
+		@Override
+		public List<String> getLockKeys() {
+			return lockKeys;
+		}
+
+		@Override
+		public void unlock() {
+			Long missing = redisTemplate.execute(RELEASE_ALL_SCRIPT, redisKeys, owner, String.valueOf(expireAfter),
+					unlockChannel);
+			untrack(redisKeys, owner);
+			if (missing == null || missing > 0) {
+				throw new IllegalMonitorStateException("Locks " + lockKeys
+						+ " were not all held by this owner, some may have expired");
+			}
+		}
+
+	}
+
+	/**
+	 * Redis lock backed by acquire and release scripts.
+	 */
+	private class RedisScriptLock extends AbstractDistributedLock
+			implements AsyncDistributedLock, FencedDistributedLock {
+
+		private final List<String> redisKeys;
+
+		private final Deque<String> asyncOwners = new ConcurrentLinkedDeque<String>();
+
+		private final ConcurrentMap<String, Long> fencingTokens = new ConcurrentHashMap<String, Long>();
+
+		RedisScriptLock(String lockKey) {
+			super(lockKey);
+			this.redisKeys = Collections.singletonList(redisKey(lockKey));
+		}
+
+		@Override
+		public void lock() {
+			String owner = threadOwner();
+			long token = 0;
+			try {
+				token = acquire(redisKeys, owner, Long.MAX_VALUE, false);
+			}
+			catch (InterruptedException e) {
+				// never thrown as acquire is not interruptible
+				Thread.currentThread().interrupt();
+			}
+			acquired(owner, token);
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			String owner = threadOwner();
+			acquired(owner, acquire(redisKeys, owner, Long.MAX_VALUE, true));
+		}
+
+		@Override
+		public boolean tryLock() {
+			String owner = threadOwner();
+			long token = tryAcquire(redisKeys, owner);
+			if (token > 0) {
+				acquired(owner, token);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			String owner = threadOwner();
+			long token = acquire(redisKeys, owner, System.currentTimeMillis() + unit.toMillis(time), true);
+			if (token > 0) {
+				acquired(owner, token);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void unlock() {
+			String owner = threadOwner();
+			if (release(getLockKey(), owner)) {
+				fencingTokens.remove(owner);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * <p>Returns the token of a hold owned by the calling thread or, if
+		 * there is none, of the latest asynchronous hold. Only holds acquired
+		 * through this lock instance are known.
+		 */
+		@Override
+		public long getFencingToken() {
+			Long token = fencingTokens.get(threadOwner());
+			if (token == null) {
+				String owner = asyncOwners.peek();
+				token = owner != null ? fencingTokens.get(owner) : null;
+			}
+			if (token == null) {
+				throw new IllegalMonitorStateException("Lock [" + getLockKey() + "] is not held");
+			}
+			return token;
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		private void acquired(String owner, long token) {
+			track(redisKeys, owner);
+			fencingTokens.put(owner, token);
+		}
+
+		@Override
+		public ListenableFuture<Void> lockAsync() {
+			SettableListenableFuture<Void> future = new SettableListenableFuture<Void>();
+			new Attempt<Void>(future, null, Long.MAX_VALUE).start();
+			return future;
+		}
+
+		@Override
+		public ListenableFuture<Boolean> tryLockAsync(long time, TimeUnit unit) {
+			SettableListenableFuture<Boolean> future = new SettableListenableFuture<Boolean>();
+			long deadline = System.currentTimeMillis() + unit.toMillis(time);
+			new Attempt<Boolean>(future, Boolean.TRUE, deadline).start();
+			return future;
+		}
+
+		@Override
+		public ListenableFuture<Void> unlockAsync() {
+			final SettableListenableFuture<Void> future = new SettableListenableFuture<Void>();
+			final String owner = asyncOwners.poll();
+			if (owner == null) {
+				future.setException(new IllegalMonitorStateException("Lock [" + getLockKey()
+						+ "] is not held asynchronously"));
+				return future;
+			}
+			getTaskScheduler().schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						fencingTokens.remove(owner);
+						release(getLockKey(), owner);
+						future.set(null);
+					}
+					catch (RuntimeException e) {
+						future.setException(e);
+					}
+				}
+			}, new Date());
+			return future;
+		}
+
+		/**
+		 * Acquisition attempt which reschedules itself until lock is
+		 * acquired, deadline passes or future is cancelled. Unlock
+		 * messages bring the next attempt forward.
+		 */
+		private class Attempt<T> implements Runnable, UnlockListener {
+
+			private final SettableListenableFuture<T> future;
+
+			private final T acquiredValue;
+
+			private final long deadline;
+
+			private final String owner = clientId + ":async:" + acquisitionIds.incrementAndGet();
+
+			private ScheduledFuture<?> next;
+
+			Attempt(SettableListenableFuture<T> future, T acquiredValue, long deadline) {
+				this.future = future;
+				this.acquiredValue = acquiredValue;
+				this.deadline = deadline;
+			}
+
+			void start() {
+				addUnlockListener(redisKeys, this);
+				schedule(new Date());
+			}
+
+			@Override
+			public void unlocked() {
+				schedule(new Date());
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public synchronized void run() {
+				if (future.isDone()) {
+					complete();
+					return;
+				}
+				try {
+					long token = tryAcquire(redisKeys, owner);
+					if (token > 0) {
+						acquired(owner, token);
+						asyncOwners.push(owner);
+						if (!future.set(acquiredValue)) {
+							asyncOwners.remove(owner);
+							fencingTokens.remove(owner);
+							release(getLockKey(), owner);
+						}
+						complete();
+						return;
+					}
+					long now = System.currentTimeMillis();
+					if (now >= deadline) {
+						((SettableListenableFuture<Object>) future).set(Boolean.FALSE);
+						complete();
+					}
+					else {
+						schedule(new Date(Math.min(now + retryInterval, deadline)));
+					}
+				}
+				catch (RuntimeException e) {
+					future.setException(e);
+					complete();
+				}
+			}
+
+			private synchronized void schedule(Date startTime) {
+				if (future.isDone()) {
+					return;
+				}
+				if (next != null) {
+					next.cancel(false);
+				}
+				next = getTaskScheduler().schedule(this, startTime);
+			}
+
+			private void complete() {
+				removeUnlockListener(redisKeys, this);
+			}
+
+		}
+
+	}
+
+}
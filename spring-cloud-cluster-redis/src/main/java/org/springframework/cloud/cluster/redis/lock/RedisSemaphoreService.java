@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.cloud.cluster.lock.DistributedSemaphore;
+import org.springframework.cloud.cluster.lock.SemaphoreService;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.util.Assert;
+
+/**
+ * {@link SemaphoreService} implementation based on Redis using Lua scripts
+ * for atomic permit operations.
+ *
+ * <p>Permits are stored as a Redis hash under {@code registryKey:semaphoreKey}
+ * holding the number of permits per holder, where every service instance is
+ * a single holder. Expiration time of each holder is kept in a sorted set
+ * under {@code registryKey:semaphoreKey:expires} and is extended whenever
+ * the holder acquires or releases permits. Permits of expired holders are
+ * returned by the next operation on the semaphore, so permits need to be
+ * released within the expiration time.
+ *
+ * <p>Expiration is evaluated against the clock of the calling client.
+ * Waiters poll the semaphore using a retry interval.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisSemaphoreService implements SemaphoreService {
+
+	public static final String DEFAULT_REGISTRY_KEY = "spring-cloud-semaphores";
+
+	private static final long DEFAULT_EXPIRE_AFTER = 60000;
+
+	private static final long DEFAULT_RETRY_INTERVAL = 100;
+
+	private static final String PURGE_AND_COUNT =
+			"local expired = redis.call('zrangebyscore', KEYS[2], '-inf', ARGV[1]) " +
+			"for i, holder in ipairs(expired) do " +
+			"  redis.call('hdel', KEYS[1], holder) " +
+			"end " +
+			"if (#expired > 0) then " +
+			"  redis.call('zremrangebyscore', KEYS[2], '-inf', ARGV[1]) " +
+			"end " +
+			"local used = 0 " +
+			"for i, count in ipairs(redis.call('hvals', KEYS[1])) do " +
+			"  used = used + tonumber(count) " +
+			"end ";
+
+	private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<Long>(
+			PURGE_AND_COUNT +
+			"if (used + tonumber(ARGV[4]) > tonumber(ARGV[5])) then " +
+			"  return 0 " +
+			"end " +
+			"redis.call('hincrby', KEYS[1], ARGV[3], ARGV[4]) " +
+			"redis.call('zadd', KEYS[2], ARGV[1] + ARGV[2], ARGV[3]) " +
+			"redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"redis.call('pexpire', KEYS[2], ARGV[2]) " +
+			"return 1", Long.class);
+
+	private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<Long>(
+			PURGE_AND_COUNT +
+			"local held = tonumber(redis.call('hget', KEYS[1], ARGV[3]) or '0') " +
+			"if (held < tonumber(ARGV[4])) then " +
+			"  return -1 " +
+			"end " +
+			"if (held == tonumber(ARGV[4])) then " +
+			"  redis.call('hdel', KEYS[1], ARGV[3]) " +
+			"  redis.call('zrem', KEYS[2], ARGV[3]) " +
+			"else " +
+			"  redis.call('hincrby', KEYS[1], ARGV[3], -ARGV[4]) " +
+			"  redis.call('zadd', KEYS[2], ARGV[1] + ARGV[2], ARGV[3]) " +
+			"end " +
+			"if (redis.call('exists', KEYS[1]) == 1) then " +
+			"  redis.call('pexpire', KEYS[1], ARGV[2]) " +
+			"  redis.call('pexpire', KEYS[2], ARGV[2]) " +
+			"end " +
+			"return 1", Long.class);
+
+	private static final RedisScript<Long> AVAILABLE_SCRIPT = new DefaultRedisScript<Long>(
+			PURGE_AND_COUNT +
+			"return tonumber(ARGV[3]) - used", Long.class);
+
+	private final StringRedisTemplate redisTemplate;
+
+	private final String registryKey;
+
+	private final long expireAfter;
+
+	private final String clientId = UUID.randomUUID().toString();
+
+	private volatile long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+	/**
+	 * Instantiates a new redis semaphore service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 */
+	public RedisSemaphoreService(RedisConnectionFactory connectionFactory) {
+		this(connectionFactory, DEFAULT_REGISTRY_KEY, DEFAULT_EXPIRE_AFTER);
+	}
+
+	/**
+	 * Instantiates a new redis semaphore service.
+	 *
+	 * @param connectionFactory the redis connection factory
+	 * @param registryKey The key prefix for semaphores.
+	 * @param expireAfter The expiration of permits in milliseconds.
+	 */
+	public RedisSemaphoreService(RedisConnectionFactory connectionFactory, String registryKey, long expireAfter) {
+		Assert.notNull(connectionFactory, "Redis connection factory must be set");
+		Assert.hasText(registryKey, "Registry key must be set");
+		Assert.isTrue(expireAfter > 0, "Expiration must be positive");
+		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this.registryKey = registryKey;
+		this.expireAfter = expireAfter;
+	}
+
+	@Override
+	public DistributedSemaphore obtain(String semaphoreKey, int permits) {
+		Assert.isTrue(permits > 0, "Permits must be positive");
+		return new RedisSemaphore(semaphoreKey, permits);
+	}
+
+	/**
+	 * Sets the interval in milliseconds between acquisition attempts
+	 * while waiting for permits. Defaults to 100 milliseconds.
+	 *
+	 * @param retryInterval the retry interval
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "Retry interval must be positive");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * {@link DistributedSemaphore} backed by permit scripts.
+	 */
+	private class RedisSemaphore implements DistributedSemaphore {
+
+		private final String semaphoreKey;
+
+		private final int permits;
+
+		private final List<String> redisKeys;
+
+		RedisSemaphore(String semaphoreKey, int permits) {
+			this.semaphoreKey = semaphoreKey;
+			this.permits = permits;
+			this.redisKeys = Arrays.asList(registryKey + ":" + semaphoreKey,
+					registryKey + ":" + semaphoreKey + ":expires");
+		}
+
+		@Override
+		public String getSemaphoreKey() {
+			return semaphoreKey;
+		}
+
+		@Override
+		public void acquire(int permits) throws InterruptedException {
+			tryAcquire(permits, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public boolean tryAcquire(int permits) {
+			checkPermits(permits);
+			Long result = redisTemplate.execute(ACQUIRE_SCRIPT, redisKeys, now(), String.valueOf(expireAfter),
+					clientId, String.valueOf(permits), String.valueOf(this.permits));
+			return result != null && result == 1;
+		}
+
+		@Override
+		public boolean tryAcquire(int permits, long time, TimeUnit unit) throws InterruptedException {
+			long timeout = unit.toMillis(time);
+			long deadline = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+			while (!tryAcquire(permits)) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				Thread.sleep(Math.min(retryInterval, remaining));
+			}
+			return true;
+		}
+
+		@Override
+		public void release(int permits) {
+			checkPermits(permits);
+			Long result = redisTemplate.execute(RELEASE_SCRIPT, redisKeys, now(), String.valueOf(expireAfter),
+					clientId, String.valueOf(permits));
+			if (result == null || result < 0) {
+				throw new IllegalMonitorStateException("Semaphore [" + semaphoreKey + "] doesn't hold "
+						+ permits + " permits for this client, they may have expired");
+			}
+		}
+
+		@Override
+		public int availablePermits() {
+			Long result = redisTemplate.execute(AVAILABLE_SCRIPT, redisKeys, now(), String.valueOf(expireAfter),
+					String.valueOf(permits));
+			return result != null ? Math.max(result.intValue(), 0) : 0;
+		}
+
+		private void checkPermits(int permits) {
+			Assert.isTrue(permits > 0 && permits <= this.permits, "Permits must be between 1 and " + this.permits);
+		}
+
+		private String now() {
+			return String.valueOf(System.currentTimeMillis());
+		}
+
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Integration tests for redis quorum locks using external redis server.
+ * Nodes are simulated with separate databases of the same server.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisQuorumLockServiceIT {
+
+	private static final String KEY = RedisQuorumLockService.DEFAULT_REGISTRY_KEY + ":lock";
+
+	private List<JedisConnectionFactory> connectionFactories = new ArrayList<JedisConnectionFactory>();
+	private List<StringRedisTemplate> redisTemplates = new ArrayList<StringRedisTemplate>();
+	private RedisQuorumLockService service;
+
+	@Before
+	public void setup() {
+		for (int i = 0; i < 3; i++) {
+			JedisConnectionFactory connectionFactory = new JedisConnectionFactory();
+			connectionFactory.setDatabase(i + 1);
+			connectionFactory.afterPropertiesSet();
+			connectionFactories.add(connectionFactory);
+			redisTemplates.add(new StringRedisTemplate(connectionFactory));
+		}
+		cleanLocks();
+		service = new RedisQuorumLockService(connectionFactories);
+		service.setRetryInterval(10);
+	}
+
+	@After
+	public void close() throws Exception {
+		service.destroy();
+		cleanLocks();
+		for (JedisConnectionFactory connectionFactory : connectionFactories) {
+			connectionFactory.destroy();
+		}
+	}
+
+	private void cleanLocks() {
+		for (StringRedisTemplate redisTemplate : redisTemplates) {
+			redisTemplate.delete(KEY);
+		}
+	}
+
+	@Test
+	public void testLockedOnAllNodes() {
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		for (StringRedisTemplate redisTemplate : redisTemplates) {
+			assertThat(redisTemplate.hasKey(KEY), is(true));
+		}
+		lock.unlock();
+		for (StringRedisTemplate redisTemplate : redisTemplates) {
+			assertThat(redisTemplate.hasKey(KEY), is(false));
+		}
+	}
+
+	@Test
+	public void testReentrant() throws Exception {
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		assertThat(lock.tryLock(), is(true));
+		lock.unlock();
+		assertThat(tryLockInOtherThread(), is(false));
+		lock.unlock();
+		assertThat(tryLockInOtherThread(), is(true));
+	}
+
+	@Test
+	public void testMajorityIsEnough() throws Exception {
+		redisTemplates.get(0).opsForValue().set(KEY, "someone-else");
+		DistributedLock lock = service.obtain("lock");
+		assertThat(lock.tryLock(), is(true));
+		assertThat(redisTemplates.get(0).opsForValue().get(KEY), is("someone-else"));
+		lock.unlock();
+		assertThat(redisTemplates.get(0).opsForValue().get(KEY), is("someone-else"));
+	}
+
+	@Test
+	public void testMinorityIsReleased() throws Exception {
+		redisTemplates.get(0).opsForValue().set(KEY, "someone-else");
+		redisTemplates.get(1).opsForValue().set(KEY, "someone-else");
+		DistributedLock lock = service.obtain("lock");
+		assertThat(lock.tryLock(50, TimeUnit.MILLISECONDS), is(false));
+		for (int i = 0; i < 50 && redisTemplates.get(2).hasKey(KEY); i++) {
+			Thread.sleep(10);
+		}
+		assertThat(redisTemplates.get(2).hasKey(KEY), is(false));
+	}
+
+	@Test
+	public void testExpiredHoldReacquired() throws Exception {
+		RedisQuorumLockService shortService = new RedisQuorumLockService(connectionFactories,
+				RedisQuorumLockService.DEFAULT_REGISTRY_KEY, 100);
+		try {
+			DistributedLock lock = shortService.obtain("lock");
+			lock.lock();
+			Thread.sleep(200);
+			for (StringRedisTemplate redisTemplate : redisTemplates) {
+				assertThat(redisTemplate.hasKey(KEY), is(false));
+			}
+			assertThat(lock.tryLock(), is(true));
+			for (StringRedisTemplate redisTemplate : redisTemplates) {
+				assertThat(redisTemplate.hasKey(KEY), is(true));
+			}
+			lock.unlock();
+			assertThat(redisTemplates.get(0).hasKey(KEY), is(true));
+			lock.unlock();
+			for (StringRedisTemplate redisTemplate : redisTemplates) {
+				assertThat(redisTemplate.hasKey(KEY), is(false));
+			}
+		}
+		finally {
+			shortService.destroy();
+		}
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockNotHeld() {
+		service.obtain("lock").unlock();
+	}
+
+	private boolean tryLockInOtherThread() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			return executor.submit(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					DistributedLock lock = service.obtain("lock");
+					boolean locked = lock.tryLock();
+					if (locked) {
+						lock.unlock();
+					}
+					return locked;
+				}
+			}).get();
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+}
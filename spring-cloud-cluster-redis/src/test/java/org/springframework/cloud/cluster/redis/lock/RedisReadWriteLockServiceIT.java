@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.DistributedReadWriteLock;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Integration tests for redis read/write locking using external redis server.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisReadWriteLockServiceIT {
+
+	private AnnotationConfigApplicationContext context;
+	private StringRedisTemplate redisTemplate;
+	private RedisReadWriteLockService lockService;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		context = new AnnotationConfigApplicationContext();
+		EnvironmentTestUtils.addEnvironment(context);
+		context.register(RedisAutoConfiguration.class);
+		context.refresh();
+		RedisConnectionFactory connectionFactory = context.getBean(RedisConnectionFactory.class);
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+		cleanLocks();
+		lockService = new RedisReadWriteLockService(connectionFactory);
+		lockService.setRetryInterval(10);
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void close() {
+		executor.shutdownNow();
+		cleanLocks();
+		context.close();
+	}
+
+	private void cleanLocks() {
+		Set<String> keys = redisTemplate.keys(RedisReadWriteLockService.DEFAULT_REGISTRY_KEY + ":*");
+		redisTemplate.delete(keys);
+	}
+
+	@Test
+	public void testReadersShareLock() throws Exception {
+		DistributedReadWriteLock lock = lockService.obtain("lock");
+		assertThat(lock.readLock().tryLock(), is(true));
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(true));
+		assertThat(tryLockFromOtherThread(lock.writeLock(), 20), is(false));
+
+		lock.readLock().unlock();
+		assertThat(redisTemplate.hasKey(RedisReadWriteLockService.DEFAULT_REGISTRY_KEY + ":lock"), is(true));
+	}
+
+	@Test
+	public void testWriterExcludesAll() throws Exception {
+		DistributedReadWriteLock lock = lockService.obtain("lock");
+		assertThat(lock.writeLock().tryLock(), is(true));
+		assertThat(lock.writeLock().tryLock(), is(true));
+		assertThat(tryLockFromOtherThread(lock.readLock(), 20), is(false));
+		assertThat(tryLockFromOtherThread(lock.writeLock(), 20), is(false));
+
+		lock.writeLock().unlock();
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(false));
+		lock.writeLock().unlock();
+		assertThat(redisTemplate.hasKey(RedisReadWriteLockService.DEFAULT_REGISTRY_KEY + ":lock"), is(false));
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(true));
+	}
+
+	@Test
+	public void testWriterDowngradesToReader() throws Exception {
+		DistributedReadWriteLock lock = lockService.obtain("lock");
+		lock.writeLock().lock();
+		lock.readLock().lock();
+		lock.writeLock().unlock();
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(true));
+		assertThat(tryLockFromOtherThread(lock.writeLock(), 20), is(false));
+		lock.readLock().unlock();
+	}
+
+	@Test
+	public void testWaitingWriterBlocksNewReaders() throws Exception {
+		final DistributedReadWriteLock lock = lockService.obtain("lock");
+		lock.readLock().lock();
+		Future<Boolean> writer = executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				DistributedLock writeLock = lockService.obtain("lock").writeLock();
+				boolean locked = writeLock.tryLock(5, TimeUnit.SECONDS);
+				if (locked) {
+					writeLock.unlock();
+				}
+				return locked;
+			}
+		});
+		Thread.sleep(100);
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(false));
+		assertThat(lock.readLock().tryLock(), is(true));
+
+		lock.readLock().unlock();
+		lock.readLock().unlock();
+		assertThat(writer.get(5, TimeUnit.SECONDS), is(true));
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(true));
+	}
+
+	@Test
+	public void testTimedOutWriterWithdraws() throws Exception {
+		DistributedReadWriteLock lock = lockService.obtain("lock");
+		lock.readLock().lock();
+		assertThat(tryLockFromOtherThread(lock.writeLock(), 20), is(false));
+		assertThat(redisTemplate.hasKey(RedisReadWriteLockService.DEFAULT_REGISTRY_KEY + ":lock:writers"), is(false));
+		assertThat(tryLockFromOtherThread(lock.readLock(), 0), is(true));
+		lock.readLock().unlock();
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		lockService.obtain("lock").readLock().unlock();
+	}
+
+	/**
+	 * Tries a lock from an executor thread. Acquired lock is left held.
+	 */
+	private boolean tryLockFromOtherThread(final DistributedLock lock, final long timeout) throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				return timeout > 0 ? lock.tryLock(timeout, TimeUnit.MILLISECONDS) : lock.tryLock();
+			}
+		}).get();
+	}
+
+}
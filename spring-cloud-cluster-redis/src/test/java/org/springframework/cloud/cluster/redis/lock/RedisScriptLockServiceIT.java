@@ -0,0 +1,309 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.lock.AsyncDistributedLock;
+import org.springframework.cloud.cluster.lock.FencedDistributedLock;
+import org.springframework.cloud.cluster.lock.MultiLock;
+import org.springframework.cloud.cluster.lock.support.DefaultLockRegistry;
+import org.springframework.cloud.cluster.lock.support.DefaultLockServiceLocator;
+import org.springframework.cloud.cluster.lock.support.LockMetrics;
+import org.springframework.cloud.cluster.lock.support.LockStatistics;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Integration tests for redis script locking using external redis server.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisScriptLockServiceIT {
+
+	private static final String KEY_PREFIX = "{" + RedisScriptLockService.DEFAULT_REGISTRY_KEY + "}";
+
+	private AnnotationConfigApplicationContext context;
+	private RedisConnectionFactory connectionFactory;
+	private StringRedisTemplate redisTemplate;
+	private RedisScriptLockService lockService;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		context = new AnnotationConfigApplicationContext();
+		EnvironmentTestUtils.addEnvironment(context);
+		context.register(RedisAutoConfiguration.class);
+		context.refresh();
+		connectionFactory = context.getBean(RedisConnectionFactory.class);
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+		cleanLocks();
+		lockService = new RedisScriptLockService(connectionFactory);
+		lockService.setRetryInterval(10);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void close() throws Exception {
+		executor.shutdownNow();
+		lockService.destroy();
+		cleanLocks();
+		context.close();
+	}
+
+	private void cleanLocks() {
+		Set<String> keys = redisTemplate.keys(KEY_PREFIX + ":*");
+		redisTemplate.delete(keys);
+	}
+
+	@Test
+	public void testReentrantLock() throws Exception {
+		AsyncDistributedLock lock = lockService.obtain("lock");
+		lock.lock();
+		assertThat(lockService.obtain("lock").tryLock(), is(true));
+
+		Set<String> keys = redisTemplate.keys(KEY_PREFIX + ":lock*");
+		assertThat(keys.size(), is(1));
+		assertThat(tryLockFromOtherThread("lock"), is(false));
+
+		lock.unlock();
+		assertThat(tryLockFromOtherThread("lock"), is(false));
+		lock.unlock();
+		assertThat(redisTemplate.hasKey(KEY_PREFIX + ":lock"), is(false));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		lockService.obtain("lock").unlock();
+	}
+
+	@Test
+	public void testAsyncLock() throws Exception {
+		AsyncDistributedLock lock1 = lockService.obtain("lock");
+		AsyncDistributedLock lock2 = lockService.obtain("lock");
+		assertThat(lock1.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+		assertThat(lock2.tryLockAsync(50, TimeUnit.MILLISECONDS).get(), is(false));
+		assertThat(lock1.tryLock(), is(false));
+
+		lock1.unlockAsync().get();
+		assertThat(lock2.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+		lock2.unlockAsync().get();
+	}
+
+	@Test
+	public void testAsyncLockWaitsForRelease() throws Exception {
+		AsyncDistributedLock lock = lockService.obtain("lock");
+		lock.lock();
+		ListenableFuture<Void> future = lockService.obtain("lock").lockAsync();
+		Thread.sleep(100);
+		assertThat(future.isDone(), is(false));
+		lock.unlock();
+		future.get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testLockAll() throws Exception {
+		MultiLock lock = lockService.tryLockAll(Arrays.asList("lock1", "lock2", "lock3"), 1, TimeUnit.SECONDS);
+		assertThat(lock.getLockKeys(), is(Arrays.asList("lock1", "lock2", "lock3")));
+		assertThat(tryLockFromOtherThread("lock2"), is(false));
+
+		lock.unlock();
+		Set<String> keys = redisTemplate.keys(KEY_PREFIX + ":lock*");
+		assertThat(keys.size(), is(0));
+	}
+
+	@Test
+	public void testLockAllIsAtomic() throws Exception {
+		AsyncDistributedLock lock2 = lockService.obtain("lock2");
+		assertThat(lock2.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+
+		assertThat(lockService.tryLockAll(Arrays.asList("lock1", "lock2", "lock3"), 50, TimeUnit.MILLISECONDS),
+				nullValue());
+		assertThat(redisTemplate.hasKey(KEY_PREFIX + ":lock1"), is(false));
+		assertThat(redisTemplate.hasKey(KEY_PREFIX + ":lock3"), is(false));
+		lock2.unlockAsync().get();
+	}
+
+	@Test
+	public void testUnlockNotificationWakesWaiters() throws Exception {
+		lockService.setRetryInterval(60000);
+		lockService.setUnlockNotifications(true);
+		AsyncDistributedLock lock = lockService.obtain("lock");
+		lock.lock();
+
+		AsyncDistributedLock asyncLock = lockService.obtain("lock");
+		ListenableFuture<Boolean> asyncWaiter = asyncLock.tryLockAsync(10, TimeUnit.SECONDS);
+		Future<Boolean> blockingWaiter = executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				AsyncDistributedLock lock = lockService.obtain("lock");
+				if (lock.tryLock(10, TimeUnit.SECONDS)) {
+					lock.unlock();
+					return true;
+				}
+				return false;
+			}
+		});
+		Thread.sleep(500);
+
+		lock.unlock();
+		assertThat(asyncWaiter.get(2, TimeUnit.SECONDS), is(true));
+		asyncLock.unlockAsync().get();
+		assertThat(blockingWaiter.get(2, TimeUnit.SECONDS), is(true));
+	}
+
+	@Test
+	public void testRenewalKeepsLocks() throws Exception {
+		RedisScriptLockService renewingService = new RedisScriptLockService(connectionFactory,
+				RedisScriptLockService.DEFAULT_REGISTRY_KEY, 300);
+		renewingService.setRenewalInterval(100);
+		try {
+			AsyncDistributedLock lock1 = renewingService.obtain("lock1");
+			AsyncDistributedLock lock2 = renewingService.obtain("lock2");
+			lock1.lock();
+			lock2.lock();
+			assertThat(renewingService.getRenewedLocks(), is(2));
+
+			Thread.sleep(700);
+			assertThat(tryLockFromOtherThread("lock1"), is(false));
+			redisTemplate.delete(KEY_PREFIX + ":lock2");
+			Thread.sleep(300);
+			assertThat(renewingService.getRenewalFailures(), is(1L));
+			assertThat(renewingService.getRenewedLocks(), is(1));
+
+			lock1.unlock();
+			assertThat(renewingService.getRenewedLocks(), is(0));
+		}
+		finally {
+			renewingService.destroy();
+		}
+	}
+
+	@Test
+	public void testRenewalNotDelayedByBusyTaskScheduler() throws Exception {
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.initialize();
+		RedisScriptLockService renewingService = new RedisScriptLockService(connectionFactory,
+				RedisScriptLockService.DEFAULT_REGISTRY_KEY, 300);
+		renewingService.setRenewalInterval(100);
+		renewingService.setTaskScheduler(taskScheduler);
+		try {
+			AsyncDistributedLock lock = renewingService.obtain("lock");
+			assertThat(lock.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+			// keep the only task scheduler thread busy well past expiration
+			taskScheduler.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(1000);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, new Date());
+
+			Thread.sleep(700);
+			assertThat(tryLockFromOtherThread("lock"), is(false));
+			assertThat(renewingService.getRenewalFailures(), is(0L));
+		}
+		finally {
+			renewingService.destroy();
+			taskScheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testFencingTokens() throws Exception {
+		FencedDistributedLock lock = (FencedDistributedLock) lockService.obtain("lock");
+		lock.lock();
+		long token1 = lock.getFencingToken();
+		assertThat(lock.tryLock(), is(true));
+		assertThat(lock.getFencingToken(), is(token1));
+		lock.unlock();
+		lock.unlock();
+
+		AsyncDistributedLock asyncLock = lockService.obtain("lock");
+		asyncLock.lockAsync().get();
+		long token2 = ((FencedDistributedLock) asyncLock).getFencingToken();
+		assertThat(token2 > token1, is(true));
+		asyncLock.unlockAsync().get();
+
+		lock.lock();
+		assertThat(lock.getFencingToken() > token2, is(true));
+		lock.unlock();
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testFencingTokenWithoutLock() {
+		((FencedDistributedLock) lockService.obtain("lock")).getFencingToken();
+	}
+
+	@Test
+	public void testInstrumentedServiceKeepsCapabilities() throws Exception {
+		LockMetrics metrics = new LockMetrics();
+		DefaultLockRegistry registry = new DefaultLockRegistry(new DefaultLockServiceLocator(lockService, metrics));
+		LockStatistics stats = metrics.getStatistics(DefaultLockServiceLocator.FALLBACK_NAME);
+
+		AsyncDistributedLock lock = registry.getAsync("lock");
+		assertThat(lock instanceof FencedDistributedLock, is(true));
+		assertThat(lock.tryLockAsync(1, TimeUnit.SECONDS).get(), is(true));
+		assertThat(((FencedDistributedLock) lock).getFencingToken() > 0, is(true));
+		assertThat(tryLockFromOtherThread("lock"), is(false));
+		lock.unlockAsync().get();
+		assertThat(stats.getHoldTime().getCount(), is(1L));
+
+		MultiLock multiLock = registry.lockAll(Arrays.asList("lock1", "lock2"), 1, TimeUnit.SECONDS);
+		assertThat(redisTemplate.hasKey(KEY_PREFIX + ":lock2"), is(true));
+		multiLock.unlock();
+		// both keys acquired with a single call to the service
+		assertThat(stats.getAcquireTime().getCount(), is(2L));
+		assertThat(stats.getHoldTime().getCount(), is(2L));
+	}
+
+	private boolean tryLockFromOtherThread(final String key) throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				return lockService.obtain(key).tryLock();
+			}
+		}).get();
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.redis.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.EnvironmentTestUtils;
+import org.springframework.cloud.cluster.lock.DistributedSemaphore;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Integration tests for redis semaphores using external redis server.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class RedisSemaphoreServiceIT {
+
+	private AnnotationConfigApplicationContext context;
+	private RedisConnectionFactory connectionFactory;
+	private StringRedisTemplate redisTemplate;
+
+	@Before
+	public void setup() {
+		context = new AnnotationConfigApplicationContext();
+		EnvironmentTestUtils.addEnvironment(context);
+		context.register(RedisAutoConfiguration.class);
+		context.refresh();
+		connectionFactory = context.getBean(RedisConnectionFactory.class);
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+		cleanSemaphores();
+	}
+
+	@After
+	public void close() {
+		cleanSemaphores();
+		context.close();
+	}
+
+	private void cleanSemaphores() {
+		Set<String> keys = redisTemplate.keys(RedisSemaphoreService.DEFAULT_REGISTRY_KEY + ":*");
+		redisTemplate.delete(keys);
+	}
+
+	@Test
+	public void testBatchedPermits() throws Exception {
+		RedisSemaphoreService service1 = new RedisSemaphoreService(connectionFactory);
+		RedisSemaphoreService service2 = new RedisSemaphoreService(connectionFactory);
+		service2.setRetryInterval(10);
+		DistributedSemaphore semaphore1 = service1.obtain("semaphore", 5);
+		DistributedSemaphore semaphore2 = service2.obtain("semaphore", 5);
+
+		assertThat(semaphore1.tryAcquire(3), is(true));
+		assertThat(semaphore2.tryAcquire(3, 20, TimeUnit.MILLISECONDS), is(false));
+		assertThat(semaphore2.tryAcquire(2), is(true));
+		assertThat(semaphore1.availablePermits(), is(0));
+
+		semaphore1.release(1);
+		assertThat(semaphore2.availablePermits(), is(1));
+		semaphore1.release(2);
+		semaphore2.release(2);
+		assertThat(redisTemplate.hasKey(RedisSemaphoreService.DEFAULT_REGISTRY_KEY + ":semaphore"), is(false));
+	}
+
+	@Test
+	public void testExpiredPermitsReturn() throws Exception {
+		RedisSemaphoreService crashed = new RedisSemaphoreService(connectionFactory,
+				RedisSemaphoreService.DEFAULT_REGISTRY_KEY, 100);
+		RedisSemaphoreService service = new RedisSemaphoreService(connectionFactory);
+		service.setRetryInterval(10);
+
+		assertThat(crashed.obtain("semaphore", 2).tryAcquire(2), is(true));
+		assertThat(service.obtain("semaphore", 2).tryAcquire(1), is(false));
+		assertThat(service.obtain("semaphore", 2).tryAcquire(1, 1, TimeUnit.SECONDS), is(true));
+		assertThat(service.obtain("semaphore", 2).availablePermits(), is(1));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testReleaseWithoutPermits() {
+		new RedisSemaphoreService(connectionFactory).obtain("semaphore", 2).release(1);
+	}
+
+}
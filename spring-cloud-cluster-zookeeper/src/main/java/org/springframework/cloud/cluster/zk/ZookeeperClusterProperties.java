@@ -18,7 +18,7 @@ package org.springframework.cloud.cluster.zk;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
- * Configuration properties for zookeeper leader election.
+ * Configuration properties for zookeeper leader election and locking.
  * 
  * @author Janne Valkealahti
  *
@@ -34,6 +34,9 @@ public class ZookeeperClusterProperties {
 
 	/** zookeeper leader properties. */
 	private ZookeeperLeaderProperties leader = new ZookeeperLeaderProperties();
+
+	/** zookeeper lock properties. */
+	private ZookeeperLockProperties lock = new ZookeeperLockProperties();
 	
 	public String getNamespace() {
 		return namespace;
@@ -58,6 +61,14 @@ public class ZookeeperClusterProperties {
 	public void setLeader(ZookeeperLeaderProperties leader) {
 		this.leader = leader;
 	}
+
+	public ZookeeperLockProperties getLock() {
+		return lock;
+	}
+
+	public void setLock(ZookeeperLockProperties lock) {
+		this.lock = lock;
+	}
 	
 	public static class ZookeeperLeaderProperties {
 
@@ -74,4 +85,19 @@ public class ZookeeperClusterProperties {
 		
 	}
 
+	public static class ZookeeperLockProperties {
+
+		/** if zookeeper distributed locking is enabled. */
+		private boolean enabled = true;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.zk.leader;
+
+import java.nio.charset.Charset;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.springframework.cloud.cluster.leader.support.LeaderElectionBackend;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link LeaderElectionBackend} for ZooKeeper. A role is held by an
+ * ephemeral node containing the candidate id, which ZooKeeper removes
+ * once the session of the owning client expires. The session timeout
+ * negotiated with ZooKeeper is the lease duration.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ZookeeperLeaderElectionBackend implements LeaderElectionBackend {
+
+	private static final String DEFAULT_NAMESPACE = "/spring-cloud/leadership/";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int DEFAULT_SESSION_TIMEOUT = 60000;
+
+	private final CuratorFramework client;
+
+	private final String namespace;
+
+	private volatile int sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+
+	/**
+	 * Instantiates a new zookeeper leader election backend.
+	 *
+	 * @param client the curator client
+	 */
+	public ZookeeperLeaderElectionBackend(CuratorFramework client) {
+		this(client, DEFAULT_NAMESPACE);
+	}
+
+	/**
+	 * Instantiates a new zookeeper leader election backend.
+	 *
+	 * @param client the curator client
+	 * @param namespace the namespace base path in zookeeper
+	 */
+	public ZookeeperLeaderElectionBackend(CuratorFramework client, String namespace) {
+		Assert.notNull(client, "Curator client must be set");
+		this.client = client;
+		String ns = StringUtils.hasText(namespace) ? namespace : DEFAULT_NAMESPACE;
+		if (!ns.startsWith("/")) {
+			ns = "/" + ns;
+		}
+		if (!ns.endsWith("/")) {
+			ns = ns + "/";
+		}
+		this.namespace = ns;
+	}
+
+	/**
+	 * Sets the session timeout in milliseconds the client was built with,
+	 * used as lease duration until a timeout is negotiated with ZooKeeper.
+	 * Defaults to sixty seconds like curator.
+	 *
+	 * @param sessionTimeout the session timeout
+	 */
+	public void setSessionTimeout(int sessionTimeout) {
+		Assert.isTrue(sessionTimeout > 0, "Session timeout must be positive");
+		this.sessionTimeout = sessionTimeout;
+	}
+
+	@Override
+	public long getLeaseDuration() {
+		int negotiated = 0;
+		try {
+			// zero until connected
+			negotiated = client.getZookeeperClient().getZooKeeper().getSessionTimeout();
+		}
+		catch (Exception e) {
+			// client not started yet
+		}
+		return negotiated > 0 ? negotiated : sessionTimeout;
+	}
+
+	@Override
+	public boolean tryAcquire(String role, String id) throws Exception {
+		try {
+			client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL)
+					.forPath(namespace + role, id.getBytes(UTF8));
+			return true;
+		}
+		catch (KeeperException.NodeExistsException e) {
+			// node exists, which is fine if it's already ours
+			return renew(role, id);
+		}
+	}
+
+	@Override
+	public boolean renew(String role, String id) throws Exception {
+		return ownedVersion(role, id) != null;
+	}
+
+	@Override
+	public void release(String role, String id) throws Exception {
+		Integer version = ownedVersion(role, id);
+		if (version != null) {
+			try {
+				client.delete().withVersion(version).forPath(namespace + role);
+			}
+			catch (KeeperException.NoNodeException | KeeperException.BadVersionException e) {
+				// node already gone or replaced
+			}
+		}
+	}
+
+	/**
+	 * Gets the version of a role node if it's owned by the candidate
+	 * within the current session.
+	 */
+	private Integer ownedVersion(String role, String id) throws Exception {
+		Stat stat = new Stat();
+		byte[] data;
+		try {
+			data = client.getData().storingStatIn(stat).forPath(namespace + role);
+		}
+		catch (KeeperException.NoNodeException e) {
+			return null;
+		}
+		long sessionId = client.getZookeeperClient().getZooKeeper().getSessionId();
+		if (stat.getEphemeralOwner() == sessionId && id.equals(new String(data, UTF8))) {
+			return stat.getVersion();
+		}
+		return null;
+	}
+
+}
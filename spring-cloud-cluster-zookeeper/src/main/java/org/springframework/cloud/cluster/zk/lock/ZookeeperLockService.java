@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.zk.lock;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.locks.InterProcessMutex;
+import org.apache.curator.utils.ZKPaths;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.cloud.cluster.lock.LockService;
+import org.springframework.cloud.cluster.lock.LockingException;
+import org.springframework.cloud.cluster.lock.support.AbstractDistributedLock;
+import org.springframework.util.Assert;
+
+/**
+ * {@link LockService} implementation based on Zookeeper using Curator
+ * {@link InterProcessMutex} recipe under {@code root/lockKey}.
+ *
+ * <p>Waiters watch the sequential node preceding their own instead of
+ * polling, so a released lock is handed to the next waiter as soon as
+ * Zookeeper delivers the watch event. Locks are owned by the calling
+ * thread and are reentrant. Lock nodes are ephemeral, meaning locks of
+ * a client are released once its session expires.
+ *
+ * <p>One mutex instance is shared per lock key, as Curator tracks holding
+ * threads within a mutex instance. A mutex is referenced by every thread
+ * waiting for or holding it, counting reentrant holds separately, and is
+ * dropped once the last reference is released so that locks which are
+ * no longer used don't accumulate.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ZookeeperLockService implements LockService {
+
+	public static final String DEFAULT_ROOT = "/spring-cloud-locks";
+
+	private final CuratorFramework client;
+
+	private final String root;
+
+	private final ConcurrentMap<String, MutexEntry> mutexes = new ConcurrentHashMap<String, MutexEntry>();
+
+	/**
+	 * Instantiates a new zookeeper lock service.
+	 *
+	 * @param client the curator client
+	 */
+	public ZookeeperLockService(CuratorFramework client) {
+		this(client, DEFAULT_ROOT);
+	}
+
+	/**
+	 * Instantiates a new zookeeper lock service.
+	 *
+	 * @param client the curator client
+	 * @param root the root path for locks
+	 */
+	public ZookeeperLockService(CuratorFramework client, String root) {
+		Assert.notNull(client, "Curator client must be set");
+		Assert.hasText(root, "Root path must be set");
+		this.client = client;
+		this.root = root;
+	}
+
+	@Override
+	public DistributedLock obtain(String lockKey) {
+		return new ZookeeperLock(lockKey);
+	}
+
+	/**
+	 * Gets the shared mutex entry of a lock key and adds a reference to it.
+	 */
+	private MutexEntry reference(String lockKey) {
+		while (true) {
+			MutexEntry entry = mutexes.get(lockKey);
+			if (entry == null) {
+				MutexEntry created = new MutexEntry(new InterProcessMutex(client, ZKPaths.makePath(root, lockKey)));
+				entry = mutexes.putIfAbsent(lockKey, created);
+				if (entry == null) {
+					return created;
+				}
+			}
+			synchronized (entry) {
+				if (entry.references > 0) {
+					entry.references++;
+					return entry;
+				}
+			}
+			// entry was just dropped, retry with a new one
+		}
+	}
+
+	/**
+	 * Removes a reference from a mutex entry, dropping the entry with
+	 * its last reference.
+	 */
+	private void dereference(String lockKey, MutexEntry entry) {
+		synchronized (entry) {
+			if (--entry.references == 0) {
+				mutexes.remove(lockKey, entry);
+			}
+		}
+	}
+
+	/**
+	 * Mutex of a lock key with the number of threads waiting for it plus
+	 * the number of holds, guarded by the entry monitor.
+	 */
+	private static class MutexEntry {
+
+		private final InterProcessMutex mutex;
+
+		private int references = 1;
+
+		MutexEntry(InterProcessMutex mutex) {
+			this.mutex = mutex;
+		}
+
+	}
+
+	/**
+	 * {@link DistributedLock} delegating to a shared {@link InterProcessMutex}.
+	 * A reference to the mutex entry is kept for every hold and given up
+	 * if acquiring fails.
+	 */
+	private class ZookeeperLock extends AbstractDistributedLock {
+
+		ZookeeperLock(String lockKey) {
+			super(lockKey);
+		}
+
+		@Override
+		public void lock() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					lockInterruptibly();
+					break;
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			MutexEntry entry = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				entry.mutex.acquire();
+				acquired = true;
+			}
+			catch (InterruptedException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new LockingException("Failed to lock [" + getLockKey() + "]", e);
+			}
+			finally {
+				if (!acquired) {
+					dereference(getLockKey(), entry);
+				}
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			try {
+				return tryLock(0, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			MutexEntry entry = reference(getLockKey());
+			boolean acquired = false;
+			try {
+				acquired = entry.mutex.acquire(time, unit);
+				return acquired;
+			}
+			catch (InterruptedException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new LockingException("Failed to lock [" + getLockKey() + "]", e);
+			}
+			finally {
+				if (!acquired) {
+					dereference(getLockKey(), entry);
+				}
+			}
+		}
+
+		@Override
+		public void unlock() {
+			// a hold references the entry, so there's none if nothing is held
+			MutexEntry entry = mutexes.get(getLockKey());
+			if (entry == null) {
+				throw new IllegalMonitorStateException("Lock [" + getLockKey() + "] is not held");
+			}
+			try {
+				entry.mutex.release();
+			}
+			catch (IllegalMonitorStateException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				// curator forgets the hold even if deleting its node failed
+				dereference(getLockKey(), entry);
+				throw new LockingException("Failed to unlock [" + getLockKey() + "]", e);
+			}
+			dereference(getLockKey(), entry);
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.zk.leader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.leader.Context;
+import org.springframework.cloud.cluster.leader.DefaultCandidate;
+import org.springframework.cloud.cluster.leader.support.SharedLeaderInitiator;
+
+/**
+ * Tests for {@link ZookeeperLeaderElectionBackend}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ZookeeperLeaderElectionBackendTests {
+
+	private TestingServer testingServer;
+
+	private CuratorFramework client;
+
+	private ZookeeperLeaderElectionBackend backend;
+
+	private SharedLeaderInitiator initiator;
+
+	@Before
+	public void setup() throws Exception {
+		testingServer = new TestingServer(true);
+		client = CuratorFrameworkFactory.builder().retryPolicy(new ExponentialBackoffRetry(1000, 3))
+				.connectString(testingServer.getConnectString()).sessionTimeoutMs(10000).build();
+		backend = new ZookeeperLeaderElectionBackend(client);
+		initiator = new SharedLeaderInitiator(backend);
+		initiator.setHeartbeatInterval(50);
+	}
+
+	@After
+	public void close() throws Exception {
+		initiator.destroy();
+		client.close();
+		testingServer.close();
+	}
+
+	@Test
+	public void testFailover() throws Exception {
+		client.start();
+		TestCandidate candidate1 = new TestCandidate("id1");
+		TestCandidate candidate2 = new TestCandidate("id2");
+		initiator.addCandidate(candidate1);
+		initiator.start();
+		assertThat(candidate1.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate1), is(true));
+
+		initiator.addCandidate(candidate2);
+		Thread.sleep(200);
+		assertThat(initiator.isLeader(candidate2), is(false));
+
+		initiator.removeCandidate(candidate1);
+		assertThat(candidate1.onRevokedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(candidate2.onGrantedLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.isLeader(candidate2), is(true));
+	}
+
+	@Test
+	public void testLeaseDurationIsSessionTimeout() throws Exception {
+		backend.setSessionTimeout(10000);
+		assertThat(backend.getLeaseDuration(), is(10000L));
+
+		client.start();
+		assertThat(client.blockUntilConnected(5, TimeUnit.SECONDS), is(true));
+		int negotiated = client.getZookeeperClient().getZooKeeper().getSessionTimeout();
+		assertThat(backend.getLeaseDuration(), is((long) negotiated));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHeartbeatIntervalAboveHalfLease() {
+		backend.setSessionTimeout(80);
+		initiator.start();
+	}
+
+	static class TestCandidate extends DefaultCandidate {
+
+		final CountDownLatch onGrantedLatch = new CountDownLatch(1);
+
+		final CountDownLatch onRevokedLatch = new CountDownLatch(1);
+
+		TestCandidate(String id) {
+			super(id, "role");
+		}
+
+		@Override
+		public void onGranted(Context ctx) {
+			super.onGranted(ctx);
+			onGrantedLatch.countDown();
+		}
+
+		@Override
+		public void onRevoked(Context ctx) {
+			super.onRevoked(ctx);
+			onRevokedLatch.countDown();
+		}
+
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.cloud.cluster.zk.lock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.cluster.lock.DistributedLock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests for {@link ZookeeperLockService}.
+ *
+ * @author Janne Valkealahti
+ *
+ */
+public class ZookeeperLockServiceTests {
+
+	private TestingServer testingServer;
+
+	private CuratorFramework client;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() throws Exception {
+		testingServer = new TestingServer(true);
+		client = CuratorFrameworkFactory.newClient(testingServer.getConnectString(),
+				new ExponentialBackoffRetry(1000, 3));
+		client.start();
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void close() throws Exception {
+		executor.shutdownNow();
+		client.close();
+		testingServer.close();
+	}
+
+	@Test
+	public void testReentrantLock() throws Exception {
+		ZookeeperLockService service = new ZookeeperLockService(client);
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		assertThat(service.obtain("lock").tryLock(), is(true));
+		assertThat(tryLockFromOtherThread(service, 20), is(false));
+
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(service, 20), is(false));
+		lock.unlock();
+		assertThat(tryLockFromOtherThread(service, 20), is(true));
+	}
+
+	@Test
+	public void testWaiterWokenOnUnlock() throws Exception {
+		final ZookeeperLockService service = new ZookeeperLockService(client);
+		DistributedLock lock = service.obtain("lock");
+		lock.lock();
+		Future<Long> waited = executor.submit(new Callable<Long>() {
+
+			@Override
+			public Long call() throws Exception {
+				DistributedLock other = service.obtain("lock");
+				other.lock();
+				long released = System.nanoTime();
+				other.unlock();
+				return released;
+			}
+		});
+		Thread.sleep(100);
+		long unlocked = System.nanoTime();
+		lock.unlock();
+		long wakeup = TimeUnit.NANOSECONDS.toMillis(waited.get(5, TimeUnit.SECONDS) - unlocked);
+		assertThat(wakeup < 1000, is(true));
+	}
+
+	@Test
+	public void testMutexDroppedWhenNotUsed() throws Exception {
+		ZookeeperLockService service = new ZookeeperLockService(client);
+		Map<?, ?> mutexes = (Map<?, ?>) ReflectionTestUtils.getField(service, "mutexes");
+		DistributedLock lock = service.obtain("lock");
+		assertThat(mutexes.isEmpty(), is(true));
+
+		lock.lock();
+		service.obtain("lock").lock();
+		assertThat(tryLockFromOtherThread(service, 20), is(false));
+		assertThat(mutexes.size(), is(1));
+		lock.unlock();
+		assertThat(mutexes.size(), is(1));
+		assertThat(tryLockFromOtherThread(service, 20), is(false));
+		lock.unlock();
+		assertThat(mutexes.isEmpty(), is(true));
+
+		assertThat(tryLockFromOtherThread(service, 20), is(true));
+		assertThat(mutexes.isEmpty(), is(true));
+	}
+
+	@Test(expected = IllegalMonitorStateException.class)
+	public void testUnlockWithoutLock() {
+		new ZookeeperLockService(client).obtain("lock").unlock();
+	}
+
+	private boolean tryLockFromOtherThread(final ZookeeperLockService service, final long timeout)
+			throws Exception {
+		return executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				DistributedLock lock = service.obtain("lock");
+				boolean locked = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+				if (locked) {
+					lock.unlock();
+				}
+				return locked;
+			}
+		}).get();
+	}
+
+}